@@ -8,12 +8,15 @@ import Backend.Expressions.RealValuedExpression;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.util.*;
 
 /**
  * Axes represents the Euclidean Space in which our Expressions will be graphed.
  * - stores a 'scale' attribute (type float)
  * - stores attributes for the coordinates of the origin
+ * - keeps both in double precision too, for views smaller than float can resolve
+ * - and in arbitrary precision, for deep zooms far past what double resolves
  * - collection of Expressions
  * - methods to add/remove functions to the above collection
  * - a getter for the collection of Expressions
@@ -22,6 +25,12 @@ import java.util.*;
 public class Axes implements Serializable {
     private float scale;
     private float[] origin;
+    // The scale and origin in double precision; the float ones are these rounded
+    private double doubleScale;
+    private double[] doubleOrigin;
+    // The scale and origin as set in arbitrary precision, null when they were last set in double or float
+    private BigDecimal preciseScale;
+    private BigDecimal[] preciseOrigin;
     private final List<RealValuedExpression> exprCollection;
     private final Map<String, FunctionExpression> namedExpressions = initialNamedExpressions();
 
@@ -53,6 +62,8 @@ public class Axes implements Serializable {
     public Axes(float scale, float[] origin) {
         this.scale = scale;
         this.origin = origin;
+        this.doubleScale = scale;
+        this.doubleOrigin = toDoubles(origin);
         this.exprCollection = new ArrayList<>();
 
         this.observable = new PropertyChangeSupport(this);
@@ -69,13 +80,7 @@ public class Axes implements Serializable {
         Map<String, FunctionExpression> funcMap = new HashMap<>();
 
         for (String funcName : builtinFunctions) {
-            FunctionExpression func;
-            if (constants.getTwoVarFunctions().contains(funcName)) {
-                func = new BuiltinFunctionExpression(funcName, new String[]{"x", "y"});
-            } else {
-                func = new BuiltinFunctionExpression(funcName, new String[]{"x"});
-            }
-            funcMap.put(funcName, func);
+            funcMap.put(funcName, new BuiltinFunctionExpression(funcName, constants.getBuiltinVariables(funcName)));
         }
 
         return funcMap;
@@ -90,13 +95,67 @@ public class Axes implements Serializable {
         observable.addPropertyChangeListener("funcMap", observer);
     }
 
+    /**
+     * Add a new observer to observe the changes to what is graphed: the "scale", the "origin" and the
+     * "expressions".
+     *
+     * @param observer Object that is observing Axes
+     */
+    public void addViewObserver(PropertyChangeListener observer) {
+        observable.addPropertyChangeListener("scale", observer);
+        observable.addPropertyChangeListener("origin", observer);
+        observable.addPropertyChangeListener("expressions", observer);
+    }
+
     //Getter and Setter methods for scale, origin:
     public float getScale() {
         return this.scale;
     }
 
     public void setScale(float scale) {
+        float old = this.scale;
         this.scale = scale;
+        this.doubleScale = scale;
+        this.preciseScale = null;
+        observable.firePropertyChange("scale", old, scale);
+    }
+
+    public double getDoubleScale() {
+        return this.doubleScale;
+    }
+
+    /**
+     * Sets the scale in double precision, and the float scale to it rounded
+     *
+     * @param scale The scale of Axes
+     */
+    public void setDoubleScale(double scale) {
+        double old = this.doubleScale;
+        this.doubleScale = scale;
+        this.scale = (float) scale;
+        this.preciseScale = null;
+        observable.firePropertyChange("scale", old, scale);
+    }
+
+    /**
+     * @return The scale in arbitrary precision, exactly the double scale unless it was set in arbitrary precision
+     */
+    public BigDecimal getPreciseScale() {
+        return preciseScale != null ? preciseScale : new BigDecimal(doubleScale);
+    }
+
+    /**
+     * Sets the scale in arbitrary precision, and the double and float scales to it rounded, which are 0 for scales
+     * too small for them
+     *
+     * @param scale The scale of Axes
+     */
+    public void setPreciseScale(BigDecimal scale) {
+        BigDecimal old = getPreciseScale();
+        this.preciseScale = scale;
+        this.doubleScale = scale.doubleValue();
+        this.scale = scale.floatValue();
+        observable.firePropertyChange("scale", old, scale);
     }
 
     public float[] getOrigin() {
@@ -104,12 +163,81 @@ public class Axes implements Serializable {
     }
 
     public void setOrigin(float x, float y) {
-        this.origin = new float[]{x, y};
+        setOrigin(new float[]{x, y});
     }
 
     //overload setter for origin. can take an array of floats
     public void setOrigin(float[] p) {
+        float[] old = this.origin;
         this.origin = p;
+        this.doubleOrigin = toDoubles(p);
+        this.preciseOrigin = null;
+        if (!Arrays.equals(old, p)) {
+            observable.firePropertyChange("origin", old, p);
+        }
+    }
+
+    public double[] getDoubleOrigin() {
+        return this.doubleOrigin;
+    }
+
+    /**
+     * Sets the origin in double precision, and the float origin to it rounded
+     *
+     * @param p The coordinates of the origin
+     */
+    public void setDoubleOrigin(double[] p) {
+        double[] old = this.doubleOrigin;
+        this.doubleOrigin = p;
+        this.origin = new float[p.length];
+        for (int i = 0; i < p.length; i++) {
+            this.origin[i] = (float) p[i];
+        }
+        this.preciseOrigin = null;
+        if (!Arrays.equals(old, p)) {
+            observable.firePropertyChange("origin", old, p);
+        }
+    }
+
+    /**
+     * @return The origin in arbitrary precision, exactly the double origin unless it was set in arbitrary precision
+     */
+    public BigDecimal[] getPreciseOrigin() {
+        if (preciseOrigin != null) {
+            return preciseOrigin;
+        }
+        BigDecimal[] precise = new BigDecimal[doubleOrigin.length];
+        for (int i = 0; i < doubleOrigin.length; i++) {
+            precise[i] = new BigDecimal(doubleOrigin[i]);
+        }
+        return precise;
+    }
+
+    /**
+     * Sets the origin in arbitrary precision, and the double and float origins to it rounded
+     *
+     * @param p The coordinates of the origin
+     */
+    public void setPreciseOrigin(BigDecimal[] p) {
+        BigDecimal[] old = getPreciseOrigin();
+        this.preciseOrigin = p;
+        this.doubleOrigin = new double[p.length];
+        this.origin = new float[p.length];
+        for (int i = 0; i < p.length; i++) {
+            this.doubleOrigin[i] = p[i].doubleValue();
+            this.origin[i] = p[i].floatValue();
+        }
+        if (!Arrays.equals(old, p)) {
+            observable.firePropertyChange("origin", old, p);
+        }
+    }
+
+    private static double[] toDoubles(float[] p) {
+        double[] doubles = new double[p.length];
+        for (int i = 0; i < p.length; i++) {
+            doubles[i] = p[i];
+        }
+        return doubles;
     }
 
     public List<RealValuedExpression> getExpressions() {
@@ -118,6 +246,7 @@ public class Axes implements Serializable {
 
     public void addExpression(RealValuedExpression expr) {
         this.exprCollection.add(expr);
+        observable.firePropertyChange("expressions", null, expr);
 
         // if a user adds a named function, we want to add it our collection
         if (expr instanceof FunctionExpression) {
@@ -128,7 +257,9 @@ public class Axes implements Serializable {
     }
 
     public void removeExpression(RealValuedExpression expr) {
-        this.exprCollection.remove(expr);
+        if (this.exprCollection.remove(expr)) {
+            observable.firePropertyChange("expressions", expr, null);
+        }
 
         if (namedExpressions.containsKey(expr.getItem())) {
             namedExpressions.remove(expr.getItem(), (FunctionExpression) expr);
@@ -3,7 +3,9 @@ package Backend;
 import Backend.Expressions.FunctionExpression;
 import Backend.Expressions.RealValuedExpression;
 
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 
@@ -57,6 +59,22 @@ public class AxesUseCase {
         ax.setScale(scale);
     }
 
+    public double getDoubleScale(Axes ax) {
+        return ax.getDoubleScale();
+    }
+
+    public void setDoubleScale(double scale, Axes ax) {
+        ax.setDoubleScale(scale);
+    }
+
+    public BigDecimal getPreciseScale(Axes ax) {
+        return ax.getPreciseScale();
+    }
+
+    public void setPreciseScale(BigDecimal scale, Axes ax) {
+        ax.setPreciseScale(scale);
+    }
+
     public float[] getOrigin(Axes ax) {
         return ax.getOrigin();
     }
@@ -66,6 +84,22 @@ public class AxesUseCase {
         ax.setOrigin(o);
     }
 
+    public double[] getDoubleOrigin(Axes ax) {
+        return ax.getDoubleOrigin();
+    }
+
+    public void setDoubleOrigin(double[] o, Axes ax) {
+        ax.setDoubleOrigin(o);
+    }
+
+    public BigDecimal[] getPreciseOrigin(Axes ax) {
+        return ax.getPreciseOrigin();
+    }
+
+    public void setPreciseOrigin(BigDecimal[] o, Axes ax) {
+        ax.setPreciseOrigin(o);
+    }
+
     public List<RealValuedExpression> getExpressions(Axes ax) {
         return ax.getExpressions();
     }
@@ -82,4 +116,9 @@ public class AxesUseCase {
     public Map<String, FunctionExpression> getNamedFunctions(Axes ax) {
         return ax.getNamedExpressions();
     }
+
+    // Lets views graph again only when what they show has changed
+    public void addViewObserver(PropertyChangeListener observer, Axes ax) {
+        ax.addViewObserver(observer);
+    }
 }
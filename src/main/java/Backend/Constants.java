@@ -9,8 +9,17 @@ public class Constants {
     // List used for operators as the order of operators matter and is used to control the order of precedence in expressions.
     // Sets used for these as only need containment and order is irrelevant.
     private final Set<String> VARIABLES = Set.of("x", "y", "z");
-    private final Set<String> BUILTINONEVARFUNCTIONS = Set.of("cos", "sin", "tan", "sqrt", "exp", "arctan", "arccos", "arcsin", "log");
-    private final Set<String> BUILTINTWOVARFUNCTIONS = Set.of("mandel", "max", "min");
+    // The order in which variables are laid out in slot arrays, see Expression.evalFloat / evalBool.
+    // p and q cannot be typed in; they hold the inputs of the builtin functions taking more than three.
+    private final List<String> VARIABLESLOTS = List.of("x", "y", "z", "p", "q");
+    // The builtin functions and the number of inputs each takes, which are bound to the first of VARIABLESLOTS
+    private final Map<String, Integer> BUILTINFUNCTIONS = Map.ofEntries(
+            Map.entry("cos", 1), Map.entry("sin", 1), Map.entry("tan", 1), Map.entry("sqrt", 1),
+            Map.entry("exp", 1), Map.entry("arctan", 1), Map.entry("arccos", 1), Map.entry("arcsin", 1),
+            Map.entry("log", 1), Map.entry("max", 2), Map.entry("min", 2),
+            Map.entry("mandel", 2), Map.entry("smoothmandel", 2), Map.entry("mandeliter", 3),
+            Map.entry("julia", 4), Map.entry("juliaiter", 5), Map.entry("ship", 2), Map.entry("shipiter", 3),
+            Map.entry("multibrot", 3), Map.entry("multibrotiter", 4));
     private final Set<String> SPECIALCHARACTERS = Set.of("(", ")", ",");
 
     private final List<String> LOGICALOPERATORS = new ArrayList<>(List.of(new String[]{"|", "&"}));
@@ -38,15 +47,31 @@ public class Constants {
         return VARIABLES;
     }
 
-    public Set<String> getTwoVarFunctions() {
-        return BUILTINTWOVARFUNCTIONS;
+    /**
+     * @param variable The name of a variable
+     * @return The index of the slot holding variable in a slot array, or -1 if it is not a variable
+     */
+    public int getVariableSlot(String variable) {
+        return VARIABLESLOTS.indexOf(variable);
+    }
+
+    /**
+     * @return The length of a slot array, i.e. the number of variables and builtin inputs
+     */
+    public int getVariableSlotCount() {
+        return VARIABLESLOTS.size();
     }
 
     public Set<String> getBuiltinFunctions() {
-        Set<String> allFuncs = new HashSet<>();
-        allFuncs.addAll(BUILTINONEVARFUNCTIONS);
-        allFuncs.addAll(BUILTINTWOVARFUNCTIONS);
-        return allFuncs;
+        return new HashSet<>(BUILTINFUNCTIONS.keySet());
+    }
+
+    /**
+     * @param function The name of a builtin function
+     * @return The variables the inputs of function are bound to, in order, e.g. x and y for max
+     */
+    public String[] getBuiltinVariables(String function) {
+        return VARIABLESLOTS.subList(0, BUILTINFUNCTIONS.get(function)).toArray(new String[0]);
     }
 
     public Set<String> getSpecialCharacters() {
@@ -12,7 +12,8 @@ public class RealValuedExpressionFactory implements ExpressionFactory<RealValued
     public RealValuedExpression constructExpression(String input) throws InvalidTermException {
         RealValuedExpression expr;
         if (this.constants.getVariables().contains(input)) {
-            expr = new VariableExpression(input);
+            // resolve the variable to its slot now so that evaluation never looks it up by name
+            expr = new VariableExpression(input, constants.getVariableSlot(input));
         }
         else { // only other valid possibility is for it to be a number and not a variable.
             try {
@@ -0,0 +1,539 @@
+package Backend.ExpressionCompilers;
+
+import Graphics.EscapeTimeKernel;
+import Graphics.Evaluatable;
+
+import java.util.Arrays;
+
+import static Backend.ExpressionCompilers.OpCodes.*;
+
+/**
+ * A CompiledExpression is an expression tree lowered by ExpressionCompiler into a flat array of opcodes
+ * that runs on a primitive float stack. Constants are parsed once at compile time and variables live in a
+ * slot file, so evaluating it neither allocates nor looks anything up by name.
+ * <p>
+ * Blocks of points can be evaluated column at a time: every instruction then runs over a whole column of
+ * BLOCK_SIZE values before the next one starts, so the dispatch on opcodes is paid once per block and the loops
+ * over columns can be vectorized by the JIT.
+ * <p>
+ * The stack and slot file are reused between calls, so an instance must not be shared between threads.
+ * Use copy() to get an independent instance running the same program.
+ */
+public class CompiledExpression implements Evaluatable {
+    public static final int X_SLOT = 0;
+    public static final int Y_SLOT = 1;
+    public static final int Z_SLOT = 2;
+    public static final int BLOCK_SIZE = 256;
+    private static final EscapeTimeKernel.Family[] FAMILIES = EscapeTimeKernel.Family.values();
+
+    private final int[] code;
+    private final float[] constants;
+    private final float[] slots;
+    private final float[] stack;
+    // the column at a time counterparts of slots and stack, allocated on first use
+    private float[][] slotColumns;
+    private float[][] stackColumns;
+
+    /**
+     * @param code      the program, see OpCodes for the instruction set
+     * @param constants the constant pool that CONST instructions index into
+     * @param slotCount the number of slots the program uses (the variable slots come first)
+     * @param maxStack  the maximum depth the stack reaches while running the program
+     */
+    CompiledExpression(int[] code, float[] constants, int slotCount, int maxStack) {
+        this.code = code;
+        this.constants = constants;
+        this.slots = new float[slotCount];
+        this.stack = new float[Math.max(1, maxStack)];
+    }
+
+    /**
+     * @return A new CompiledExpression running the same program with its own stack and slot file
+     */
+    @Override
+    public CompiledExpression copy() {
+        return new CompiledExpression(code, constants, slots.length, stack.length);
+    }
+
+    @Override
+    public float evaluate(float x, float y) {
+        return evaluate(x, y, Float.NaN);
+    }
+
+    @Override
+    public float evaluate(float x) {
+        return evaluate(x, Float.NaN, Float.NaN);
+    }
+
+    /**
+     * @param x value of the variable x
+     * @param y value of the variable y
+     * @param z value of the variable z
+     * @return f(x, y, z)
+     */
+    public float evaluate(float x, float y, float z) {
+        slots[X_SLOT] = x;
+        slots[Y_SLOT] = y;
+        slots[Z_SLOT] = z;
+        return run();
+    }
+
+    /**
+     * For programs compiled from a BooleanValuedExpression
+     *
+     * @param x value of the variable x
+     * @param y value of the variable y
+     * @return Whether the condition holds at (x, y)
+     */
+    public boolean evaluateBoolean(float x, float y) {
+        return evaluate(x, y) != 0;
+    }
+
+    @Override
+    public void evaluate(float[] xs, float[] ys, float[] out, int n) {
+        for (int start = 0; start < n; start += BLOCK_SIZE) {
+            int count = Math.min(BLOCK_SIZE, n - start);
+            runBlock(xs, ys, start, count);
+            System.arraycopy(stackColumns[0], 0, out, start, count);
+        }
+    }
+
+    /**
+     * Runs the program column at a time over the points from start on, at most BLOCK_SIZE of them, leaving the
+     * result in the bottom column of the stack and the values of the slots in slotColumn
+     */
+    void runBlock(float[] xs, float[] ys, int start, int count) {
+        if (stackColumns == null) {
+            slotColumns = new float[slots.length][BLOCK_SIZE];
+            stackColumns = new float[stack.length][BLOCK_SIZE];
+            Arrays.fill(slotColumns[Z_SLOT], Float.NaN);
+        }
+        System.arraycopy(xs, start, slotColumns[X_SLOT], 0, count);
+        System.arraycopy(ys, start, slotColumns[Y_SLOT], 0, count);
+        runColumns(count);
+    }
+
+    /**
+     * Runs the program over the first count entries of every column, leaving the result in the bottom column
+     */
+    private void runColumns(int count) {
+        final int[] code = this.code;
+        final float[][] stack = this.stackColumns;
+        final float[][] slots = this.slotColumns;
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < code.length) {
+            int op = code[pc++];
+            switch (op) {
+                case CONST:
+                    Arrays.fill(stack[++sp], 0, count, constants[code[pc++]]);
+                    break;
+                case LOAD:
+                    System.arraycopy(slots[code[pc++]], 0, stack[++sp], 0, count);
+                    break;
+                case STORE: {
+                    // the popped column is free, so it can simply swap places with the slot
+                    int slot = code[pc++];
+                    float[] column = slots[slot];
+                    slots[slot] = stack[sp];
+                    stack[sp--] = column;
+                    break;
+                }
+                case ESCAPE_TIME:
+                    sp -= 4;
+                    escapeTime(family(code[pc]), isSmooth(code[pc++]), stack[sp], stack[sp + 1], stack[sp + 2],
+                            stack[sp + 3], stack[sp + 4], count);
+                    break;
+                default:
+                    if (OpCodes.popCount(op) == 2) {
+                        sp--;
+                        binary(op, stack[sp], stack[sp + 1], count);
+                    } else {
+                        unary(op, stack[sp], count);
+                    }
+            }
+        }
+    }
+
+    /**
+     * l[i] = l[i] op r[i] for the first count entries.
+     * Overridden by VectorEvaluator, which may process up to BLOCK_SIZE entries instead.
+     */
+    void binary(int op, float[] l, float[] r, int count) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] + r[i];
+                }
+                break;
+            case SUB:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] - r[i];
+                }
+                break;
+            case MUL:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] * r[i];
+                }
+                break;
+            case DIV:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] / r[i];
+                }
+                break;
+            case POW:
+                for (int i = 0; i < count; i++) {
+                    l[i] = (float) Math.pow(l[i], r[i]);
+                }
+                break;
+            case MAX:
+                for (int i = 0; i < count; i++) {
+                    l[i] = Math.max(l[i], r[i]);
+                }
+                break;
+            case MIN:
+                for (int i = 0; i < count; i++) {
+                    l[i] = Math.min(l[i], r[i]);
+                }
+                break;
+            case GE:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] >= r[i] ? 1 : 0;
+                }
+                break;
+            case LE:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] <= r[i] ? 1 : 0;
+                }
+                break;
+            case GT:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] > r[i] ? 1 : 0;
+                }
+                break;
+            case LT:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] < r[i] ? 1 : 0;
+                }
+                break;
+            case EQ:
+                for (int i = 0; i < count; i++) {
+                    l[i] = l[i] == r[i] ? 1 : 0;
+                }
+                break;
+            case AND:
+                for (int i = 0; i < count; i++) {
+                    l[i] = (l[i] != 0 && r[i] != 0) ? 1 : 0;
+                }
+                break;
+            case OR:
+                for (int i = 0; i < count; i++) {
+                    l[i] = (l[i] != 0 || r[i] != 0) ? 1 : 0;
+                }
+                break;
+            case NAN_UNLESS:
+                for (int i = 0; i < count; i++) {
+                    l[i] = r[i] != 0 ? l[i] : Float.NaN;
+                }
+                break;
+            default:
+                // If the compiler works, then this should never be run
+                throw new IllegalStateException("Unrecognized opcode: " + op);
+        }
+    }
+
+    /**
+     * xs[i] = EscapeTimeKernel.evaluate(family, smooth, xs[i], ys[i], as[i], bs[i], ns[i]) for the first count
+     * entries. Overridden by VectorEvaluator, which may process up to BLOCK_SIZE entries instead.
+     */
+    void escapeTime(EscapeTimeKernel.Family family, boolean smooth, float[] xs, float[] ys, float[] as, float[] bs,
+                    float[] ns, int count) {
+        for (int i = 0; i < count; i++) {
+            xs[i] = EscapeTimeKernel.evaluate(family, smooth, xs[i], ys[i], as[i], bs[i], ns[i]);
+        }
+    }
+
+    /**
+     * @return The operand following an ESCAPE_TIME instruction of the family, smooth or not
+     */
+    static int escapeTimeOperand(EscapeTimeKernel.Family family, boolean smooth) {
+        return family.ordinal() << 1 | (smooth ? 1 : 0);
+    }
+
+    /**
+     * @param operand the operand following an ESCAPE_TIME instruction
+     * @return The family of the instruction
+     */
+    static EscapeTimeKernel.Family family(int operand) {
+        return FAMILIES[operand >> 1];
+    }
+
+    /**
+     * @param operand the operand following an ESCAPE_TIME instruction
+     * @return Whether the instruction gives the smooth count
+     */
+    static boolean isSmooth(int operand) {
+        return (operand & 1) != 0;
+    }
+
+    /**
+     * v[i] = op(v[i]) for the first count entries.
+     * Overridden by VectorEvaluator, which may process up to BLOCK_SIZE entries instead.
+     */
+    void unary(int op, float[] v, int count) {
+        switch (op) {
+            case COS:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.cos(v[i]);
+                }
+                break;
+            case SIN:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.sin(v[i]);
+                }
+                break;
+            case TAN:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.tan(v[i]);
+                }
+                break;
+            case SQRT:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.sqrt(v[i]);
+                }
+                break;
+            case EXP:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.exp(v[i]);
+                }
+                break;
+            case ARCSIN:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.asin(v[i]);
+                }
+                break;
+            case ARCCOS:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.acos(v[i]);
+                }
+                break;
+            case ARCTAN:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.atan(v[i]);
+                }
+                break;
+            case LOG:
+                for (int i = 0; i < count; i++) {
+                    v[i] = (float) Math.log(v[i]);
+                }
+                break;
+            default:
+                // If the compiler works, then this should never be run
+                throw new IllegalStateException("Unrecognized opcode: " + op);
+        }
+    }
+
+    private float run() {
+        final int[] code = this.code;
+        final float[] stack = this.stack;
+        final float[] slots = this.slots;
+        int sp = -1;
+        int pc = 0;
+
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case CONST:
+                    stack[++sp] = constants[code[pc++]];
+                    break;
+                case LOAD:
+                    stack[++sp] = slots[code[pc++]];
+                    break;
+                case STORE:
+                    slots[code[pc++]] = stack[sp--];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp] = stack[sp] + stack[sp + 1];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp] = stack[sp] - stack[sp + 1];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp] = stack[sp] * stack[sp + 1];
+                    break;
+                case DIV:
+                    sp--;
+                    stack[sp] = stack[sp] / stack[sp + 1];
+                    break;
+                case POW:
+                    sp--;
+                    stack[sp] = (float) Math.pow(stack[sp], stack[sp + 1]);
+                    break;
+                case COS:
+                    stack[sp] = (float) Math.cos(stack[sp]);
+                    break;
+                case SIN:
+                    stack[sp] = (float) Math.sin(stack[sp]);
+                    break;
+                case TAN:
+                    stack[sp] = (float) Math.tan(stack[sp]);
+                    break;
+                case SQRT:
+                    stack[sp] = (float) Math.sqrt(stack[sp]);
+                    break;
+                case EXP:
+                    stack[sp] = (float) Math.exp(stack[sp]);
+                    break;
+                case ARCSIN:
+                    stack[sp] = (float) Math.asin(stack[sp]);
+                    break;
+                case ARCCOS:
+                    stack[sp] = (float) Math.acos(stack[sp]);
+                    break;
+                case ARCTAN:
+                    stack[sp] = (float) Math.atan(stack[sp]);
+                    break;
+                case LOG:
+                    stack[sp] = (float) Math.log(stack[sp]);
+                    break;
+                case MAX:
+                    sp--;
+                    stack[sp] = Math.max(stack[sp], stack[sp + 1]);
+                    break;
+                case MIN:
+                    sp--;
+                    stack[sp] = Math.min(stack[sp], stack[sp + 1]);
+                    break;
+                case ESCAPE_TIME:
+                    sp -= 4;
+                    stack[sp] = EscapeTimeKernel.evaluate(family(code[pc]), isSmooth(code[pc++]), stack[sp],
+                            stack[sp + 1], stack[sp + 2], stack[sp + 3], stack[sp + 4]);
+                    break;
+                case GE:
+                    sp--;
+                    stack[sp] = stack[sp] >= stack[sp + 1] ? 1 : 0;
+                    break;
+                case LE:
+                    sp--;
+                    stack[sp] = stack[sp] <= stack[sp + 1] ? 1 : 0;
+                    break;
+                case GT:
+                    sp--;
+                    stack[sp] = stack[sp] > stack[sp + 1] ? 1 : 0;
+                    break;
+                case LT:
+                    sp--;
+                    stack[sp] = stack[sp] < stack[sp + 1] ? 1 : 0;
+                    break;
+                case EQ:
+                    sp--;
+                    stack[sp] = stack[sp] == stack[sp + 1] ? 1 : 0;
+                    break;
+                case AND:
+                    sp--;
+                    stack[sp] = (stack[sp] != 0 && stack[sp + 1] != 0) ? 1 : 0;
+                    break;
+                case OR:
+                    sp--;
+                    stack[sp] = (stack[sp] != 0 || stack[sp + 1] != 0) ? 1 : 0;
+                    break;
+                case NAN_UNLESS:
+                    sp--;
+                    if (stack[sp + 1] == 0) {
+                        stack[sp] = Float.NaN;
+                    }
+                    break;
+                default:
+                    // If the compiler works, then this should never be run
+                    throw new IllegalStateException("Unrecognized opcode: " + code[pc - 1]);
+            }
+        }
+        // programs compiled by compileAll leave their results in slots and the stack empty
+        return stack[0];
+    }
+
+    int[] getCode() {
+        return code;
+    }
+
+    /**
+     * @param opcode One of OpCodes
+     * @return Whether the program has an instruction with the given opcode
+     */
+    boolean contains(int opcode) {
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            if (op == opcode) {
+                return true;
+            }
+            pc += OpCodes.operandCount(op);
+        }
+        return false;
+    }
+
+    /**
+     * @param slot A slot, e.g. Y_SLOT
+     * @return Whether the program reads the slot, that is whether its value depends on that variable
+     */
+    public boolean reads(int slot) {
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            if (op == LOAD && code[pc] == slot) {
+                return true;
+            }
+            pc += OpCodes.operandCount(op);
+        }
+        return false;
+    }
+
+    float[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * @return The value left in a slot by the last run of the program
+     */
+    float getSlot(int slot) {
+        return slots[slot];
+    }
+
+    /**
+     * @return The values left in a slot by the last runBlock, one per point
+     */
+    float[] slotColumn(int slot) {
+        return slotColumns[slot];
+    }
+
+    int getSlotCount() {
+        return slots.length;
+    }
+
+    int getMaxStack() {
+        return stack.length;
+    }
+
+    /**
+     * @return A human readable listing of the program, one instruction per line
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            str.append(OpCodes.name(op));
+            if (op == CONST) {
+                str.append(" ").append(constants[code[pc++]]);
+            } else if (OpCodes.operandCount(op) == 1) {
+                str.append(" #").append(code[pc++]);
+            }
+            str.append("\n");
+        }
+        return str.toString();
+    }
+}
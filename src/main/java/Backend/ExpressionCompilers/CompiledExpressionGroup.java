@@ -0,0 +1,78 @@
+package Backend.ExpressionCompilers;
+
+import Graphics.MultiEvaluatable;
+
+/**
+ * A CompiledExpressionGroup is a single program, built by ExpressionCompiler.compileAll, that evaluates several
+ * expressions at the same point. Each expression's value is left in an output slot, and subexpressions the
+ * expressions have in common are only computed once.
+ * <p>
+ * Like CompiledExpression, an instance must not be shared between threads; use copy() instead.
+ */
+public class CompiledExpressionGroup implements MultiEvaluatable {
+    private final CompiledExpression program;
+    private final int[] outputSlots;
+
+    /**
+     * @param program     the program computing every expression
+     * @param outputSlots the slot holding the value of each expression once program has run
+     */
+    CompiledExpressionGroup(CompiledExpression program, int[] outputSlots) {
+        this.program = program;
+        this.outputSlots = outputSlots;
+    }
+
+    /**
+     * @return A new CompiledExpressionGroup running the same program with its own stack and slot file
+     */
+    @Override
+    public CompiledExpressionGroup copy() {
+        return new CompiledExpressionGroup(program.copy(), outputSlots);
+    }
+
+    /**
+     * @return The number of expressions in this group
+     */
+    public int getOutputCount() {
+        return outputSlots.length;
+    }
+
+    @Override
+    public void evaluate(float x, float y, float[] out) {
+        program.evaluate(x, y);
+        for (int i = 0; i < outputSlots.length; i++) {
+            out[i] = program.getSlot(outputSlots[i]);
+        }
+    }
+
+    @Override
+    public void evaluate(float[] xs, float[] ys, float[][] outs, int n) {
+        for (int start = 0; start < n; start += CompiledExpression.BLOCK_SIZE) {
+            int count = Math.min(CompiledExpression.BLOCK_SIZE, n - start);
+            program.runBlock(xs, ys, start, count);
+            for (int i = 0; i < outputSlots.length; i++) {
+                System.arraycopy(program.slotColumn(outputSlots[i]), 0, outs[i], start, count);
+            }
+        }
+    }
+
+    CompiledExpression getProgram() {
+        return program;
+    }
+
+    int[] getOutputSlots() {
+        return outputSlots;
+    }
+
+    /**
+     * @return A human readable listing of the program followed by the output slots
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder(program.toString());
+        for (int i = 0; i < outputSlots.length; i++) {
+            str.append("OUT ").append(i).append(" #").append(outputSlots[i]).append("\n");
+        }
+        return str.toString();
+    }
+}
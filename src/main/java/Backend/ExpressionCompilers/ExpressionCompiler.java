@@ -0,0 +1,422 @@
+package Backend.ExpressionCompilers;
+
+import Backend.Expressions.*;
+import Graphics.EscapeTimeKernel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static Backend.ExpressionCompilers.OpCodes.*;
+
+/**
+ * The ExpressionCompiler lowers an expression tree into a CompiledExpression.
+ * <p>
+ * Calls to functions (builtin or user defined) are inlined: each input is computed once and stored in a slot,
+ * and the body of the function is compiled with its variables bound to those slots. Domains are compiled into
+ * NAN_UNLESS instructions so that the program gives exactly the same result as Expression.evaluate.
+ * <p>
+ * A subexpression that is used more than once (see ExpressionInterner) is only computed the first time: its value is
+ * stored in a slot of its own and loaded wherever else it is needed.
+ */
+public class ExpressionCompiler {
+
+    /**
+     * Compiles a real valued expression, including its domain.
+     *
+     * @param expression The expression to be compiled
+     * @return A CompiledExpression that evaluates to the same value as expression
+     */
+    public CompiledExpression compile(RealValuedExpression expression) {
+        Emitter emitter = new Emitter(countUses(Collections.singletonList(expression)));
+        emitter.root(expression);
+        return emitter.build();
+    }
+
+    /**
+     * Compiles a boolean valued expression. The resulting program evaluates to 1 when the expression holds and 0
+     * otherwise, see CompiledExpression.evaluateBoolean.
+     *
+     * @param expression The expression to be compiled
+     * @return A CompiledExpression that evaluates to the same value as expression
+     */
+    public CompiledExpression compile(BooleanValuedExpression expression) {
+        Emitter counter = new Emitter(null);
+        counter.bool(expression, Scope.global());
+        Emitter emitter = new Emitter(counter.uses);
+        emitter.bool(expression, Scope.global());
+        return emitter.build();
+    }
+
+    /**
+     * Compiles several real valued expressions, including their domains, into one program. Subexpressions they
+     * share are computed once for all of them.
+     *
+     * @param expressions The expressions to be compiled
+     * @return A CompiledExpressionGroup whose i-th output is the value of the i-th expression
+     */
+    public CompiledExpressionGroup compileAll(List<? extends RealValuedExpression> expressions) {
+        Emitter emitter = new Emitter(countUses(expressions));
+        int[] outputSlots = new int[expressions.size()];
+        for (int i = 0; i < outputSlots.length; i++) {
+            emitter.root(expressions.get(i));
+            outputSlots[i] = emitter.slotCount++;
+            emitter.emit(STORE, outputSlots[i]);
+        }
+        return new CompiledExpressionGroup(emitter.build(), outputSlots);
+    }
+
+    /**
+     * Walks the expressions in the same order as they are compiled, counting how often each node is used in each scope
+     */
+    private Map<Use, Integer> countUses(List<? extends RealValuedExpression> expressions) {
+        Emitter counter = new Emitter(null);
+        for (RealValuedExpression expression : expressions) {
+            counter.root(expression);
+        }
+        return counter.uses;
+    }
+
+    /**
+     * The variables visible while compiling part of a program, bound to their slots, together with the calls
+     * that are being inlined to get there. The same node may have a different value in each scope.
+     */
+    private static class Scope {
+        private final Map<String, Integer> slots;
+        private final List<Expression<?>> calls;
+
+        private Scope(Map<String, Integer> slots, List<Expression<?>> calls) {
+            this.slots = slots;
+            this.calls = calls;
+        }
+
+        /**
+         * @return The variables visible outside any function, bound to their fixed slots
+         */
+        private static Scope global() {
+            Map<String, Integer> slots = new HashMap<>();
+            slots.put("x", CompiledExpression.X_SLOT);
+            slots.put("y", CompiledExpression.Y_SLOT);
+            slots.put("z", CompiledExpression.Z_SLOT);
+            return new Scope(slots, Collections.emptyList());
+        }
+
+        private Scope inside(CustomFunctionExpression function, Map<String, Integer> slots) {
+            List<Expression<?>> inner = new ArrayList<>(calls);
+            inner.add(function);
+            return new Scope(slots, inner);
+        }
+    }
+
+    /**
+     * A node together with the calls it is reached through; nodes and calls are compared by identity
+     */
+    private static final class Use {
+        private final Expression<?> expression;
+        private final List<Expression<?>> calls;
+
+        private Use(Expression<?> expression, Scope scope) {
+            this.expression = expression;
+            this.calls = scope.calls;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Use && ((Use) o).expression == expression && ((Use) o).calls.equals(calls);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(expression) * 31 + calls.hashCode();
+        }
+    }
+
+    /**
+     * Accumulates the code and constant pool of one program while keeping track of the stack depth.
+     */
+    private static class Emitter {
+        // null while counting uses, afterwards the counts used to decide which nodes to keep in a slot
+        private final Map<Use, Integer> counts;
+        private final Map<Use, Integer> uses = new HashMap<>();
+        private final Map<Use, Integer> memo = new HashMap<>();
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Float> constants = new ArrayList<>();
+        private int slotCount = CompiledExpression.Z_SLOT + 1;
+        private int depth = 0;
+        private int maxDepth = 0;
+
+        private Emitter(Map<Use, Integer> counts) {
+            this.counts = counts;
+        }
+
+        private void root(RealValuedExpression expression) {
+            Scope scope = Scope.global();
+            real(expression, scope);
+            domain(expression.getDomain(), scope);
+        }
+
+        private void emit(int op) {
+            code.add(op);
+            depth += OpCodes.pushCount(op) - OpCodes.popCount(op);
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        private void emit(int op, int operand) {
+            emit(op);
+            code.add(operand);
+        }
+
+        private void constant(float value) {
+            // compare bit patterns so that NaN and -0 get their own entries
+            int index = -1;
+            for (int i = 0; i < constants.size(); i++) {
+                if (Float.floatToRawIntBits(constants.get(i)) == Float.floatToRawIntBits(value)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index == -1) {
+                index = constants.size();
+                constants.add(value);
+            }
+            emit(CONST, index);
+        }
+
+        private void real(RealValuedExpression expression, Scope scope) {
+            if (expression instanceof NumberExpression || expression instanceof VariableExpression) {
+                // already a single instruction, nothing to be saved by sharing
+                node(expression, scope);
+                return;
+            }
+            Use use = new Use(expression, scope);
+            if (counts == null) {
+                if (uses.merge(use, 1, Integer::sum) == 1) {
+                    node(expression, scope);
+                }
+                return;
+            }
+            Integer saved = memo.get(use);
+            if (saved != null) {
+                emit(LOAD, saved);
+                return;
+            }
+            node(expression, scope);
+            if (counts.get(use) > 1) {
+                int slot = slotCount++;
+                emit(STORE, slot);
+                emit(LOAD, slot);
+                memo.put(use, slot);
+            }
+        }
+
+        private void node(RealValuedExpression expression, Scope scope) {
+            if (expression instanceof NumberExpression) {
+                constant(Float.parseFloat(expression.getItem()));
+            } else if (expression instanceof VariableExpression) {
+                emit(LOAD, resolve(expression.getItem(), scope));
+            } else if (expression instanceof ArithmeticOperatorExpression) {
+                ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+                real(op.getLExpression(), scope);
+                real(op.getRExpression(), scope);
+                emit(arithmeticOpCode(op.getItem()));
+            } else if (expression instanceof CustomFunctionExpression) {
+                call((CustomFunctionExpression) expression, scope);
+            } else if (expression instanceof BuiltinFunctionExpression
+                    && BuiltinFunctionExpression.escapeTimeFamily(expression.getItem()) != null) {
+                escapeTime((BuiltinFunctionExpression) expression, scope);
+            } else if (expression instanceof BuiltinFunctionExpression) {
+                for (RealValuedExpression input : ((FunctionExpression) expression).getInputs()) {
+                    real(input, scope);
+                }
+                emit(builtinOpCode(expression.getItem()));
+            } else {
+                throw new IllegalArgumentException("Cannot compile expression: " + expression);
+            }
+        }
+
+        /**
+         * Pushes the five operands of ESCAPE_TIME, filling in 0 for the parameters the family does not use and the
+         * default cap on the iterations for the builtins not given theirs, such as mandel and smoothmandel
+         */
+        private void escapeTime(BuiltinFunctionExpression function, Scope scope) {
+            EscapeTimeKernel.Family family = BuiltinFunctionExpression.escapeTimeFamily(function.getItem());
+            RealValuedExpression[] inputs = function.getInputs();
+            int parameters = family.getParameterCount();
+            real(inputs[0], scope);
+            real(inputs[1], scope);
+            for (int i = 0; i < 2; i++) {
+                if (i < parameters) {
+                    real(inputs[2 + i], scope);
+                } else {
+                    constant(0);
+                }
+            }
+            if (BuiltinFunctionExpression.takesIterations(function.getItem())) {
+                real(inputs[2 + parameters], scope);
+            } else {
+                constant(EscapeTimeKernel.DEFAULT_ITERATIONS);
+            }
+            emit(ESCAPE_TIME, CompiledExpression.escapeTimeOperand(family,
+                    BuiltinFunctionExpression.isSmooth(function.getItem())));
+        }
+
+        /**
+         * Mirrors CustomFunctionExpression.evaluate: the inputs are bound to the variables of the function,
+         * the body is evaluated in that scope, and the result is NaN if any of the domains involved do not hold.
+         */
+        private void call(CustomFunctionExpression function, Scope scope) {
+            String[] variables = function.getVariables();
+            RealValuedExpression[] inputs = function.getInputs();
+            Map<String, Integer> innerSlots = new HashMap<>();
+
+            for (int i = 0; i < variables.length; i++) {
+                if (inputs[i] instanceof VariableExpression) {
+                    // no need to copy a variable into a fresh slot
+                    innerSlots.put(variables[i], resolve(inputs[i].getItem(), scope));
+                } else {
+                    real(inputs[i], scope);
+                    int slot = slotCount++;
+                    emit(STORE, slot);
+                    innerSlots.put(variables[i], slot);
+                }
+            }
+            Scope innerScope = scope.inside(function, innerSlots);
+
+            real(function.getFunction(), innerScope);
+            domain(function.getDomain(), innerScope);
+
+            for (RealValuedExpression input : inputs) {
+                if (input instanceof FunctionExpression) {
+                    domain(input.getDomain(), scope);
+                }
+            }
+        }
+
+        /**
+         * Replaces the value on top of the stack by NaN if domain does not hold.
+         */
+        private void domain(BooleanValuedExpression domain, Scope scope) {
+            if (domain instanceof BooleanConstantExpression && domain.getItem().equals("true")) {
+                // trivial domain, nothing to check
+                return;
+            }
+            bool(domain, scope);
+            emit(NAN_UNLESS);
+        }
+
+        private void bool(BooleanValuedExpression expression, Scope scope) {
+            if (expression instanceof BooleanConstantExpression) {
+                // reuse evaluate so that unrecognised constants are reported in the same way
+                constant(expression.evaluate(new HashMap<>()) ? 1 : 0);
+            } else if (expression instanceof ComparatorExpression) {
+                ComparatorExpression comparator = (ComparatorExpression) expression;
+                real(comparator.getLExpression(), scope);
+                real(comparator.getRExpression(), scope);
+                emit(comparatorOpCode(comparator.getItem()));
+            } else if (expression instanceof LogicalOperatorExpression) {
+                LogicalOperatorExpression logical = (LogicalOperatorExpression) expression;
+                bool(logical.getLExpression(), scope);
+                bool(logical.getRExpression(), scope);
+                emit(logicalOpCode(logical.getItem()));
+            } else {
+                throw new IllegalArgumentException("Cannot compile expression: " + expression);
+            }
+        }
+
+        private int resolve(String variable, Scope scope) {
+            Integer slot = scope.slots.get(variable);
+            if (slot == null) {
+                throw new IllegalArgumentException("Unbound variable: " + variable);
+            }
+            return slot;
+        }
+
+        private CompiledExpression build() {
+            int[] codeArray = new int[code.size()];
+            for (int i = 0; i < codeArray.length; i++) {
+                codeArray[i] = code.get(i);
+            }
+            float[] constantArray = new float[constants.size()];
+            for (int i = 0; i < constantArray.length; i++) {
+                constantArray[i] = constants.get(i);
+            }
+            return new CompiledExpression(codeArray, constantArray, slotCount, maxDepth);
+        }
+    }
+
+    private static int arithmeticOpCode(String operator) {
+        switch (operator) {
+            case "+":
+                return ADD;
+            case "-":
+                return SUB;
+            case "*":
+                return MUL;
+            case "/":
+                return DIV;
+            case "^":
+                return POW;
+            default:
+                throw new IllegalArgumentException("Unexpected operator");
+        }
+    }
+
+    private static int builtinOpCode(String funcName) {
+        switch (funcName) {
+            case "cos":
+                return COS;
+            case "sin":
+                return SIN;
+            case "tan":
+                return TAN;
+            case "sqrt":
+                return SQRT;
+            case "exp":
+                return EXP;
+            case "arcsin":
+                return ARCSIN;
+            case "arccos":
+                return ARCCOS;
+            case "arctan":
+                return ARCTAN;
+            case "log":
+                return LOG;
+            case "max":
+                return MAX;
+            case "min":
+                return MIN;
+            default:
+                throw new IllegalArgumentException("Undefined function: " + funcName);
+        }
+    }
+
+    private static int comparatorOpCode(String comparator) {
+        switch (comparator) {
+            case ">=":
+                return GE;
+            case "<=":
+                return LE;
+            case ">":
+                return GT;
+            case "<":
+                return LT;
+            case "=":
+                return EQ;
+            default:
+                throw new IllegalStateException("Unrecognized Comparator!");
+        }
+    }
+
+    private static int logicalOpCode(String operator) {
+        switch (operator) {
+            case "&":
+                return AND;
+            case "|":
+                return OR;
+            default:
+                throw new IllegalStateException("Unrecognized Logical Operator!");
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package Backend.ExpressionCompilers;
+
+import Backend.Expressions.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ExpressionInterner hash-conses expression trees: structurally identical subexpressions of everything it
+ * interns are replaced by one shared node, turning the trees into a single DAG. Evaluating a shared node gives the
+ * same value wherever it is used, so ExpressionCompiler.compileAll only has to compute it once.
+ * <p>
+ * The root of an interned expression is always a node of its own, as callers may still set
+ * its domain. Nodes below the root must not be modified.
+ */
+public class ExpressionInterner {
+
+    private final Map<Key, Expression<?>> nodes = new HashMap<>();
+
+    /**
+     * @return The number of distinct subexpressions interned so far
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @param expression The expression to be interned
+     * @return An expression evaluating to the same value, whose subexpressions are shared with the ones
+     * interned before
+     */
+    public Expression<?> intern(Expression<?> expression) {
+        if (expression instanceof RealValuedExpression) {
+            return intern((RealValuedExpression) expression);
+        } else if (expression instanceof BooleanValuedExpression) {
+            return intern((BooleanValuedExpression) expression);
+        }
+        return expression;
+    }
+
+    /**
+     * @param expression The expression to be interned
+     * @return An expression evaluating to the same value, whose subexpressions are shared with the ones
+     * interned before
+     */
+    public RealValuedExpression intern(RealValuedExpression expression) {
+        RealValuedExpression root = copy(expression);
+        root.setDomain(sharedBool(expression.getDomain()));
+        return root;
+    }
+
+    /**
+     * @param expression The expression to be interned
+     * @return An expression holding exactly when expression holds, whose subexpressions are shared with the ones
+     * interned before
+     */
+    public BooleanValuedExpression intern(BooleanValuedExpression expression) {
+        return copy(expression);
+    }
+
+    private RealValuedExpression sharedReal(RealValuedExpression expression) {
+        BooleanValuedExpression domain = sharedBool(expression.getDomain());
+        RealValuedExpression candidate = copy(expression);
+        Key key = new Key(candidate, domain, children(candidate));
+        RealValuedExpression shared = (RealValuedExpression) nodes.get(key);
+        if (shared == null) {
+            candidate.setDomain(domain);
+            nodes.put(key, candidate);
+            shared = candidate;
+        }
+        return shared;
+    }
+
+    private BooleanValuedExpression sharedBool(BooleanValuedExpression expression) {
+        BooleanValuedExpression candidate = copy(expression);
+        Key key = new Key(candidate, null, children(candidate));
+        BooleanValuedExpression shared = (BooleanValuedExpression) nodes.get(key);
+        if (shared == null) {
+            nodes.put(key, candidate);
+            shared = candidate;
+        }
+        return shared;
+    }
+
+    /**
+     * Makes a new node like expression whose children are shared, without its domain
+     */
+    private RealValuedExpression copy(RealValuedExpression expression) {
+        if (expression instanceof NumberExpression) {
+            return new NumberExpression(expression.getItem());
+        }
+        if (expression instanceof VariableExpression) {
+            return new VariableExpression(expression.getItem(), ((VariableExpression) expression).getSlot());
+        }
+        if (expression instanceof ArithmeticOperatorExpression) {
+            ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+            return new ArithmeticOperatorExpression(op.getItem(), sharedReal(op.getLExpression()),
+                    sharedReal(op.getRExpression()));
+        }
+        if (expression instanceof CustomFunctionExpression) {
+            CustomFunctionExpression function = (CustomFunctionExpression) expression;
+            if (function.isCall()) {
+                // the function being called is already shared by every call to it
+                RealValuedExpression[] inputs = new RealValuedExpression[function.getInputs().length];
+                for (int i = 0; i < inputs.length; i++) {
+                    inputs[i] = sharedReal(function.getInputs()[i]);
+                }
+                return new CustomFunctionExpression(function.getItem(), function.getVariables(), inputs,
+                        function.getFunction());
+            }
+            return new CustomFunctionExpression(function.getItem(), function.getVariables(),
+                    sharedReal(function.getFunction()));
+        }
+        // builtins only appear as the function being called, which is kept as it is
+        return expression;
+    }
+
+    private BooleanValuedExpression copy(BooleanValuedExpression expression) {
+        if (expression instanceof ComparatorExpression) {
+            ComparatorExpression comparator = (ComparatorExpression) expression;
+            return new ComparatorExpression(comparator.getItem(), sharedReal(comparator.getLExpression()),
+                    sharedReal(comparator.getRExpression()));
+        }
+        if (expression instanceof LogicalOperatorExpression) {
+            LogicalOperatorExpression logical = (LogicalOperatorExpression) expression;
+            return new LogicalOperatorExpression(logical.getItem(), sharedBool(logical.getLExpression()),
+                    sharedBool(logical.getRExpression()));
+        }
+        return new BooleanConstantExpression(expression.getItem());
+    }
+
+    /**
+     * @return The nodes a node is built from, which are compared by identity as they are already shared
+     */
+    private static Object[] children(Expression<?> expression) {
+        if (expression instanceof ArithmeticOperatorExpression) {
+            ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+            return new Object[]{op.getLExpression(), op.getRExpression()};
+        }
+        if (expression instanceof CustomFunctionExpression) {
+            CustomFunctionExpression function = (CustomFunctionExpression) expression;
+            if (function.isCall()) {
+                Object[] children = Arrays.copyOf(function.getInputs(), function.getInputs().length + 1,
+                        Object[].class);
+                children[children.length - 1] = function.getFunction();
+                return children;
+            }
+            // definitions are never merged, even when their bodies are the same
+            return new Object[]{function};
+        }
+        if (expression instanceof ComparatorExpression) {
+            ComparatorExpression comparator = (ComparatorExpression) expression;
+            return new Object[]{comparator.getLExpression(), comparator.getRExpression()};
+        }
+        if (expression instanceof LogicalOperatorExpression) {
+            LogicalOperatorExpression logical = (LogicalOperatorExpression) expression;
+            return new Object[]{logical.getLExpression(), logical.getRExpression()};
+        }
+        if (expression instanceof NumberExpression) {
+            // "2" and "2.0" are the same number, but 1.0000000001 is not 1 although it is the same float
+            return new Object[]{Double.doubleToLongBits(Double.parseDouble(expression.getItem()))};
+        }
+        if (expression instanceof VariableExpression) {
+            return new Object[]{((VariableExpression) expression).getSlot()};
+        }
+        return new Object[0];
+    }
+
+    /**
+     * The ratio between the number of nodes in the given trees and the number of distinct nodes among them.
+     * For interned expressions this is how many times fewer nodes have to be evaluated than when each
+     * tree is evaluated on its own. The functions being called are not counted, as they are shared anyway.
+     *
+     * @param expressions The expressions to be measured
+     * @return The sharing ratio, which is 1 when nothing is shared
+     */
+    public static float sharingRatio(Collection<? extends Expression<?>> expressions) {
+        Set<Expression<?>> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        int total = 0;
+        for (Expression<?> expression : expressions) {
+            total += count(expression, distinct);
+        }
+        return distinct.isEmpty() ? 1 : total / (float) distinct.size();
+    }
+
+    /**
+     * @return The number of nodes in the tree of expression, adding each of them to distinct
+     */
+    private static int count(Expression<?> expression, Set<Expression<?>> distinct) {
+        distinct.add(expression);
+        int total = 1;
+        if (expression instanceof RealValuedExpression) {
+            BooleanValuedExpression domain = ((RealValuedExpression) expression).getDomain();
+            if (!(domain instanceof BooleanConstantExpression)) {
+                total += count(domain, distinct);
+            }
+        }
+        if (expression instanceof CustomFunctionExpression) {
+            CustomFunctionExpression function = (CustomFunctionExpression) expression;
+            if (function.isCall()) {
+                for (RealValuedExpression input : function.getInputs()) {
+                    total += count(input, distinct);
+                }
+            } else {
+                total += count(function.getFunction(), distinct);
+            }
+            return total;
+        }
+        for (Object child : children(expression)) {
+            if (child instanceof Expression) {
+                total += count((Expression<?>) child, distinct);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Identifies a node by its class, its item, its domain and its children, the last two compared by identity
+     */
+    private static final class Key {
+        private final Class<?> type;
+        private final String item;
+        private final Object domain;
+        private final Object[] children;
+
+        private Key(Expression<?> expression, BooleanValuedExpression domain, Object[] children) {
+            this.type = expression.getClass();
+            // numbers are told apart by their value instead
+            this.item = expression instanceof NumberExpression ? "" : expression.getItem();
+            this.domain = domain;
+            this.children = children;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            if (type != other.type || !item.equals(other.item) || domain != other.domain
+                    || children.length != other.children.length) {
+                return false;
+            }
+            for (int i = 0; i < children.length; i++) {
+                Object child = children[i];
+                boolean same = child instanceof Expression ? child == other.children[i]
+                        : child.equals(other.children[i]);
+                if (!same) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = type.hashCode() * 31 + item.hashCode();
+            hash = hash * 31 + System.identityHashCode(domain);
+            for (Object child : children) {
+                hash = hash * 31 + (child instanceof Expression ? System.identityHashCode(child) : child.hashCode());
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package Backend.ExpressionCompilers;
+
+import Backend.Expressions.*;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The ExpressionSimplifier rewrites a freshly parsed expression tree into a smaller one that evaluates to the same
+ * value. It folds constant subtrees (including calls whose inputs are all constant) and applies algebraic identities,
+ * such as the x * 1 and -1 * (-1 * x) that the parser produces for unary signs.
+ * <p>
+ * By default only rewrites that are exact in float arithmetic are made, so the result is bit for bit the same as the
+ * tree it replaces for every input, NaN and signed zeros included. Constants are folded in double precision as well,
+ * so double precision evaluation keeps the numbers as typed. With fast-math enabled, identities that only hold
+ * for finite inputs (x + 0, x - x, x * 0) and multiply chains for small integer powers are applied as well.
+ * <p>
+ * Nodes with a non-trivial domain are never replaced by another node, so that their domain is kept.
+ */
+public class ExpressionSimplifier {
+
+    // x ^ n is only turned into a product when x is at most this many nodes, as the product evaluates x twice
+    private static final int MAX_SQUARED_SIZE = 3;
+
+    private boolean fastMath;
+    private int nodesRemoved = 0;
+
+    public ExpressionSimplifier() {
+        this(false);
+    }
+
+    /**
+     * @param fastMath Whether rewrites that may change the result for infinite, NaN or signed zero values are allowed
+     */
+    public ExpressionSimplifier(boolean fastMath) {
+        this.fastMath = fastMath;
+    }
+
+    public boolean isFastMath() {
+        return fastMath;
+    }
+
+    public void setFastMath(boolean fastMath) {
+        this.fastMath = fastMath;
+    }
+
+    /**
+     * @return The total number of nodes removed by this simplifier so far
+     */
+    public int getNodesRemoved() {
+        return nodesRemoved;
+    }
+
+    /**
+     * Simplifies either kind of expression. The given tree is left untouched.
+     *
+     * @param expression The expression to be simplified
+     * @return An expression evaluating to the same value as expression
+     */
+    public Expression<?> simplify(Expression<?> expression) {
+        if (expression instanceof RealValuedExpression) {
+            return simplify((RealValuedExpression) expression);
+        } else if (expression instanceof BooleanValuedExpression) {
+            return simplify((BooleanValuedExpression) expression);
+        }
+        return expression;
+    }
+
+    /**
+     * @param expression The expression to be simplified
+     * @return An expression evaluating to the same value as expression, including its domain
+     */
+    public RealValuedExpression simplify(RealValuedExpression expression) {
+        RealValuedExpression simplified = real(expression);
+        nodesRemoved += size(expression) - size(simplified);
+        return simplified;
+    }
+
+    /**
+     * @param expression The expression to be simplified
+     * @return An expression that holds exactly when expression holds
+     */
+    public BooleanValuedExpression simplify(BooleanValuedExpression expression) {
+        BooleanValuedExpression simplified = bool(expression);
+        nodesRemoved += size(expression) - size(simplified);
+        return simplified;
+    }
+
+    private RealValuedExpression real(RealValuedExpression expression) {
+        if (!isTrivial(expression.getDomain())) {
+            // keep the node itself so that its domain still applies to it
+            RealValuedExpression rebuilt = rebuild(expression);
+            rebuilt.setDomain(bool(expression.getDomain()));
+            return rebuilt;
+        }
+        if (expression instanceof ArithmeticOperatorExpression) {
+            ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+            return arithmetic(op.getItem(), real(op.getLExpression()), real(op.getRExpression()));
+        }
+        if (expression instanceof CustomFunctionExpression && ((CustomFunctionExpression) expression).isCall()) {
+            RealValuedExpression call = rebuild(expression);
+            if (allConstant(((FunctionExpression) call).getInputs())) {
+                return fold(call);
+            }
+            return call;
+        }
+        return rebuild(expression);
+    }
+
+    /**
+     * Copies expression with its children simplified, without changing the node itself. The domain is not copied.
+     */
+    private RealValuedExpression rebuild(RealValuedExpression expression) {
+        if (expression instanceof ArithmeticOperatorExpression) {
+            ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+            return new ArithmeticOperatorExpression(op.getItem(), real(op.getLExpression()), real(op.getRExpression()));
+        }
+        if (expression instanceof CustomFunctionExpression) {
+            CustomFunctionExpression function = (CustomFunctionExpression) expression;
+            if (function.isCall()) {
+                // the function being called is shared with every other call, so it is left as it is
+                RealValuedExpression[] inputs = function.getInputs();
+                RealValuedExpression[] simplifiedInputs = new RealValuedExpression[inputs.length];
+                for (int i = 0; i < inputs.length; i++) {
+                    simplifiedInputs[i] = real(inputs[i]);
+                }
+                return new CustomFunctionExpression(function.getItem(), function.getVariables(), simplifiedInputs,
+                        function.getFunction());
+            }
+            // a definition such as f(x) = x^2, whose body belongs to it alone
+            return new CustomFunctionExpression(function.getItem(), function.getVariables(),
+                    real(function.getFunction()));
+        }
+        // numbers, variables and builtins have no children to simplify
+        return expression;
+    }
+
+    private RealValuedExpression arithmetic(String operator, RealValuedExpression l, RealValuedExpression r) {
+        if (l instanceof NumberExpression && r instanceof NumberExpression) {
+            return fold(new ArithmeticOperatorExpression(operator, l, r));
+        }
+        switch (operator) {
+            case "+":
+                // x + -0 is x even for x = +0, while x + 0 is +0 for x = -0
+                if (isConstant(r, -0f) || (fastMath && isConstant(r, 0f))) {
+                    return l;
+                }
+                if (isConstant(l, -0f) || (fastMath && isConstant(l, 0f))) {
+                    return r;
+                }
+                if (negated(r) != null) {
+                    return new ArithmeticOperatorExpression("-", l, negated(r));
+                }
+                break;
+            case "-":
+                if (isConstant(r, 0f)) {
+                    return l;
+                }
+                if (negated(r) != null) {
+                    return new ArithmeticOperatorExpression("+", l, negated(r));
+                }
+                if (fastMath && sameTree(l, r)) {
+                    return new NumberExpression("0");
+                }
+                break;
+            case "*":
+                if (isConstant(r, 1f)) {
+                    return l;
+                }
+                if (isConstant(l, 1f)) {
+                    return r;
+                }
+                if (isConstant(l, -1f) && negated(r) != null) {
+                    return negated(r);
+                }
+                if (isConstant(r, -1f) && negated(l) != null) {
+                    return negated(l);
+                }
+                if (fastMath && (isConstant(l, 0f) || isConstant(r, 0f))) {
+                    return new NumberExpression("0");
+                }
+                break;
+            case "/":
+                if (isConstant(r, 1f)) {
+                    return l;
+                }
+                break;
+            case "^":
+                if (r instanceof NumberExpression) {
+                    RealValuedExpression power = power(l, Double.parseDouble(r.getItem()));
+                    if (power != null) {
+                        return power;
+                    }
+                }
+                break;
+        }
+        return new ArithmeticOperatorExpression(operator, l, r);
+    }
+
+    /**
+     * Strength reduces base ^ exponent, see MAX_SQUARED_SIZE.
+     * Math.pow(x, 2) is exactly x * x, rounded once, so squaring is exact; longer chains round more than once.
+     *
+     * @return The reduced expression, or null if it should stay a power
+     */
+    private RealValuedExpression power(RealValuedExpression base, double exponent) {
+        if (exponent == 0) {
+            // Math.pow gives 1 for any base, NaN included
+            return new NumberExpression("1");
+        }
+        if (exponent == 1) {
+            return base;
+        }
+        if (size(base) > MAX_SQUARED_SIZE) {
+            return null;
+        }
+        if (exponent == 2) {
+            return new ArithmeticOperatorExpression("*", base, base);
+        }
+        if (!fastMath) {
+            return null;
+        }
+        if (exponent == 3) {
+            return new ArithmeticOperatorExpression("*", new ArithmeticOperatorExpression("*", base, base), base);
+        }
+        if (exponent == 4) {
+            RealValuedExpression square = new ArithmeticOperatorExpression("*", base, base);
+            return new ArithmeticOperatorExpression("*", square, square);
+        }
+        if (exponent == -1) {
+            return new ArithmeticOperatorExpression("/", new NumberExpression("1"), base);
+        }
+        if (exponent == -2) {
+            return new ArithmeticOperatorExpression("/", new NumberExpression("1"),
+                    new ArithmeticOperatorExpression("*", base, base));
+        }
+        return null;
+    }
+
+    private BooleanValuedExpression bool(BooleanValuedExpression expression) {
+        if (expression instanceof ComparatorExpression) {
+            ComparatorExpression comparator = (ComparatorExpression) expression;
+            ComparatorExpression simplified = new ComparatorExpression(comparator.getItem(),
+                    real(comparator.getLExpression()), real(comparator.getRExpression()));
+            if (simplified.getLExpression() instanceof NumberExpression
+                    && simplified.getRExpression() instanceof NumberExpression) {
+                boolean holds = simplified.evalBool(Expression.newSlots());
+                // 1.0000000001 > 1 only holds in double precision
+                if (holds == simplified.evalBool(Expression.newDoubleSlots())) {
+                    return new BooleanConstantExpression(String.valueOf(holds));
+                }
+            }
+            return simplified;
+        }
+        if (expression instanceof LogicalOperatorExpression) {
+            LogicalOperatorExpression logical = (LogicalOperatorExpression) expression;
+            BooleanValuedExpression l = bool(logical.getLExpression());
+            BooleanValuedExpression r = bool(logical.getRExpression());
+            // evaluating a condition has no side effects, so either side may be dropped
+            boolean and = logical.getItem().equals("&");
+            if (l instanceof BooleanConstantExpression) {
+                return l.evalBool(Expression.newSlots()) == and ? r : l;
+            }
+            if (r instanceof BooleanConstantExpression) {
+                return r.evalBool(Expression.newSlots()) == and ? l : r;
+            }
+            return new LogicalOperatorExpression(logical.getItem(), l, r);
+        }
+        return expression;
+    }
+
+    /**
+     * Evaluates a constant expression with the same code the interpreter would use, in double precision so the
+     * number keeps the digits a float cannot hold. The expression is kept as it is when its float value is not the
+     * double one rounded, as then no number evaluates to both.
+     */
+    private RealValuedExpression fold(RealValuedExpression constant) {
+        float value = constant.evalFloat(Expression.newSlots());
+        double doubleValue = constant.evalDouble(Expression.newDoubleSlots());
+        NumberExpression folded = new NumberExpression(Double.toString(doubleValue));
+        if (Float.floatToRawIntBits(folded.evalFloat(Expression.newSlots())) != Float.floatToRawIntBits(value)
+                || Double.doubleToRawLongBits(folded.evalDouble(Expression.newDoubleSlots()))
+                != Double.doubleToRawLongBits(doubleValue)) {
+            return constant;
+        }
+        return folded;
+    }
+
+    /**
+     * @return x if expression is -1 * x or x * -1, otherwise null
+     */
+    private RealValuedExpression negated(RealValuedExpression expression) {
+        if (expression instanceof ArithmeticOperatorExpression && expression.getItem().equals("*")
+                && isTrivial(expression.getDomain())) {
+            ArithmeticOperatorExpression op = (ArithmeticOperatorExpression) expression;
+            if (isConstant(op.getLExpression(), -1f)) {
+                return op.getRExpression();
+            }
+            if (isConstant(op.getRExpression(), -1f)) {
+                return op.getLExpression();
+            }
+        }
+        return null;
+    }
+
+    private boolean allConstant(RealValuedExpression[] expressions) {
+        for (RealValuedExpression expression : expressions) {
+            if (!(expression instanceof NumberExpression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether expression is a number with exactly the same bits as value, so 0 and -0 are told apart, and
+     * 1.0000000001 from 1 although they are the same float
+     */
+    private boolean isConstant(RealValuedExpression expression, float value) {
+        return expression instanceof NumberExpression && isTrivial(expression.getDomain())
+                && Double.doubleToRawLongBits(Double.parseDouble(expression.getItem()))
+                == Double.doubleToRawLongBits(value);
+    }
+
+    private static boolean isTrivial(BooleanValuedExpression domain) {
+        return domain instanceof BooleanConstantExpression && domain.getItem().equals("true");
+    }
+
+    /**
+     * @return Whether a and b are built in the same way from the same parts, and so always evaluate to the same value
+     */
+    private boolean sameTree(RealValuedExpression a, RealValuedExpression b) {
+        if (a == b) {
+            return true;
+        }
+        if (a.getClass() != b.getClass() || !a.getItem().equals(b.getItem())
+                || !isTrivial(a.getDomain()) || !isTrivial(b.getDomain())) {
+            return false;
+        }
+        if (a instanceof ArithmeticOperatorExpression) {
+            ArithmeticOperatorExpression opA = (ArithmeticOperatorExpression) a;
+            ArithmeticOperatorExpression opB = (ArithmeticOperatorExpression) b;
+            return sameTree(opA.getLExpression(), opB.getLExpression())
+                    && sameTree(opA.getRExpression(), opB.getRExpression());
+        }
+        if (a instanceof CustomFunctionExpression) {
+            CustomFunctionExpression functionA = (CustomFunctionExpression) a;
+            CustomFunctionExpression functionB = (CustomFunctionExpression) b;
+            RealValuedExpression[] inputsA = functionA.getInputs();
+            RealValuedExpression[] inputsB = functionB.getInputs();
+            if (functionA.getFunction() != functionB.getFunction() || inputsA.length != inputsB.length) {
+                return false;
+            }
+            for (int i = 0; i < inputsA.length; i++) {
+                if (!sameTree(inputsA[i], inputsB[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        // numbers and variables are equal when their items are
+        return a instanceof NumberExpression || a instanceof VariableExpression;
+    }
+
+    /**
+     * Counts the distinct nodes of a tree, including its domains but not the functions it calls,
+     * which are shared with the rest of the program.
+     */
+    private int size(Expression<?> expression) {
+        Set<Expression<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        count(expression, seen);
+        return seen.size();
+    }
+
+    private void count(Expression<?> expression, Set<Expression<?>> seen) {
+        if (!seen.add(expression)) {
+            return;
+        }
+        if (expression instanceof RealValuedExpression) {
+            BooleanValuedExpression domain = ((RealValuedExpression) expression).getDomain();
+            if (!isTrivial(domain)) {
+                count(domain, seen);
+            }
+        }
+        if (expression instanceof ArithmeticOperatorExpression) {
+            count(((ArithmeticOperatorExpression) expression).getLExpression(), seen);
+            count(((ArithmeticOperatorExpression) expression).getRExpression(), seen);
+        } else if (expression instanceof CustomFunctionExpression) {
+            CustomFunctionExpression function = (CustomFunctionExpression) expression;
+            if (function.isCall()) {
+                for (RealValuedExpression input : function.getInputs()) {
+                    count(input, seen);
+                }
+            } else {
+                count(function.getFunction(), seen);
+            }
+        } else if (expression instanceof ComparatorExpression) {
+            count(((ComparatorExpression) expression).getLExpression(), seen);
+            count(((ComparatorExpression) expression).getRExpression(), seen);
+        } else if (expression instanceof LogicalOperatorExpression) {
+            count(((LogicalOperatorExpression) expression).getLExpression(), seen);
+            count(((LogicalOperatorExpression) expression).getRExpression(), seen);
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package Backend.ExpressionCompilers;
+
+import Backend.Expressions.RealValuedExpression;
+import Graphics.Evaluatable;
+import Graphics.MultiEvaluatable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+import static Backend.ExpressionCompilers.OpCodes.*;
+
+/**
+ * The KernelGenerator turns a CompiledExpression into a JVM class implementing Evaluatable, so that the JIT can
+ * inline and register allocate the whole formula instead of interpreting it one opcode at a time.
+ * <p>
+ * Every stack machine instruction maps onto straight-line float bytecode: slots become local variables, constants
+ * are loaded from the constant pool and builtins call Math directly. The class is defined as a hidden class, which
+ * is unloaded as soon as the kernel is no longer referenced, so redefining functions does not leak metaspace.
+ * The generated kernels hold no state and may be shared between threads, so their copy() returns the kernel itself.
+ * <p>
+ * A CompiledExpressionGroup is turned into a MultiEvaluatable in the same way, its kernel writing the output slots
+ * into the array it is given.
+ */
+public class KernelGenerator {
+    private static final String KERNEL_NAME = "Backend/ExpressionCompilers/GeneratedKernel";
+    private static final String SUPPORT_NAME = "Backend/ExpressionCompilers/KernelSupport";
+    private static final String KERNEL_DESCRIPTOR = "(FFF)F";
+    private static final String GROUP_KERNEL_DESCRIPTOR = "(FFF[F)V";
+
+    private final ExpressionCompiler compiler = new ExpressionCompiler();
+
+    /**
+     * @param expression The expression to be turned into a kernel, including its domain
+     * @return An Evaluatable that evaluates to the same value as expression
+     */
+    public Evaluatable generate(RealValuedExpression expression) {
+        return generate(compiler.compile(expression));
+    }
+
+    /**
+     * @param program A compiled expression
+     * @return An Evaluatable running the same program as JVM bytecode
+     */
+    public Evaluatable generate(CompiledExpression program) {
+        return (Evaluatable) define(new ClassFileBuilder(program, null).build());
+    }
+
+    /**
+     * @param group Several expressions compiled together
+     * @return A MultiEvaluatable running the same program as JVM bytecode
+     */
+    public MultiEvaluatable generate(CompiledExpressionGroup group) {
+        return (MultiEvaluatable) define(new ClassFileBuilder(group.getProgram(), group.getOutputSlots()).build());
+    }
+
+    private Object define(byte[] classFile) {
+        try {
+            MethodHandles.Lookup kernelLookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+            return kernelLookup.findConstructor(kernelLookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            // If the generator works, then this should never be run
+            throw new IllegalStateException("Could not define expression kernel", e);
+        }
+    }
+
+    /**
+     * Writes the class file of one kernel. The layout is:
+     * a static kernel(FFF)F holding the translated program, a constructor, and the Evaluatable
+     * methods which forward to kernel with the unused variables set to NaN, and copy. The batch evaluate loops over
+     * its points calling kernel, which the JIT inlines into the loop.
+     * For a group the kernel is kernel(FFF[F)V instead, and the class implements MultiEvaluatable.
+     */
+    private static class ClassFileBuilder {
+        private final CompiledExpression program;
+        private final int[] outputSlots; // null unless this is the kernel of a group
+        private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        private final DataOutputStream pool = new DataOutputStream(poolBytes);
+        private final Map<String, Integer> poolIndices = new HashMap<>();
+        private int poolCount = 1;
+
+        private ClassFileBuilder(CompiledExpression program, int[] outputSlots) {
+            this.program = program;
+            this.outputSlots = outputSlots;
+        }
+
+        private byte[] build() {
+            try {
+                int thisClass = classEntry(KERNEL_NAME);
+                int superClass = classEntry("java/lang/Object");
+                byte[][] methods;
+                int implemented;
+                if (outputSlots == null) {
+                    implemented = classEntry("Graphics/Evaluatable");
+                    int kernelRef = methodEntry(KERNEL_NAME, "kernel", KERNEL_DESCRIPTOR);
+                    methods = new byte[][]{
+                            method(0x000A, "kernel", KERNEL_DESCRIPTOR,
+                                    program.getMaxStack() + 2, program.getSlotCount() + 1, kernelBody()),
+                            method(0x0001, "<init>", "()V", 1, 1, initBody()),
+                            method(0x0001, "evaluate", "(FF)F", 3, 3, forwardBody(kernelRef, 2)),
+                            method(0x0001, "evaluate", "(F)F", 3, 2, forwardBody(kernelRef, 1)),
+                            method(0x0001, "evaluate", "(FFF)F", 3, 4, forwardBody(kernelRef, 3)),
+                            method(0x0001, "copy", "()LGraphics/Evaluatable;", 1, 1, copyBody()),
+                            batchMethod(kernelRef)};
+                } else {
+                    implemented = classEntry("Graphics/MultiEvaluatable");
+                    int kernelRef = methodEntry(KERNEL_NAME, "kernel", GROUP_KERNEL_DESCRIPTOR);
+                    methods = new byte[][]{
+                            method(0x000A, "kernel", GROUP_KERNEL_DESCRIPTOR,
+                                    Math.max(program.getMaxStack() + 2, 3), program.getSlotCount() + 2,
+                                    kernelBody()),
+                            method(0x0001, "<init>", "()V", 1, 1, initBody()),
+                            method(0x0001, "evaluate", "(FF[F)V", 4, 4, forwardGroupBody(kernelRef)),
+                            method(0x0001, "copy", "()LGraphics/MultiEvaluatable;", 1, 1, copyBody())};
+                }
+
+                ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(classBytes);
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(52); // only the batch loop branches, and it comes with its own stack map frames
+                out.writeShort(poolCount);
+                pool.flush();
+                out.write(poolBytes.toByteArray());
+                out.writeShort(0x0031); // public final super
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(implemented);
+                out.writeShort(0); // fields
+                out.writeShort(methods.length);
+                for (byte[] method : methods) {
+                    out.write(method);
+                }
+                out.writeShort(0); // class attributes
+                out.flush();
+                return classBytes.toByteArray();
+            } catch (IOException e) {
+                // Writing to a byte array cannot fail
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private byte[] initBody() throws IOException {
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            code.write(0x2A); // aload_0
+            code.write(0xB7); // invokespecial
+            writeShort(code, methodEntry("java/lang/Object", "<init>", "()V"));
+            code.write(0xB1); // return
+            return code.toByteArray();
+        }
+
+        /**
+         * Kernels keep no state between calls, so copy returns the kernel itself
+         */
+        private byte[] copyBody() {
+            return new byte[]{0x2A, (byte) 0xB0}; // aload_0, areturn
+        }
+
+        /**
+         * @param arguments the number of float arguments the forwarding method takes, the rest are NaN
+         */
+        private byte[] forwardBody(int kernelRef, int arguments) throws IOException {
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            for (int i = 0; i < 3; i++) {
+                if (i < arguments) {
+                    code.write(0x17); // fload
+                    code.write(i + 1);
+                } else {
+                    loadConstant(code, Float.NaN);
+                }
+            }
+            code.write(0xB8); // invokestatic
+            writeShort(code, kernelRef);
+            code.write(0xAE); // freturn
+            return code.toByteArray();
+        }
+
+        /**
+         * Forwards evaluate(x, y, out) to the kernel of a group with z set to NaN
+         */
+        private byte[] forwardGroupBody(int kernelRef) throws IOException {
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            code.write(0x17); // fload
+            code.write(1);
+            code.write(0x17);
+            code.write(2);
+            loadConstant(code, Float.NaN);
+            code.write(0x2D); // aload_3
+            code.write(0xB8); // invokestatic
+            writeShort(code, kernelRef);
+            code.write(0xB1); // return
+            return code.toByteArray();
+        }
+
+        /**
+         * evaluate(float[] xs, float[] ys, float[] out, int n) as the loop
+         * for (int i = 0; i < n; i++) out[i] = kernel(xs[i], ys[i], NaN);
+         * This is the only method with a branch, so it is the only one that needs a stack map.
+         */
+        private byte[] batchMethod(int kernelRef) throws IOException {
+            final int n = 4;
+            final int i = 5;
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            code.write(0x03); // iconst_0
+            code.write(0x36); // istore
+            code.write(i);
+            int loop = code.size();
+            code.write(0x15); // iload
+            code.write(i);
+            code.write(0x15);
+            code.write(n);
+            int exitBranch = code.size();
+            code.write(0xA2); // if_icmpge, offset filled in below
+            writeShort(code, 0);
+            code.write(0x2D); // aload_3
+            code.write(0x15);
+            code.write(i);
+            code.write(0x2B); // aload_1
+            code.write(0x15);
+            code.write(i);
+            code.write(0x30); // faload
+            code.write(0x2C); // aload_2
+            code.write(0x15);
+            code.write(i);
+            code.write(0x30);
+            loadConstant(code, Float.NaN);
+            code.write(0xB8); // invokestatic
+            writeShort(code, kernelRef);
+            code.write(0x51); // fastore
+            code.write(0x84); // iinc
+            code.write(i);
+            code.write(1);
+            int backBranch = code.size();
+            code.write(0xA7); // goto
+            writeShort(code, loop - backBranch);
+            int exit = code.size();
+            code.write(0xB1); // return
+
+            byte[] body = code.toByteArray();
+            body[exitBranch + 1] = (byte) ((exit - exitBranch) >> 8);
+            body[exitBranch + 2] = (byte) (exit - exitBranch);
+
+            ByteArrayOutputStream frames = new ByteArrayOutputStream();
+            writeShort(frames, 2);
+            frames.write(252); // append_frame adding the int i to the arguments
+            writeShort(frames, loop);
+            frames.write(1); // Integer
+            frames.write(251); // same_frame_extended
+            writeShort(frames, exit - loop - 1);
+            return method(0x0001, "evaluate", "([F[F[FI)V", 5, 6, body, frames.toByteArray());
+        }
+
+        private byte[] kernelBody() throws IOException {
+            int[] ops = program.getCode();
+            float[] constants = program.getConstants();
+            // The kernel's arguments x, y, z occupy locals 0 to 2, which are exactly X_SLOT, Y_SLOT and Z_SLOT,
+            // so every slot can be used as a local variable index directly.
+            int temp = program.getSlotCount(); // scratch local used to reorder the operands of pow
+            int outputs = temp + 1; // where a group keeps its output array, as local 3 is needed for slot 3
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            if (outputSlots != null) {
+                code.write(0x2D); // aload_3
+                localInstruction(code, 0x3A, outputs); // astore
+            }
+
+            int pc = 0;
+            while (pc < ops.length) {
+                int op = ops[pc++];
+                switch (op) {
+                    case CONST:
+                        loadConstant(code, constants[ops[pc++]]);
+                        break;
+                    case LOAD:
+                        localInstruction(code, 0x17, ops[pc++]); // fload
+                        break;
+                    case STORE:
+                        localInstruction(code, 0x38, ops[pc++]); // fstore
+                        break;
+                    case ADD:
+                        code.write(0x62); // fadd
+                        break;
+                    case SUB:
+                        code.write(0x66); // fsub
+                        break;
+                    case MUL:
+                        code.write(0x6A); // fmul
+                        break;
+                    case DIV:
+                        code.write(0x6E); // fdiv
+                        break;
+                    case POW:
+                        localInstruction(code, 0x38, temp);
+                        code.write(0x8D); // f2d
+                        localInstruction(code, 0x17, temp);
+                        code.write(0x8D);
+                        invokeStatic(code, "java/lang/Math", "pow", "(DD)D");
+                        code.write(0x90); // d2f
+                        break;
+                    case COS:
+                        unaryMath(code, "cos");
+                        break;
+                    case SIN:
+                        unaryMath(code, "sin");
+                        break;
+                    case TAN:
+                        unaryMath(code, "tan");
+                        break;
+                    case SQRT:
+                        unaryMath(code, "sqrt");
+                        break;
+                    case EXP:
+                        unaryMath(code, "exp");
+                        break;
+                    case ARCSIN:
+                        unaryMath(code, "asin");
+                        break;
+                    case ARCCOS:
+                        unaryMath(code, "acos");
+                        break;
+                    case ARCTAN:
+                        unaryMath(code, "atan");
+                        break;
+                    case LOG:
+                        unaryMath(code, "log");
+                        break;
+                    case MAX:
+                        invokeStatic(code, "java/lang/Math", "max", "(FF)F");
+                        break;
+                    case MIN:
+                        invokeStatic(code, "java/lang/Math", "min", "(FF)F");
+                        break;
+                    case ESCAPE_TIME:
+                        pushInt(code, ops[pc++]);
+                        invokeStatic(code, SUPPORT_NAME, "escapeTime", "(FFFFFI)F");
+                        break;
+                    case GE:
+                        invokeStatic(code, SUPPORT_NAME, "ge", "(FF)F");
+                        break;
+                    case LE:
+                        invokeStatic(code, SUPPORT_NAME, "le", "(FF)F");
+                        break;
+                    case GT:
+                        invokeStatic(code, SUPPORT_NAME, "gt", "(FF)F");
+                        break;
+                    case LT:
+                        invokeStatic(code, SUPPORT_NAME, "lt", "(FF)F");
+                        break;
+                    case EQ:
+                        invokeStatic(code, SUPPORT_NAME, "eq", "(FF)F");
+                        break;
+                    case AND:
+                        invokeStatic(code, SUPPORT_NAME, "and", "(FF)F");
+                        break;
+                    case OR:
+                        invokeStatic(code, SUPPORT_NAME, "or", "(FF)F");
+                        break;
+                    case NAN_UNLESS:
+                        invokeStatic(code, SUPPORT_NAME, "nanUnless", "(FF)F");
+                        break;
+                    default:
+                        throw new IllegalStateException("Unrecognized opcode: " + op);
+                }
+            }
+            if (outputSlots == null) {
+                code.write(0xAE); // freturn
+                return code.toByteArray();
+            }
+            for (int i = 0; i < outputSlots.length; i++) {
+                localInstruction(code, 0x19, outputs); // aload
+                pushInt(code, i);
+                localInstruction(code, 0x17, outputSlots[i]); // fload
+                code.write(0x51); // fastore
+            }
+            code.write(0xB1); // return
+            return code.toByteArray();
+        }
+
+        private void pushInt(ByteArrayOutputStream code, int value) {
+            if (value <= 5) {
+                code.write(0x03 + value); // iconst_<value>
+            } else if (value <= Byte.MAX_VALUE) {
+                code.write(0x10); // bipush
+                code.write(value);
+            } else if (value <= Short.MAX_VALUE) {
+                code.write(0x11); // sipush
+                writeShort(code, value);
+            } else {
+                throw new IllegalStateException("Too many expressions for one kernel");
+            }
+        }
+
+        private void unaryMath(ByteArrayOutputStream code, String name) throws IOException {
+            code.write(0x8D); // f2d
+            invokeStatic(code, "java/lang/Math", name, "(D)D");
+            code.write(0x90); // d2f
+        }
+
+        private void invokeStatic(ByteArrayOutputStream code, String owner, String name, String descriptor)
+                throws IOException {
+            code.write(0xB8);
+            writeShort(code, methodEntry(owner, name, descriptor));
+        }
+
+        private void localInstruction(ByteArrayOutputStream code, int opcode, int local) {
+            if (local > 255) {
+                code.write(0xC4); // wide
+                code.write(opcode);
+                writeShort(code, local);
+            } else {
+                code.write(opcode);
+                code.write(local);
+            }
+        }
+
+        private void loadConstant(ByteArrayOutputStream code, float value) throws IOException {
+            // compare bit patterns so that -0 is not turned into fconst_0
+            int bits = Float.floatToRawIntBits(value);
+            if (bits == Float.floatToRawIntBits(0f)) {
+                code.write(0x0B); // fconst_0
+            } else if (bits == Float.floatToRawIntBits(1f)) {
+                code.write(0x0C); // fconst_1
+            } else if (bits == Float.floatToRawIntBits(2f)) {
+                code.write(0x0D); // fconst_2
+            } else {
+                int index = floatEntry(value);
+                if (index > 255) {
+                    code.write(0x13); // ldc_w
+                    writeShort(code, index);
+                } else {
+                    code.write(0x12); // ldc
+                    code.write(index);
+                }
+            }
+        }
+
+        private byte[] method(int access, String name, String descriptor, int maxStack, int maxLocals,
+                              byte[] body) throws IOException {
+            return method(access, name, descriptor, maxStack, maxLocals, body, null);
+        }
+
+        /**
+         * @param stackMapTable the contents of the StackMapTable attribute of the code, or null if it has no branches
+         */
+        private byte[] method(int access, String name, String descriptor, int maxStack, int maxLocals,
+                              byte[] body, byte[] stackMapTable) throws IOException {
+            ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(methodBytes);
+            out.writeShort(access);
+            out.writeShort(utf8Entry(name));
+            out.writeShort(utf8Entry(descriptor));
+            out.writeShort(1);
+            out.writeShort(utf8Entry("Code"));
+            int attributesLength = stackMapTable == null ? 0 : 6 + stackMapTable.length;
+            out.writeInt(12 + body.length + attributesLength);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(0); // exception table
+            if (stackMapTable == null) {
+                out.writeShort(0); // code attributes
+            } else {
+                out.writeShort(1);
+                out.writeShort(utf8Entry("StackMapTable"));
+                out.writeInt(stackMapTable.length);
+                out.write(stackMapTable);
+            }
+            out.flush();
+            return methodBytes.toByteArray();
+        }
+
+        private int utf8Entry(String value) throws IOException {
+            String key = "U" + value;
+            if (!poolIndices.containsKey(key)) {
+                pool.writeByte(1);
+                pool.writeUTF(value);
+                poolIndices.put(key, poolCount++);
+            }
+            return poolIndices.get(key);
+        }
+
+        private int classEntry(String name) throws IOException {
+            String key = "C" + name;
+            if (!poolIndices.containsKey(key)) {
+                int nameIndex = utf8Entry(name);
+                pool.writeByte(7);
+                pool.writeShort(nameIndex);
+                poolIndices.put(key, poolCount++);
+            }
+            return poolIndices.get(key);
+        }
+
+        private int methodEntry(String owner, String name, String descriptor) throws IOException {
+            String key = "M" + owner + "." + name + descriptor;
+            if (!poolIndices.containsKey(key)) {
+                int ownerIndex = classEntry(owner);
+                int nameIndex = utf8Entry(name);
+                int descriptorIndex = utf8Entry(descriptor);
+                pool.writeByte(12);
+                pool.writeShort(nameIndex);
+                pool.writeShort(descriptorIndex);
+                int nameAndType = poolCount++;
+                pool.writeByte(10);
+                pool.writeShort(ownerIndex);
+                pool.writeShort(nameAndType);
+                poolIndices.put(key, poolCount++);
+            }
+            return poolIndices.get(key);
+        }
+
+        private int floatEntry(float value) throws IOException {
+            String key = "F" + Float.floatToRawIntBits(value);
+            if (!poolIndices.containsKey(key)) {
+                pool.writeByte(4);
+                pool.writeInt(Float.floatToRawIntBits(value));
+                poolIndices.put(key, poolCount++);
+            }
+            return poolIndices.get(key);
+        }
+
+        private static void writeShort(ByteArrayOutputStream out, int value) {
+            out.write((value >> 8) & 0xFF);
+            out.write(value & 0xFF);
+        }
+    }
+}
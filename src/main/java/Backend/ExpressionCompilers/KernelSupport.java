@@ -0,0 +1,54 @@
+package Backend.ExpressionCompilers;
+
+import Graphics.EscapeTimeKernel;
+
+/**
+ * Small helpers called from the classes generated by KernelGenerator.
+ * Keeping the comparisons here lets the generated code stay free of branches (and so of stack map frames);
+ * the JIT inlines these calls anyway. They use the same 1 / 0 encoding of booleans as CompiledExpression.
+ */
+public final class KernelSupport {
+
+    private KernelSupport() {
+    }
+
+    public static float ge(float l, float r) {
+        return l >= r ? 1 : 0;
+    }
+
+    public static float le(float l, float r) {
+        return l <= r ? 1 : 0;
+    }
+
+    public static float gt(float l, float r) {
+        return l > r ? 1 : 0;
+    }
+
+    public static float lt(float l, float r) {
+        return l < r ? 1 : 0;
+    }
+
+    public static float eq(float l, float r) {
+        return l == r ? 1 : 0;
+    }
+
+    public static float and(float l, float r) {
+        return (l != 0 && r != 0) ? 1 : 0;
+    }
+
+    public static float or(float l, float r) {
+        return (l != 0 || r != 0) ? 1 : 0;
+    }
+
+    public static float nanUnless(float value, float condition) {
+        return condition != 0 ? value : Float.NaN;
+    }
+
+    /**
+     * ESCAPE_TIME, with the operand of the instruction pushed after the values it pops
+     */
+    public static float escapeTime(float x, float y, float a, float b, float n, int operand) {
+        return EscapeTimeKernel.evaluate(CompiledExpression.family(operand), CompiledExpression.isSmooth(operand),
+                x, y, a, b, n);
+    }
+}
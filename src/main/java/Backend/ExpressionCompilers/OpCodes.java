@@ -0,0 +1,111 @@
+package Backend.ExpressionCompilers;
+
+/**
+ * The instruction set understood by CompiledExpression.
+ * Every instruction pops its operands off the stack and pushes its result. CONST, LOAD and STORE are followed by a
+ * single operand in the code array (an index into the constant pool or into the slot file respectively), and
+ * ESCAPE_TIME by its EscapeTimeKernel.Family and whether the count is smooth, see
+ * CompiledExpression.escapeTimeOperand.
+ * Boolean values live on the same float stack and are represented as 1 (true) and 0 (false).
+ */
+public final class OpCodes {
+    public static final int CONST = 0;
+    public static final int LOAD = 1;
+    public static final int STORE = 2;
+
+    public static final int ADD = 3;
+    public static final int SUB = 4;
+    public static final int MUL = 5;
+    public static final int DIV = 6;
+    public static final int POW = 7;
+
+    public static final int COS = 8;
+    public static final int SIN = 9;
+    public static final int TAN = 10;
+    public static final int SQRT = 11;
+    public static final int EXP = 12;
+    public static final int ARCSIN = 13;
+    public static final int ARCCOS = 14;
+    public static final int ARCTAN = 15;
+    public static final int LOG = 16;
+    public static final int MAX = 17;
+    public static final int MIN = 18;
+
+    public static final int GE = 19;
+    public static final int LE = 20;
+    public static final int GT = 21;
+    public static final int LT = 22;
+    public static final int EQ = 23;
+    public static final int AND = 24;
+    public static final int OR = 25;
+
+    // pops a condition and a value, pushes the value if the condition holds and NaN otherwise
+    public static final int NAN_UNLESS = 26;
+
+    // pops the point x and y, the parameters a and b and the cap on the iterations, see EscapeTimeKernel.Family;
+    // mandel and smoothmandel are the MANDEL family with a and b of 0 and the default cap
+    public static final int ESCAPE_TIME = 27;
+
+    private static final String[] NAMES = {
+            "CONST", "LOAD", "STORE",
+            "ADD", "SUB", "MUL", "DIV", "POW",
+            "COS", "SIN", "TAN", "SQRT", "EXP", "ARCSIN", "ARCCOS", "ARCTAN", "LOG", "MAX", "MIN",
+            "GE", "LE", "GT", "LT", "EQ", "AND", "OR",
+            "NAN_UNLESS",
+            "ESCAPE_TIME"
+    };
+
+    private OpCodes() {
+    }
+
+    /**
+     * @param op An opcode
+     * @return The mnemonic of the opcode, used when disassembling
+     */
+    public static String name(int op) {
+        return NAMES[op];
+    }
+
+    /**
+     * @param op An opcode
+     * @return The number of operands that follow the opcode in the code array
+     */
+    public static int operandCount(int op) {
+        return (op == CONST || op == LOAD || op == STORE || op == ESCAPE_TIME) ? 1 : 0;
+    }
+
+    /**
+     * @param op An opcode
+     * @return The number of values the instruction pops off the stack
+     */
+    public static int popCount(int op) {
+        switch (op) {
+            case CONST:
+            case LOAD:
+                return 0;
+            case STORE:
+            case COS:
+            case SIN:
+            case TAN:
+            case SQRT:
+            case EXP:
+            case ARCSIN:
+            case ARCCOS:
+            case ARCTAN:
+            case LOG:
+                return 1;
+            case ESCAPE_TIME:
+                return 5;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * @param op An opcode
+     * @return The number of values the instruction pushes onto the stack
+     */
+    public static int pushCount(int op) {
+        return op == STORE ? 0 : 1;
+    }
+}
@@ -0,0 +1,301 @@
+package Backend.ExpressionCompilers;
+
+import Graphics.EscapeTimeKernel;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static Backend.ExpressionCompilers.OpCodes.*;
+
+/**
+ * A VectorEvaluator runs a compiled program column at a time like CompiledExpression, but processes each column
+ * with FloatVector operations across all the lanes of the widest SIMD registers the machine has.
+ * <p>
+ * Arithmetic, comparisons and logical operators (as masks), max, min, sqrt and the escape time iterations of mandel,
+ * julia and ship are done across lanes and give exactly the same results as the scalar code. The remaining builtins,
+ * multibrot and smoothmandel among them, are run one lane at a time with Math, as the vectorized versions may
+ * differ from Math in the last bit.
+ * <p>
+ * This class needs the jdk.incubator.vector module; use VectorSupport to create instances, which falls back
+ * to the scalar evaluators when the module is not present.
+ */
+final class VectorEvaluator extends CompiledExpression {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    VectorEvaluator(CompiledExpression program) {
+        super(program.getCode(), program.getConstants(), program.getSlotCount(), program.getMaxStack());
+    }
+
+    /**
+     * @return The number of floats processed by one vector operation
+     */
+    static int laneCount() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public VectorEvaluator copy() {
+        return new VectorEvaluator(this);
+    }
+
+    /**
+     * Columns hold BLOCK_SIZE entries, a multiple of the lane count, so rounding count up to whole vectors stays
+     * inside them. The entries past count are left over from earlier blocks and are never read back.
+     */
+    private static int vectorBound(int count) {
+        return (count + SPECIES.length() - 1) / SPECIES.length() * SPECIES.length();
+    }
+
+    @Override
+    void binary(int op, float[] l, float[] r, int count) {
+        int bound = vectorBound(count);
+        switch (op) {
+            case ADD:
+                add(l, r, bound);
+                break;
+            case SUB:
+                sub(l, r, bound);
+                break;
+            case MUL:
+                mul(l, r, bound);
+                break;
+            case DIV:
+                div(l, r, bound);
+                break;
+            case MAX:
+                max(l, r, bound);
+                break;
+            case MIN:
+                min(l, r, bound);
+                break;
+            case GE:
+                ge(l, r, bound);
+                break;
+            case LE:
+                le(l, r, bound);
+                break;
+            case GT:
+                gt(l, r, bound);
+                break;
+            case LT:
+                lt(l, r, bound);
+                break;
+            case EQ:
+                eq(l, r, bound);
+                break;
+            case AND:
+                and(l, r, bound);
+                break;
+            case OR:
+                or(l, r, bound);
+                break;
+            case NAN_UNLESS:
+                nanUnless(l, r, bound);
+                break;
+            default:
+                super.binary(op, l, r, count);
+        }
+    }
+
+    @Override
+    void escapeTime(EscapeTimeKernel.Family family, boolean smooth, float[] xs, float[] ys, float[] as, float[] bs,
+                    float[] ns, int count) {
+        if (smooth || family == EscapeTimeKernel.Family.MULTIBROT) {
+            // smooth counts take a logarithm, and the powers of multibrot go through Math, see EscapeTimeKernel
+            super.escapeTime(family, smooth, xs, ys, as, bs, ns, count);
+        } else {
+            squaringEscapeTime(family, xs, ys, as, bs, ns, vectorBound(count));
+        }
+    }
+
+    @Override
+    void unary(int op, float[] v, int count) {
+        if (op == SQRT) {
+            sqrt(v, vectorBound(count));
+        } else {
+            super.unary(op, v, count);
+        }
+    }
+
+    /*
+     * Each operation has a small loop of its own with the operator spelled out, as the JIT only turns vector
+     * operations into instructions when it can inline them with the operator known.
+     */
+
+    private static void add(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).add(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    private static void sub(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).sub(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    private static void mul(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).mul(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    private static void div(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).div(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    // like Math.max and Math.min, NaN wins and 0 is greater than -0
+    private static void max(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).max(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    private static void min(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(l, i).min(load(r, i)).intoArray(l, i);
+        }
+    }
+
+    private static void ge(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(load(l, i).compare(VectorOperators.GE, load(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void le(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(load(l, i).compare(VectorOperators.LE, load(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void gt(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(load(l, i).compare(VectorOperators.GT, load(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void lt(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(load(l, i).compare(VectorOperators.LT, load(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void eq(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(load(l, i).compare(VectorOperators.EQ, load(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void and(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(holds(l, i).and(holds(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void or(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            truth(holds(l, i).or(holds(r, i))).intoArray(l, i);
+        }
+    }
+
+    private static void nanUnless(float[] l, float[] r, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            VectorMask<Float> fails = load(r, i).compare(VectorOperators.EQ, 0);
+            load(l, i).blend(Float.NaN, fails).intoArray(l, i);
+        }
+    }
+
+    // a correctly rounded float square root, which is what rounding Math.sqrt of the float gives too
+    private static void sqrt(float[] v, int bound) {
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            load(v, i).sqrt().intoArray(v, i);
+        }
+    }
+
+    private static FloatVector load(float[] column, int i) {
+        return FloatVector.fromArray(SPECIES, column, i);
+    }
+
+    /**
+     * @return The lanes of column from i on which are true, that is not 0
+     */
+    private static VectorMask<Float> holds(float[] column, int i) {
+        return load(column, i).compare(VectorOperators.NE, 0);
+    }
+
+    /**
+     * @return 1 in the lanes where mask is set, 0 elsewhere
+     */
+    private static FloatVector truth(VectorMask<Float> mask) {
+        return FloatVector.zero(SPECIES).blend(1, mask);
+    }
+
+    /**
+     * EscapeTimeKernel.evaluate(family, false, ...) across lanes for the families squaring z, each lane with a cap
+     * of its own and stopping as soon as it escapes, and the lanes mandel finds in the main cardioid or period-2
+     * bulb never starting. The caps are rounded down one lane at a time first, and the lanes whose cap is out of
+     * range give NaN. The float operations are done in the same order as in the scalar version, so the results
+     * are identical.
+     */
+    private static void squaringEscapeTime(EscapeTimeKernel.Family family, float[] pxs, float[] pys, float[] as,
+                                           float[] bs, float[] ns, int bound) {
+        for (int i = 0; i < bound; i++) {
+            float n = ns[i];
+            ns[i] = n >= 1 && n < EscapeTimeKernel.MAX_ITERATIONS + 1 ? (int) n : Float.NaN;
+        }
+        boolean ship = family == EscapeTimeKernel.Family.SHIP;
+        // chosen by masks rather than by conditionals, which would keep the JIT from holding the vectors in
+        // registers through the loop
+        VectorMask<Float> julia = SPECIES.maskAll(family == EscapeTimeKernel.Family.JULIA);
+        VectorMask<Float> mandel = SPECIES.maskAll(family == EscapeTimeKernel.Family.MANDEL);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            FloatVector px = load(pxs, i);
+            FloatVector py = load(pys, i);
+            FloatVector cap = load(ns, i);
+            FloatVector cx = px.blend(load(as, i), julia);
+            FloatVector cy = py.blend(load(bs, i), julia);
+            FloatVector x = FloatVector.zero(SPECIES).blend(px, julia);
+            FloatVector y = FloatVector.zero(SPECIES).blend(py, julia);
+            VectorMask<Float> valid = cap.compare(VectorOperators.EQ, cap);
+            VectorMask<Float> inside = valid.and(mandel).and(inCardioidOrBulb(cx, cy));
+            FloatVector iterations = FloatVector.zero(SPECIES).blend(cap, inside);
+            VectorMask<Float> active = valid.andNot(inside);
+            // the lanes only need their caps checked one by one when the caps differ, which mandel's never do
+            int most = (int) FloatVector.zero(SPECIES).blend(cap, valid).reduceLanes(VectorOperators.MAX);
+            boolean sameCaps = cap.compare(VectorOperators.EQ, most).or(valid.not()).allTrue();
+            for (int k = 0; k < most; k++) {
+                FloatVector xx = x.mul(x);
+                FloatVector yy = y.mul(y);
+                active = active.andNot(xx.add(yy).compare(VectorOperators.GT, 4));
+                if (!sameCaps) {
+                    active = active.and(cap.compare(VectorOperators.GT, k));
+                }
+                if (!active.anyTrue()) {
+                    break;
+                }
+                iterations = iterations.add(1, active);
+                FloatVector xtemp = xx.sub(yy).add(cx);
+                FloatVector ytemp = ship ? x.abs().mul(2).mul(y.abs()).add(cy) : x.mul(2).mul(y).add(cy);
+                y = ytemp.blend(y, active.not());
+                x = xtemp.blend(x, active.not());
+            }
+            iterations.div(cap).intoArray(pxs, i);
+        }
+    }
+
+    /**
+     * EscapeTimeKernel.inCardioidOrBulb across lanes
+     */
+    private static VectorMask<Float> inCardioidOrBulb(FloatVector cx, FloatVector cy) {
+        FloatVector cyy = cy.mul(cy);
+        FloatVector bx = cx.add(1);
+        FloatVector ax = cx.sub(0.25f);
+        FloatVector q = ax.mul(ax).add(cyy);
+        return bx.mul(bx).add(cyy).compare(VectorOperators.LT, 0.0625f)
+                .or(q.mul(q.add(ax)).compare(VectorOperators.LT, cyy.mul(0.25f)));
+    }
+}
@@ -0,0 +1,89 @@
+package Backend.ExpressionCompilers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Creates VectorEvaluators when the jdk.incubator.vector module is available, that is when the program was started
+ * with --add-modules jdk.incubator.vector. VectorEvaluator is only ever loaded through reflection from here, so that
+ * everything else keeps working on a JVM without the module.
+ */
+public final class VectorSupport {
+    private static final String MODULE_NAME = "jdk.incubator.vector";
+
+    // both null if the module is not available
+    private static final Constructor<?> CONSTRUCTOR;
+    private static final Method LANE_COUNT;
+
+    static {
+        Constructor<?> constructor = null;
+        Method laneCount = null;
+        if (ModuleLayer.boot().findModule(MODULE_NAME).isPresent()) {
+            try {
+                Class<?> evaluator = Class.forName("Backend.ExpressionCompilers.VectorEvaluator");
+                constructor = evaluator.getDeclaredConstructor(CompiledExpression.class);
+                laneCount = evaluator.getDeclaredMethod("laneCount");
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // e.g. the class was compiled without the module, fall back to the scalar evaluators
+                constructor = null;
+                laneCount = null;
+            }
+        }
+        CONSTRUCTOR = constructor;
+        LANE_COUNT = laneCount;
+    }
+
+    private VectorSupport() {
+    }
+
+    /**
+     * @return Whether vectorized evaluators can be created
+     */
+    public static boolean isAvailable() {
+        return CONSTRUCTOR != null;
+    }
+
+    /**
+     * @return The number of floats each vector operation processes, or 1 if vectors are not available
+     */
+    public static int getLaneCount() {
+        if (!isAvailable()) {
+            return 1;
+        }
+        try {
+            return (int) LANE_COUNT.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // If the evaluator loaded, then this should never be run
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Whether a vectorized evaluator of program is faster than its kernel from KernelGenerator. The kernels
+     * evaluate arithmetic in loops the JIT already vectorizes, but run escape time iterations such as mandel one
+     * point at a time, while the vectorized evaluator iterates all its lanes together.
+     *
+     * @param program A compiled expression
+     * @return Whether program should be vectorized rather than turned into a kernel
+     */
+    public static boolean prefersVectors(CompiledExpression program) {
+        return isAvailable() && program.contains(OpCodes.ESCAPE_TIME);
+    }
+
+    /**
+     * @param program A compiled expression
+     * @return An Evaluatable running program across SIMD lanes when evaluating blocks of points
+     * @throws IllegalStateException If vectors are not available, see isAvailable
+     */
+    public static CompiledExpression vectorize(CompiledExpression program) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("The " + MODULE_NAME + " module is not available");
+        }
+        try {
+            return (CompiledExpression) CONSTRUCTOR.newInstance(program);
+        } catch (ReflectiveOperationException e) {
+            // If the evaluator loaded, then this should never be run
+            throw new IllegalStateException(e);
+        }
+    }
+}
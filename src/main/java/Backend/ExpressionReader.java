@@ -1,6 +1,7 @@
 package Backend;
 
 import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.ExpressionSimplifier;
 import Backend.Expressions.*;
 
 import java.util.ArrayList;
@@ -14,6 +15,7 @@ public class ExpressionReader {
     private final Constants constants = new Constants();
     private final RealBooleanCreatorImp realBooleanCreatorImp;
     public final ExpressionPropertyReporter validityChecker;
+    private final ExpressionSimplifier simplifier = new ExpressionSimplifier();
 
     /**
      * Constructor for ExpressionReader.
@@ -51,12 +53,37 @@ public class ExpressionReader {
     }
 
     /**
-     * Converts a string representation of an expression into an instance of Expression
+     * @param fastMath Whether expressions read from now on may be simplified in ways that can change their value
+     *                 for infinite, NaN or signed zero values, see ExpressionSimplifier
+     */
+    public void setFastMath(boolean fastMath) {
+        simplifier.setFastMath(fastMath);
+    }
+
+    /**
+     * @return The total number of nodes removed by simplifying the expressions read so far
+     */
+    public int getNodesRemoved() {
+        return simplifier.getNodesRemoved();
+    }
+
+    /**
+     * Converts a string representation of an expression into an instance of Expression, then simplifies it
      *
      * @param expression The string representation of the expression to be converted
      * @return Expression object for the string provided
      */
     public Expression<?> read(String expression) throws InvalidTermException {
+        return simplifier.simplify(parse(expression));
+    }
+
+    /**
+     * Converts a string representation of an expression into an instance of Expression, exactly as written
+     *
+     * @param expression The string representation of the expression to be converted
+     * @return Expression object for the string provided
+     */
+    private Expression<?> parse(String expression) throws InvalidTermException {
         List<String> terms = expressionParser(expression);
         if (validityChecker.containsOperator(terms, "Logical") || validityChecker.containsOperator(terms, "Comparator")) {
             return booleanValuedRead(terms);
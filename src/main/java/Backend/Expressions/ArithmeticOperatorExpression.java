@@ -1,6 +1,7 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Graphics.Dual;
+import Graphics.Interval;
 
 // Backend.Expressions.OperatorExpression stores the 'Backend.Expressions.Expression' with operators, e.g. E_1 + E_2
 // where E_1, E_2 themselves are Expressions
@@ -17,6 +18,20 @@ public class ArithmeticOperatorExpression extends RealValuedExpression {
         this.rExpression = rExpression;
     }
 
+    /**
+     * @return The expression to the left of the operator
+     */
+    public RealValuedExpression getLExpression() {
+        return lExpression;
+    }
+
+    /**
+     * @return The expression to the right of the operator
+     */
+    public RealValuedExpression getRExpression() {
+        return rExpression;
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
@@ -37,23 +52,85 @@ public class ArithmeticOperatorExpression extends RealValuedExpression {
 
     // We evaluate this expression based on what the operator is
     @Override
-    public Float evaluate(Map<String, Float> arguments) {
+    public float evalFloat(float[] slots) {
+        switch (getItem()) {
+            case "+":
+                return lExpression.evalFloat(slots) + rExpression.evalFloat(slots);
+            case "-":
+                return lExpression.evalFloat(slots) - rExpression.evalFloat(slots);
+            case "*":
+                return lExpression.evalFloat(slots) * rExpression.evalFloat(slots);
+            case "/":
+                return lExpression.evalFloat(slots) / rExpression.evalFloat(slots);
+            case "^":
+                return (float) Math.pow(lExpression.evalFloat(slots), rExpression.evalFloat(slots));
+            default:
+                // If our program works, then this should never be run
+                throw new IllegalArgumentException("Unexpected operator");
+        }
+
+    }
+
+    @Override
+    public double evalDouble(double[] slots) {
         switch (getItem()) {
             case "+":
-                return lExpression.evaluate(arguments) + rExpression.evaluate(arguments);
+                return lExpression.evalDouble(slots) + rExpression.evalDouble(slots);
             case "-":
-                return lExpression.evaluate(arguments) - rExpression.evaluate(arguments);
+                return lExpression.evalDouble(slots) - rExpression.evalDouble(slots);
             case "*":
-                return lExpression.evaluate(arguments) * rExpression.evaluate(arguments);
+                return lExpression.evalDouble(slots) * rExpression.evalDouble(slots);
             case "/":
-                return lExpression.evaluate(arguments) / rExpression.evaluate(arguments);
+                return lExpression.evalDouble(slots) / rExpression.evalDouble(slots);
             case "^":
-                return (float) Math.pow(lExpression.evaluate(arguments), rExpression.evaluate(arguments));
+                return Math.pow(lExpression.evalDouble(slots), rExpression.evalDouble(slots));
             default:
                 // If our program works, then this should never be run
                 throw new IllegalArgumentException("Unexpected operator");
         }
+    }
 
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        Interval l = lExpression.evalInterval(slots);
+        switch (getItem()) {
+            case "+":
+                return l.add(rExpression.evalInterval(slots));
+            case "-":
+                return l.sub(rExpression.evalInterval(slots));
+            case "*":
+                // x*x (as x^2 is simplified to) can't be negative, which mul does not know
+                // interned expressions share such factors, so comparing them by identity is enough
+                return lExpression == rExpression ? l.square() : l.mul(rExpression.evalInterval(slots));
+            case "/":
+                return l.div(rExpression.evalInterval(slots));
+            case "^":
+                return l.pow(rExpression.evalInterval(slots));
+            default:
+                // If our program works, then this should never be run
+                throw new IllegalArgumentException("Unexpected operator");
+        }
+    }
+
+    @Override
+    public Dual evalDual(Dual[] slots) {
+        Dual l = lExpression.evalDual(slots);
+        Dual r = rExpression.evalDual(slots);
+        switch (getItem()) {
+            case "+":
+                return l.add(r);
+            case "-":
+                return l.sub(r);
+            case "*":
+                return l.mul(r);
+            case "/":
+                return l.div(r);
+            case "^":
+                return l.pow(r);
+            default:
+                // If our program works, then this should never be run
+                throw new IllegalArgumentException("Unexpected operator");
+        }
     }
 
 }
@@ -1,6 +1,6 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Graphics.Interval;
 
 public class BooleanConstantExpression extends BooleanValuedExpression {
 
@@ -9,7 +9,7 @@ public class BooleanConstantExpression extends BooleanValuedExpression {
     }
 
     @Override
-    public Boolean evaluate(Map<String, Float> arguments) {
+    public boolean evalBool(float[] slots) {
         switch (getItem()) {
             case "true":
                 return true;
@@ -19,4 +19,15 @@ public class BooleanConstantExpression extends BooleanValuedExpression {
                 throw new IllegalArgumentException("Unrecognised boolean constant: " + getItem());
         }
     }
+
+    @Override
+    public boolean evalBool(double[] slots) {
+        return evalBool((float[]) null);
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        // constants never read their slots
+        return evalBool((float[]) null) ? Interval.TRUE : Interval.FALSE;
+    }
 }
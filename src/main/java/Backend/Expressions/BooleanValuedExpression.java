@@ -1,10 +1,42 @@
 package Backend.Expressions;
 
+import Graphics.Interval;
+
+import java.util.Map;
 
 public abstract class BooleanValuedExpression extends Expression<Boolean> {
     public BooleanValuedExpression(String num) {
         super(num);
     }
 
-}
+    /**
+     * Evaluates this expression without boxing or looking anything up by name.
+     *
+     * @param slots The values of the variables, laid out as in Constants.getVariableSlot
+     * @return Whether this expression holds
+     */
+    public abstract boolean evalBool(float[] slots);
+
+    /**
+     * Evaluates this expression in double precision, see RealValuedExpression.evalDouble
+     *
+     * @param slots The values of the variables, laid out as in Constants.getVariableSlot
+     * @return Whether this expression holds
+     */
+    public abstract boolean evalBool(double[] slots);
+
+    /**
+     * Evaluates this expression over boxes of points with interval arithmetic.
+     *
+     * @param slots The intervals the variables range over, laid out as in Constants.getVariableSlot
+     * @return Interval.TRUE or Interval.FALSE if this expression holds at all or none of the points of the box,
+     * Interval.UNKNOWN otherwise
+     */
+    public abstract Interval evalInterval(Interval[] slots);
 
+    @Override
+    public Boolean evaluate(Map<String, Float> arguments) {
+        return evalBool(toSlots(arguments));
+    }
+
+}
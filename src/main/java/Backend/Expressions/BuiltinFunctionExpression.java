@@ -1,108 +1,408 @@
 package Backend.Expressions;
 
+import Graphics.Dual;
+import Graphics.EscapeTimeKernel;
+import Graphics.Interval;
+
 import java.util.Map;
 
 /**
  * These Expressions are for builtin functions like cos, sin, exp, etc
  */
 public class BuiltinFunctionExpression extends FunctionExpression {
+    // The escape time builtins run by EscapeTimeKernel.evaluate(Family, ...). Each takes x and y, then the
+    // parameters of its family, then the cap on its iterations if its name ends in "iter"
+    private static final Map<String, EscapeTimeKernel.Family> ESCAPE_TIME_FAMILIES = Map.of(
+            "mandel", EscapeTimeKernel.Family.MANDEL,
+            "smoothmandel", EscapeTimeKernel.Family.MANDEL,
+            "mandeliter", EscapeTimeKernel.Family.MANDEL,
+            "julia", EscapeTimeKernel.Family.JULIA,
+            "juliaiter", EscapeTimeKernel.Family.JULIA,
+            "ship", EscapeTimeKernel.Family.SHIP,
+            "shipiter", EscapeTimeKernel.Family.SHIP,
+            "multibrot", EscapeTimeKernel.Family.MULTIBROT,
+            "multibrotiter", EscapeTimeKernel.Family.MULTIBROT);
 
     public BuiltinFunctionExpression(String funcName, String[] variables) {
         super(funcName, variables);
     }
 
     @Override
-    public Float evaluate(Map<String, Float> arguments) {
+    public float evalFloat(float[] slots) {
 
         switch (getItem()) {
             case "cos":
-                return cosEvaluate(arguments);
+                return cosEvaluate(slots);
             case "sin":
-                return sinEvaluate(arguments);
+                return sinEvaluate(slots);
             case "tan":
-                return tanEvaluate(arguments);
+                return tanEvaluate(slots);
             case "sqrt":
-                return sqrtEvaluate(arguments);
+                return sqrtEvaluate(slots);
             case "exp":
-                return expEvaluate(arguments);
+                return expEvaluate(slots);
             case "mandel":
-                return mandelEvaluate(arguments);
+                return mandelEvaluate(slots);
+            case "smoothmandel":
+                return smoothMandelEvaluate(slots);
+            case "mandeliter":
+            case "julia":
+            case "juliaiter":
+            case "ship":
+            case "shipiter":
+            case "multibrot":
+            case "multibrotiter":
+                return escapeTimeEvaluate(slots);
             case "arcsin":
-                return arcsinEvaluate(arguments);
+                return arcsinEvaluate(slots);
             case "arccos":
-                return arccosEvaluate(arguments);
+                return arccosEvaluate(slots);
             case "arctan":
-                return arctanEvaluate(arguments);
+                return arctanEvaluate(slots);
             case "log":
-                return logEvaluate(arguments);
+                return logEvaluate(slots);
             case "max":
-                return maxEvaluate(arguments);
+                return maxEvaluate(slots);
             case "min":
-                return minEvaluate(arguments);
+                return minEvaluate(slots);
             default:
                 throw new IllegalArgumentException("Undefined function: " + getItem());
         }
     }
 
+    @Override
+    public double evalDouble(double[] slots) {
+        double input = getInputs()[0].evalDouble(slots);
+        switch (getItem()) {
+            case "cos":
+                return Math.cos(input);
+            case "sin":
+                return Math.sin(input);
+            case "tan":
+                return Math.tan(input);
+            case "sqrt":
+                return Math.sqrt(input);
+            case "exp":
+                return Math.exp(input);
+            case "mandel":
+                return mandel(input, getInputs()[1].evalDouble(slots));
+            case "smoothmandel":
+                return smoothMandel(input, getInputs()[1].evalDouble(slots));
+            case "mandeliter":
+            case "julia":
+            case "juliaiter":
+            case "ship":
+            case "shipiter":
+            case "multibrot":
+            case "multibrotiter":
+                return escapeTimeEvaluate(input, slots);
+            case "arcsin":
+                return Math.asin(input);
+            case "arccos":
+                return Math.acos(input);
+            case "arctan":
+                return Math.atan(input);
+            case "log":
+                return Math.log(input);
+            case "max":
+                return Math.max(input, getInputs()[1].evalDouble(slots));
+            case "min":
+                return Math.min(input, getInputs()[1].evalDouble(slots));
+            default:
+                throw new IllegalArgumentException("Undefined function: " + getItem());
+        }
+    }
 
-    private float cosEvaluate(Map<String, Float> arguments) {
-        return (float) Math.cos(getInputs()[0].evaluate(arguments));
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        Interval input = getInputs()[0].evalInterval(slots);
+        switch (getItem()) {
+            case "cos":
+                return input.cos();
+            case "sin":
+                return input.sin();
+            case "tan":
+                return input.tan();
+            case "sqrt":
+                return input.sqrt();
+            case "exp":
+                return input.exp();
+            case "mandel":
+            case "smoothmandel":
+                return Interval.mandel(input, getInputs()[1].evalInterval(slots));
+            case "mandeliter":
+            case "julia":
+            case "juliaiter":
+            case "ship":
+            case "shipiter":
+            case "multibrot":
+            case "multibrotiter":
+                return escapeTimeEvaluate(input, slots);
+            case "arcsin":
+                return input.arcsin();
+            case "arccos":
+                return input.arccos();
+            case "arctan":
+                return input.arctan();
+            case "log":
+                return input.log();
+            case "max":
+                return input.max(getInputs()[1].evalInterval(slots));
+            case "min":
+                return input.min(getInputs()[1].evalInterval(slots));
+            default:
+                throw new IllegalArgumentException("Undefined function: " + getItem());
+        }
     }
 
-    private float sinEvaluate(Map<String, Float> arguments) {
-        return (float) Math.sin(getInputs()[0].evaluate(arguments));
+    @Override
+    public Dual evalDual(Dual[] slots) {
+        Dual input = getInputs()[0].evalDual(slots);
+        switch (getItem()) {
+            case "cos":
+                return input.cos();
+            case "sin":
+                return input.sin();
+            case "tan":
+                return input.tan();
+            case "sqrt":
+                return input.sqrt();
+            case "exp":
+                return input.exp();
+            case "mandel":
+                // the escape time only changes in steps, so its gradient is 0 wherever it is not undefined
+                return Dual.constant(mandel(input.getValue(), getInputs()[1].evalDual(slots).getValue()));
+            case "smoothmandel":
+                // the gradient is left out, as it is only continuous between the boundaries of the set
+                return Dual.constant(smoothMandel(input.getValue(), getInputs()[1].evalDual(slots).getValue()));
+            case "mandeliter":
+            case "julia":
+            case "juliaiter":
+            case "ship":
+            case "shipiter":
+            case "multibrot":
+            case "multibrotiter":
+                return escapeTimeEvaluate(input, slots);
+            case "arcsin":
+                return input.arcsin();
+            case "arccos":
+                return input.arccos();
+            case "arctan":
+                return input.arctan();
+            case "log":
+                return input.log();
+            case "max":
+                return input.max(getInputs()[1].evalDual(slots));
+            case "min":
+                return input.min(getInputs()[1].evalDual(slots));
+            default:
+                throw new IllegalArgumentException("Undefined function: " + getItem());
+        }
     }
 
-    private float tanEvaluate(Map<String, Float> arguments) {
-        return (float) Math.tan(getInputs()[0].evaluate(arguments));
+    private float cosEvaluate(float[] slots) {
+        return (float) Math.cos(getInputs()[0].evalFloat(slots));
     }
 
-    private float arctanEvaluate(Map<String, Float> arguments) {
-        return (float) Math.atan(getInputs()[0].evaluate(arguments));
+    private float sinEvaluate(float[] slots) {
+        return (float) Math.sin(getInputs()[0].evalFloat(slots));
     }
 
-    private float arcsinEvaluate(Map<String, Float> arguments) {
-        return (float) Math.asin(getInputs()[0].evaluate(arguments));
+    private float tanEvaluate(float[] slots) {
+        return (float) Math.tan(getInputs()[0].evalFloat(slots));
     }
 
-    private float arccosEvaluate(Map<String, Float> arguments) {
-        return (float) Math.acos(getInputs()[0].evaluate(arguments));
+    private float arctanEvaluate(float[] slots) {
+        return (float) Math.atan(getInputs()[0].evalFloat(slots));
     }
 
-    private float sqrtEvaluate(Map<String, Float> arguments) {
-        return (float) Math.sqrt(getInputs()[0].evaluate(arguments));
+    private float arcsinEvaluate(float[] slots) {
+        return (float) Math.asin(getInputs()[0].evalFloat(slots));
     }
 
-    private float expEvaluate(Map<String, Float> arguments) {
-        return (float) Math.exp(getInputs()[0].evaluate(arguments));
+    private float arccosEvaluate(float[] slots) {
+        return (float) Math.acos(getInputs()[0].evalFloat(slots));
     }
 
-    private float logEvaluate(Map<String, Float> arguments) {
-        return (float) Math.log(getInputs()[0].evaluate(arguments));
+    private float sqrtEvaluate(float[] slots) {
+        return (float) Math.sqrt(getInputs()[0].evalFloat(slots));
     }
 
-    private float maxEvaluate(Map<String, Float> arguments) {
-        return Math.max(getInputs()[0].evaluate(arguments), getInputs()[1].evaluate(arguments));
+    private float expEvaluate(float[] slots) {
+        return (float) Math.exp(getInputs()[0].evalFloat(slots));
     }
 
-    private float minEvaluate(Map<String, Float> arguments) {
-        return Math.min(getInputs()[0].evaluate(arguments), getInputs()[1].evaluate(arguments));
+    private float logEvaluate(float[] slots) {
+        return (float) Math.log(getInputs()[0].evalFloat(slots));
     }
 
-    private float mandelEvaluate(Map<String, Float> arguments) {
-        float cx = getInputs()[0].evaluate(arguments);
-        float cy = getInputs()[1].evaluate(arguments);
+    private float maxEvaluate(float[] slots) {
+        return Math.max(getInputs()[0].evalFloat(slots), getInputs()[1].evalFloat(slots));
+    }
+
+    private float minEvaluate(float[] slots) {
+        return Math.min(getInputs()[0].evalFloat(slots), getInputs()[1].evalFloat(slots));
+    }
+
+    /**
+     * @param name the name of a builtin function
+     * @return Whether the function counts the iterations it takes a point to escape, as mandel does, so that its
+     * graph is made of regions of a single count with nothing inside them, see EscapeTimeKernel
+     */
+    public static boolean isEscapeTime(String name) {
+        return ESCAPE_TIME_FAMILIES.containsKey(name);
+    }
 
-        float x = 0;
-        float y = 0;
-        int i;
-        for (i = 0; i < 100; i++) {
-            if (x * x + y * y > 4) break;
-            float xtemp = x * x - y * y + cx;
-            y = 2 * x * y + cy;
-            x = xtemp;
+    /**
+     * @param name the name of a builtin function
+     * @return How the function iterates z if it is an escape time, otherwise null
+     */
+    public static EscapeTimeKernel.Family escapeTimeFamily(String name) {
+        return ESCAPE_TIME_FAMILIES.get(name);
+    }
+
+    /**
+     * @param name the name of a builtin function whose escapeTimeFamily is not null
+     * @return Whether the function gives the normalized iteration count, as smoothmandel does
+     */
+    public static boolean isSmooth(String name) {
+        return name.equals("smoothmandel");
+    }
+
+    /**
+     * @param name the name of a builtin function whose escapeTimeFamily is not null
+     * @return Whether the function takes the cap on its iterations as its last input, rather than
+     * EscapeTimeKernel.DEFAULT_ITERATIONS
+     */
+    public static boolean takesIterations(String name) {
+        return name.endsWith("iter");
+    }
+
+    /**
+     * Evaluates an escape time builtin of a family, whose inputs are x, y, the parameters of the family and maybe
+     * the cap on its iterations, see ESCAPE_TIME_FAMILIES
+     */
+    private float escapeTimeEvaluate(float[] slots) {
+        RealValuedExpression[] inputs = getInputs();
+        EscapeTimeKernel.Family family = escapeTimeFamily(getItem());
+        int parameters = family.getParameterCount();
+        float x = inputs[0].evalFloat(slots);
+        float y = inputs[1].evalFloat(slots);
+        float a = parameters > 0 ? inputs[2].evalFloat(slots) : 0;
+        float b = parameters > 1 ? inputs[3].evalFloat(slots) : 0;
+        float n = takesIterations(getItem()) ? inputs[2 + parameters].evalFloat(slots)
+                : EscapeTimeKernel.DEFAULT_ITERATIONS;
+        return EscapeTimeKernel.evaluate(family, isSmooth(getItem()), x, y, a, b, n);
+    }
+
+    /**
+     * The same as escapeTimeEvaluate(float[]), in double precision
+     *
+     * @param x the value of the first input
+     */
+    private double escapeTimeEvaluate(double x, double[] slots) {
+        RealValuedExpression[] inputs = getInputs();
+        EscapeTimeKernel.Family family = escapeTimeFamily(getItem());
+        int parameters = family.getParameterCount();
+        double y = inputs[1].evalDouble(slots);
+        double a = parameters > 0 ? inputs[2].evalDouble(slots) : 0;
+        double b = parameters > 1 ? inputs[3].evalDouble(slots) : 0;
+        double n = takesIterations(getItem()) ? inputs[2 + parameters].evalDouble(slots)
+                : EscapeTimeKernel.DEFAULT_ITERATIONS;
+        return EscapeTimeKernel.evaluate(family, isSmooth(getItem()), x, y, a, b, n);
+    }
+
+    /**
+     * Like mandel, a fraction of the iterations defined whatever the point and the parameters of the family are,
+     * but undefined where the cap on the iterations or the power of a multibrot is out of range
+     *
+     * @param x the interval of the first input
+     */
+    private Interval escapeTimeEvaluate(Interval x, Interval[] slots) {
+        RealValuedExpression[] inputs = getInputs();
+        EscapeTimeKernel.Family family = escapeTimeFamily(getItem());
+        int parameters = family.getParameterCount();
+        Interval defined = Interval.TRUE;
+        if (family == EscapeTimeKernel.Family.MULTIBROT) {
+            defined = inputs[2].evalInterval(slots).gt(Interval.point(1));
         }
-        return i / 100.f;
+        if (takesIterations(getItem())) {
+            Interval n = inputs[2 + parameters].evalInterval(slots);
+            defined = defined.and(n.ge(Interval.point(1)))
+                    .and(n.lt(Interval.point(EscapeTimeKernel.MAX_ITERATIONS + 1)));
+        }
+        return Interval.mandel(x, inputs[1].evalInterval(slots)).restrict(defined);
+    }
+
+    /**
+     * The escape time only changes in steps, so its gradient is 0 wherever it is not undefined
+     *
+     * @param x the value and gradient of the first input
+     */
+    private Dual escapeTimeEvaluate(Dual x, Dual[] slots) {
+        RealValuedExpression[] inputs = getInputs();
+        EscapeTimeKernel.Family family = escapeTimeFamily(getItem());
+        int parameters = family.getParameterCount();
+        float y = inputs[1].evalDual(slots).getValue();
+        float a = parameters > 0 ? inputs[2].evalDual(slots).getValue() : 0;
+        float b = parameters > 1 ? inputs[3].evalDual(slots).getValue() : 0;
+        float n = takesIterations(getItem()) ? inputs[2 + parameters].evalDual(slots).getValue()
+                : EscapeTimeKernel.DEFAULT_ITERATIONS;
+        float value = EscapeTimeKernel.evaluate(family, isSmooth(getItem()), x.getValue(), y, a, b, n);
+        return Float.isNaN(value) ? Dual.UNDEFINED : Dual.constant(value);
+    }
+
+    private float mandelEvaluate(float[] slots) {
+        return mandel(getInputs()[0].evalFloat(slots), getInputs()[1].evalFloat(slots));
+    }
+
+    private float smoothMandelEvaluate(float[] slots) {
+        return smoothMandel(getInputs()[0].evalFloat(slots), getInputs()[1].evalFloat(slots));
+    }
+
+    /**
+     * Shared by the tree interpreter and the compiled evaluators so that all of them agree on the result
+     *
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The fraction of 100 iterations of z -> z^2 + c it took for z to escape, see EscapeTimeKernel
+     */
+    public static float mandel(float cx, float cy) {
+        return EscapeTimeKernel.MANDEL.evaluate(cx, cy);
+    }
+
+    /**
+     * Like mandel, but the normalized iteration count, which shades GRAYSCALE graphs without bands
+     *
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The fraction of 100 iterations of z -> z^2 + c it took for z to escape, varying continuously
+     */
+    public static float smoothMandel(float cx, float cy) {
+        return EscapeTimeKernel.SMOOTH_MANDEL.evaluate(cx, cy);
+    }
+
+    /**
+     * Like mandel(float, float), iterating in double precision so that views far smaller than float resolves
+     * still show detail
+     *
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The fraction of 100 iterations of z -> z^2 + c it took for z to escape
+     */
+    public static double mandel(double cx, double cy) {
+        return EscapeTimeKernel.MANDEL.evaluate(cx, cy);
+    }
+
+    /**
+     * Like smoothMandel(float, float), iterating in double precision
+     *
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The fraction of 100 iterations of z -> z^2 + c it took for z to escape, varying continuously
+     */
+    public static double smoothMandel(double cx, double cy) {
+        return EscapeTimeKernel.SMOOTH_MANDEL.evaluate(cx, cy);
     }
 
 }
@@ -1,6 +1,6 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Graphics.Interval;
 
 /**
  * ComparatorExpression allows for the graphing of regions of the graphing space through an inequality
@@ -18,11 +18,25 @@ public class ComparatorExpression extends BooleanValuedExpression {
         this.rExpression = rExpression;
     }
 
+    /**
+     * @return The expression to the left of the comparator
+     */
+    public RealValuedExpression getLExpression() {
+        return lExpression;
+    }
+
+    /**
+     * @return The expression to the right of the comparator
+     */
+    public RealValuedExpression getRExpression() {
+        return rExpression;
+    }
+
     @Override
-    public Boolean evaluate(Map<String, Float> arguments) {
+    public boolean evalBool(float[] slots) {
         boolean comparisonHolds;
-        float lExpressionVal = this.lExpression.evaluate(arguments);
-        float rExpressionVal = this.rExpression.evaluate(arguments);
+        float lExpressionVal = this.lExpression.evalFloat(slots);
+        float rExpressionVal = this.rExpression.evalFloat(slots);
 
         switch (getItem()) {
             case ">=":
@@ -48,6 +62,50 @@ public class ComparatorExpression extends BooleanValuedExpression {
         return comparisonHolds;
     }
 
+    @Override
+    public boolean evalBool(double[] slots) {
+        double lExpressionVal = lExpression.evalDouble(slots);
+        double rExpressionVal = rExpression.evalDouble(slots);
+
+        switch (getItem()) {
+            case ">=":
+                return lExpressionVal >= rExpressionVal;
+            case "<=":
+                return lExpressionVal <= rExpressionVal;
+            case ">":
+                return lExpressionVal > rExpressionVal;
+            case "<":
+                return lExpressionVal < rExpressionVal;
+            case "=":
+                return lExpressionVal == rExpressionVal;
+            // This should not happen if the program is correct.
+            default:
+                throw new IllegalStateException("Unrecognized Comparator!");
+        }
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        Interval lInterval = lExpression.evalInterval(slots);
+        Interval rInterval = rExpression.evalInterval(slots);
+
+        switch (getItem()) {
+            case ">=":
+                return lInterval.ge(rInterval);
+            case "<=":
+                return lInterval.le(rInterval);
+            case ">":
+                return lInterval.gt(rInterval);
+            case "<":
+                return lInterval.lt(rInterval);
+            case "=":
+                return lInterval.eq(rInterval);
+            // This should not happen if the program is correct.
+            default:
+                throw new IllegalStateException("Unrecognized Comparator!");
+        }
+    }
+
     @Override
     public String toString() {
         return "(" + lExpression + getItem() + rExpression + ")";
@@ -1,7 +1,7 @@
 package Backend.Expressions;
 
-import java.util.HashMap;
-import java.util.Map;
+import Graphics.Dual;
+import Graphics.Interval;
 
 /**
  * Used for user defined functions, e.g. when the input is of the form f(x) = ...
@@ -14,6 +14,15 @@ public class CustomFunctionExpression extends FunctionExpression {
     // e.g. f(x) = x^2 would store the Expression corresponding to x^2
     private final RealValuedExpression function;
 
+    // holds the values of the variables while the function is evaluated
+    private final float[] frame = newSlots();
+    // the same for evalDual, allocated on first use
+    private transient Dual[] dualFrame;
+    private transient float[] valueFrame;
+    private transient float[] values;
+    // the same for evalDouble, allocated on first use
+    private transient double[] doubleFrame;
+
 
     /**
      * @param funcName  String representing the name of a function
@@ -40,11 +49,32 @@ public class CustomFunctionExpression extends FunctionExpression {
         setInputs(inputs);
     }
 
+    /**
+     * Gets the expression that is evaluated once the inputs have been bound to the variables
+     *
+     * @return A RealValuedExpression representing the function itself
+     */
+    public RealValuedExpression getFunction() {
+        return function;
+    }
+
+    /**
+     * A call such as f(2x) stores the function it calls, which has the same name.
+     * A definition such as f(x) = x^2 stores its body instead.
+     *
+     * @return Whether this expression is a call to another function rather than a definition
+     */
+    public boolean isCall() {
+        return function instanceof FunctionExpression && function.getItem().equals(getItem());
+    }
+
 
     @Override
-    public Float evaluate(Map<String, Float> arguments) {
-        Map<String, Float> varMap = new HashMap<>();
+    public float evalFloat(float[] slots) {
+        // The inputs are bound to the variables through a preallocated frame rather than a new map.
+        // Variables the function does not take are never written, so they stay NaN.
         String[] variables = getVariables();
+        int[] variableSlots = getVariableSlots();
         for (int i = 0; i < variables.length; i++) {
             // If we have f(2x) for example, we must evaluate 2x first.
             // This is what this for loop is for
@@ -52,20 +82,84 @@ public class CustomFunctionExpression extends FunctionExpression {
 
             if (exp instanceof FunctionExpression) {
                 BooleanValuedExpression expDomain = exp.getDomain();
-                if (!expDomain.evaluate(arguments)) {
+                if (!expDomain.evalBool(slots)) {
                     // means the values are out of the domain for at least one of inputs
                     return Float.NaN;
                 }
             }
 
-            varMap.put(variables[i], getInputs()[i].evaluate(arguments));
+            frame[variableSlots[i]] = exp.evalFloat(slots);
         }
 
         // we check that the final input is in the domain of our function
         // For the example, above, we check that 2x is in the domain of f
-        if (!getDomain().evaluate(varMap)) {
+        if (!getDomain().evalBool(frame)) {
             return Float.NaN;
         }
-        return function.evaluate(varMap);
+        return function.evalFloat(frame);
+    }
+
+    @Override
+    public double evalDouble(double[] slots) {
+        // the same steps as evalFloat
+        if (doubleFrame == null) {
+            doubleFrame = newDoubleSlots();
+        }
+        int[] variableSlots = getVariableSlots();
+        for (int i = 0; i < variableSlots.length; i++) {
+            RealValuedExpression exp = getInputs()[i];
+            if (exp instanceof FunctionExpression && !exp.getDomain().evalBool(slots)) {
+                return Double.NaN;
+            }
+            doubleFrame[variableSlots[i]] = exp.evalDouble(slots);
+        }
+        if (!getDomain().evalBool(doubleFrame)) {
+            return Double.NaN;
+        }
+        return function.evalDouble(doubleFrame);
+    }
+
+    @Override
+    public Dual evalDual(Dual[] slots) {
+        // the same steps as evalFloat; the inputs carry their gradients into the frame, so evaluating the
+        // function on it applies the chain rule
+        if (dualFrame == null) {
+            dualFrame = newDualSlots();
+            valueFrame = newSlots();
+            values = new float[slots.length];
+        }
+        for (int i = 0; i < slots.length; i++) {
+            values[i] = slots[i].getValue();
+        }
+        int[] variableSlots = getVariableSlots();
+        for (int i = 0; i < variableSlots.length; i++) {
+            RealValuedExpression exp = getInputs()[i];
+            if (exp instanceof FunctionExpression && !exp.getDomain().evalBool(values)) {
+                return Dual.UNDEFINED;
+            }
+            dualFrame[variableSlots[i]] = exp.evalDual(slots);
+            valueFrame[variableSlots[i]] = dualFrame[variableSlots[i]].getValue();
+        }
+        if (!getDomain().evalBool(valueFrame)) {
+            return Dual.UNDEFINED;
+        }
+        return function.evalDual(dualFrame);
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        // the same steps as evalFloat, with undefined points tracked instead of returning NaN
+        Interval[] intervalFrame = newIntervalSlots();
+        int[] variableSlots = getVariableSlots();
+        Interval inputsDefined = Interval.TRUE;
+        for (int i = 0; i < variableSlots.length; i++) {
+            RealValuedExpression exp = getInputs()[i];
+            if (exp instanceof FunctionExpression) {
+                inputsDefined = inputsDefined.and(exp.getDomain().evalInterval(slots));
+            }
+            intervalFrame[variableSlots[i]] = exp.evalInterval(slots);
+        }
+        Interval defined = inputsDefined.and(getDomain().evalInterval(intervalFrame));
+        return function.evalInterval(intervalFrame).restrict(defined);
     }
 }
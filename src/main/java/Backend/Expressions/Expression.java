@@ -1,6 +1,11 @@
 package Backend.Expressions;
 
+import Backend.Constants;
+import Graphics.Dual;
+import Graphics.Interval;
+
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Map;
 
 public abstract class Expression<T> implements Serializable {
@@ -18,8 +23,63 @@ public abstract class Expression<T> implements Serializable {
 
     // All Expressions can be evaluated
     // The arguments Map tells us what values the variables should take
+    // This is a convenience adapter over the primitive evalFloat / evalBool of the subclasses
     public abstract T evaluate(Map<String, Float> arguments);
 
+    /**
+     * @return A new slot array with every variable set to NaN
+     */
+    public static float[] newSlots() {
+        float[] slots = new float[new Constants().getVariableSlotCount()];
+        Arrays.fill(slots, Float.NaN);
+        return slots;
+    }
+
+    /**
+     * @return A new slot array for double precision evaluation with every variable set to NaN
+     */
+    public static double[] newDoubleSlots() {
+        double[] slots = new double[new Constants().getVariableSlotCount()];
+        Arrays.fill(slots, Double.NaN);
+        return slots;
+    }
+
+    /**
+     * @return A new slot array for interval evaluation with every variable undefined
+     */
+    public static Interval[] newIntervalSlots() {
+        Interval[] slots = new Interval[new Constants().getVariableSlotCount()];
+        Arrays.fill(slots, Interval.UNDEFINED);
+        return slots;
+    }
+
+    /**
+     * @return A new slot array for dual evaluation with every variable undefined
+     */
+    public static Dual[] newDualSlots() {
+        Dual[] slots = new Dual[new Constants().getVariableSlotCount()];
+        Arrays.fill(slots, Dual.UNDEFINED);
+        return slots;
+    }
+
+    /**
+     * Lays out named arguments in a slot array, see Constants.getVariableSlot
+     *
+     * @param arguments Map from variable names to their values
+     * @return A slot array holding the arguments, variables that are not given are NaN
+     */
+    protected static float[] toSlots(Map<String, Float> arguments) {
+        Constants constants = new Constants();
+        float[] slots = newSlots();
+        for (Map.Entry<String, Float> argument : arguments.entrySet()) {
+            int slot = constants.getVariableSlot(argument.getKey());
+            if (slot != -1) {
+                slots[slot] = argument.getValue();
+            }
+        }
+        return slots;
+    }
+
     @Override
     public String toString() {
         return getItem();
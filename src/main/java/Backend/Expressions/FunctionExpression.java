@@ -1,11 +1,14 @@
 package Backend.Expressions;
 
+import Backend.Constants;
+
 /**
  * An abstract class that both builtin functions and user-defined functions inherit from
  */
 public abstract class FunctionExpression extends RealValuedExpression {
 
     private String[] variables;
+    private int[] variableSlots;
     private RealValuedExpression[] inputs;
 
     /**
@@ -14,8 +17,7 @@ public abstract class FunctionExpression extends RealValuedExpression {
      */
     public FunctionExpression(String funcName, String[] variables) {
         super(funcName);
-        this.variables = variables;
-        this.inputs = stringArrayToExpressions(variables);
+        setVariables(variables);
     }
 
     /**
@@ -66,9 +68,23 @@ public abstract class FunctionExpression extends RealValuedExpression {
      */
     public void setVariables(String[] variables) {
         this.variables = variables;
+        this.variableSlots = new int[variables.length];
+        Constants constants = new Constants();
+        for (int i = 0; i < variables.length; i++) {
+            variableSlots[i] = constants.getVariableSlot(variables[i]);
+        }
         this.inputs = stringArrayToExpressions(variables);
     }
 
+    /**
+     * Gets the slots that the variables of the function are bound to when it is called
+     *
+     * @return Array whose i-th entry is the slot of the i-th variable, see Constants.getVariableSlot
+     */
+    public int[] getVariableSlots() {
+        return this.variableSlots;
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
@@ -1,6 +1,6 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Graphics.Interval;
 
 
 public class LogicalOperatorExpression extends BooleanValuedExpression {
@@ -13,19 +13,33 @@ public class LogicalOperatorExpression extends BooleanValuedExpression {
         this.rExpression = rExpression;
     }
 
+    /**
+     * @return The expression to the left of the operator
+     */
+    public BooleanValuedExpression getLExpression() {
+        return lExpression;
+    }
+
+    /**
+     * @return The expression to the right of the operator
+     */
+    public BooleanValuedExpression getRExpression() {
+        return rExpression;
+    }
+
     @Override
-    public Boolean evaluate(Map<String, Float> arguments) {
+    public boolean evalBool(float[] slots) {
         boolean trueComparison;
 
         switch (getItem()) {
             case "&":
-                trueComparison = this.lExpression.evaluate(arguments) &&
-                        this.rExpression.evaluate(arguments);
+                trueComparison = this.lExpression.evalBool(slots) &&
+                        this.rExpression.evalBool(slots);
                 return trueComparison;
 
             case "|":
-                trueComparison = this.lExpression.evaluate(arguments) ||
-                        this.rExpression.evaluate(arguments);
+                trueComparison = this.lExpression.evalBool(slots) ||
+                        this.rExpression.evalBool(slots);
                 return trueComparison;
             default:
                 throw new IllegalStateException("Unrecognized Logical Operator!");
@@ -33,6 +47,30 @@ public class LogicalOperatorExpression extends BooleanValuedExpression {
         }
     }
 
+    @Override
+    public boolean evalBool(double[] slots) {
+        switch (getItem()) {
+            case "&":
+                return lExpression.evalBool(slots) && rExpression.evalBool(slots);
+            case "|":
+                return lExpression.evalBool(slots) || rExpression.evalBool(slots);
+            default:
+                throw new IllegalStateException("Unrecognized Logical Operator!");
+        }
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        switch (getItem()) {
+            case "&":
+                return lExpression.evalInterval(slots).and(rExpression.evalInterval(slots));
+            case "|":
+                return lExpression.evalInterval(slots).or(rExpression.evalInterval(slots));
+            default:
+                throw new IllegalStateException("Unrecognized Logical Operator!");
+        }
+    }
+
     @Override
     public String toString() {
         return "(" + lExpression + getItem() + rExpression + ")";
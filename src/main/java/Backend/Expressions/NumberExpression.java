@@ -1,16 +1,42 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Graphics.Dual;
+import Graphics.Interval;
 
 public class NumberExpression extends RealValuedExpression {
 
+    // parsed once here rather than on every evaluation
+    private final float value;
+    private final double doubleValue; // the number as typed, not rounded to a float
+    private final Interval interval;
+    private final Dual dual;
+
     public NumberExpression(String num) {
         super(num);
+        this.value = Float.parseFloat(num);
+        this.doubleValue = Double.parseDouble(num);
+        this.interval = Interval.point(value);
+        this.dual = Dual.constant(value);
+    }
+
+    @Override
+    public float evalFloat(float[] slots) {
+        return value;
+    }
+
+    @Override
+    public double evalDouble(double[] slots) {
+        return doubleValue;
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        return interval;
     }
 
     @Override
-    public Float evaluate(Map<String, Float> arguments) {
-        return Float.parseFloat(getItem());
+    public Dual evalDual(Dual[] slots) {
+        return dual;
     }
 
 }
@@ -1,13 +1,23 @@
 package Backend.Expressions;
 
+import Graphics.Differentiable;
+import Graphics.DoubleEvaluatable;
+import Graphics.Dual;
 import Graphics.Evaluatable;
+import Graphics.Evaluatable3D;
+import Graphics.Interval;
+import Graphics.IntervalEvaluatable;
+import Graphics.float3;
 
-import java.util.HashMap;
 import java.util.Map;
 
-public abstract class RealValuedExpression extends Expression<Float> implements Evaluatable {
+public abstract class RealValuedExpression extends Expression<Float> implements Evaluatable, Evaluatable3D, IntervalEvaluatable,
+        Differentiable, DoubleEvaluatable {
 
     private BooleanValuedExpression domain; // defines where expression is defined
+    private final float[] slots = newSlots(); // reused by evaluate(x, y) and evaluate(x) to avoid allocation
+    private transient Dual[] dualSlots; // reused by evaluateDual, allocated on first use
+    private transient double[] doubleSlots; // reused by evaluate(double, double), allocated on first use
 
     public RealValuedExpression(String num) {
         super(num);
@@ -19,29 +29,138 @@ public abstract class RealValuedExpression extends Expression<Float> implements
         this.domain = domain;
     }
 
+    /**
+     * Evaluates this expression without boxing or looking anything up by name.
+     * Not safe to call from several threads at once, as function calls reuse preallocated frames.
+     *
+     * @param slots The values of the variables, laid out as in Constants.getVariableSlot
+     * @return The value of this expression
+     */
+    public abstract float evalFloat(float[] slots);
+
+    /**
+     * Evaluates this expression in double precision, with the same steps as evalFloat.
+     * Not safe to call from several threads at once, as function calls reuse preallocated frames.
+     *
+     * @param slots The values of the variables, laid out as in Constants.getVariableSlot
+     * @return The value of this expression
+     */
+    public abstract double evalDouble(double[] slots);
+
+    /**
+     * Evaluates this expression over boxes of points with interval arithmetic.
+     *
+     * @param slots The intervals the variables range over, laid out as in Constants.getVariableSlot
+     * @return An interval enclosing every value evalFloat takes on the box
+     */
+    public abstract Interval evalInterval(Interval[] slots);
+
+    /**
+     * Evaluates this expression and its gradient in one pass, with forward-mode automatic differentiation.
+     *
+     * @param slots The values of the variables and their gradients, laid out as in Constants.getVariableSlot
+     * @return The value of this expression, which is the same as evalFloat gives, and its gradient
+     */
+    public abstract Dual evalDual(Dual[] slots);
+
+    @Override
+    public Float evaluate(Map<String, Float> arguments) {
+        return evalFloat(toSlots(arguments));
+    }
+
     @Override
     public float evaluate(float x, float y) {
-        Map<String, Float> varMap = new HashMap<>();
-        varMap.put("x", x);
-        varMap.put("y", y);
-        if (domain.evaluate(varMap)) {
-            return evaluate(varMap); // this evaluate is from Expression class
+        slots[0] = x;
+        slots[1] = y;
+        if (domain.evalBool(slots)) {
+            return evalFloat(slots);
         } else {
             return Float.NaN;
         }
     }
 
+    @Override
+    public double evaluate(double x, double y) {
+        if (doubleSlots == null) {
+            doubleSlots = newDoubleSlots();
+        }
+        doubleSlots[0] = x;
+        doubleSlots[1] = y;
+        if (domain.evalBool(doubleSlots)) {
+            return evalDouble(doubleSlots);
+        } else {
+            return Double.NaN;
+        }
+    }
+
     @Override
     public float evaluate(float x) {
-        Map<String, Float> varMap = new HashMap<>();
-        varMap.put("x", x);
-        if (domain.evaluate(varMap)) {
-            return evaluate(varMap); // this evaluate is from Expression class
+        slots[0] = x;
+        slots[1] = Float.NaN;
+        if (domain.evalBool(slots)) {
+            return evalFloat(slots);
         } else {
             return Float.NaN;
         }
     }
 
+    @Override
+    public float evaluate(float x, float y, float z) {
+        slots[0] = x;
+        slots[1] = y;
+        slots[2] = z;
+        float value = domain.evalBool(slots) ? evalFloat(slots) : Float.NaN;
+        slots[2] = Float.NaN;
+        return value;
+    }
+
+    @Override
+    public Dual evaluateDual(float x, float y) {
+        return evaluateDual(x, y, Float.NaN);
+    }
+
+    /**
+     * @param x a variable
+     * @param y another variable
+     * @param z a third variable
+     * @return f(x, y, z) together with its gradient, see Dual
+     */
+    public Dual evaluateDual(float x, float y, float z) {
+        slots[0] = x;
+        slots[1] = y;
+        slots[2] = z;
+        boolean defined = domain.evalBool(slots);
+        slots[2] = Float.NaN;
+        if (!defined) {
+            return Dual.UNDEFINED;
+        }
+        if (dualSlots == null) {
+            dualSlots = newDualSlots();
+        }
+        dualSlots[0] = Dual.variable(x, 0);
+        dualSlots[1] = Dual.variable(y, 1);
+        dualSlots[2] = Dual.variable(z, 2);
+        return evalDual(dualSlots);
+    }
+
+    /**
+     * Unlike the default, which takes three more evaluations, this differentiates the expression exactly
+     */
+    @Override
+    public float3 deriv(float cx, float cy, float cz) {
+        Dual f = evaluateDual(cx, cy, cz);
+        return new float3(f.getDx(), f.getDy(), f.getDz()).normalize();
+    }
+
+    @Override
+    public Interval evaluate(Interval x, Interval y) {
+        // a new slot array every time, boxes are evaluated far less often than points
+        Interval[] slots = newIntervalSlots();
+        slots[0] = x;
+        slots[1] = y;
+        return evalInterval(slots).restrict(domain.evalInterval(slots));
+    }
+
     /**
      * Used to define the 'default' domain of everything.
      *
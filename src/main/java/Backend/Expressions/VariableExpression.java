@@ -1,18 +1,53 @@
 package Backend.Expressions;
 
-import java.util.Map;
+import Backend.Constants;
+import Graphics.Dual;
+import Graphics.Interval;
 
 public class VariableExpression extends RealValuedExpression {
 
+    // the index of the slot holding the value of this variable, resolved when the expression is built
+    private final int slot;
+
     // Variables can only have names x, y, z!
     public VariableExpression(String varName) {
+        this(varName, new Constants().getVariableSlot(varName));
+    }
+
+    /**
+     * @param varName The name of the variable
+     * @param slot    The index of the slot holding the value of the variable, see Constants.getVariableSlot
+     */
+    public VariableExpression(String varName, int slot) {
         super(varName);
+        this.slot = slot;
+    }
+
+    /**
+     * @return The index of the slot holding the value of this variable
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    // Evaluating a variable is simply reading the slot that has been assigned to it
+    @Override
+    public float evalFloat(float[] slots) {
+        return slots[slot];
+    }
+
+    @Override
+    public double evalDouble(double[] slots) {
+        return slots[slot];
+    }
+
+    @Override
+    public Interval evalInterval(Interval[] slots) {
+        return slots[slot];
     }
 
-    // Evaluating a variable is simply using the map to figure out
-    // what value has been assigned to it
     @Override
-    public Float evaluate(Map<String, Float> arguments) {
-        return arguments.get(getItem());
+    public Dual evalDual(Dual[] slots) {
+        return slots[slot];
     }
 }
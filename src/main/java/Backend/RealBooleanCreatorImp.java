@@ -316,6 +316,8 @@ public class RealBooleanCreatorImp extends RealBooleanCreator implements Propert
             // corresponds to only 1 input
             commaIndices = new ArrayList<>();
         }
+        // getOuterItems finds the commas from the last one back, but the inputs are read from the first one on
+        commaIndices.sort(null);
 
         int startInd = 0;
         commaIndices.add(terms.size()); // Add index of the final term so that there is an input between every index in the list, starting from 0
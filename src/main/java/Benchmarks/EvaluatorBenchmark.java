@@ -0,0 +1,84 @@
+package Benchmarks;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.CompiledExpression;
+import Backend.ExpressionCompilers.ExpressionCompiler;
+import Backend.ExpressionCompilers.KernelGenerator;
+import Backend.ExpressionCompilers.VectorSupport;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.Evaluatable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures how many points per second each way of evaluating an expression gets through, on blocks of points
+ * like the ones ImplicitGrapher evaluates.
+ * <p>
+ * Run with --add-modules jdk.incubator.vector to include the vectorized evaluator.
+ */
+public class EvaluatorBenchmark {
+    private static final String[] EXPRESSIONS = {
+            "x^2*y - 3*x*y + y*y - x/2 + 1 = x*y*y",
+            "sqrt(x*x + y*y) = max(x, y) + 1",
+            "mandel(x, y) = 0"
+    };
+    private static final int POINTS = 1024;
+    private static final long TARGET_NANOS = 1_000_000_000L;
+
+    public static void main(String[] args) throws InvalidTermException {
+        ExpressionReader reader = new ExpressionReader(new Axes());
+        System.out.println(VectorSupport.isAvailable()
+                ? "Vector API available, " + VectorSupport.getLaneCount() + " float lanes"
+                : "Vector API not available, run with --add-modules jdk.incubator.vector to include it");
+
+        float[] xs = new float[POINTS];
+        float[] ys = new float[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = -2 + 2.5f * (i % 32) / 32;
+            ys[i] = -1.25f + 2.5f * (i / 32) / 32;
+        }
+        for (String expression : EXPRESSIONS) {
+            RealValuedExpression exp = (RealValuedExpression) reader.read(expression);
+            CompiledExpression program = new ExpressionCompiler().compile(exp);
+            Map<String, Evaluatable> evaluators = new LinkedHashMap<>();
+            evaluators.put("tree", exp);
+            evaluators.put("vm", program);
+            evaluators.put("kernel", new KernelGenerator().generate(program));
+            if (VectorSupport.isAvailable()) {
+                evaluators.put("vector", VectorSupport.vectorize(program));
+            }
+            System.out.println(expression);
+            for (Map.Entry<String, Evaluatable> evaluator : evaluators.entrySet()) {
+                System.out.printf("  %-8s %10.1f million points/s%n", evaluator.getKey(),
+                        pointsPerSecond(evaluator.getValue(), xs, ys) / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Runs evaluator on blocks of points for a while after warming it up
+     */
+    private static double pointsPerSecond(Evaluatable evaluator, float[] xs, float[] ys) {
+        float[] out = new float[POINTS];
+        run(evaluator, xs, ys, out, TARGET_NANOS / 2);
+        long start = System.nanoTime();
+        long blocks = run(evaluator, xs, ys, out, TARGET_NANOS);
+        return blocks * POINTS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * @return The number of blocks evaluated
+     */
+    private static long run(Evaluatable evaluator, float[] xs, float[] ys, float[] out, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long blocks = 0;
+        while (System.nanoTime() < end) {
+            evaluator.evaluate(xs, ys, out, POINTS);
+            blocks++;
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,54 @@
+package Benchmarks;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.Grapher;
+
+/**
+ * Measures how long graphing several related expressions takes with each type of graph, when they are graphed
+ * together in one Axes and when each is graphed on its own. Grapher only graphs them together where that is faster,
+ * so the first time should never be much above the second.
+ */
+public class GroupBenchmark {
+    private static final String[] EXPRESSIONS = {
+            "sin(x*y) + y = 0",
+            "sin(x*y) - y = 0",
+            "sin(x*y) * 2 = 1",
+            "sin(x*y) = x",
+            "sin(x*y) + x*y = 0"
+    };
+    private static final String[] TYPES = {"BOUNDARY", "REGION", "GRAYSCALE"};
+    private static final int SIZE = 1024;
+    private static final int RUNS = 15;
+
+    public static void main(String[] args) throws InvalidTermException {
+        Axes all = new Axes();
+        Grapher together = new Grapher(all);
+        Grapher[] alone = new Grapher[EXPRESSIONS.length];
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            all.addExpression((RealValuedExpression) new ExpressionReader(all).read(EXPRESSIONS[i]));
+            Axes one = new Axes();
+            one.addExpression((RealValuedExpression) new ExpressionReader(one).read(EXPRESSIONS[i]));
+            alone[i] = new Grapher(one);
+        }
+        for (String type : TYPES) {
+            long bestTogether = Long.MAX_VALUE;
+            long bestAlone = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                together.graph(SIZE, type);
+                bestTogether = Math.min(bestTogether, System.nanoTime() - start);
+                start = System.nanoTime();
+                for (Grapher grapher : alone) {
+                    grapher.graph(SIZE, type);
+                }
+                bestAlone = Math.min(bestAlone, System.nanoTime() - start);
+            }
+            System.out.printf("%-9s together %7.1f ms, one at a time %7.1f ms%n", type, bestTogether / 1e6,
+                    bestAlone / 1e6);
+        }
+        System.out.printf("sharing ratio %.2f%n", together.getSharingRatio());
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmarks;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.Grapher;
+
+import java.util.Arrays;
+
+/**
+ * Measures how long Grapher takes to graph an image in float and in double precision, at a scale float resolves
+ * and at one it does not, so that the precision can be chosen per job. Alongside the time it counts the colours of
+ * GRAYSCALE images and the pixels on the curves of BOUNDARY images: in a view too small for float, neighbouring
+ * pixels round to the same point, so fewer colours show and curves break up.
+ */
+public class PrecisionBenchmark {
+    private static final String[][] JOBS = {
+            // expression, graph type, x and y of the view, and the scales to graph it at
+            {"smoothmandel(x, y)", "GRAYSCALE", "-0.1011", "0.9563", "1e-2", "1e-6"},
+            {"x^2 + y^2 = 1", "BOUNDARY", "0.6", "0.8", "1e-2", "1e-9"}
+    };
+    private static final int SIZE = 512;
+    private static final int WARMUP_RUNS = 20;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws InvalidTermException {
+        for (String[] job : JOBS) {
+            Axes axes = new Axes();
+            axes.addExpression((RealValuedExpression) new ExpressionReader(axes).read(job[0]));
+            axes.setDoubleOrigin(new double[]{Double.parseDouble(job[2]), Double.parseDouble(job[3])});
+            Grapher grapher = new Grapher(axes);
+            System.out.println(job[0] + " " + job[1]);
+            for (double scale : new double[]{Double.parseDouble(job[4]), Double.parseDouble(job[5])}) {
+                axes.setDoubleScale(scale);
+                for (boolean doublePrecision : new boolean[]{false, true}) {
+                    grapher.setDoublePrecision(doublePrecision);
+                    int[] pixels = new int[SIZE * SIZE];
+                    // the best of the runs after warming up is reported
+                    for (int run = 0; run < WARMUP_RUNS; run++) {
+                        grapher.graph(pixels, SIZE, job[1]);
+                    }
+                    long best = Long.MAX_VALUE;
+                    for (int run = 0; run < RUNS; run++) {
+                        long start = System.nanoTime();
+                        grapher.graph(pixels, SIZE, job[1]);
+                        best = Math.min(best, System.nanoTime() - start);
+                    }
+                    System.out.printf("  scale %-6.0e %-6s %8.1f ms %7d colours %7d curve pixels%n", scale,
+                            doublePrecision ? "double" : "float", best / 1e6,
+                            Arrays.stream(pixels).distinct().count(),
+                            Arrays.stream(pixels).filter(pixel -> pixel == 0xFF000000).count());
+                }
+            }
+        }
+    }
+}
@@ -6,10 +6,12 @@ import Backend.Exceptions.InvalidTermException;
 import Backend.ExpressionReader;
 import Backend.Expressions.RealValuedExpression;
 import GUI.GUI;
+import Graphics.Colormap;
 import Graphics.Grapher;
 import Graphics.ImageWriter;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -28,6 +30,15 @@ public class CLIHelper {
     final String interactiveCommand = "-interactive";
     final String nameCommand = "-name";
     final String sizeCommand = "-size";
+    final String fastMathCommand = "-fastmath";
+    final String conservativeCommand = "-conservative";
+    final String threadsCommand = "-threads";
+    final String samplesCommand = "-samples";
+    final String colormapCommand = "-colormap";
+    final String transferCommand = "-transfer";
+    final String precisionCommand = "-precision";
+    final String scaleCommand = "-scale";
+    final String iterationsCommand = "-iterations";
 
     /**
      * Simple try and catch statements to save axes.
@@ -124,9 +135,21 @@ public class CLIHelper {
     public void trySettingOrigin(List<String> userInputs,
                                  Axes axes, AxesUseCase auc) {
         String rawpos = getCommandArgument(posCommand, userInputs);
-        float x = Float.parseFloat(rawpos.split(",")[0]);
-        float y = Float.parseFloat(rawpos.split(",")[1]);
-        auc.setOrigin(new float[]{x, y}, axes);
+        // kept in every digit given, for deep zooms
+        BigDecimal x = new BigDecimal(rawpos.split(",")[0]);
+        BigDecimal y = new BigDecimal(rawpos.split(",")[1]);
+        auc.setPreciseOrigin(new BigDecimal[]{x, y}, axes);
+    }
+
+    /**
+     * Set the scale of axes, the width of the graphing space the image shows, from "-scale".
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @param axes       an instance of Axes
+     * @param auc        an instance of AxesUseCase
+     */
+    public void trySettingScale(List<String> userInputs, Axes axes, AxesUseCase auc) {
+        auc.setPreciseScale(new BigDecimal(getCommandArgument(scaleCommand, userInputs)), axes);
     }
 
     /**
@@ -162,6 +185,123 @@ public class CLIHelper {
         return size;
     }
 
+    /**
+     * Return whether the user opted into fast-math simplification with "-fastmath on". It is off by default,
+     * so that simplified expressions give exactly the same values as the ones typed in.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return true if "-fastmath on" is present in userInputs
+     */
+    public boolean getFastMath(List<String> userInputs) {
+        return userInputs.contains(fastMathCommand) && getCommandArgument(fastMathCommand, userInputs).equals("on");
+    }
+
+    /**
+     * Return whether the user asked with "-precision double" for graphs in double precision, which can be zoomed
+     * in about 1e9 times further but are slower. The default is "-precision float", see getDeepZoomIterations for
+     * "-precision deep".
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return true if "-precision double" is present in userInputs
+     */
+    public boolean getDoublePrecision(List<String> userInputs) {
+        return userInputs.contains(precisionCommand) &&
+                getCommandArgument(precisionCommand, userInputs).equals("double");
+    }
+
+    /**
+     * Return the iterations GRAYSCALE graphs of mandel take when the user asked with "-precision deep" for them to
+     * be graphed by perturbation, which zooms in down to scales of about 1e-500, with other graphs in double
+     * precision. The iterations are given by "-iterations", 1000 by default, as deep views need many to show detail.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return the number of iterations, or 0 if "-precision deep" is not present in userInputs
+     */
+    public int getDeepZoomIterations(List<String> userInputs) {
+        if (!userInputs.contains(precisionCommand) ||
+                !getCommandArgument(precisionCommand, userInputs).equals("deep")) {
+            return 0;
+        }
+        int iterations = 1000;
+        if (userInputs.contains(iterationsCommand)) {
+            iterations = Integer.parseInt(getCommandArgument(iterationsCommand, userInputs));
+        }
+        return iterations;
+    }
+
+    /**
+     * Return whether the user asked with "-conservative on" for graphs that never miss features thinner than a
+     * pixel. It is off by default, as it may draw pixels next to the graph too.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return true if "-conservative on" is present in userInputs
+     */
+    public boolean getConservative(List<String> userInputs) {
+        return userInputs.contains(conservativeCommand) &&
+                getCommandArgument(conservativeCommand, userInputs).equals("on");
+    }
+
+    /**
+     * Return the number of threads to graph on. The default value is 1, graphing on the calling thread only,
+     * if no "-threads" command was specified.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return the number of threads, or 1 if no "-threads" command is present in userInputs
+     */
+    public int getThreads(List<String> userInputs) {
+        int threads = 1;
+        if (userInputs.contains(threadsCommand)) {
+            threads = Integer.parseInt(getCommandArgument(threadsCommand, userInputs));
+        }
+        return threads;
+    }
+
+    /**
+     * Return the number of cells across the grid that CONTOUR graphs are sampled on. The default value is 0,
+     * sampling once every few pixels, if no "-samples" command was specified.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return the number of samples, or 0 if no "-samples" command is present in userInputs
+     */
+    public int getContourSamples(List<String> userInputs) {
+        int samples = 0;
+        if (userInputs.contains(samplesCommand)) {
+            samples = Integer.parseInt(getCommandArgument(samplesCommand, userInputs));
+        }
+        return samples;
+    }
+
+    /**
+     * Return the colormap GRAYSCALE graphs are coloured with, named by "-colormap" and with the transfer function
+     * named by "-transfer". The default is the grayscale colormap, and the default transfer function is the one of
+     * the colormap.
+     *
+     * @param userInputs a List of strings containing user inputs
+     * @return the colormap, or Colormap.GRAYSCALE if neither command is present in userInputs
+     */
+    public Colormap getColormap(List<String> userInputs) {
+        Colormap colormap = Colormap.GRAYSCALE;
+        if (userInputs.contains(colormapCommand)) {
+            colormap = Colormap.forName(getCommandArgument(colormapCommand, userInputs));
+        }
+        if (userInputs.contains(transferCommand)) {
+            colormap = colormap.withTransfer(toTransfer(getCommandArgument(transferCommand, userInputs)));
+        }
+        return colormap;
+    }
+
+    /**
+     * @return The transfer function called name in any case, or null if there is none
+     */
+    private Colormap.Transfer toTransfer(String name) {
+        for (Colormap.Transfer transfer : Colormap.Transfer.values()) {
+            if (transfer.name().equalsIgnoreCase(name)) {
+                return transfer;
+            }
+        }
+        return null;
+    }
+
     /**
      * Return a (potentially modified) name value. The default value is "graph.png",
      * if no "-name" or "-load" command was specified. The order of precedence for the name is
@@ -270,8 +410,18 @@ public class CLIHelper {
      * A pair of the user input is VALID if all the following is satisfied:
      * 1. the first element of the pair (which is a format of "-****") is in the array of accepted commands.
      * 2. the second element of the pair is not null (null implies one or more commands had missing responses)
-     * 3. the first element of the pair is "-dim" or "-size" and the second element of the pair (i.e., response)
-     * is a positive integer (the dimension of a function can only be a positive dimension)
+     * 3. the first element of the pair is "-dim", "-size", "-threads", "-samples" or "-iterations" and the second
+     * element of the pair (i.e., response) is a positive integer (the dimension of a function can only be a positive
+     * dimension)
+     * 4. the first element of the pair is "-fastmath" and the second element of the pair is "on" or "off"
+     * 5. the first element of the pair is "-conservative" and the second element of the pair is "on" or "off"
+     * 6. the first element of the pair is "-colormap" and the second element of the pair is "grayscale",
+     * "viridis", "diverging" or "cyclic"
+     * 7. the first element of the pair is "-transfer" and the second element of the pair is "linear", "sqrt" or
+     * "log"
+     * 8. the first element of the pair is "-precision" and the second element of the pair is "float", "double" or
+     * "deep"
+     * 9. the first element of the pair is "-scale" and the second element of the pair is a positive number
      * We expect there will be more checks to be done in the CLI level.
      * Thus, this method is open for extension.
      *
@@ -294,10 +444,67 @@ public class CLIHelper {
         } else if (firstElementOfPair.equals(sizeCommand) && isNotPositiveInteger(secondElementOfPair)) {
             System.out.println("-size needs to be followed by a positive integer. Please try again.");
             return false;
+        } else if (firstElementOfPair.equals(threadsCommand) && isNotPositiveInteger(secondElementOfPair)) {
+            System.out.println("-threads needs to be followed by a positive integer. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(samplesCommand) && isNotPositiveInteger(secondElementOfPair)) {
+            System.out.println("-samples needs to be followed by a positive integer. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(iterationsCommand) && isNotPositiveInteger(secondElementOfPair)) {
+            System.out.println("-iterations needs to be followed by a positive integer. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(fastMathCommand) &&
+                !(secondElementOfPair.equals("on") || secondElementOfPair.equals("off"))) {
+            System.out.println("-fastmath needs to be followed by on or off. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(conservativeCommand) &&
+                !(secondElementOfPair.equals("on") || secondElementOfPair.equals("off"))) {
+            System.out.println("-conservative needs to be followed by on or off. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(colormapCommand) && !isColormap(secondElementOfPair)) {
+            System.out.println("-colormap needs to be followed by grayscale, viridis, diverging or cyclic. " +
+                    "Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(transferCommand) && toTransfer(secondElementOfPair) == null) {
+            System.out.println("-transfer needs to be followed by linear, sqrt or log. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(precisionCommand) &&
+                !(secondElementOfPair.equals("float") || secondElementOfPair.equals("double")
+                        || secondElementOfPair.equals("deep"))) {
+            System.out.println("-precision needs to be followed by float, double or deep. Please try again.");
+            return false;
+        } else if (firstElementOfPair.equals(scaleCommand) && isNotPositiveNumber(secondElementOfPair)) {
+            System.out.println("-scale needs to be followed by a positive number. Please try again.");
+            return false;
         }
         return true;
     }
 
+    /**
+     * @param userInput The user input
+     * @return true if userInput names a colormap
+     */
+    private boolean isColormap(String userInput) {
+        try {
+            Colormap.forName(userInput);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param userInput The user input
+     * @return true if userInput is not a finite positive number, such as 4 or 1.5e-60
+     */
+    private boolean isNotPositiveNumber(String userInput) {
+        try {
+            return new BigDecimal(userInput).signum() <= 0;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
     /**
      * Adapted from https://stackoverflow.com/questions/237159/
      * whats-the-best-way-to-check-if-a-string-represents-an-integer-in-java. Returns true if the input string
@@ -20,6 +20,16 @@ public class CommandLineInterface {
      * - java src/main/java/Frontend/CommandLineInterface.java -eq "x^2 + 1 = 0" -graph BOUNDARY
      * - java src/main/java/Frontend/CommandLineInterface.java -dim 5
      * - java src/main/java/Frontend/CommandLineInterface.java -eq "x=0" -eq "y=6"
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "x^3 = y" -fastmath on -graph BOUNDARY
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "sin(1/x) = y" -conservative on -graph BOUNDARY
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "mandel(x, y)" -threads 4 -graph GRAYSCALE
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "x^2 + y^2" -colormap cyclic -graph GRAYSCALE
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "x^2+y^2=9" -size 2048 -samples 512 -graph CONTOUR
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "mandel(x, y)" -pos -0.7454,0.1130
+     *   -scale 1e-9 -precision double -graph GRAYSCALE
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "smoothmandel(x, y)" -pos 0,1 -scale 1e-50
+     *   -precision deep -iterations 2000 -graph GRAYSCALE
+     * - java src/main/java/Frontend/CommandLineInterface.java -eq "juliaiter(x, y, -0.8, 0.156, 500)" -graph GRAYSCALE
      *
      * @param args An array of Strings containing the user inputs, split by a space " "
      */
@@ -39,7 +49,16 @@ public class CommandLineInterface {
                 cliHelper.domainCommand,
                 cliHelper.interactiveCommand,
                 cliHelper.nameCommand,
-                cliHelper.sizeCommand
+                cliHelper.sizeCommand,
+                cliHelper.fastMathCommand,
+                cliHelper.conservativeCommand,
+                cliHelper.threadsCommand,
+                cliHelper.samplesCommand,
+                cliHelper.colormapCommand,
+                cliHelper.transferCommand,
+                cliHelper.precisionCommand,
+                cliHelper.scaleCommand,
+                cliHelper.iterationsCommand
         };
 
         if (!cliHelper.checkValidInput(acceptedCommands, userInputs)) {
@@ -55,9 +74,19 @@ public class CommandLineInterface {
         if (userInputs.contains(cliHelper.posCommand)) {
             cliHelper.trySettingOrigin(userInputs, axes, auc);
         }
+        if (userInputs.contains(cliHelper.scaleCommand)) {
+            cliHelper.trySettingScale(userInputs, axes, auc);
+        }
 
         ExpressionReader er = new ExpressionReader(axes);
+        er.setFastMath(cliHelper.getFastMath(userInputs));
         Grapher grapher = new Grapher(axes);
+        grapher.setConservative(cliHelper.getConservative(userInputs));
+        grapher.setThreads(cliHelper.getThreads(userInputs));
+        grapher.setContourSamples(cliHelper.getContourSamples(userInputs));
+        grapher.setColormap(cliHelper.getColormap(userInputs));
+        grapher.setDoublePrecision(cliHelper.getDoublePrecision(userInputs));
+        grapher.setDeepZoom(cliHelper.getDeepZoomIterations(userInputs));
         List<String[]> equationsAndDomains = cliHelper.findAllEquations(args);
         cliHelper.tryInterpretingInput(axes, auc, er, equationsAndDomains);
         int[] graphedImage = cliHelper.tryGraphingImage(userInputs, grapher);
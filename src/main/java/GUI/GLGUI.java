@@ -8,7 +8,7 @@
 package GUI;
 
 import Graphics.Grapher;
-import Graphics.RGBA;
+import org.lwjgl.glfw.GLFW;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -42,6 +42,9 @@ public class GLGUI extends GLFWApp implements GUI {
     private final int imgDim;
 
     private final GUIHelper guiHelper;
+    private int texID; // The texture the graph is drawn to, 0 until the first graph
+    // Whether the window has to be drawn again, e.g. because it was uncovered, even though the graph is unchanged
+    private static boolean refresh = true;
 
 
     public GLGUI(Grapher grapher, int imgDim) {
@@ -61,22 +64,24 @@ public class GLGUI extends GLFWApp implements GUI {
      * @param iw     width of input
      * @param ih     height of input
      */
-    private static void imgToTex(int[] pixels, int iw, int ih) {
+    private void imgToTex(int[] pixels, int iw, int ih) {
         // Convert int[] RGBA to packed byte[] RGBA for OpenGL use
         ByteBuffer tbuf = ByteBuffer.allocateDirect(4 * iw * ih);
         byte[] pixbytes = new byte[4 * iw * ih];
         for (int i = 0; i < iw * ih; i++) {
-            RGBA rgba = new RGBA(pixels[i]);
-            pixbytes[4 * i] = (byte) (rgba.r);
-            pixbytes[4 * i + 1] = (byte) (rgba.g);
-            pixbytes[4 * i + 2] = (byte) (rgba.b);
-            pixbytes[4 * i + 3] = (byte) (rgba.a);
+            int argb = pixels[i];
+            pixbytes[4 * i] = (byte) (argb >> 16);
+            pixbytes[4 * i + 1] = (byte) (argb >> 8);
+            pixbytes[4 * i + 2] = (byte) argb;
+            pixbytes[4 * i + 3] = (byte) (argb >>> 24);
         }
         tbuf.put(pixbytes);
         tbuf.flip();
-        // Attach to GL texture, set filtering
-        int tid = glGenTextures();
-        glBindTexture(GL_TEXTURE_2D, tid);
+        // Attach to GL texture, set filtering; the texture is reused so that textures are not leaked every frame
+        if (texID == 0) {
+            texID = glGenTextures();
+        }
+        glBindTexture(GL_TEXTURE_2D, texID);
         glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
         glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
@@ -138,6 +143,9 @@ public class GLGUI extends GLFWApp implements GUI {
         glfwSetMouseButtonCallback(window, GLGUI::mouseCallback);
         glfwSetCursorPosCallback(window, GLGUI::cursor_pos_callback);
         glfwSetKeyCallback(window, GLGUI::keyboardCallback);
+        glfwSetWindowRefreshCallback(window, GLGUI::refreshCallback);
+        // graphs are drawn on a worker, which wakes up the main loop when a frame is ready
+        guiHelper.start(GLFW::glfwPostEmptyEvent);
 
         setupGL();
         makeShader();
@@ -147,30 +155,56 @@ public class GLGUI extends GLFWApp implements GUI {
     }
 
     /**
-     * Enters mainloop for UI window
+     * Enters mainloop for UI window.
+     * The view is handed to a worker to be graphed whenever it changes, and the loop sleeps until there are new
+     * events or frames. The input handled by the callbacks is only read on this thread, and the worker is only
+     * given immutable snapshots of it.
      *
      * @param window handle of the window
      */
     private void startLoop(long window) {
-        int[] pixels;
         while (!glfwWindowShouldClose(window)) {
             float[] newO = {prevMouseX + changeInMouseX, prevMouseY + changeInMouseY};
             guiHelper.setGraphPos(newO);
             guiHelper.setGraphScale(graphScale);
-            pixels = guiHelper.drawGraph();
-            imgToTex(pixels, this.imgDim, this.imgDim);
+            guiHelper.setDragging(dragMove);
+            guiHelper.update();
+
+            RenderWorker.Frame frame = guiHelper.takeFrame();
+            if (frame != null && frame.getError() != null) {
+                // the last image stays up
+                System.err.println("Error graphing " + frame.getView());
+                frame.getError().printStackTrace();
+                guiHelper.release(frame);
+            } else if (frame != null) {
+                imgToTex(frame.getPixels(), this.imgDim, this.imgDim);
+                guiHelper.release(frame);
+                refresh = true;
+            }
+            if (refresh) {
+                refresh = false;
 
-            glfwPollEvents();
+                glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
 
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // clear the framebuffer
+                glDrawArrays(GL_TRIANGLES, 0, 6);
 
-            glDrawArrays(GL_TRIANGLES, 0, 6);
+                glfwSwapBuffers(window);
+            }
 
-            glfwSwapBuffers(window);
+            glfwWaitEvents();
         }
+        guiHelper.stop();
         glfwTerminate();
     }
 
+    /**
+     * Asks for the window to be drawn again, when its contents were damaged.
+     * @param window References the window.
+     */
+    private static void refreshCallback(long window) {
+        refresh = true;
+    }
+
 
     /**
      * Track the positions of cursor in the associated window.
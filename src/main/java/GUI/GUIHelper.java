@@ -1,19 +1,67 @@
 package GUI;
 
 import Graphics.Grapher;
+import Graphics.TileCache;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 
 /**
- * A controller for GUI classes
+ * A controller for GUI classes.
+ * It keeps the view the GUI shows, and hands a snapshot of it to a RenderWorker whenever it changes, so that the
+ * graph is only drawn when needed and never on the GUI thread.
  */
-public class GUIHelper {
+public class GUIHelper implements PropertyChangeListener {
+    // The tiles of earlier frames are kept up to this many bytes, so that panning only graphs what comes into view
+    private static final long TILE_CACHE_BYTES = 64L << 20;
+
     public int imgDim;
-    private final Grapher grapher;
+    private final RenderWorker worker;
     private String gType;
+    private float scale;
+    private float[] pos = {0, 0};
+    private boolean dragging;
+    private volatile int generation; // Counts the changes to the expressions
+    private ViewState submitted; // The view last handed to the worker
+    private Runnable onChange = () -> {
+    };
 
 
     public GUIHelper(Grapher g, int dim) {
-        grapher = g;
         imgDim = dim;
+        g.setTileCache(new TileCache(TILE_CACHE_BYTES));
+        g.addObserver(this);
+        worker = new RenderWorker(g, dim);
+    }
+
+    /**
+     * Starts drawing graphs in the background
+     *
+     * @param onChange Called when there is a new frame or the expressions change, possibly from another thread,
+     *                 e.g. to wake up the GUI
+     */
+    public void start(Runnable onChange) {
+        this.onChange = onChange;
+        worker.start(onChange);
+    }
+
+    /**
+     * Stops drawing graphs
+     */
+    public void stop() {
+        worker.stop();
+    }
+
+    /**
+     * @param event An event denoting that the graph has changed. The scale and position are only changed by the
+     *              RenderWorker, from the views it is given, so only changes to the expressions are new.
+     */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if ("expressions".equals(event.getPropertyName())) {
+            generation++;
+            onChange.run();
+        }
     }
 
     public void setgType(String g) {
@@ -21,14 +69,42 @@ public class GUIHelper {
     }
 
     public void setGraphPos(float[] p) {
-        grapher.setPos(p);
+        pos = p.clone();
     }
 
     public void setGraphScale(float scale) {
-        grapher.setScale(scale);
+        this.scale = scale;
+    }
+
+    /**
+     * @param dragging Whether the graph is being dragged, in which case only quick, coarse images are drawn
+     */
+    public void setDragging(boolean dragging) {
+        this.dragging = dragging;
+    }
+
+    /**
+     * Hands the view to the worker to be drawn, if it has changed since it was last handed over
+     */
+    public void update() {
+        ViewState view = new ViewState(scale, pos[0], pos[1], gType, generation, dragging);
+        if (!view.equals(submitted)) {
+            submitted = view;
+            worker.submit(view);
+        }
+    }
+
+    /**
+     * @return The latest frame drawn since the last call, or null if there is none; see RenderWorker.takeFrame
+     */
+    public RenderWorker.Frame takeFrame() {
+        return worker.takeFrame();
     }
 
-    public int[] drawGraph() {
-        return grapher.graph(imgDim, gType);
+    /**
+     * Hands the buffer of frame back once it has been used
+     */
+    public void release(RenderWorker.Frame frame) {
+        worker.release(frame);
     }
-}
\ No newline at end of file
+}
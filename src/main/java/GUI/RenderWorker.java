@@ -0,0 +1,218 @@
+package GUI;
+
+import Graphics.Grapher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * RenderWorker graphs views on a thread of its own, so that the GUI thread keeps handling input however long an
+ * expression takes to graph.
+ * <p>
+ * The GUI thread submits snapshots of the view, and the worker always graphs the latest one, abandoning a view
+ * as soon as a newer one is submitted. Frames are graphed into one of two buffers: while the GUI thread uploads
+ * one, the worker graphs into the other, and a buffer is only reused once the GUI thread has released it.
+ * <p>
+ * Views that are not cached are graphed progressively, from a pass at 1/8 of the resolution up to the full
+ * resolution, each pass published as a frame; views being dragged only get the coarsest pass.
+ * <p>
+ * A view that fails to graph is published as a frame holding the exception instead, see Frame.getError, and is not
+ * graphed again until another view has been graphed in between.
+ */
+public class RenderWorker {
+    // The steps of the passes views are graphed in, from 1/8 of the resolution to full, see Grapher.graph
+    private static final int[] PASSES = {8, 4, 2, 1};
+    // While dragging only the coarsest pass is graphed, so that the graph keeps up with the mouse
+    private static final int[] DRAG_PASSES = {8};
+
+    private final Grapher grapher;
+    private final int imgDim;
+    private final BlockingQueue<int[]> freeBuffers = new ArrayBlockingQueue<>(2);
+    private final AtomicReference<Frame> ready = new AtomicReference<>();
+    private final Object lock = new Object();
+    private volatile ViewState latest; // The view last submitted
+    private volatile ViewState rendering; // The view being graphed
+    // The view of the last frame published unless it was a preview, and the scale of the last frame published;
+    // only used by the worker
+    private ViewState shown;
+    // The view whose graph last failed, unless another view has been graphed since; only used by the worker
+    private ViewState failed;
+    private float shownScale = Float.NaN;
+    private Runnable onFrame = () -> {
+    };
+    private Thread thread;
+
+    /**
+     * @param grapher the grapher the views are graphed with, which only the worker uses from now on
+     * @param imgDim  the size of the images
+     */
+    public RenderWorker(Grapher grapher, int imgDim) {
+        this.grapher = grapher;
+        this.imgDim = imgDim;
+        freeBuffers.add(new int[imgDim * imgDim]);
+        freeBuffers.add(new int[imgDim * imgDim]);
+        // a view is abandoned between tiles once there is a newer one
+        grapher.setCancellation(() -> latest != rendering);
+    }
+
+    /**
+     * Starts graphing the views submitted
+     *
+     * @param onFrame called on the worker thread whenever a frame is ready, e.g. to wake up the GUI thread
+     */
+    public void start(Runnable onFrame) {
+        this.onFrame = onFrame;
+        thread = new Thread(this::run, "Render worker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops graphing, abandoning the view being graphed
+     */
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Asks for view to be graphed, instead of any view submitted before that is not done yet
+     */
+    public void submit(ViewState view) {
+        synchronized (lock) {
+            latest = view;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return The latest frame graphed since the last call, or null if there is none. Its buffer must be released
+     * once it has been used.
+     */
+    public Frame takeFrame() {
+        return ready.getAndSet(null);
+    }
+
+    /**
+     * Hands the buffer of frame back to the worker to graph into
+     */
+    public void release(Frame frame) {
+        freeBuffers.add(frame.pixels);
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ViewState view;
+                synchronized (lock) {
+                    while (latest == null || latest.equals(shown) || latest.equals(failed)) {
+                        lock.wait();
+                    }
+                    view = latest;
+                }
+                render(view);
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private void render(ViewState view) throws InterruptedException {
+        rendering = view;
+        failed = null;
+        grapher.setPos(view.getOrigin());
+        grapher.setScale(view.getScale());
+        int[] buffer = freeBuffers.take();
+        try {
+            if (grapher.isCached(imgDim, view.getgType())) {
+                publish(new Frame(view, grapher.graph(buffer, imgDim, view.getgType()), false, null));
+            } else if (!view.isDragging() && !Float.isNaN(shownScale) && shownScale != view.getScale()) {
+                // zoomed to a new scale: show the nearest cached scale until the graph is done
+                publish(new Frame(view, grapher.preview(buffer, imgDim, view.getgType()), true, null));
+                shown = null;
+                shownScale = view.getScale();
+                buffer = freeBuffers.take();
+                publish(new Frame(view, grapher.graph(buffer, imgDim, view.getgType()), false, null));
+            } else {
+                int[] passes = view.isDragging() ? DRAG_PASSES : PASSES;
+                for (int i = 0; i < passes.length; i++) {
+                    if (i > 0) {
+                        buffer = freeBuffers.take();
+                    }
+                    int step = passes[i];
+                    publish(new Frame(view, grapher.graph(buffer, imgDim, view.getgType(), step), step > 1, null));
+                    shown = null;
+                    shownScale = view.getScale();
+                }
+            }
+        } catch (CancellationException e) {
+            freeBuffers.add(buffer);
+            return;
+        } catch (RuntimeException e) {
+            // the GUI thread reports it, and the last image it shows stays up
+            publish(new Frame(view, buffer, false, e));
+            failed = view;
+            return;
+        }
+        shown = view;
+        shownScale = view.getScale();
+    }
+
+    /**
+     * Makes frame the one the GUI thread takes next, dropping any frame it has not taken yet
+     */
+    private void publish(Frame frame) {
+        Frame dropped = ready.getAndSet(frame);
+        if (dropped != null) {
+            freeBuffers.add(dropped.pixels);
+        }
+        onFrame.run();
+    }
+
+    /**
+     * A graphed view, in a buffer of the worker
+     */
+    public static final class Frame {
+        private final ViewState view;
+        private final int[] pixels;
+        private final boolean preview;
+        private final RuntimeException error;
+
+        private Frame(ViewState view, int[] pixels, boolean preview, RuntimeException error) {
+            this.view = view;
+            this.pixels = pixels;
+            this.preview = preview;
+            this.error = error;
+        }
+
+        public ViewState getView() {
+            return view;
+        }
+
+        /**
+         * @return The image, which must not be used after the frame is released
+         */
+        public int[] getPixels() {
+            return pixels;
+        }
+
+        /**
+         * @return Whether the frame only previews the view, from what was cached or at a fraction of the resolution,
+         * and the graph is still to come unless the view is being dragged
+         */
+        public boolean isPreview() {
+            return preview;
+        }
+
+        /**
+         * @return The exception graphing the view failed with, in which case the image is not one of the view, or
+         * null if it was graphed
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package GUI;
+
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of what the GUI shows, handed from the GUI thread to the RenderWorker.
+ */
+public final class ViewState {
+    private final float scale;
+    private final float x;
+    private final float y;
+    private final String gType;
+    private final int generation;
+    private final boolean dragging;
+
+    /**
+     * @param scale      the scale of the graph
+     * @param x          the x coordinate of the centre of the graph
+     * @param y          the y coordinate of the centre of the graph
+     * @param gType      the type of graphs
+     * @param generation counts the changes to the expressions, so that views of different expressions differ
+     * @param dragging   whether the view is being dragged, so that it only needs a quick image
+     */
+    public ViewState(float scale, float x, float y, String gType, int generation, boolean dragging) {
+        this.scale = scale;
+        this.x = x;
+        this.y = y;
+        this.gType = gType;
+        this.generation = generation;
+        this.dragging = dragging;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * @return The position of the centre of the graph
+     */
+    public float[] getOrigin() {
+        return new float[]{x, y};
+    }
+
+    public String getgType() {
+        return gType;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public boolean isDragging() {
+        return dragging;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof ViewState)) {
+            return false;
+        }
+        ViewState view = (ViewState) o;
+        return Float.compare(view.scale, scale) == 0 && Float.compare(view.x, x) == 0
+                && Float.compare(view.y, y) == 0 && Objects.equals(view.gType, gType)
+                && view.generation == generation && view.dragging == dragging;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scale, x, y, gType, generation, dragging);
+    }
+
+    @Override
+    public String toString() {
+        return gType + " graph at scale " + scale + " around (" + x + ", " + y + ")";
+    }
+}
@@ -4,6 +4,15 @@ package Graphics;
  * AxesDrawer is responsible for drawing the Axes and the gridlines
  */
 public class AxesDrawer {
+    // The colours of the axes and gridlines, drawn over the graph with the given opacity
+    private static final int X_COLOR = Compositor.withAlpha(0xFF0000, 0.4f);
+    private static final int Y_COLOR = Compositor.withAlpha(0x0044FF, 0.4f);
+    private static final int GRID_COLOR = Compositor.withAlpha(0x888888, 0.2f);
+    private static final int MINOR_COLOR = Compositor.withAlpha(0x888888, 0.08f);
+    // The most major gridlines across the image; there are at least 2/5 as many
+    public static final int MAX_LINES = 20;
+    // Minor gridlines are only drawn at least this many pixels apart
+    private static final int MIN_MINOR_PIXELS = 8;
 
     /**
      * drawAxes draws Axes (mutate)
@@ -23,25 +32,20 @@ public class AxesDrawer {
         int xOrigin = (int) ((-xpos / scale + 0.5f) * w);
         int yOrigin = (int) ((ypos / scale + 0.5f) * h);
 
-        RGBA xColor = new RGBA("FFFF0000");
-        RGBA yColor = new RGBA("FF0044FF");
-
         if ((xOrigin > 0) && (xOrigin < w)) {
             // Y axis
-            for (int y = 0; y < h; y++) {
-                pixels[y * w + xOrigin] = yColor.blend(new RGBA(pixels[y * w + xOrigin]), 0.6f).toInt();
-            }
+            Compositor.blendColumn(pixels, w, h, xOrigin, Y_COLOR);
         }
         if ((yOrigin > 0) && (yOrigin < h)) {
             // X axis
-            for (int x = 0; x < w; x++) {
-                pixels[yOrigin * w + x] = xColor.blend(new RGBA(pixels[yOrigin * w + x]), 0.6f).toInt();
-            }
+            Compositor.blendRow(pixels, w, yOrigin, X_COLOR);
         }
     }
 
     /**
-     * Draws gridlines in our image (mutate).
+     * Draws gridlines in our image (mutate). The major gridlines are spaced by 1, 2 or 5 times a power of 10, so
+     * that there are at most MAX_LINES of them across the image, and minor gridlines divide them further when
+     * they would be far enough apart. The number of lines drawn is bounded at any scale.
      *
      * @param pixels    array of integers representing pixels in image
      * @param w         width of image (in pixels)
@@ -50,41 +54,76 @@ public class AxesDrawer {
      *                  scale, x-position of origin, y-position of origin
      */
     public void drawGrid(int[] pixels, int w, int h, float[] graphData) {
-        RGBA gridColor = new RGBA("FF888888");
-
-        // How far apart the gridlines are
-        float spacing = 0.5f;
-
         float scale = graphData[0];
         float xpos = graphData[1];
         float ypos = graphData[2];
+        if (!(scale > 0) || Float.isInfinite(scale)) {
+            return;
+        }
 
-        // vertical lines
-        float xLeft = (xpos - scale / 2);
-        // round to the nearest spacing
-        xLeft = (float) Math.ceil(xLeft / spacing) * spacing;
-        float xRight = (xpos + scale / 2);
-        for (float xc = xLeft; xc < xRight; xc += spacing) {
-            if (xc == 0) continue;
-            int xp = (int) ((xc - xpos) / scale * w + w / 2);
-            for (int y = 0; y < h; y++) {
-                pixels[y * w + xp] = gridColor.blend(new RGBA(pixels[y * w + xp]), 0.8f).toInt();
-            }
+        // How far apart the gridlines are
+        double spacing = gridSpacing(scale);
+        // 2 is divided into quarters, 1 and 5 into fifths
+        int divisions = Math.round(spacing / Math.pow(10, Math.floor(Math.log10(spacing)))) == 2 ? 4 : 5;
+        double minorSpacing = spacing / divisions;
+
+        // vertical lines, minor ones first so that the major ones are drawn over them
+        if (minorSpacing / scale * w >= MIN_MINOR_PIXELS) {
+            drawLines(pixels, w, h, true, xpos, scale, minorSpacing, divisions, MINOR_COLOR);
+        }
+        drawLines(pixels, w, h, true, xpos, scale, spacing, 0, GRID_COLOR);
+
+        // horizontal lines, y going down the image
+        if (minorSpacing / scale * h >= MIN_MINOR_PIXELS) {
+            drawLines(pixels, w, h, false, -ypos, scale, minorSpacing, divisions, MINOR_COLOR);
         }
+        drawLines(pixels, w, h, false, -ypos, scale, spacing, 0, GRID_COLOR);
+    }
 
-        // horizontal lines
-        ypos = -ypos;
-        float yLeft = (ypos - scale / 2);
-        // round to nearest spacing
-        yLeft = (float) Math.ceil(yLeft / spacing) * spacing;
-        float yRight = (ypos + scale / 2);
-        for (float yc = yLeft; yc < yRight; yc += spacing) {
-            if (yc == 0) continue;
-            int yp = (int) ((yc - ypos) / scale * h + h / 2);
-            for (int x = 0; x < w; x++) {
+    /**
+     * @param scale the width of the image in graphing-space
+     * @return The distance between major gridlines: the least 1, 2 or 5 times a power of 10 with at most
+     * MAX_LINES of them across the width
+     */
+    public static double gridSpacing(float scale) {
+        double least = scale / (double) MAX_LINES;
+        double decade = Math.pow(10, Math.floor(Math.log10(least)));
+        for (int multiple : new int[]{1, 2, 5}) {
+            // allowing for rounding in log10 and pow
+            if (multiple * decade >= least * (1 - 1e-9)) {
+                return multiple * decade;
+            }
+        }
+        return 10 * decade;
+    }
 
-                pixels[yp * w + x] = gridColor.blend(new RGBA(pixels[yp * w + x]), 0.8f).toInt();
+    /**
+     * Draws the gridlines at the multiples of spacing across the image, apart from the axis. Each line is found
+     * from its index, so that lines far from the origin are not moved by accumulated rounding.
+     *
+     * @param vertical whether the lines are columns, at x coordinates, rather than rows
+     * @param centre   the coordinate of the centre of the image across the lines, going right or down
+     * @param skip     lines whose index is a multiple of skip are left out, or 0 to draw them all
+     */
+    private void drawLines(int[] pixels, int w, int h, boolean vertical, float centre, float scale, double spacing,
+                           int skip, int colour) {
+        int n = vertical ? w : h;
+        // the lines from first up to but not including last are across the image
+        long first = (long) Math.ceil((centre - scale / 2.0) / spacing);
+        long last = (long) Math.ceil((centre + scale / 2.0) / spacing);
+        if ((double) last - first > n) {
+            // only when spacing is lost in the rounding of centre
+            return;
+        }
+        for (long i = first; i < last; i++) {
+            if (i == 0 || (skip > 0 && i % skip == 0)) continue;
+            int p = (int) ((i * spacing - centre) / scale * n + n / 2);
+            if (p < 0 || p >= n) continue;
+            if (vertical) {
+                Compositor.blendColumn(pixels, w, h, p, colour);
+            } else {
+                Compositor.blendRow(pixels, w, p, colour);
             }
         }
     }
-}
\ No newline at end of file
+}
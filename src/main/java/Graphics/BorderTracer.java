@@ -0,0 +1,176 @@
+package Graphics;
+
+/**
+ * BorderTracer samples escape time functions such as mandel on rectangles of pixels by the Mariani-Silver
+ * algorithm: the border of a rectangle is sampled first, and if every pixel on it has the same value the pixels
+ * inside are given that value without being sampled. Otherwise the rectangle is halved across its longer side and
+ * each half is traced the same way, sharing the line between them, until rectangles are small enough to sample.
+ * <p>
+ * Regions of the same escape time of mandel, julia and multibrot with a whole power are connected and have no holes
+ * that are not inside the set, so a rectangle whose border has a single escape time holds nothing else, down to what
+ * the pixels resolve. The large uniform regions inside the set and far from it then cost little more than their
+ * outline. This does not hold for ship or for fractional powers, which must be sampled at every pixel instead.
+ */
+final class BorderTracer {
+    // Rectangles with at most this many pixels inside across are sampled rather than divided further
+    private static final int MIN_SIZE = 4;
+
+    private final Evaluatable func;
+    // The graphing-space coordinates of the columns and rows of the image
+    private final float[] xs;
+    private final float[] ys;
+
+    // The tile being traced: its corner in the image, its width, and its values row by row once known
+    private int x0;
+    private int y0;
+    private int w;
+    private float[] values = new float[0];
+    private boolean[] known = new boolean[0];
+
+    // Points waiting to be sampled together, and where their values go in values
+    private float[] batchXs = new float[0];
+    private float[] batchYs = new float[0];
+    private float[] batchValues = new float[0];
+    private int[] batchIndices = new int[0];
+    private int batchCount;
+    private int evaluations;
+
+    /**
+     * @param func the function to be sampled, only used on one thread
+     * @param xs   the graphing-space x coordinates of the columns of the image
+     * @param ys   the graphing-space y coordinates of the rows of the image
+     */
+    BorderTracer(Evaluatable func, float[] xs, float[] ys) {
+        this.func = func;
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * @return The number of points sampled since the tracer was created
+     */
+    int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Finds the values of the pixels from (x0, y0) up to but excluding (x1, y1)
+     *
+     * @return The values, row by row, x1 - x0 to a row; only valid until the next call
+     */
+    float[] trace(int x0, int y0, int x1, int y1) {
+        this.x0 = x0;
+        this.y0 = y0;
+        this.w = x1 - x0;
+        int h = y1 - y0;
+        if (values.length < w * h) {
+            values = new float[w * h];
+            known = new boolean[w * h];
+        } else {
+            java.util.Arrays.fill(known, 0, w * h, false);
+        }
+        // the border and the inside of a rectangle take at most this many points at once
+        int batch = 2 * (w + h) + (MIN_SIZE + 1) * (MIN_SIZE + 1);
+        if (batchXs.length < batch) {
+            batchXs = new float[batch];
+            batchYs = new float[batch];
+            batchValues = new float[batch];
+            batchIndices = new int[batch];
+        }
+        if (w > 0 && h > 0) {
+            rectangle(0, 0, w - 1, h - 1);
+        }
+        return values;
+    }
+
+    /**
+     * Finds the values of the rectangle of pixels from (left, top) to (right, bottom) inclusive, relative to the tile
+     */
+    private void rectangle(int left, int top, int right, int bottom) {
+        for (int x = left; x <= right; x++) {
+            queue(x, top);
+            queue(x, bottom);
+        }
+        for (int y = top + 1; y < bottom; y++) {
+            queue(left, y);
+            queue(right, y);
+        }
+        flush();
+        if (right - left < 2 || bottom - top < 2) {
+            // nothing inside
+            return;
+        }
+
+        if (uniformBorder(left, top, right, bottom)) {
+            float value = values[top * w + left];
+            for (int y = top + 1; y < bottom; y++) {
+                for (int x = left + 1; x < right; x++) {
+                    values[y * w + x] = value;
+                    known[y * w + x] = true;
+                }
+            }
+        } else if (right - left <= MIN_SIZE + 1 && bottom - top <= MIN_SIZE + 1) {
+            for (int y = top + 1; y < bottom; y++) {
+                for (int x = left + 1; x < right; x++) {
+                    queue(x, y);
+                }
+            }
+            flush();
+        } else if (right - left >= bottom - top) {
+            int mid = (left + right) >>> 1;
+            rectangle(left, top, mid, bottom);
+            rectangle(mid, top, right, bottom);
+        } else {
+            int mid = (top + bottom) >>> 1;
+            rectangle(left, top, right, mid);
+            rectangle(left, mid, right, bottom);
+        }
+    }
+
+    /**
+     * @return Whether every pixel on the border of the rectangle has the same value, NaN included
+     */
+    private boolean uniformBorder(int left, int top, int right, int bottom) {
+        int bits = Float.floatToIntBits(values[top * w + left]);
+        for (int x = left; x <= right; x++) {
+            if (Float.floatToIntBits(values[top * w + x]) != bits
+                    || Float.floatToIntBits(values[bottom * w + x]) != bits) {
+                return false;
+            }
+        }
+        for (int y = top + 1; y < bottom; y++) {
+            if (Float.floatToIntBits(values[y * w + left]) != bits
+                    || Float.floatToIntBits(values[y * w + right]) != bits) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the pixel at (x, y) relative to the tile to the next batch, unless its value is known or queued
+     */
+    private void queue(int x, int y) {
+        int index = y * w + x;
+        if (!known[index]) {
+            known[index] = true;
+            batchXs[batchCount] = xs[x0 + x];
+            batchYs[batchCount] = ys[y0 + y];
+            batchIndices[batchCount++] = index;
+        }
+    }
+
+    /**
+     * Samples the batch of points queued
+     */
+    private void flush() {
+        if (batchCount > 0) {
+            func.evaluate(batchXs, batchYs, batchValues, batchCount);
+            for (int i = 0; i < batchCount; i++) {
+                values[batchIndices[i]] = batchValues[i];
+            }
+            evaluations += batchCount;
+            batchCount = 0;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package Graphics;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Colormap colours the values of GRAYSCALE graphs from a table of packed ARGB colours, so that colouring a pixel
+ * is an index into the table.
+ * <p>
+ * A value is first mapped by the transfer function, and the result t is looked up at index (int) (255 t) of the
+ * table of 256 colours, which runs from the colour for 0 to the colour for 1. Results outside of [0, 1] are clamped,
+ * and NaN takes the colour for 0. Cyclic colormaps instead wrap t around, looking up its fractional part f at index
+ * (int) (256 f), as their colour for 1 is the one for 0.
+ */
+public final class Colormap {
+    // The number of colours in a table
+    private static final int SIZE = 256;
+
+    /**
+     * Maps the values of a graph to where their colour is in the table, from 0 to 1
+     */
+    public enum Transfer {
+        LINEAR, SQRT,
+        // Spreads out the values near 0, mapping 15 / 255 half way
+        LOG;
+
+        double apply(double value) {
+            switch (this) {
+                case SQRT:
+                    return Math.sqrt(value);
+                case LOG:
+                    return Math.log1p((SIZE - 1) * value) / Math.log(SIZE);
+                default:
+                    return value;
+            }
+        }
+    }
+
+    public static final Colormap GRAYSCALE = new Colormap(false, Transfer.SQRT, 0x000000, 0xFFFFFF);
+    // Perceptually uniform from dark blue through green to yellow, after matplotlib's viridis
+    public static final Colormap VIRIDIS = new Colormap(false, Transfer.SQRT, 0x440154, 0x482878, 0x3E4989,
+            0x31688E, 0x26828E, 0x1F9E89, 0x35B779, 0x6ECE58, 0xFDE725);
+    // From blue through light gray at 1/2 to red, for values either side of a middle
+    public static final Colormap DIVERGING = new Colormap(false, Transfer.LINEAR, 0x3B4CC0, 0x8DB0FE, 0xDDDDDD,
+            0xF49A7B, 0xB40426);
+    // Ends where it starts, for values that wrap around such as angles
+    public static final Colormap CYCLIC = new Colormap(true, Transfer.LINEAR, 0xE2D9E2, 0x5A7AB8, 0x2F1436,
+            0xB0513D, 0xE2D9E2);
+
+    private static final Map<String, Colormap> NAMED = Map.of(
+            "grayscale", GRAYSCALE,
+            "viridis", VIRIDIS,
+            "diverging", DIVERGING,
+            "cyclic", CYCLIC);
+
+    private final int[] table;
+    private final boolean cyclic;
+    private final Transfer transfer;
+
+    /**
+     * @param cyclic   whether values past either end wrap around rather than being clamped
+     * @param transfer the transfer function
+     * @param stops    RGB colours spaced evenly from 0 to 1, which the table interpolates, at least two
+     */
+    public Colormap(boolean cyclic, Transfer transfer, int... stops) {
+        if (stops.length < 2) {
+            throw new IllegalArgumentException("A colormap needs a colour at either end");
+        }
+        this.cyclic = cyclic;
+        this.transfer = transfer;
+        this.table = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            double t = i / (double) (SIZE - 1) * (stops.length - 1);
+            int stop = Math.min((int) t, stops.length - 2);
+            table[i] = 0xFF000000 | interpolate(stops[stop], stops[stop + 1], t - stop);
+        }
+    }
+
+    private Colormap(Colormap colormap, Transfer transfer) {
+        this.table = colormap.table;
+        this.cyclic = colormap.cyclic;
+        this.transfer = transfer;
+    }
+
+    /**
+     * @param name one of grayscale, viridis, diverging and cyclic, in any case
+     * @return The colormap called name
+     */
+    public static Colormap forName(String name) {
+        Colormap colormap = NAMED.get(name.toLowerCase(Locale.ROOT));
+        if (colormap == null) {
+            throw new IllegalArgumentException("There is no colormap called " + name);
+        }
+        return colormap;
+    }
+
+    /**
+     * @return The same colours, mapped from values by transfer instead
+     */
+    public Colormap withTransfer(Transfer transfer) {
+        return new Colormap(this, transfer);
+    }
+
+    public Transfer getTransfer() {
+        return transfer;
+    }
+
+    /**
+     * @param value the value of a graph at a pixel
+     * @return The ARGB colour of value
+     */
+    public int colour(float value) {
+        double t = transfer.apply(value);
+        if (cyclic) {
+            // the mask keeps results just below a whole number, which may round up to SIZE, in the table
+            return table[(int) (SIZE * (t - Math.floor(t))) & (SIZE - 1)];
+        }
+        // (int) takes NaN to 0
+        int index = (int) ((SIZE - 1) * t);
+        return table[Math.max(0, Math.min(SIZE - 1, index))];
+    }
+
+    /**
+     * @return The RGB colour the proportion f of the way from RGB colours a to b, each channel rounded
+     */
+    private static int interpolate(int a, int b, double f) {
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int from = a >> shift & 255;
+            int to = b >> shift & 255;
+            rgb |= (int) Math.round(from + (to - from) * f) << shift;
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,164 @@
+package Graphics;
+
+/**
+ * Compositor blends packed ARGB colours onto images of them in place, with no objects per pixel.
+ * <p>
+ * Colours are not premultiplied, and a colour is drawn over a pixel by the usual "over" operator: an alpha of a
+ * covers the proportion a / 255 of the pixel. Over an opaque pixel, each channel is blended in float and rounded
+ * down, as RGBA.blend did, so images come out exactly as they did when they were drawn through RGBA. Layers of a
+ * whole image are composited the same way, see composite, so an image can be built from several layers drawn
+ * separately.
+ */
+public final class Compositor {
+
+    private Compositor() {
+    }
+
+    /**
+     * @param rgb     the colour, whose alpha is ignored
+     * @param opacity how much of a pixel the colour covers, from 0 to 1
+     * @return The colour rgb with alpha opacity
+     */
+    public static int withAlpha(int rgb, float opacity) {
+        int alpha = Math.round(Math.max(0, Math.min(1, opacity)) * 255);
+        return alpha << 24 | rgb & 0xFFFFFF;
+    }
+
+    /**
+     * @param src the colour drawn
+     * @param dst the colour drawn over
+     * @return The colour of src drawn over dst
+     */
+    public static int over(int src, int dst) {
+        int sa = src >>> 24;
+        if (sa == 255) {
+            return src;
+        } else if (sa == 0) {
+            return dst;
+        }
+        int da = dst >>> 24;
+        if (da == 255) {
+            return mix(src, dst, 1 - sa / 255f);
+        }
+        // dst lets some of what is under it through, which only the proportion da / 255 of it covers
+        int covered = da * (255 - sa);
+        int outA = sa * 255 + covered; // 255 times the alpha of the result
+        if (outA == 0) {
+            return 0;
+        }
+        int colour = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int sc = src >> shift & 255;
+            int dc = dst >> shift & 255;
+            colour |= (sc * sa * 255 + dc * covered + outA / 2) / outA << shift;
+        }
+        return (outA + 127) / 255 << 24 | colour;
+    }
+
+    /**
+     * Draws rgb over dst with the given opacity, which over an opaque pixel is not rounded to an 8-bit alpha first
+     *
+     * @param rgb     the colour drawn, whose alpha is ignored
+     * @param opacity how much of the pixel the colour covers, from 0 to 1
+     * @param dst     the colour drawn over
+     * @return The colour of rgb drawn over dst
+     */
+    public static int over(int rgb, float opacity, int dst) {
+        if (dst >>> 24 == 255 && opacity > 0) {
+            return mix(rgb, dst, 1 - Math.min(1, opacity));
+        }
+        return over(withAlpha(rgb, opacity), dst);
+    }
+
+    /**
+     * Draws colour over count pixels from start on, stride apart, e.g. stride 1 for a row and the width of the
+     * image for a column
+     *
+     * @param pixels array representing an ARGB image
+     * @param start  index of the first pixel
+     * @param count  the number of pixels
+     * @param stride the distance between the indices of consecutive pixels
+     * @param colour the ARGB colour drawn
+     */
+    public static void blendSpan(int[] pixels, int start, int count, int stride, int colour) {
+        int sa = colour >>> 24;
+        if (sa == 0 || count <= 0) {
+            return;
+        }
+        int end = start + count * stride;
+        if (sa == 255) {
+            for (int i = start; i != end; i += stride) {
+                pixels[i] = colour;
+            }
+            return;
+        }
+        float rest = 1 - sa / 255f;
+        // images are mostly runs of one colour, so the last pixel blended is often blended again
+        int lastIn = ~pixels[start];
+        int lastOut = 0;
+        for (int i = start; i != end; i += stride) {
+            int dst = pixels[i];
+            if (dst != lastIn) {
+                lastIn = dst;
+                if (dst >>> 24 == 255) {
+                    lastOut = mix(colour, dst, rest);
+                } else {
+                    lastOut = over(colour, dst);
+                }
+            }
+            pixels[i] = lastOut;
+        }
+    }
+
+    /**
+     * Draws colour over row y of an image
+     *
+     * @param pixels array representing an ARGB image of dimensions (w,h)
+     * @param w      width of the image represented by pixels
+     */
+    public static void blendRow(int[] pixels, int w, int y, int colour) {
+        blendSpan(pixels, y * w, w, 1, colour);
+    }
+
+    /**
+     * Draws colour over column x of an image
+     *
+     * @param pixels array representing an ARGB image of dimensions (w,h)
+     * @param w      width of the image represented by pixels
+     * @param h      height of the image represented by pixels
+     */
+    public static void blendColumn(int[] pixels, int w, int h, int x, int colour) {
+        blendSpan(pixels, x, h, w, colour);
+    }
+
+    /**
+     * Draws a layer over the first count pixels of an image, pixel by pixel
+     *
+     * @param pixels array representing an ARGB image
+     * @param layer  array representing an ARGB image drawn over it, transparent where it draws nothing
+     * @param count  the number of pixels
+     */
+    public static void composite(int[] pixels, int[] layer, int count) {
+        for (int i = 0; i < count; i++) {
+            int src = layer[i];
+            if (src >>> 24 != 0) {
+                pixels[i] = over(src, pixels[i]);
+            }
+        }
+    }
+
+    /**
+     * Draws the colour of src over an opaque pixel in the same float operations as RGBA.blend
+     *
+     * @param rest the proportion of dst that shows through, 1 - alpha / 255 for an alpha of src
+     * @return The opaque colour rest of the way from src to dst, each channel rounded down
+     */
+    private static int mix(int src, int dst, float rest) {
+        float share = 1 - rest;
+        int colour = 0xFF000000;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            colour |= (int) ((src >> shift & 255) * share + (dst >> shift & 255) * rest) << shift;
+        }
+        return colour;
+    }
+}
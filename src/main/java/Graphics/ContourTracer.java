@@ -0,0 +1,296 @@
+package Graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ContourTracer finds the curves where a function changes sign with marching squares, as connected polylines.
+ * <p>
+ * The function is sampled on a grid of points over the graphed square, which can be much coarser than the image
+ * the curves are drawn on. Each cell of the grid whose corners change sign holds one piece of the curve (two at
+ * saddles, told apart by the value at the centre), between the points where the curve crosses the cell's edges.
+ * The crossings are interpolated linearly between the samples and then refined along the edge, with Newton's
+ * method when the gradient is known and regula falsi otherwise, so the curves are placed to well under a pixel.
+ * <p>
+ * Like ImplicitGrapher, the curve separates the points where the function is positive from the rest, and cells
+ * with an undefined corner are left out.
+ */
+public class ContourTracer {
+    // The number of times each crossing is refined
+    private static final int REFINE_STEPS = 4;
+
+    private boolean refine = true;
+
+    // Buffers kept between calls, as fine grids would otherwise allocate megabytes each time
+    private float[] values = new float[0];
+    private int[] links = new int[0]; // all -1 between calls
+    private boolean[] visited = new boolean[0]; // all false between calls
+    private int[] joined = new int[64];
+
+    /**
+     * @param refine Whether crossings are refined by evaluating the function along the edge, or only linearly
+     *               interpolated between the samples
+     */
+    public void setRefine(boolean refine) {
+        this.refine = refine;
+    }
+
+    public boolean isRefining() {
+        return refine;
+    }
+
+    /**
+     * @param func      the function whose curve is traced
+     * @param gradient  the same function, used to refine crossings with Newton's method, or null
+     * @param graphData array of {scale, x position, y position}
+     * @param samples   the number of cells the grid has across and down, at least 1
+     * @return The pieces of the curve, in graphing-space coordinates
+     */
+    public List<Polyline> trace(Evaluatable func, Differentiable gradient, float[] graphData, int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("Contours need at least one cell to be traced on");
+        }
+        return new Trace(func, gradient, graphData, samples).polylines();
+    }
+
+    /**
+     * The state of a single call to trace
+     */
+    private final class Trace {
+        private final Evaluatable func;
+        private final Differentiable gradient;
+        private final int n; // cells across, so there are n + 1 points across
+        private final float[] xs;
+        private final float[] ys;
+        // Values holds the value at point (i, j) at index j * (n + 1) + i.
+        // Edges are numbered horizontal ones first, (i, j) to (i + 1, j) at j * n + i, then vertical ones,
+        // (i, j) to (i, j + 1) at verticalStart + j * (n + 1) + i. Links holds the two edges joined to each edge by
+        // a piece of the curve, -1 if none; an edge is shared by two cells so it is joined to at most two others.
+        private final int verticalStart;
+        // The number of edges in joined, the edges with a link in the order they were first joined
+        private int joinedCount;
+
+        private Trace(Evaluatable func, Differentiable gradient, float[] graphData, int n) {
+            this.func = func;
+            this.gradient = gradient;
+            this.n = n;
+            float scale = graphData[0];
+            float xpos = graphData[1];
+            float ypos = graphData[2];
+            xs = new float[n + 1];
+            ys = new float[n + 1];
+            for (int i = 0; i <= n; i++) {
+                xs[i] = (i / (float) n - 0.5f) * scale + xpos;
+                ys[i] = -(i / (float) n - 0.5f) * scale + ypos;
+            }
+            if (values.length < (n + 1) * (n + 1)) {
+                values = new float[(n + 1) * (n + 1)];
+            }
+            float[] rowYs = new float[n + 1];
+            float[] rowValues = new float[n + 1];
+            for (int j = 0; j <= n; j++) {
+                Arrays.fill(rowYs, ys[j]);
+                func.evaluate(xs, rowYs, rowValues, n + 1);
+                System.arraycopy(rowValues, 0, values, j * (n + 1), n + 1);
+            }
+
+            verticalStart = (n + 1) * n;
+            int edges = 2 * verticalStart;
+            if (visited.length < edges) {
+                visited = new boolean[edges];
+                links = new int[2 * edges];
+                Arrays.fill(links, -1);
+            }
+        }
+
+        private float value(int i, int j) {
+            return values[j * (n + 1) + i];
+        }
+
+        private List<Polyline> polylines() {
+            for (int j = 0; j < n; j++) {
+                for (int i = 0; i < n; i++) {
+                    march(i, j);
+                }
+            }
+            List<Polyline> polylines = new ArrayList<>();
+            // open pieces start at an edge joined on one side only, at the border or next to undefined cells
+            for (int k = 0; k < joinedCount; k++) {
+                int edge = joined[k];
+                if (!visited[edge] && links[2 * edge + 1] < 0) {
+                    polylines.add(follow(edge, false));
+                }
+            }
+            // what is left are loops
+            for (int k = 0; k < joinedCount; k++) {
+                if (!visited[joined[k]]) {
+                    polylines.add(follow(joined[k], true));
+                }
+            }
+            for (int k = 0; k < joinedCount; k++) {
+                int edge = joined[k];
+                links[2 * edge] = -1;
+                links[2 * edge + 1] = -1;
+                visited[edge] = false;
+            }
+            return polylines;
+        }
+
+        /**
+         * Joins the crossings on the edges of cell (i, j), whose top left corner is point (i, j)
+         */
+        private void march(int i, int j) {
+            float topLeft = value(i, j);
+            float topRight = value(i + 1, j);
+            float bottomLeft = value(i, j + 1);
+            float bottomRight = value(i + 1, j + 1);
+            boolean tl = topLeft > 0;
+            boolean tr = topRight > 0;
+            boolean bl = bottomLeft > 0;
+            boolean br = bottomRight > 0;
+            if ((tl == tr && tr == bl && bl == br) || Float.isNaN(topLeft + topRight + bottomLeft + bottomRight)) {
+                // most cells are not crossed at all
+                return;
+            }
+            int top = j * n + i;
+            int bottom = (j + 1) * n + i;
+            int left = verticalStart + j * (n + 1) + i;
+            int right = left + 1;
+
+            if (tl == br && tr == bl && tl != tr) {
+                // a saddle: the corners on the side of the centre are connected through it
+                boolean centre = (topLeft + topRight + bottomLeft + bottomRight) / 4 > 0;
+                if (centre == tl) {
+                    join(top, right);
+                    join(left, bottom);
+                } else {
+                    join(left, top);
+                    join(right, bottom);
+                }
+                return;
+            }
+            // otherwise one corner is on the other side from the rest, or two neighbouring corners are
+            if (tl != tr) {
+                join(top, tl != bl ? left : tr != br ? right : bottom);
+            } else if (tl != bl) {
+                join(left, bl != br ? bottom : right);
+            } else {
+                join(right, bottom);
+            }
+        }
+
+        private void join(int a, int b) {
+            link(a, b);
+            link(b, a);
+        }
+
+        private void link(int from, int to) {
+            if (links[2 * from] >= 0) {
+                links[2 * from + 1] = to;
+                return;
+            }
+            links[2 * from] = to;
+            if (joinedCount == joined.length) {
+                joined = Arrays.copyOf(joined, 2 * joinedCount);
+            }
+            joined[joinedCount++] = from;
+        }
+
+        /**
+         * @return The polyline through start, which is one of its ends unless closed
+         */
+        private Polyline follow(int start, boolean closed) {
+            float[] px = new float[16];
+            float[] py = new float[16];
+            int count = 0;
+            int previous = -1;
+            int edge = start;
+            while (edge >= 0 && !visited[edge]) {
+                visited[edge] = true;
+                if (count == px.length) {
+                    px = Arrays.copyOf(px, 2 * count);
+                    py = Arrays.copyOf(py, 2 * count);
+                }
+                cross(edge, px, py, count++);
+                int next = links[2 * edge] != previous ? links[2 * edge] : links[2 * edge + 1];
+                previous = edge;
+                edge = next;
+            }
+            return new Polyline(Arrays.copyOf(px, count), Arrays.copyOf(py, count), closed);
+        }
+
+        /**
+         * Computes the crossing on edge into px and py at index
+         */
+        private void cross(int edge, float[] px, float[] py, int index) {
+            int i0;
+            int j0;
+            int i1;
+            int j1;
+            if (edge < verticalStart) {
+                i0 = edge % n;
+                j0 = edge / n;
+                i1 = i0 + 1;
+                j1 = j0;
+            } else {
+                i0 = (edge - verticalStart) % (n + 1);
+                j0 = (edge - verticalStart) / (n + 1);
+                i1 = i0;
+                j1 = j0 + 1;
+            }
+            float x0 = xs[i0];
+            float y0 = ys[j0];
+            float dx = xs[i1] - x0;
+            float dy = ys[j1] - y0;
+            float t = crossing(x0, y0, dx, dy, value(i0, j0), value(i1, j1));
+            px[index] = x0 + t * dx;
+            py[index] = y0 + t * dy;
+        }
+
+        /**
+         * @return How far along the edge from (x0, y0) to (x0 + dx, y0 + dy) the function changes sign, between
+         * 0 and 1
+         */
+        private float crossing(float x0, float y0, float dx, float dy, float f0, float f1) {
+            double lo = 0;
+            double hi = 1;
+            double fLo = f0;
+            double fHi = f1;
+            double t = f0 / (f0 - (double) f1);
+            if (!refine) {
+                return (float) t;
+            }
+            for (int step = 0; step < REFINE_STEPS; step++) {
+                float x = (float) (x0 + t * dx);
+                float y = (float) (y0 + t * dy);
+                double f;
+                double slope = Double.NaN;
+                if (gradient != null) {
+                    Dual dual = gradient.evaluateDual(x, y);
+                    f = dual.getValue();
+                    slope = dual.getDx() * dx + dual.getDy() * dy;
+                } else {
+                    f = func.evaluate(x, y);
+                }
+                if (f == 0 || Double.isNaN(f)) {
+                    break;
+                }
+                if ((f > 0) == (fLo > 0)) {
+                    lo = t;
+                    fLo = f;
+                } else {
+                    hi = t;
+                    fHi = f;
+                }
+                double next = t - f / slope;
+                if (!(next > lo && next < hi)) {
+                    // no gradient, or Newton's step leaves the bracket
+                    next = lo - fLo * (hi - lo) / (fHi - fLo);
+                }
+                t = next;
+            }
+            return (float) Math.max(0, Math.min(1, t));
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package Graphics;
+
+/**
+ * This is an interface for expressions whose gradient can be evaluated along with their value
+ * implemented by RealValuedExpression
+ */
+
+public interface Differentiable {
+
+    /**
+     * @param x a variable
+     * @param y another variable
+     * @return f(x, y) together with its gradient, see Dual
+     */
+    Dual evaluateDual(float x, float y);
+
+    /**
+     * Estimates the distance from (x, y) to the curve f = 0 by following the gradient in a straight line,
+     * which is accurate close to the curve.
+     *
+     * @param x a variable
+     * @param y another variable
+     * @return |f| / |grad f| at (x, y), NaN if f is undefined there
+     */
+    default float distanceEstimate(float x, float y) {
+        Dual f = evaluateDual(x, y);
+        return (float) (Math.abs(f.getValue()) / Math.hypot(f.getDx(), f.getDy()));
+    }
+}
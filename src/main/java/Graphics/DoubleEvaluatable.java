@@ -0,0 +1,31 @@
+package Graphics;
+
+/**
+ * This is an interface for expressions evaluated in double precision, implemented by RealValuedExpression.
+ * Graphs of views smaller than float can resolve, about 1e-4 across at distances about 1 from the origin,
+ * are sampled through it, see Grapher.setDoublePrecision
+ */
+
+public interface DoubleEvaluatable {
+
+    /**
+     * @param x a variable
+     * @param y another variable
+     * @return f(x, y)
+     */
+    double evaluate(double x, double y);
+
+    /**
+     * Evaluates f at n points at once; the values must be the same as those of evaluate(x, y).
+     *
+     * @param xs  the x coordinates of the points
+     * @param ys  the y coordinates of the points
+     * @param out receives f(xs[i], ys[i]) at index i
+     * @param n   the number of points
+     */
+    default void evaluate(double[] xs, double[] ys, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = evaluate(xs[i], ys[i]);
+        }
+    }
+}
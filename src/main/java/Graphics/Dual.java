@@ -0,0 +1,174 @@
+package Graphics;
+
+import java.io.Serializable;
+
+/**
+ * A Dual is the value of an expression at a point together with its gradient there, the derivatives with respect
+ * to x, y and z. Expressions evaluated on Duals apply the chain rule as they go (forward-mode automatic
+ * differentiation), so the gradient is exact up to rounding and costs a single pass.
+ * <p>
+ * The value is computed exactly like the scalar evaluators compute it, so it is the same float.
+ * Duals are Serializable as NumberExpressions, which are saved with Axes, keep theirs.
+ */
+public final class Dual implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final Dual UNDEFINED = new Dual(Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+
+    private final float value;
+    private final float dx;
+    private final float dy;
+    private final float dz;
+
+    private Dual(float value, float dx, float dy, float dz) {
+        this.value = value;
+        this.dx = dx;
+        this.dy = dy;
+        this.dz = dz;
+    }
+
+    /**
+     * @param value A value that does not depend on the variables
+     * @return The value with a gradient of 0
+     */
+    public static Dual constant(float value) {
+        return new Dual(value, 0, 0, 0);
+    }
+
+    /**
+     * @param value The value of the variable
+     * @param slot  The slot of the variable, see Constants.getVariableSlot
+     * @return The variable, whose derivative with respect to itself is 1
+     */
+    public static Dual variable(float value, int slot) {
+        return new Dual(value, slot == 0 ? 1 : 0, slot == 1 ? 1 : 0, slot == 2 ? 1 : 0);
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public float getDx() {
+        return dx;
+    }
+
+    public float getDy() {
+        return dy;
+    }
+
+    public float getDz() {
+        return dz;
+    }
+
+    /**
+     * @param derivative The derivative of the outer function at value
+     * @param newValue   The value of the outer function
+     * @return The outer function applied to this, by the chain rule
+     */
+    private Dual chain(float newValue, double derivative) {
+        if (dx == 0 && dy == 0 && dz == 0) {
+            // e.g. sqrt(0), whose infinite derivative would make 0 * infinity = NaN
+            return constant(newValue);
+        }
+        float d = (float) derivative;
+        return new Dual(newValue, d * dx, d * dy, d * dz);
+    }
+
+    public Dual add(Dual other) {
+        return new Dual(value + other.value, dx + other.dx, dy + other.dy, dz + other.dz);
+    }
+
+    public Dual sub(Dual other) {
+        return new Dual(value - other.value, dx - other.dx, dy - other.dy, dz - other.dz);
+    }
+
+    public Dual mul(Dual other) {
+        return new Dual(value * other.value,
+                dx * other.value + value * other.dx,
+                dy * other.value + value * other.dy,
+                dz * other.value + value * other.dz);
+    }
+
+    public Dual div(Dual other) {
+        float quotient = value / other.value;
+        return new Dual(quotient,
+                (dx - quotient * other.dx) / other.value,
+                (dy - quotient * other.dy) / other.value,
+                (dz - quotient * other.dz) / other.value);
+    }
+
+    public Dual pow(Dual exponent) {
+        float power = (float) Math.pow(value, exponent.value);
+        // d(a^b) = b a^(b-1) da + a^b ln(a) db, where the second term is left out for constant exponents so that
+        // negative bases still get a derivative
+        double base = exponent.value * Math.pow(value, exponent.value - 1);
+        boolean constantExponent = exponent.dx == 0 && exponent.dy == 0 && exponent.dz == 0;
+        double log = constantExponent ? 0 : power * Math.log(value);
+        return new Dual(power,
+                (float) (base * dx + log * exponent.dx),
+                (float) (base * dy + log * exponent.dy),
+                (float) (base * dz + log * exponent.dz));
+    }
+
+    public Dual max(Dual other) {
+        return pick(Math.max(value, other.value), other);
+    }
+
+    public Dual min(Dual other) {
+        return pick(Math.min(value, other.value), other);
+    }
+
+    /**
+     * @return Whichever of this and other Math.max or Math.min picked, telling 0 and -0 apart
+     */
+    private Dual pick(float picked, Dual other) {
+        if (Float.floatToRawIntBits(picked) == Float.floatToRawIntBits(value)) {
+            return this;
+        }
+        return Float.floatToRawIntBits(picked) == Float.floatToRawIntBits(other.value) ? other : UNDEFINED;
+    }
+
+    public Dual cos() {
+        return chain((float) Math.cos(value), -Math.sin(value));
+    }
+
+    public Dual sin() {
+        return chain((float) Math.sin(value), Math.cos(value));
+    }
+
+    public Dual tan() {
+        double cos = Math.cos(value);
+        return chain((float) Math.tan(value), 1 / (cos * cos));
+    }
+
+    public Dual sqrt() {
+        double sqrt = Math.sqrt(value);
+        return chain((float) sqrt, 0.5 / sqrt);
+    }
+
+    public Dual exp() {
+        double exp = Math.exp(value);
+        return chain((float) exp, exp);
+    }
+
+    public Dual log() {
+        return chain((float) Math.log(value), 1.0 / value);
+    }
+
+    public Dual arcsin() {
+        return chain((float) Math.asin(value), 1 / Math.sqrt(1 - (double) value * value));
+    }
+
+    public Dual arccos() {
+        return chain((float) Math.acos(value), -1 / Math.sqrt(1 - (double) value * value));
+    }
+
+    public Dual arctan() {
+        return chain((float) Math.atan(value), 1 / (1 + (double) value * value));
+    }
+
+    @Override
+    public String toString() {
+        return value + " + (" + dx + ", " + dy + ", " + dz + ")";
+    }
+}
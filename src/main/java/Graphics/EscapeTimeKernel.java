@@ -0,0 +1,348 @@
+package Graphics;
+
+/**
+ * EscapeTimeKernel iterates z -> z^2 + c from z = 0 and counts the iterations until z escapes, as mandel does.
+ * The other escape time builtins, julia, ship and multibrot, iterate z in the ways of their Family, through the
+ * same loop.
+ * <p>
+ * Most of the time of a plain loop goes into the points that never escape, which all run to the cap. Two shortcuts
+ * end them early without changing any result:
+ * <ul>
+ *     <li>Points in the main cardioid or the period-2 bulb never escape, which a couple of multiplications tell.</li>
+ *     <li>Points elsewhere in the set mostly fall into a cycle, which Brent's method finds by comparing z with the
+ *     z saved at iterations 1, 2, 4, 8 and so on. Only exact repeats count: once z repeats, the same float
+ *     operations repeat it forever, so it cannot escape.</li>
+ * </ul>
+ * The points the cardioid and bulb tests take are at least as far inside as float rounding reaches, and points
+ * just outside of them take far more than any cap to escape, so the counts are the same as those of the plain
+ * loop.
+ */
+public final class EscapeTimeKernel {
+    // The iterations of the mandel builtin, the same as in the shaders of the GUI
+    public static final int DEFAULT_ITERATIONS = 100;
+    // The most iterations the builtins that are given theirs may take, so that a typo cannot stall graphing
+    public static final int MAX_ITERATIONS = 1 << 16;
+    public static final EscapeTimeKernel MANDEL = new EscapeTimeKernel(DEFAULT_ITERATIONS, false);
+    public static final EscapeTimeKernel SMOOTH_MANDEL = new EscapeTimeKernel(DEFAULT_ITERATIONS, true);
+
+    // z escapes once |z|^2 is greater than this, as in mandel
+    private static final float BAILOUT = 4;
+    // Smooth counts escape at |z| > 16 instead, as the counts are only continuous well past |z| = 2
+    private static final float SMOOTH_BAILOUT = 256;
+    private static final double LOG_SMOOTH_RADIUS = Math.log(16);
+    private static final double LOG_2 = Math.log(2);
+    // Multibrots up to this power are iterated by multiplying z out, which rounds like mandel; higher or
+    // fractional powers go through the polar form of z
+    private static final int MAX_MULTIPLIED_POWER = 16;
+
+    /**
+     * The ways escape time builtins iterate z, until |z| > 2
+     */
+    public enum Family {
+        // z -> z^2 + c from z = 0, with c the point, as mandel
+        MANDEL(0),
+        // z -> z^2 + c from z = the point, with c = a + bi
+        JULIA(2),
+        // z -> (|Re z| + i |Im z|)^2 + c from z = 0, with c the point, the burning ship
+        SHIP(0),
+        // z -> z^a + c from z = 0, with c the point and the power a greater than 1
+        MULTIBROT(1);
+
+        private final int parameterCount;
+
+        Family(int parameterCount) {
+            this.parameterCount = parameterCount;
+        }
+
+        /**
+         * @return The number of the parameters a and b the family uses, in that order
+         */
+        public int getParameterCount() {
+            return parameterCount;
+        }
+    }
+
+    private final int maxIterations;
+    private final boolean smooth;
+
+    /**
+     * @param maxIterations the iterations after which a point is taken not to escape, at least 1
+     * @param smooth        whether evaluate gives the normalized iteration count, which varies continuously,
+     *                      rather than the whole number of iterations
+     */
+    public EscapeTimeKernel(int maxIterations, boolean smooth) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("An escape time needs at least one iteration");
+        }
+        this.maxIterations = maxIterations;
+        this.smooth = smooth;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * @return Whether evaluate gives the normalized iteration count
+     */
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    /**
+     * @return The value of |z|^2 past which z has escaped
+     */
+    double getBailout() {
+        return smooth ? SMOOTH_BAILOUT : BAILOUT;
+    }
+
+    /**
+     * Shared with the renderers that iterate z themselves, so that they give the values evaluate does
+     *
+     * @param i  the iteration z escaped at
+     * @param rr |z|^2 when it escaped, greater than getBailout
+     * @return The value evaluate gives for a point that escaped so
+     */
+    double escaped(int i, double rr) {
+        return fraction(smooth ? smoothCount(i, rr) : i, smooth, maxIterations);
+    }
+
+    /**
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return Whether c is in the main cardioid or the period-2 bulb, where z never escapes
+     */
+    public static boolean inCardioidOrBulb(float cx, float cy) {
+        float yy = cy * cy;
+        float bx = cx + 1;
+        if (bx * bx + yy < 0.0625f) {
+            return true;
+        }
+        float ax = cx - 0.25f;
+        float q = ax * ax + yy;
+        return q * (q + ax) < 0.25f * yy;
+    }
+
+    /**
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The number of iterations it took z to escape, or the cap if it did not
+     */
+    public int iterations(float cx, float cy) {
+        return (int) count(Family.MANDEL, false, cx, cy, 0, 0, maxIterations);
+    }
+
+    /**
+     * @param cx real part of the point c
+     * @param cy imaginary part of the point c
+     * @return The fraction of the cap it took z to escape, 1 if it did not, smooth if asked for
+     */
+    public float evaluate(float cx, float cy) {
+        return (float) fraction(count(Family.MANDEL, smooth, cx, cy, 0, 0, maxIterations), smooth, maxIterations);
+    }
+
+    /**
+     * The same as inCardioidOrBulb(float, float), in double precision
+     */
+    public static boolean inCardioidOrBulb(double cx, double cy) {
+        double yy = cy * cy;
+        double bx = cx + 1;
+        if (bx * bx + yy < 0.0625) {
+            return true;
+        }
+        double ax = cx - 0.25;
+        double q = ax * ax + yy;
+        return q * (q + ax) < 0.25 * yy;
+    }
+
+    /**
+     * The same as iterations(float, float), iterating in double precision, which resolves points about 1e-15
+     * apart rather than 1e-7
+     */
+    public int iterations(double cx, double cy) {
+        return (int) count(Family.MANDEL, false, cx, cy, 0, 0, maxIterations);
+    }
+
+    /**
+     * The same as evaluate(float, float), iterating in double precision
+     */
+    public double evaluate(double cx, double cy) {
+        return fraction(count(Family.MANDEL, smooth, cx, cy, 0, 0, maxIterations), smooth, maxIterations);
+    }
+
+    /**
+     * Shared by the escape time builtins, and by the evaluators compiled from them, so that all of them agree on
+     * the result
+     *
+     * @param family     how z is iterated
+     * @param smooth     whether to give the normalized iteration count, which assumes z is squared as in mandel
+     * @param px         real part of the point
+     * @param py         imaginary part of the point
+     * @param a          the first parameter of the family, if it has one
+     * @param b          the second parameter of the family, if it has one
+     * @param iterations the cap on the iterations, rounded down
+     * @return The fraction of the cap it took z to escape, 1 if it did not, or NaN if the cap is not between 1 and
+     * MAX_ITERATIONS or the power of a multibrot is not greater than 1
+     */
+    public static float evaluate(Family family, boolean smooth, float px, float py, float a, float b,
+                                 float iterations) {
+        if (!(iterations >= 1 && iterations < MAX_ITERATIONS + 1) || family == Family.MULTIBROT && !(a > 1)) {
+            return Float.NaN;
+        }
+        int cap = (int) iterations;
+        return (float) fraction(count(family, smooth, px, py, a, b, cap), smooth, cap);
+    }
+
+    /**
+     * The same as evaluate(Family, boolean, float, ...), iterating in double precision
+     */
+    public static double evaluate(Family family, boolean smooth, double px, double py, double a, double b,
+                                  double iterations) {
+        if (!(iterations >= 1 && iterations < MAX_ITERATIONS + 1) || family == Family.MULTIBROT && !(a > 1)) {
+            return Double.NaN;
+        }
+        int cap = (int) iterations;
+        return fraction(count(family, smooth, px, py, a, b, cap), smooth, cap);
+    }
+
+    /**
+     * @param count the iterations it took z to escape, see count
+     * @return count as a fraction of the cap, which rounds to the same float as dividing in float
+     */
+    private static double fraction(double count, boolean smooth, int cap) {
+        return smooth ? Math.max(0, Math.min(1, count / cap)) : count / cap;
+    }
+
+    /**
+     * @param i  the iteration z escaped at
+     * @param rr |z|^2 when it escaped, greater than SMOOTH_BAILOUT
+     * @return The normalized iteration count, i + 1 - log2(log|z| / log 16), which goes from i + 1 down to i as
+     * |z| goes from 16 to 256
+     */
+    private static double smoothCount(int i, double rr) {
+        return i + 1 - Math.log(0.5 * Math.log(rr) / LOG_SMOOTH_RADIUS) / LOG_2;
+    }
+
+    /**
+     * The loop of every escape time, with the shortcuts described above: the cardioid and bulb for mandel, and
+     * for every family an exact repeat of z, as z then cycles forever
+     *
+     * @return The number of iterations it took z to escape, normalized if smooth, or cap if it did not
+     */
+    private static double count(Family family, boolean smooth, float px, float py, float a, float b, int cap) {
+        boolean julia = family == Family.JULIA;
+        float x = julia ? px : 0;
+        float y = julia ? py : 0;
+        float cx = julia ? a : px;
+        float cy = julia ? b : py;
+        if (family == Family.MANDEL && inCardioidOrBulb(cx, cy)) {
+            return cap;
+        }
+        boolean ship = family == Family.SHIP;
+        int power = family != Family.MULTIBROT ? 2 : a == (int) a && a <= MAX_MULTIPLIED_POWER ? (int) a : 0;
+        float bailout = smooth ? SMOOTH_BAILOUT : BAILOUT;
+        float savedX = x;
+        float savedY = y;
+        int nextSave = 1;
+        for (int i = 0; i < cap; i++) {
+            float rr = x * x + y * y;
+            if (rr > bailout) {
+                return smooth ? smoothCount(i, rr) : i;
+            }
+            if (ship) {
+                float xtemp = x * x - y * y + cx;
+                y = 2 * Math.abs(x) * Math.abs(y) + cy;
+                x = xtemp;
+            } else if (power == 2) {
+                float xtemp = x * x - y * y + cx;
+                y = 2 * x * y + cy;
+                x = xtemp;
+            } else if (power > 0) {
+                float zx = x;
+                float zy = y;
+                for (int k = 1; k < power; k++) {
+                    float xtemp = zx * x - zy * y;
+                    zy = zx * y + zy * x;
+                    zx = xtemp;
+                }
+                x = zx + cx;
+                y = zy + cy;
+            } else {
+                double r = Math.pow(x * (double) x + y * (double) y, a / 2.0);
+                double theta = a * Math.atan2(y, x);
+                x = (float) (r * Math.cos(theta) + cx);
+                y = (float) (r * Math.sin(theta) + cy);
+            }
+            // every z saved has already been found not to escape by the time it is compared with
+            if (x == savedX && y == savedY) {
+                return cap;
+            }
+            if (i + 1 == nextSave) {
+                savedX = x;
+                savedY = y;
+                nextSave *= 2;
+            }
+        }
+        return cap;
+    }
+
+    /**
+     * The same as count(Family, boolean, float, ...), iterating in double precision
+     */
+    private static double count(Family family, boolean smooth, double px, double py, double a, double b,
+                                int cap) {
+        boolean julia = family == Family.JULIA;
+        double x = julia ? px : 0;
+        double y = julia ? py : 0;
+        double cx = julia ? a : px;
+        double cy = julia ? b : py;
+        if (family == Family.MANDEL && inCardioidOrBulb(cx, cy)) {
+            return cap;
+        }
+        boolean ship = family == Family.SHIP;
+        int power = family != Family.MULTIBROT ? 2 : a == (int) a && a <= MAX_MULTIPLIED_POWER ? (int) a : 0;
+        double bailout = smooth ? SMOOTH_BAILOUT : BAILOUT;
+        double savedX = x;
+        double savedY = y;
+        int nextSave = 1;
+        for (int i = 0; i < cap; i++) {
+            double rr = x * x + y * y;
+            if (rr > bailout) {
+                return smooth ? smoothCount(i, rr) : i;
+            }
+            if (ship) {
+                double xtemp = x * x - y * y + cx;
+                y = 2 * Math.abs(x) * Math.abs(y) + cy;
+                x = xtemp;
+            } else if (power == 2) {
+                double xtemp = x * x - y * y + cx;
+                y = 2 * x * y + cy;
+                x = xtemp;
+            } else if (power > 0) {
+                double zx = x;
+                double zy = y;
+                for (int k = 1; k < power; k++) {
+                    double xtemp = zx * x - zy * y;
+                    zy = zx * y + zy * x;
+                    zx = xtemp;
+                }
+                x = zx + cx;
+                y = zy + cy;
+            } else {
+                double r = Math.pow(x * x + y * y, a / 2);
+                double theta = a * Math.atan2(y, x);
+                x = r * Math.cos(theta) + cx;
+                y = r * Math.sin(theta) + cy;
+            }
+            if (x == savedX && y == savedY) {
+                return cap;
+            }
+            if (i + 1 == nextSave) {
+                savedX = x;
+                savedY = y;
+                nextSave *= 2;
+            }
+        }
+        return cap;
+    }
+}
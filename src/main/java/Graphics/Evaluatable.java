@@ -2,7 +2,7 @@ package Graphics;
 
 /**
  * This is an interface for evaluatable expressions
- * implemented by RealValuedExpression, EvalExprAdapter
+ * implemented by RealValuedExpression, CompiledExpression
  */
 
 public interface Evaluatable {
@@ -19,4 +19,30 @@ public interface Evaluatable {
      * @return the evaluation of f(x)
      */
     float evaluate(float x);
-}
\ No newline at end of file
+
+    /**
+     * Evaluates f at n points at once. Implementations can process the whole block in tight loops
+     * instead of being called once per point; the values must be the same as those of evaluate(x, y).
+     *
+     * @param xs  the x coordinates of the points
+     * @param ys  the y coordinates of the points
+     * @param out receives f(xs[i], ys[i]) at index i
+     * @param n   the number of points
+     */
+    default void evaluate(float[] xs, float[] ys, float[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = evaluate(xs[i], ys[i]);
+        }
+    }
+
+    /**
+     * Renderers working on several threads give each thread its own copy, as evaluators may reuse buffers
+     * between calls.
+     *
+     * @return An Evaluatable of the same function that can be used on another thread at the same time as this one,
+     * or null if there is none and the function must only be evaluated on one thread
+     */
+    default Evaluatable copy() {
+        return null;
+    }
+}
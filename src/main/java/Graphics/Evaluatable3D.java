@@ -4,11 +4,18 @@ package Graphics;
  * This is an interface for evaluatable expressions in 3D
  * implemented by RealValuedExpression, EvalExprAdapter
  */
-interface Evaluatable3D {
+public interface Evaluatable3D {
     float evaluate(float x, float y, float z);
 
+    /**
+     * Implementations that can differentiate themselves, like RealValuedExpression, give the exact gradient.
+     * This default estimates it with finite differences.
+     *
+     * @return The normalized gradient at (cx, cy, cz), the normal of the surface f = f(cx, cy, cz)
+     */
     default float3 deriv(float cx, float cy, float cz) {
-        float e = 0.01f;
+        // a step relative to the coordinates, as a fixed one is lost in rounding far from the origin
+        float e = 0.01f * Math.max(1, Math.max(Math.abs(cx), Math.max(Math.abs(cy), Math.abs(cz))));
         float c = evaluate(cx, cy, cz);
         return new float3(
                 evaluate(cx + e, cy, cz) - c,
@@ -0,0 +1,224 @@
+package Graphics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ExplicitGrapher draws the graphs of functions of x alone, y = f(x), from samples along x instead of sampling
+ * every pixel of the image as ImplicitGrapher does.
+ * <p>
+ * The function is sampled every few pixels, and each interval between samples is halved for as long as the
+ * midpoint is further than a fraction of a pixel from the line between its ends, or the ends are far apart, so that
+ * flat stretches get few samples and curved or steep ones many. Intervals whose ends stay far apart however small
+ * they get hold a jump or an asymptote, as for tan, and are not joined; neither are points where f is undefined.
+ * The samples are joined by line segments.
+ * <p>
+ * REGION graphs only need f once per column of pixels, as the pixels below the curve are the ones filled.
+ */
+public class ExplicitGrapher {
+    // The number of pixels between the first samples
+    private static final int INITIAL_STEP = 4;
+    // The intervals between the first samples are halved at most this many times
+    private static final int MAX_DEPTH = 8;
+    // Intervals are halved when the midpoint is further than this many pixels from the line between their ends
+    private static final double TOLERANCE = 0.25;
+    // Intervals on the image whose ends are more than this many pixels apart vertically are halved
+    private static final double MAX_SPAN = 4;
+    // The smallest intervals are not joined when their ends are more than this many pixels apart, and they are
+    // still more than JUMP_RATIO times as far apart as the ends of the interval they were halved from
+    private static final double JUMP = 1;
+    private static final double JUMP_RATIO = 0.75;
+
+    private final ImplicitGrapher sampler = new ImplicitGrapher();
+    private final LineRasterizer rasterizer = new LineRasterizer();
+    private int evaluations;
+
+    /**
+     * @return The number of times f was evaluated by the last call to graph or trace
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Writes the graph of y = f(x) onto the image represented by pixels.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param func      the function f, evaluated with evaluate(x)
+     * @param graphData array of {scale, x position, y position}
+     * @param gtype     the type of graph to generate, BOUNDARY or REGION
+     */
+    public void graph(int[] pixels, int w, int h, Evaluatable func, float[] graphData, GraphType gtype) {
+        if (gtype == GraphType.BOUNDARY) {
+            rasterizer.draw(pixels, w, h, trace(func, w, h, graphData), graphData);
+        } else if (gtype == GraphType.REGION) {
+            fill(pixels, w, h, func, graphData);
+        } else {
+            throw new IllegalArgumentException("Only BOUNDARY and REGION graphs can be drawn from y = f(x)");
+        }
+    }
+
+    /**
+     * Fills the pixels below the curve, the same pixels as ImplicitGrapher fills for y - f(x) < 0
+     */
+    private void fill(int[] pixels, int w, int h, Evaluatable func, float[] graphData) {
+        float scale = graphData[0];
+        float xpos = graphData[1];
+        float ypos = graphData[2];
+        float[] xs = new float[w];
+        float[] ys = new float[w];
+        float[] values = new float[w];
+        for (int x = 0; x < w; x++) {
+            xs[x] = (x / (float) w - 0.5f) * scale + xpos;
+        }
+        Arrays.fill(ys, Float.NaN);
+        func.evaluate(xs, ys, values, w);
+        evaluations = w;
+        for (int y = 0; y < h; y++) {
+            float cy = -(y / (float) h - 0.5f) * scale + ypos;
+            for (int x = 0; x < w; x++) {
+                if (cy - values[x] < 0) {
+                    pixels[y * w + x] = sampler.BLACK;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param func      the function f, evaluated with evaluate(x)
+     * @param w         width of the image the graph is for
+     * @param h         height of the image the graph is for
+     * @param graphData array of {scale, x position, y position}
+     * @return The pieces of the graph of y = f(x), in graphing-space coordinates
+     */
+    public List<Polyline> trace(Evaluatable func, int w, int h, float[] graphData) {
+        evaluations = 0;
+        return new Trace(func, h, graphData).run(w);
+    }
+
+    /**
+     * The state of a single call to trace
+     */
+    private final class Trace {
+        private final Evaluatable func;
+        private final int h;
+        private final float scale;
+        private final float xpos;
+        private final float ypos;
+        private final List<Polyline> polylines = new ArrayList<>();
+        // The points of the polyline being built
+        private float[] px = new float[64];
+        private float[] py = new float[64];
+        private int count;
+
+        private Trace(Evaluatable func, int h, float[] graphData) {
+            this.func = func;
+            this.h = h;
+            this.scale = graphData[0];
+            this.xpos = graphData[1];
+            this.ypos = graphData[2];
+        }
+
+        private List<Polyline> run(int w) {
+            float a = x(0, w);
+            float fa = sample(a);
+            if (isDefined(fa)) {
+                add(a, fa);
+            }
+            for (int k = INITIAL_STEP; k - INITIAL_STEP < w; k += INITIAL_STEP) {
+                float b = x(k, w);
+                float fb = sample(b);
+                divide(a, fa, b, fb, 0, Double.NaN);
+                a = b;
+                fa = fb;
+            }
+            end();
+            return polylines;
+        }
+
+        private float x(int pixel, int w) {
+            return (pixel / (float) w - 0.5f) * scale + xpos;
+        }
+
+        private float sample(float x) {
+            evaluations++;
+            return func.evaluate(x);
+        }
+
+        private boolean isDefined(float value) {
+            return Float.isFinite(value);
+        }
+
+        /**
+         * @return The vertical pixel coordinate of y, in double as it can be far outside the image
+         */
+        private double row(float y) {
+            return (0.5 - (y - (double) ypos) / scale) * h;
+        }
+
+        /**
+         * Continues the polyline from (a, fa), which has already been added if defined, to (b, fb)
+         *
+         * @param parentSpan how many pixels apart vertically the ends of the interval this was halved from are
+         */
+        private void divide(float a, float fa, float b, float fb, int depth, double parentSpan) {
+            boolean aDefined = isDefined(fa);
+            boolean bDefined = isDefined(fb);
+            if (!aDefined && !bDefined) {
+                return;
+            }
+            double span = aDefined && bDefined ? Math.abs(row(fb) - row(fa)) : Double.NaN;
+            if (depth == MAX_DEPTH) {
+                if (aDefined && bDefined && span > JUMP && span > JUMP_RATIO * parentSpan) {
+                    // the ends do not get closer as the interval shrinks: a jump or an asymptote
+                    end();
+                } else if (!bDefined) {
+                    end();
+                    return;
+                }
+                add(b, fb);
+                return;
+            }
+            float mid = a + (b - a) / 2;
+            float fm = sample(mid);
+            if (aDefined && bDefined && isDefined(fm)) {
+                double rowA = row(fa);
+                double rowB = row(fb);
+                double rowMid = row(fm);
+                boolean above = rowA < 0 && rowB < 0 && rowMid < 0;
+                boolean below = rowA > h && rowB > h && rowMid > h;
+                boolean straight = Math.abs(rowMid - (rowA + rowB) / 2) <= TOLERANCE && span <= MAX_SPAN;
+                if (above || below || straight) {
+                    // off the image, or the segment is close enough to the curve
+                    add(mid, fm);
+                    add(b, fb);
+                    return;
+                }
+            }
+            divide(a, fa, mid, fm, depth + 1, span);
+            divide(mid, fm, b, fb, depth + 1, span);
+        }
+
+        private void add(float x, float y) {
+            if (count == px.length) {
+                px = Arrays.copyOf(px, 2 * count);
+                py = Arrays.copyOf(py, 2 * count);
+            }
+            px[count] = x;
+            py[count++] = y;
+        }
+
+        /**
+         * Ends the polyline being built, starting a new one
+         */
+        private void end() {
+            if (count > 1) {
+                polylines.add(new Polyline(Arrays.copyOf(px, count), Arrays.copyOf(py, count), false));
+            }
+            count = 0;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package Graphics;
+
+import Backend.Expressions.ArithmeticOperatorExpression;
+import Backend.Expressions.BooleanConstantExpression;
+import Backend.Expressions.BooleanValuedExpression;
+import Backend.Expressions.BuiltinFunctionExpression;
+import Backend.Expressions.CustomFunctionExpression;
+import Backend.Expressions.FunctionExpression;
+import Backend.Expressions.NumberExpression;
+import Backend.Expressions.RealValuedExpression;
+import Backend.Expressions.VariableExpression;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The ways Grapher can draw an image, and which one it takes for a type of graph, the expressions of Axes and the
+ * precision they are graphed in. The checks deciding how each kind of expression is sampled are kept here as well,
+ * so that the image, its passes and its previews are routed the same way.
+ */
+enum GraphStrategy {
+    // GRAYSCALE graphs of mandel or smoothmandel by perturbation, see PerturbationGrapher
+    DEEP,
+    // Every pixel sampled through the expression trees in double precision
+    DOUBLE,
+    // Composed from the tiles of a TileCache, see TileComposer
+    TILES,
+    // The whole image graphed at once in float precision
+    WHOLE;
+
+    /**
+     * @param expressions        The expressions in Axes
+     * @param type               The type of graphs
+     * @param doublePrecision    Whether the expressions are graphed in double precision
+     * @param deepZoomIterations The iterations of mandel graphed by perturbation, 0 when not deep zooming
+     * @param tiled              Whether there is a TileCache to compose images from
+     * @return How the image is drawn
+     */
+    static GraphStrategy choose(List<RealValuedExpression> expressions, GraphType type, boolean doublePrecision,
+                                int deepZoomIterations, boolean tiled) {
+        if (deepZoomIterations > 0 && isDeep(expressions, type)) {
+            return DEEP;
+        } else if ((doublePrecision || deepZoomIterations > 0) && type != GraphType.CONTOUR) {
+            // CONTOUR graphs stay in float precision
+            return DOUBLE;
+        } else if (tiled) {
+            return TILES;
+        }
+        return WHOLE;
+    }
+
+    /**
+     * @return Whether the last pass of a WHOLE image samples each pixel as the image does, rather than the image
+     * having to be graphed in full: curves are only exact when drawn in full, and escape times are quicker to trace
+     * than to sample
+     */
+    static boolean isSampledInPasses(List<RealValuedExpression> expressions, GraphType type) {
+        return (type == GraphType.REGION || type == GraphType.GRAYSCALE) && !tracesBorders(expressions, type);
+    }
+
+    /**
+     * Curves and regions only need the pixels near them sampled, which is faster than sharing the work of several
+     * expressions at every pixel, see GroupBenchmark
+     *
+     * @return Whether expressions are evaluated together, see MultiEvaluatable
+     */
+    static boolean graphsTogether(List<RealValuedExpression> expressions, GraphType type) {
+        return type == GraphType.GRAYSCALE && expressions.size() > 1 && !shadesEscapeTime(expressions, type);
+    }
+
+    /**
+     * @param exp An expression from Axes
+     * @return Whether exp is a call of an escape time builtin such as mandel on x and y, and numbers for any further
+     * inputs as in julia(x, y, -0.8, 0.156), whose GRAYSCALE graph is shaded by its value rather than that of y - exp
+     */
+    static boolean isEscapeTime(RealValuedExpression exp) {
+        if (!(exp instanceof CustomFunctionExpression)) {
+            return false;
+        }
+        CustomFunctionExpression call = (CustomFunctionExpression) exp;
+        RealValuedExpression[] inputs = call.getInputs();
+        if (!(call.getFunction() instanceof BuiltinFunctionExpression
+                && BuiltinFunctionExpression.isEscapeTime(call.getFunction().getItem())
+                && isTrivial(call.getDomain()) && inputs.length >= 2
+                && inputs[0] instanceof VariableExpression && inputs[0].getItem().equals("x")
+                && inputs[1] instanceof VariableExpression && inputs[1].getItem().equals("y"))) {
+            return false;
+        }
+        for (int i = 2; i < inputs.length; i++) {
+            if (!(inputs[i] instanceof NumberExpression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the graph of expressions is shaded by the value of an escape time, see isEscapeTime
+     */
+    static boolean shadesEscapeTime(List<RealValuedExpression> expressions, GraphType type) {
+        return type == GraphType.GRAYSCALE && !expressions.isEmpty()
+                && isEscapeTime(expressions.get(expressions.size() - 1));
+    }
+
+    /**
+     * Only the escape times of z^d + c for a whole power d have regions without holes, as those of mandel do, see
+     * BorderTracer. The regions of ship and of fractional powers can hold other escape times, so they are sampled
+     * at every pixel.
+     *
+     * @return Whether the graph of expressions is traced by the borders of the regions of an escape time
+     */
+    static boolean tracesBorders(List<RealValuedExpression> expressions, GraphType type) {
+        if (!shadesEscapeTime(expressions, type)) {
+            return false;
+        }
+        CustomFunctionExpression call = (CustomFunctionExpression) expressions.get(expressions.size() - 1);
+        switch (BuiltinFunctionExpression.escapeTimeFamily(call.getFunction().getItem())) {
+            case MANDEL:
+            case JULIA:
+                return true;
+            case MULTIBROT:
+                float power = call.getInputs()[2].evaluate(0f, 0f);
+                return power > 1 && power == Math.rint(power);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Whether the graph of expressions is of mandel or smoothmandel, which can be graphed by perturbation
+     */
+    static boolean isDeep(List<RealValuedExpression> expressions, GraphType type) {
+        if (!tracesBorders(expressions, type)) {
+            return false;
+        }
+        String name = ((CustomFunctionExpression) expressions.get(expressions.size() - 1)).getFunction().getItem();
+        return name.equals("mandel") || name.equals("smoothmandel");
+    }
+
+    /**
+     * @param exp An expression from Axes
+     * @return f if exp is of the form y = f(x), otherwise empty. f may still depend on y, which only its compiled
+     * form tells cheaply
+     */
+    static Optional<RealValuedExpression> explicitFunction(RealValuedExpression exp) {
+        if (exp instanceof FunctionExpression) {
+            return Optional.of(exp);
+        } else if (exp instanceof ArithmeticOperatorExpression && exp.getItem().equals("-")
+                && isTrivial(exp.getDomain())
+                && ((ArithmeticOperatorExpression) exp).getLExpression() instanceof VariableExpression
+                && ((ArithmeticOperatorExpression) exp).getLExpression().getItem().equals("y")) {
+            // y = f(x) is read as y - f(x), whose domain would also have to hold
+            return Optional.of(((ArithmeticOperatorExpression) exp).getRExpression());
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isTrivial(BooleanValuedExpression domain) {
+        return domain instanceof BooleanConstantExpression && domain.getItem().equals("true");
+    }
+}
@@ -3,5 +3,6 @@ package Graphics;
 enum GraphType {
     BOUNDARY,
     REGION,
-    GRAYSCALE
+    GRAYSCALE,
+    CONTOUR
 }
@@ -2,24 +2,67 @@ package Graphics;
 
 import Backend.Axes;
 import Backend.AxesUseCase;
+import Backend.ExpressionCompilers.CompiledExpression;
+import Backend.ExpressionCompilers.CompiledExpressionGroup;
+import Backend.ExpressionCompilers.ExpressionCompiler;
+import Backend.ExpressionCompilers.ExpressionInterner;
+import Backend.ExpressionCompilers.KernelGenerator;
+import Backend.ExpressionCompilers.VectorSupport;
 import Backend.Expressions.ArithmeticOperatorExpression;
+import Backend.Expressions.CustomFunctionExpression;
 import Backend.Expressions.FunctionExpression;
 import Backend.Expressions.RealValuedExpression;
 import Backend.Expressions.VariableExpression;
 
+import java.beans.PropertyChangeListener;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 /**
  * This class is the main link between Backend and Graphics.
  * It runs over the list of Expressions in Axes and calls the appropriate graphers
  */
 public class Grapher {
+    // By default CONTOUR graphs sample the function once every this many pixels across and down
+    public static final int CONTOUR_CELL_SIZE = 2;
 
     private final Axes axes;
     private final ImplicitGrapher impGrapher = new ImplicitGrapher(); // Implicit grapher for implicit functions
+    private final QuadtreeGrapher quadGrapher = new QuadtreeGrapher(); // Skips the boxes intervals rule out
+    private final ExplicitGrapher expGrapher = new ExplicitGrapher(); // Samples along x for functions of x alone
+    private final ProgressiveGrapher progGrapher = new ProgressiveGrapher(); // Graphs at a fraction of the resolution
+    private final PerturbationGrapher deepGrapher = new PerturbationGrapher(); // Graphs mandel past double precision
+    private final ContourTracer contourTracer = new ContourTracer(); // Finds curves as polylines
+    private final LineRasterizer lineRasterizer = new LineRasterizer(); // Draws the polylines anti-aliased
     private final AxesUseCase auc = new AxesUseCase(); // Use case class to interact with Axes
     private final AxesDrawer ad = new AxesDrawer(); // AxesDrawer to draw Axes and grids
+    private final ExpressionCompiler compiler = new ExpressionCompiler(); // Lowers expressions for fast evaluation
+    private final KernelGenerator kernelGenerator = new KernelGenerator(); // Turns compiled expressions into bytecode
+    // Kernels are kept only as long as their expression is, so that removed expressions can be unloaded
+    private final Map<RealValuedExpression, Evaluatable> kernels = new WeakHashMap<>();
+    // The kernels for f of the expressions of the form y = f(x), empty for the other expressions
+    private final Map<RealValuedExpression, Optional<Evaluatable>> explicitKernels = new WeakHashMap<>();
+    // The kernels for the escape time functions such as mandel(x, y) themselves, which GRAYSCALE graphs shade
+    private final Map<RealValuedExpression, Evaluatable> escapeTimeKernels = new WeakHashMap<>();
+    // When several expressions are graphed they are evaluated together, sharing their common subexpressions
+    private List<RealValuedExpression> groupedExpressions = List.of();
+    private MultiEvaluatable group;
+    private float sharingRatio = 1;
+    private ForkJoinPool pool; // Graphs tiles of the image in parallel, null when graphing on one thread
+    private int contourSamples; // The cells across the grid CONTOUR graphs are traced on, 0 for the default
+    private List<List<Polyline>> contours = List.of();
+    private TileComposer tiles; // Composes images from tiles of earlier ones, null when images are graphed whole
+    private BooleanSupplier cancelled = () -> false; // Whether the image being graphed from tiles is still wanted
+    private boolean doublePrecision; // Whether the pixels and expressions are evaluated in double precision
+    private int deepZoomIterations; // The iterations of mandel graphed by perturbation, 0 when not deep zooming
 
     /**
      * Initialize.
@@ -29,6 +72,15 @@ public class Grapher {
         this.axes = axes;
     }
 
+    /**
+     * Add a new observer to be told when the scale, position or expressions of the graph change, so that it
+     * knows when the graph has to be drawn again.
+     * @param observer Object that is observing the graph
+     */
+    public void addObserver(PropertyChangeListener observer) {
+        this.auc.addViewObserver(observer, this.axes);
+    }
+
     /**
      * Set position for graph.
      * @param pos Float array representing positions.
@@ -48,30 +100,421 @@ public class Grapher {
     /**
      * Graph and actually outputs an array of integers representing that graph.
      * @param size  Size of the output image
-     * @param gType The type of graphs, one of BOUNDARY, REGION, GRAYSCALE (for now)
+     * @param gType The type of graphs, one of BOUNDARY, REGION, GRAYSCALE, CONTOUR (for now)
      * @return An array of integers representing the graph.
      */
     public int[] graph(int size, String gType) {
-        int[] pixels = new int[size * size];
-
-        Arrays.fill(pixels, impGrapher.WHITE);
+        return graph(new int[size * size], size, gType);
+    }
 
+    /**
+     * Graph into an existing array of integers, e.g. one of a few buffers reused for every frame.
+     * @param pixels Array of at least size * size integers the graph is written to
+     * @param size   Size of the output image
+     * @param gType  The type of graphs, see graph
+     * @return pixels
+     * @throws CancellationException if the image was cancelled while it was graphed from tiles, see setCancellation
+     */
+    public int[] graph(int[] pixels, int size, String gType) {
         float[] graphData = new float[]{auc.getScale(axes), auc.getOrigin(axes)[0], auc.getOrigin(axes)[1]};
+        GraphType type = stringToGType(gType);
+        List<RealValuedExpression> expressions = auc.getExpressions(axes);
+        Arrays.fill(pixels, 0, size * size, impGrapher.WHITE);
+        switch (strategyFor(type)) {
+            case DEEP:
+                drawDeepGraph(pixels, size, expressions);
+                break;
+            case DOUBLE:
+                drawDoubleGraphs(pixels, size, expressions, type);
+                break;
+            case TILES:
+                int t = TileCache.TILE_SIZE;
+                int tileSamples = contourSamples > 0 ? Math.max(1, Math.round(contourSamples * t / (float) size))
+                        : t / CONTOUR_CELL_SIZE;
+                tiles.compose(pixels, size, expressions, graphData, type,
+                        (tile, tileData) -> drawGraphs(tile, t, expressions, tileData, type, tileSamples), cancelled);
+                contours = List.of();
+                break;
+            default:
+                int samples = contourSamples > 0 ? contourSamples : Math.max(1, size / CONTOUR_CELL_SIZE);
+                drawGraphs(pixels, size, expressions, graphData, type, samples);
+        }
+        ad.drawAxes(pixels, size, size, graphData);
+        ad.drawGrid(pixels, size, size, graphData);
+        return pixels;
+    }
 
+    /**
+     * Graph a pass of the image at 1/step of its resolution, drawing one sample for each step by step block of
+     * pixels, to show something quickly before the image is graphed in full. The samples are kept, so the next pass
+     * of the same image only samples the points that are new when its step divides this one, e.g. passes with
+     * steps 8, 4, 2 and 1 sample each point once. A pass with step 1 is the same as graph. Coarser passes are
+     * graphed in float precision even when graph is in double precision, as their blocks are far coarser anyway.
+     * @param pixels Array of at least size * size integers the graph is written to
+     * @param size   Size of the output image
+     * @param gType  The type of graphs, see graph
+     * @param step   The width and height of the blocks, at least 1
+     * @return pixels
+     * @throws CancellationException if the image was cancelled, see setCancellation
+     */
+    public int[] graph(int[] pixels, int size, String gType, int step) {
+        if (step < 1) {
+            throw new IllegalArgumentException("A pass needs at least one sample per pixel of its blocks");
+        }
+        GraphType type = stringToGType(gType);
+        if (step == 1 && (strategyFor(type) != GraphStrategy.WHOLE
+                || !GraphStrategy.isSampledInPasses(auc.getExpressions(axes), type))) {
+            // tiles are quicker to reuse than samples, and the other strategies draw the image in full
+            return graph(pixels, size, gType);
+        }
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("The image is no longer wanted");
+        }
+        float[] graphData = new float[]{auc.getScale(axes), auc.getOrigin(axes)[0], auc.getOrigin(axes)[1]};
+        List<Evaluatable> funcs = new ArrayList<>();
         for (RealValuedExpression exp : auc.getExpressions(axes)) {
-            if (exp instanceof FunctionExpression) {
-//                expGrapher.graph(pixels, size, size, exp, graphData);
-                RealValuedExpression newExp = new ArithmeticOperatorExpression("-", new VariableExpression("y"), exp);
-                impGrapher.graph(pixels, size, size, newExp, graphData, stringToGType(gType));
-            } else {
-                impGrapher.graph(pixels, size, size, exp, graphData, stringToGType(gType));
-            }
+            funcs.add(type == GraphType.GRAYSCALE && GraphStrategy.isEscapeTime(exp) ? escapeTimeKernelFor(exp)
+                    : kernelFor(exp));
+        }
+        // coarse passes of contours are drawn as their curves
+        boolean pointwise = type == GraphType.REGION || type == GraphType.GRAYSCALE;
+        progGrapher.graph(pixels, size, funcs, graphData, pointwise ? type : GraphType.BOUNDARY, step);
+        ad.drawAxes(pixels, size, size, graphData);
+        ad.drawGrid(pixels, size, size, graphData);
+        return pixels;
+    }
+
+    /**
+     * Graphs what is at hand straight away: the cached tiles of the image, and where those are missing the tiles
+     * cached at the nearest scale, resampled. Pixels with neither are left blank.
+     *
+     * @param size  Size of the output image
+     * @param gType The type of graphs, see graph
+     * @return An array of integers representing the graph, or just the axes if there is no tile cache
+     */
+    public int[] preview(int size, String gType) {
+        return preview(new int[size * size], size, gType);
+    }
+
+    /**
+     * Graphs what is at hand straight away into an existing array of integers, see preview.
+     *
+     * @param pixels Array of at least size * size integers the graph is written to
+     * @param size   Size of the output image
+     * @param gType  The type of graphs, see graph
+     * @return pixels
+     */
+    public int[] preview(int[] pixels, int size, String gType) {
+        float[] graphData = new float[]{auc.getScale(axes), auc.getOrigin(axes)[0], auc.getOrigin(axes)[1]};
+        Arrays.fill(pixels, 0, size * size, impGrapher.WHITE);
+        GraphType type = stringToGType(gType);
+        if (strategyFor(type) == GraphStrategy.TILES) {
+            tiles.preview(pixels, size, auc.getExpressions(axes), graphData, type);
         }
         ad.drawAxes(pixels, size, size, graphData);
         ad.drawGrid(pixels, size, size, graphData);
         return pixels;
     }
 
+    /**
+     * @param size  Size of the output image
+     * @param gType The type of graphs, see graph
+     * @return Whether every tile of the image is cached, so that graph does not render any
+     */
+    public boolean isCached(int size, String gType) {
+        GraphType type = stringToGType(gType);
+        float[] graphData = new float[]{auc.getScale(axes), auc.getOrigin(axes)[0], auc.getOrigin(axes)[1]};
+        return strategyFor(type) == GraphStrategy.TILES
+                && tiles.isCached(size, auc.getExpressions(axes), graphData, type);
+    }
+
+    /**
+     * @return How the image of the expressions in Axes is drawn, see GraphStrategy
+     */
+    private GraphStrategy strategyFor(GraphType type) {
+        return GraphStrategy.choose(auc.getExpressions(axes), type, doublePrecision, deepZoomIterations,
+                tiles != null);
+    }
+
+    /**
+     * Draws the graphs of expressions onto the image represented by pixels
+     */
+    private void drawGraphs(int[] pixels, int size, List<RealValuedExpression> expressions, float[] graphData,
+                            GraphType type, int samples) {
+        if (type == GraphType.CONTOUR) {
+            List<List<Polyline>> traced = new ArrayList<>();
+            for (RealValuedExpression exp : expressions) {
+                // the tree gives the gradients that place the crossings
+                List<Polyline> polylines = contourTracer.trace(kernelFor(exp), graphedForm(exp), graphData, samples);
+                lineRasterizer.draw(pixels, size, size, polylines, graphData);
+                traced.add(polylines);
+            }
+            contours = traced;
+        } else if (type != GraphType.BOUNDARY && type != GraphType.REGION) {
+            graphImplicit(pixels, size, expressions, graphData, type);
+        } else {
+            // graphs of y = f(x) only need f sampled along x, the rest are graphed together
+            List<RealValuedExpression> implicit = new ArrayList<>();
+            for (RealValuedExpression exp : expressions) {
+                Optional<Evaluatable> function = explicitFor(exp);
+                if (function.isPresent()) {
+                    expGrapher.graph(pixels, size, size, function.get(), graphData, type);
+                } else {
+                    implicit.add(exp);
+                }
+            }
+            graphImplicit(pixels, size, implicit, graphData, type);
+        }
+    }
+
+    /**
+     * Draws the GRAYSCALE graph of mandel or smoothmandel, the last of expressions, by perturbation, see
+     * GraphStrategy.isDeep
+     */
+    private void drawDeepGraph(int[] pixels, int size, List<RealValuedExpression> expressions) {
+        // each GRAYSCALE graph covers the whole image, so only the last one shows
+        RealValuedExpression last = expressions.get(expressions.size() - 1);
+        boolean smooth = ((CustomFunctionExpression) last).getFunction().getItem().equals("smoothmandel");
+        BigDecimal[] origin = auc.getPreciseOrigin(axes);
+        deepGrapher.graph(pixels, size, size, auc.getPreciseScale(axes), origin[0], origin[1],
+                new EscapeTimeKernel(deepZoomIterations, smooth));
+    }
+
+    /**
+     * Draws the graphs of expressions onto the image represented by pixels in double precision, sampling each pixel
+     * through the expression trees, see ImplicitGrapher.graph(int[], int, int, DoubleEvaluatable, ...)
+     */
+    private void drawDoubleGraphs(int[] pixels, int size, List<RealValuedExpression> expressions, GraphType type) {
+        double[] graphData = {auc.getDoubleScale(axes), auc.getDoubleOrigin(axes)[0], auc.getDoubleOrigin(axes)[1]};
+        for (RealValuedExpression exp : expressions) {
+            boolean escapeTime = type == GraphType.GRAYSCALE && GraphStrategy.isEscapeTime(exp);
+            RealValuedExpression graphed = escapeTime ? exp : graphedForm(exp);
+            impGrapher.graph(pixels, size, size, graphed, graphData, type);
+        }
+    }
+
+    /**
+     * Graphs expressions by sampling the image, all at once when there are several
+     */
+    private void graphImplicit(int[] pixels, int size, List<RealValuedExpression> expressions, float[] graphData,
+                               GraphType type) {
+        if (GraphStrategy.shadesEscapeTime(expressions, type)) {
+            // GRAYSCALE shades every pixel, so only the last expression shows
+            RealValuedExpression last = expressions.get(expressions.size() - 1);
+            if (GraphStrategy.tracesBorders(expressions, type)) {
+                impGrapher.graphEscapeTime(pixels, size, size, escapeTimeKernelFor(last), graphData);
+            } else {
+                impGrapher.graph(pixels, size, size, escapeTimeKernelFor(last), graphData, type);
+            }
+        } else if (GraphStrategy.graphsTogether(expressions, type)) {
+            impGrapher.graph(pixels, size, size, groupFor(expressions), expressions.size(), graphData, type);
+        } else {
+            for (RealValuedExpression exp : expressions) {
+                if (type == GraphType.GRAYSCALE) {
+                    impGrapher.graph(pixels, size, size, kernelFor(exp), graphData, type);
+                } else {
+                    // curves and regions only need the pixels near them sampled
+                    quadGrapher.graph(pixels, size, size, kernelFor(exp), graphedForm(exp), graphData, type);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param conservative Whether BOUNDARY and REGION graphs also draw features thinner than a pixel, which may
+     *                     draw some pixels next to them as well, see QuadtreeGrapher
+     */
+    public void setConservative(boolean conservative) {
+        quadGrapher.setConservative(conservative);
+        clearTiles();
+    }
+
+    /**
+     * @param colormap The colours of the values of GRAYSCALE graphs, Colormap.GRAYSCALE by default
+     */
+    public void setColormap(Colormap colormap) {
+        impGrapher.setColormap(colormap);
+        progGrapher.setColormap(colormap);
+        deepGrapher.setColormap(colormap);
+        clearTiles();
+    }
+
+    /**
+     * @param doublePrecision Whether the coordinates of the pixels and the values of the expressions are in double
+     *                        precision rather than float, which resolves views about 1e9 times smaller but is
+     *                        slower, as expressions are then interpreted rather than compiled, on one thread.
+     *                        CONTOUR graphs stay in float precision, and graphs in double precision are not
+     *                        composed from tiles, see setTileCache
+     */
+    public void setDoublePrecision(boolean doublePrecision) {
+        this.doublePrecision = doublePrecision;
+    }
+
+    /**
+     * @param iterations The number of iterations GRAYSCALE graphs of mandel(x, y) and smoothmandel(x, y) take when
+     *                   they are graphed by perturbation around the precise origin and scale of Axes, which resolves
+     *                   views down to about 1e-500 across, or 0 not to. Deeper views need more iterations to show
+     *                   detail. Other graphs are then in double precision, see setDoublePrecision
+     */
+    public void setDeepZoom(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("The number of iterations cannot be negative");
+        }
+        this.deepZoomIterations = iterations;
+    }
+
+    /**
+     * @param samples The number of cells across the grid that CONTOUR graphs are sampled on, which can be fewer
+     *                than the pixels across the image, or 0 for one cell every CONTOUR_CELL_SIZE pixels
+     */
+    public void setContourSamples(int samples) {
+        if (samples < 0) {
+            throw new IllegalArgumentException("The number of contour samples cannot be negative");
+        }
+        this.contourSamples = samples;
+        clearTiles();
+    }
+
+    /**
+     * @param cache Where tiles of the images are kept to be reused by later images overlapping them, or null to
+     *              graph every image whole. Graphing from tiles moves images to the nearest pixel of a lattice
+     *              at their scale, see TileCache.
+     */
+    public void setTileCache(TileCache cache) {
+        this.tiles = cache == null ? null : new TileComposer(cache);
+    }
+
+    /**
+     * @param cancelled Asked before each tile is rendered whether the image being graphed from tiles is no longer
+     *                  wanted, e.g. because the view has moved on, in which case graph throws
+     *                  CancellationException; null to never cancel
+     */
+    public void setCancellation(BooleanSupplier cancelled) {
+        this.cancelled = cancelled == null ? () -> false : cancelled;
+    }
+
+    private void clearTiles() {
+        if (tiles != null) {
+            tiles.clear();
+        }
+    }
+
+    /**
+     * Exposes the curves of the last CONTOUR graph as data, e.g. for exporting them as vector graphics
+     *
+     * @return The polylines traced for each expression, in the order of the expressions in Axes, or none if the
+     * graph was composed from tiles
+     */
+    public List<List<Polyline>> getContours() {
+        return contours;
+    }
+
+    /**
+     * @param threads The number of threads to graph on, 1 to graph on the calling thread only.
+     *                The image is the same for any number of threads.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Graphing needs at least one thread");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        impGrapher.setPool(pool);
+        quadGrapher.setPool(pool);
+        deepGrapher.setPool(pool);
+    }
+
+    /**
+     * Reports how much work graphing the expressions together saves, see ExpressionInterner.sharingRatio
+     *
+     * @return The sharing ratio of the expressions last graphed together, 1 until several have been graphed in
+     * GRAYSCALE, the only type that graphs them together
+     */
+    public float getSharingRatio() {
+        return sharingRatio;
+    }
+
+    /**
+     * @param exp An expression from Axes
+     * @return The kernel for exp, see generate
+     */
+    private Evaluatable kernelFor(RealValuedExpression exp) {
+        return kernels.computeIfAbsent(exp, e -> generate(compiler.compile(graphedForm(e))));
+    }
+
+    /**
+     * @param exp An escape time expression from Axes, see GraphStrategy.isEscapeTime
+     * @return The kernel for exp itself
+     */
+    private Evaluatable escapeTimeKernelFor(RealValuedExpression exp) {
+        return escapeTimeKernels.computeIfAbsent(exp, e -> generate(compiler.compile(e)));
+    }
+
+    /**
+     * @param exp An expression from Axes
+     * @return The kernel for f if exp is of the form y = f(x), with f not depending on y, otherwise empty
+     */
+    private Optional<Evaluatable> explicitFor(RealValuedExpression exp) {
+        return explicitKernels.computeIfAbsent(exp, e -> GraphStrategy.explicitFunction(e).flatMap(function -> {
+            CompiledExpression program = compiler.compile(function);
+            return program.reads(CompiledExpression.Y_SLOT) ? Optional.empty() : Optional.of(generate(program));
+        }));
+    }
+
+    /**
+     * @param program A compiled expression
+     * @return The generated kernel for program, or the vectorized program when the Vector API is available and
+     * faster, falling back to the compiled program if no kernel can be defined
+     */
+    private Evaluatable generate(CompiledExpression program) {
+        if (VectorSupport.prefersVectors(program)) {
+            return VectorSupport.vectorize(program);
+        }
+        try {
+            return kernelGenerator.generate(program);
+        } catch (IllegalStateException ex) {
+            // e.g. the formula is too long for a single JVM method
+            return VectorSupport.isAvailable() ? VectorSupport.vectorize(program) : program;
+        }
+    }
+
+    /**
+     * @param expressions All the expressions in Axes
+     * @return One kernel evaluating every expression, computing each distinct subexpression once per point
+     */
+    private MultiEvaluatable groupFor(List<RealValuedExpression> expressions) {
+        if (!expressions.equals(groupedExpressions)) {
+            // interned afresh for each set of expressions, so that no nodes are kept once it changes
+            ExpressionInterner interner = new ExpressionInterner();
+            List<RealValuedExpression> graphed = new ArrayList<>();
+            for (RealValuedExpression exp : expressions) {
+                graphed.add(interner.intern(graphedForm(exp)));
+            }
+            CompiledExpressionGroup program = compiler.compileAll(graphed);
+            try {
+                group = kernelGenerator.generate(program);
+            } catch (IllegalStateException ex) {
+                group = program;
+            }
+            sharingRatio = ExpressionInterner.sharingRatio(graphed);
+            groupedExpressions = new ArrayList<>(expressions);
+        }
+        return group;
+    }
+
+    /**
+     * @param exp An expression from Axes
+     * @return The expression whose sign changes on the graph of exp
+     */
+    private RealValuedExpression graphedForm(RealValuedExpression exp) {
+        if (exp instanceof FunctionExpression) {
+            return new ArithmeticOperatorExpression("-", new VariableExpression("y"), exp);
+        }
+        return exp;
+    }
+
     /**
      * @param gtype The type of graph that is to be graphed
      * @return The type of graph that is to be graphed from the GraphType enum
@@ -80,7 +523,8 @@ public class Grapher {
         Map<String, GraphType> gtypeMap = Map.of(
                 "BOUNDARY", GraphType.BOUNDARY,
                 "REGION", GraphType.REGION,
-                "GRAYSCALE", GraphType.GRAYSCALE);
+                "GRAYSCALE", GraphType.GRAYSCALE,
+                "CONTOUR", GraphType.CONTOUR);
         return gtypeMap.get(gtype);
     }
 
@@ -1,16 +1,36 @@
 package Graphics;
 
-import static Graphics.RGBA.fmtHex255;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ImplicitGrapher is responsible for the core 2D graphing functionality.
  * It writes data to an array representing pixels of an image.
+ * Given a ForkJoinPool, it graphs tiles of the image in parallel; the image is the same as on a single thread.
  */
 
 public class ImplicitGrapher {
     public final int WHITE = (int) Long.parseLong("FFFFFFFF", 16);
     public final int BLACK = (int) Long.parseLong("FF000000", 16);
 
+    private ForkJoinPool pool; // Renders tiles of the image in parallel, or null to graph on the calling thread
+    private Colormap colormap = Colormap.GRAYSCALE; // Colours the values of GRAYSCALE graphs
+
+    /**
+     * @param pool The pool to graph tiles of the image on, or null to graph on the calling thread.
+     *             Functions that cannot be copied are always graphed on the calling thread, see Evaluatable.copy
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param colormap The colours of the values of GRAYSCALE graphs
+     */
+    public void setColormap(Colormap colormap) {
+        this.colormap = colormap;
+    }
+
     /**
      * Writes the graph of a function onto the image represented by pixels.
      *
@@ -22,51 +42,261 @@ public class ImplicitGrapher {
      * @param gtype     the type of graph to generate
      */
     public void graph(int[] pixels, int w, int h, Evaluatable func, float[] graphData, GraphType gtype) {
+        View view = new View(pixels, w, h, graphData, gtype);
+        if (pool == null || func.copy() == null) {
+            drawTile(view, func, 0, 0, w, h);
+        } else {
+            Tiles.paint(pool, w, h, () -> {
+                Evaluatable copy = func.copy();
+                return (x0, y0, x1, y1) -> drawTile(view, copy, x0, y0, x1, y1);
+            });
+        }
+    }
+
+    /**
+     * Writes the graph of a function onto the image represented by pixels, with the coordinates of the pixels and
+     * the values of func in double precision, for views too small for graph to tell their pixels apart.
+     * Expression trees cannot be copied, so this always graphs on the calling thread.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param func      the function to be graphed
+     * @param graphData array of {scale, x position, y position}
+     * @param gtype     the type of graph to generate, other than CONTOUR
+     */
+    public void graph(int[] pixels, int w, int h, DoubleEvaluatable func, double[] graphData, GraphType gtype) {
+        double scale = graphData[0];
+        double pixelSize = scale / w;
+        double[] xs = new double[w];
+        double[] rightXs = new double[w];
+        for (int x = 0; x < w; x++) {
+            xs[x] = (x / (double) w - 0.5) * scale + graphData[1];
+            rightXs[x] = xs[x] + pixelSize;
+        }
+        double[] ys = new double[w];
+        double[] currVals = new double[w];
+        double[] xVals = new double[w];
+        double[] yVals = new double[w];
         for (int y = 0; y < h; y++) {
+            double cy = -(y / (double) h - 0.5) * scale + graphData[2];
+            Arrays.fill(ys, cy);
+            func.evaluate(xs, ys, currVals, w);
+            if (gtype == GraphType.BOUNDARY) {
+                func.evaluate(rightXs, ys, xVals, w);
+                Arrays.fill(ys, cy + pixelSize);
+                func.evaluate(xs, ys, yVals, w);
+            }
             for (int x = 0; x < w; x++) {
-                writePixel(pixels, w, h, func, graphData, gtype, x, y);
+                if (gtype == GraphType.GRAYSCALE) {
+                    shadePixel(pixels, y * w + x, gtype, (float) currVals[x], 0, 0);
+                } else {
+                    // only the signs matter, which values too small for a float would lose
+                    shadePixel(pixels, y * w + x, gtype, (float) Math.signum(currVals[x]),
+                            (float) Math.signum(xVals[x]), (float) Math.signum(yVals[x]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the GRAYSCALE graph of an escape time function such as mandel onto the image represented by pixels,
+     * sampling only the borders of the regions of each escape time, see BorderTracer. Escape times are the same on
+     * the whole of a region only up to what the pixels resolve, so the image may differ from that of graph at the
+     * odd pixel where a thin filament passes between the pixels of a border. Each tile of the image is traced on
+     * its own, so the image is the same on any number of threads.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param func      the escape time function to be graphed
+     * @param graphData array of {scale, x position, y position}
+     */
+    public void graphEscapeTime(int[] pixels, int w, int h, Evaluatable func, float[] graphData) {
+        View view = new View(pixels, w, h, graphData, GraphType.GRAYSCALE);
+        if (pool == null || func.copy() == null) {
+            // the same tiles as on several threads, as where the borders are traced decides the odd pixel
+            BorderTracer tracer = new BorderTracer(func, view.xs, view.cys);
+            for (int y0 = 0; y0 < h; y0 += Tiles.TILE_SIZE) {
+                for (int x0 = 0; x0 < w; x0 += Tiles.TILE_SIZE) {
+                    int x1 = Math.min(x0 + Tiles.TILE_SIZE, w);
+                    traceTile(view, tracer, x0, y0, x1, Math.min(y0 + Tiles.TILE_SIZE, h));
+                }
+            }
+        } else {
+            Tiles.paint(pool, w, h, () -> {
+                BorderTracer tracer = new BorderTracer(func.copy(), view.xs, view.cys);
+                return (x0, y0, x1, y1) -> traceTile(view, tracer, x0, y0, x1, y1);
+            });
+        }
+    }
+
+    /**
+     * Shades the pixels from (x0, y0) up to but excluding (x1, y1) from the values tracer finds for them
+     */
+    private void traceTile(View view, BorderTracer tracer, int x0, int y0, int x1, int y1) {
+        float[] values = tracer.trace(x0, y0, x1, y1);
+        int n = x1 - x0;
+        for (int y = y0; y < y1; y++) {
+            for (int i = 0; i < n; i++) {
+                shadePixel(view.pixels, y * view.w + x0 + i, GraphType.GRAYSCALE, values[(y - y0) * n + i], 0, 0);
             }
         }
     }
 
-    private void writePixel(int[] pixels, int w, int h, Evaluatable func,
-                            float[] graphData, GraphType gtype,
-                            int x, int y) {
+    /**
+     * Graphs func on the pixels from (x0, y0) up to but excluding (x1, y1)
+     */
+    private void drawTile(View view, Evaluatable func, int x0, int y0, int x1, int y1) {
+        int n = x1 - x0;
+        if (view.gtype == GraphType.BOUNDARY) {
+            // each point is shared by the pixels around it, see Lattice
+            Lattice.Rows rows = view.lattice.new Rows(func, n);
+            for (int y = y0; y < y1; y++) {
+                rows.sample(x0, x1, y);
+                for (int i = 0; i < n; i++) {
+                    shadePixel(view.pixels, y * view.w + x0 + i, view.gtype,
+                            rows.currVals[0][i], rows.xVals[0][i], rows.yVals[0][i]);
+                }
+            }
+            return;
+        }
 
-        // This can be moved outside the double-for loop
-        // but "premature optimization is the root of all evil"
-        // currently this avoids long parameter list and data clump
-        float scale = graphData[0];
-        float xpos = graphData[1];
-        float ypos = graphData[2];
-        float pixelSize = scale / (float) w;
+        // Whole rows of the tile are evaluated at once, see Evaluatable.evaluate(float[], float[], float[], int)
+        float[] xs = Arrays.copyOfRange(view.xs, x0, x1);
+        float[] ys = new float[n];
+        float[] currVals = new float[n];
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(ys, view.cys[y]);
+            func.evaluate(xs, ys, currVals, n);
+            for (int i = 0; i < n; i++) {
+                shadePixel(view.pixels, y * view.w + x0 + i, view.gtype, currVals[i], 0, 0);
+            }
+        }
+    }
 
-        // Convert pixel coordinate to graphing-space coordinate
-        float cx = (x / (float) w - 0.5f) * scale + xpos;
-        float cy = -(y / (float) h - 0.5f) * scale + ypos;
+    /**
+     * Writes the graphs of several functions onto the image represented by pixels, evaluating all of them
+     * together at each point. The image is the same as graphing each function in turn.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param funcs     the functions to be graphed
+     * @param count     the number of functions in funcs
+     * @param graphData array of {scale, x position, y position}
+     * @param gtype     the type of graph to generate
+     */
+    public void graph(int[] pixels, int w, int h, MultiEvaluatable funcs, int count, float[] graphData,
+                      GraphType gtype) {
+        View view = new View(pixels, w, h, graphData, gtype);
+        if (pool == null || funcs.copy() == null) {
+            drawTile(view, funcs, count, 0, 0, w, h);
+        } else {
+            Tiles.paint(pool, w, h, () -> {
+                MultiEvaluatable copy = funcs.copy();
+                return (x0, y0, x1, y1) -> drawTile(view, copy, count, x0, y0, x1, y1);
+            });
+        }
+    }
 
+    /**
+     * Graphs the count functions of funcs on the pixels from (x0, y0) up to but excluding (x1, y1), in the same way
+     * as drawTile(View, Evaluatable, ...) graphs one
+     */
+    private void drawTile(View view, MultiEvaluatable funcs, int count, int x0, int y0, int x1, int y1) {
+        int n = x1 - x0;
+        if (view.gtype == GraphType.BOUNDARY) {
+            Lattice.Rows rows = view.lattice.new Rows(funcs, count, n);
+            for (int y = y0; y < y1; y++) {
+                rows.sample(x0, x1, y);
+                for (int f = 0; f < count; f++) {
+                    for (int i = 0; i < n; i++) {
+                        shadePixel(view.pixels, y * view.w + x0 + i, view.gtype,
+                                rows.currVals[f][i], rows.xVals[f][i], rows.yVals[f][i]);
+                    }
+                }
+            }
+            return;
+        }
+
+        float[] xs = Arrays.copyOfRange(view.xs, x0, x1);
+        float[] ys = new float[n];
+        float[][] currVals = new float[count][n];
+        for (int y = y0; y < y1; y++) {
+            Arrays.fill(ys, view.cys[y]);
+            funcs.evaluate(xs, ys, currVals, n);
+            for (int f = 0; f < count; f++) {
+                for (int i = 0; i < n; i++) {
+                    shadePixel(view.pixels, y * view.w + x0 + i, view.gtype, currVals[f][i], 0, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * The image and coordinates of a single call to graph, shared by the tiles
+     */
+    private static final class View {
+        private final int[] pixels;
+        private final int w;
+        private final GraphType gtype;
+        // The graphing-space coordinates of the pixels
+        private final float[] xs;
+        private final float[] cys;
+        private final Lattice lattice; // null unless the graph is a BOUNDARY
+
+        private View(int[] pixels, int w, int h, float[] graphData, GraphType gtype) {
+            this.pixels = pixels;
+            this.w = w;
+            this.gtype = gtype;
+            float scale = graphData[0];
+            float xpos = graphData[1];
+            float ypos = graphData[2];
+            float pixelSize = scale / (float) w;
+            xs = new float[w];
+            // the points one pixel size to the right and up, which BOUNDARY graphs compare the pixels with
+            float[] rightXs = new float[w];
+            for (int x = 0; x < w; x++) {
+                // Convert pixel coordinate to graphing-space coordinate
+                xs[x] = (x / (float) w - 0.5f) * scale + xpos;
+                rightXs[x] = xs[x] + pixelSize;
+            }
+            cys = new float[h];
+            float[] upYs = new float[h];
+            for (int y = 0; y < h; y++) {
+                cys[y] = -(y / (float) h - 0.5f) * scale + ypos;
+                upYs[y] = cys[y] + pixelSize;
+            }
+            lattice = gtype == GraphType.BOUNDARY ? new Lattice(xs, rightXs, cys, upYs) : null;
+        }
+    }
+
+    /**
+     * Colours one pixel from the values sampled for it, shared with QuadtreeGrapher so that both draw the same
+     *
+     * @param index   index of the pixel in pixels
+     * @param currVal the value of the function at the pixel
+     * @param xVal    the value one pixel to the right, only used for BOUNDARY
+     * @param yVal    the value one pixel up, only used for BOUNDARY
+     */
+    void shadePixel(int[] pixels, int index, GraphType gtype, float currVal, float xVal, float yVal) {
         if (gtype == GraphType.REGION) {
-            if (func.evaluate(cx, cy) < 0) {
-                pixels[y * w + x] = BLACK;
+            if (currVal < 0) {
+                pixels[index] = BLACK;
             }
         } else if (gtype == GraphType.GRAYSCALE) {
-            float result = func.evaluate(cx, cy);
-            String outR = fmtHex255((int) (255 * Math.sqrt(result)));
-            pixels[y * w + x] = (int) Long.parseLong("FF" + outR + outR + outR, 16);
+            pixels[index] = colormap.colour(currVal);
         } else if (gtype == GraphType.BOUNDARY) {
-            float currVal = func.evaluate(cx, cy);
-            float xVal = func.evaluate(cx + pixelSize, cy);
-            float yVal = func.evaluate(cx, cy + pixelSize);
-
             // If any are NaN then the sum will be NaN
             if (Float.isNaN(currVal + xVal + yVal)) {
                 return;
             }
             if ((currVal > 0) ^ (xVal > 0)) {
-                pixels[y * w + x] = BLACK;
+                pixels[index] = BLACK;
             }
             if ((currVal > 0) ^ (yVal > 0)) {
-                pixels[y * w + x] = BLACK;
+                pixels[index] = BLACK;
             }
         }
     }
@@ -0,0 +1,388 @@
+package Graphics;
+
+import java.io.Serializable;
+
+/**
+ * An Interval encloses every value an expression takes as its variables range over intervals of their own.
+ * <p>
+ * Bounds are rounded outwards, so the interval also encloses the float values the scalar evaluators compute
+ * at each point, rounding errors included. Points where the expression is undefined (NaN) are tracked separately:
+ * the bounds only enclose the defined values, and isMaybeUndefined tells whether there may be undefined ones.
+ * An empty interval stands for an expression that is undefined everywhere.
+ * <p>
+ * Boolean expressions evaluate to subintervals of [0, 1] like in CompiledExpression: TRUE, FALSE, or UNKNOWN when
+ * the expression holds at some points but not at others.
+ * <p>
+ * Intervals are Serializable as NumberExpressions, which are saved with Axes, keep theirs.
+ */
+public final class Interval implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final Interval UNDEFINED = new Interval(Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, true);
+    public static final Interval ENTIRE = new Interval(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, true);
+    public static final Interval FALSE = new Interval(0, 0, false);
+    public static final Interval TRUE = new Interval(1, 1, false);
+    public static final Interval UNKNOWN = new Interval(0, 1, false);
+
+    private static final double TWO_PI = 2 * Math.PI;
+    // beyond this the periodic functions are not worth reducing, they just take every value in [-1, 1]
+    private static final double MAX_REDUCED = 1e6;
+
+    private final float lo;
+    private final float hi;
+    private final boolean maybeUndefined;
+
+    private Interval(float lo, float hi, boolean maybeUndefined) {
+        this.lo = lo;
+        this.hi = hi;
+        this.maybeUndefined = maybeUndefined;
+    }
+
+    /**
+     * @param lo The smallest value
+     * @param hi The largest value, not less than lo
+     * @return The interval of the floats from lo to hi
+     */
+    public static Interval of(float lo, float hi) {
+        if (!(lo <= hi)) {
+            throw new IllegalArgumentException("Not an interval: [" + lo + ", " + hi + "]");
+        }
+        return new Interval(lo, hi, false);
+    }
+
+    /**
+     * @param value A float, which may be NaN
+     * @return The interval holding only value
+     */
+    public static Interval point(float value) {
+        return Float.isNaN(value) ? UNDEFINED : new Interval(value, value, false);
+    }
+
+    /**
+     * @return The smallest value, positive infinity if the interval is empty
+     */
+    public float getLo() {
+        return lo;
+    }
+
+    /**
+     * @return The largest value, negative infinity if the interval is empty
+     */
+    public float getHi() {
+        return hi;
+    }
+
+    /**
+     * @return Whether the expression may be undefined at some of the points
+     */
+    public boolean isMaybeUndefined() {
+        return maybeUndefined;
+    }
+
+    /**
+     * @return Whether the expression is undefined at every point
+     */
+    public boolean isEmpty() {
+        return lo > hi;
+    }
+
+    /**
+     * @return Whether the boolean expression holds at every point
+     */
+    public boolean isTrue() {
+        return lo == 1 && !maybeUndefined;
+    }
+
+    /**
+     * @return Whether the boolean expression holds at no point
+     */
+    public boolean isFalse() {
+        return hi == 0 || isEmpty();
+    }
+
+    /**
+     * Rounds the bounds computed in double outwards to floats. Two double ulps are given up first, as the
+     * transcendental functions of Math may be off by one ulp and are only semi-monotonic.
+     */
+    private static Interval rounded(double lo, double hi, boolean maybeUndefined) {
+        if (Double.isNaN(lo) || Double.isNaN(hi)) {
+            // e.g. infinity - infinity, the values could be anything
+            return ENTIRE;
+        }
+        lo = Math.nextDown(Math.nextDown(lo));
+        hi = Math.nextUp(Math.nextUp(hi));
+        float floatLo = (float) lo;
+        if (floatLo > lo) {
+            floatLo = Math.nextDown(floatLo);
+        }
+        float floatHi = (float) hi;
+        if (floatHi < hi) {
+            floatHi = Math.nextUp(floatHi);
+        }
+        return new Interval(floatLo, floatHi, maybeUndefined);
+    }
+
+    private boolean contains(double value) {
+        return lo <= value && value <= hi;
+    }
+
+    public Interval add(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded((double) lo + other.lo, (double) hi + other.hi, maybeUndefined || other.maybeUndefined);
+    }
+
+    public Interval sub(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded((double) lo - other.hi, (double) hi - other.lo, maybeUndefined || other.maybeUndefined);
+    }
+
+    public Interval mul(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        double a = (double) lo * other.lo;
+        double b = (double) lo * other.hi;
+        double c = (double) hi * other.lo;
+        double d = (double) hi * other.hi;
+        return rounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)),
+                maybeUndefined || other.maybeUndefined);
+    }
+
+    /**
+     * Unlike mul(this) this knows that both factors are the same value, so the result is never negative
+     */
+    public Interval square() {
+        if (isEmpty()) {
+            return UNDEFINED;
+        }
+        double loSquared = (double) lo * lo;
+        double hiSquared = (double) hi * hi;
+        if (lo >= 0) {
+            return rounded(loSquared, hiSquared, maybeUndefined);
+        } else if (hi <= 0) {
+            return rounded(hiSquared, loSquared, maybeUndefined);
+        }
+        return rounded(0, Math.max(loSquared, hiSquared), maybeUndefined);
+    }
+
+    public Interval div(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        if (other.contains(0)) {
+            return ENTIRE;
+        }
+        double a = (double) lo / other.lo;
+        double b = (double) lo / other.hi;
+        double c = (double) hi / other.lo;
+        double d = (double) hi / other.hi;
+        return rounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)),
+                maybeUndefined || other.maybeUndefined);
+    }
+
+    public Interval pow(Interval exponent) {
+        if (isEmpty() || exponent.isEmpty()) {
+            return UNDEFINED;
+        }
+        boolean undefined = maybeUndefined || exponent.maybeUndefined;
+        double n = exponent.lo;
+        if (exponent.lo == exponent.hi && n == Math.rint(n)) {
+            // x^n is monotone on either side of 0, and only dips down to 0 in between for even positive n
+            double a = Math.pow(lo, n);
+            double b = Math.pow(hi, n);
+            if (n < 0 && contains(0)) {
+                return ENTIRE;
+            }
+            double min = n > 0 && n % 2 == 0 && contains(0) ? 0 : Math.min(a, b);
+            return rounded(min, Math.max(a, b), undefined);
+        }
+        if (lo < 0) {
+            // negative numbers only have integer powers
+            if (exponent.lo != exponent.hi) {
+                boolean integerExponents = Math.floor(exponent.hi) >= Math.ceil(exponent.lo);
+                return hi < 0 && !integerExponents ? UNDEFINED : ENTIRE;
+            }
+            if (hi < 0) {
+                return UNDEFINED;
+            }
+            undefined = true;
+        }
+        // for non-negative bases, pow is monotone in each argument, so its extremes are at the corners
+        double base = Math.max(lo, 0);
+        double a = Math.pow(base, exponent.lo);
+        double b = Math.pow(base, exponent.hi);
+        double c = Math.pow(hi, exponent.lo);
+        double d = Math.pow(hi, exponent.hi);
+        return rounded(Math.min(Math.min(a, b), Math.min(c, d)), Math.max(Math.max(a, b), Math.max(c, d)), undefined);
+    }
+
+    public Interval max(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        return new Interval(Math.max(lo, other.lo), Math.max(hi, other.hi), maybeUndefined || other.maybeUndefined);
+    }
+
+    public Interval min(Interval other) {
+        if (isEmpty() || other.isEmpty()) {
+            return UNDEFINED;
+        }
+        return new Interval(Math.min(lo, other.lo), Math.min(hi, other.hi), maybeUndefined || other.maybeUndefined);
+    }
+
+    public Interval sqrt() {
+        if (hi < 0 || isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.sqrt(Math.max(lo, 0)), Math.sqrt(hi), maybeUndefined || lo < 0);
+    }
+
+    public Interval exp() {
+        if (isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.exp(lo), Math.exp(hi), maybeUndefined).max(point(0));
+    }
+
+    public Interval log() {
+        if (hi < 0 || isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.log(Math.max(lo, 0)), Math.log(hi), maybeUndefined || lo < 0);
+    }
+
+    public Interval sin() {
+        return periodic(false);
+    }
+
+    public Interval cos() {
+        return periodic(true);
+    }
+
+    /**
+     * sin and cos are found from their values at the ends, unless the interval contains one of their
+     * maxima or minima
+     */
+    private Interval periodic(boolean cos) {
+        if (isEmpty()) {
+            return UNDEFINED;
+        }
+        if (hi - lo >= TWO_PI || Math.abs(lo) > MAX_REDUCED || Math.abs(hi) > MAX_REDUCED) {
+            return new Interval(-1, 1, maybeUndefined);
+        }
+        double a = cos ? Math.cos(lo) : Math.sin(lo);
+        double b = cos ? Math.cos(hi) : Math.sin(hi);
+        double maximum = cos ? 0 : Math.PI / 2;
+        double min = containsPeriodic(maximum + Math.PI, TWO_PI) ? -1 : Math.min(a, b);
+        double max = containsPeriodic(maximum, TWO_PI) ? 1 : Math.max(a, b);
+        Interval result = rounded(min, max, maybeUndefined);
+        return new Interval(Math.max(result.lo, -1), Math.min(result.hi, 1), maybeUndefined);
+    }
+
+    /**
+     * @return Whether the interval may contain offset + k * period for some integer k
+     */
+    private boolean containsPeriodic(double offset, double period) {
+        // erring on the side of yes only makes the result wider
+        return Math.floor((hi - offset) / period + 1e-9) >= Math.ceil((lo - offset) / period - 1e-9);
+    }
+
+    public Interval tan() {
+        if (isEmpty()) {
+            return UNDEFINED;
+        }
+        if (hi - lo >= Math.PI || Math.abs(lo) > MAX_REDUCED || Math.abs(hi) > MAX_REDUCED
+                || containsPeriodic(Math.PI / 2, Math.PI)) {
+            return new Interval(Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, maybeUndefined);
+        }
+        return rounded(Math.tan(lo), Math.tan(hi), maybeUndefined);
+    }
+
+    public Interval arcsin() {
+        if (hi < -1 || lo > 1 || isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.asin(Math.max(lo, -1)), Math.asin(Math.min(hi, 1)), maybeUndefined || lo < -1 || hi > 1);
+    }
+
+    public Interval arccos() {
+        if (hi < -1 || lo > 1 || isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.acos(Math.min(hi, 1)), Math.acos(Math.max(lo, -1)), maybeUndefined || lo < -1 || hi > 1);
+    }
+
+    public Interval arctan() {
+        if (isEmpty()) {
+            return UNDEFINED;
+        }
+        return rounded(Math.atan(lo), Math.atan(hi), maybeUndefined);
+    }
+
+    /**
+     * mandel is a fraction of its iterations, and is defined even where its inputs are not
+     */
+    public static Interval mandel(Interval cx, Interval cy) {
+        return new Interval(0, 1, false);
+    }
+
+    /**
+     * @param domain Where the expression is defined, see the comparisons
+     * @return This interval with the points outside of domain made undefined
+     */
+    public Interval restrict(Interval domain) {
+        if (domain.isFalse()) {
+            return UNDEFINED;
+        }
+        return domain.isTrue() ? this : new Interval(lo, hi, true);
+    }
+
+    /*
+     * Comparisons with NaN never hold, so they can only be certain to hold when both sides are defined everywhere
+     */
+
+    public Interval ge(Interval other) {
+        return compare(lo >= other.hi, hi < other.lo, other);
+    }
+
+    public Interval le(Interval other) {
+        return other.ge(this);
+    }
+
+    public Interval gt(Interval other) {
+        return compare(lo > other.hi, hi <= other.lo, other);
+    }
+
+    public Interval lt(Interval other) {
+        return other.gt(this);
+    }
+
+    public Interval eq(Interval other) {
+        boolean same = lo == hi && other.lo == other.hi && lo == other.lo;
+        return compare(same, hi < other.lo || other.hi < lo, other);
+    }
+
+    private Interval compare(boolean alwaysHolds, boolean neverHolds, Interval other) {
+        if (isEmpty() || other.isEmpty() || neverHolds) {
+            return FALSE;
+        }
+        return alwaysHolds && !maybeUndefined && !other.maybeUndefined ? TRUE : UNKNOWN;
+    }
+
+    public Interval and(Interval other) {
+        return new Interval(Math.min(lo, other.lo), Math.min(hi, other.hi), false);
+    }
+
+    public Interval or(Interval other) {
+        return new Interval(Math.max(lo, other.lo), Math.max(hi, other.hi), false);
+    }
+
+    @Override
+    public String toString() {
+        return isEmpty() ? "[]" : "[" + lo + ", " + hi + "]" + (maybeUndefined ? "?" : "");
+    }
+}
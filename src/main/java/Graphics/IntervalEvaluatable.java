@@ -0,0 +1,16 @@
+package Graphics;
+
+/**
+ * This is an interface for expressions that can be evaluated over whole boxes of points at once
+ * implemented by RealValuedExpression
+ */
+
+public interface IntervalEvaluatable {
+
+    /**
+     * @param x the values x ranges over
+     * @param y the values y ranges over
+     * @return An interval enclosing f(x, y) at every point of the box, see Interval
+     */
+    Interval evaluate(Interval x, Interval y);
+}
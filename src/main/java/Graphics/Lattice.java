@@ -0,0 +1,170 @@
+package Graphics;
+
+import java.util.Arrays;
+
+/**
+ * A Lattice samples BOUNDARY graphs, which compare the value at each pixel with the values one pixel size to the
+ * right and up. Those points are usually the points of the neighbouring pixels, so each point of the lattice is
+ * evaluated once per row and the row above is kept, instead of evaluating every pixel three times.
+ * <p>
+ * The neighbours are only reused where their coordinates are exactly the same floats as the ones one pixel size
+ * away, which rounding does not always give; the other points are evaluated on their own. The values are
+ * therefore always those of evaluating every pixel three times. Several functions can be sampled together, so that
+ * the work they have in common is shared as well, see MultiEvaluatable.
+ */
+final class Lattice {
+    private final float[] xs;
+    private final float[] rightXs;
+    private final float[] cys;
+    private final float[] upYs;
+    // Whether rightXs[x] is xs[x + 1]
+    private final boolean[] rightShared;
+    // Whether upYs[y] is cys[y - 1]
+    private final boolean[] upShared;
+
+    /**
+     * @param xs      the x coordinate of each column of pixels
+     * @param rightXs the x coordinates one pixel size to the right of xs
+     * @param cys     the y coordinate of each row of pixels, from the top
+     * @param upYs    the y coordinates one pixel size up from cys
+     */
+    Lattice(float[] xs, float[] rightXs, float[] cys, float[] upYs) {
+        this.xs = xs;
+        this.rightXs = rightXs;
+        this.cys = cys;
+        this.upYs = upYs;
+        rightShared = new boolean[xs.length];
+        for (int x = 0; x + 1 < xs.length; x++) {
+            // -0 and 0 are told apart, as functions such as 1/x tell them apart
+            rightShared[x] = Float.floatToRawIntBits(rightXs[x]) == Float.floatToRawIntBits(xs[x + 1]);
+        }
+        upShared = new boolean[cys.length];
+        for (int y = 1; y < cys.length; y++) {
+            upShared[y] = Float.floatToRawIntBits(upYs[y]) == Float.floatToRawIntBits(cys[y - 1]);
+        }
+    }
+
+    /**
+     * Samples rows of one or more functions with buffers of its own, so that each thread needs its own Rows
+     */
+    final class Rows {
+        private final MultiEvaluatable funcs;
+
+        // The values of each function at the pixels of the last row sampled, and one pixel size to the right and up
+        // from them
+        final float[][] currVals;
+        final float[][] xVals;
+        final float[][] yVals;
+
+        // The coordinates of the columns sampled, including the column right of the last one when there is one
+        private final float[] rowXs;
+        private final float[] rowYs;
+        private final float[] rowUpYs;
+        // The values of the current row and the row sampled before, at rowXs
+        private float[][] row;
+        private float[][] previousRow;
+        // The points one pixel size to the right that are not on the lattice, and their columns
+        private final float[] strayXs;
+        private final int[] strayColumns;
+
+        private int x0 = -1;
+        private int x1 = -1;
+        private int lastY = -1;
+
+        /**
+         * @param func     the function to be sampled, whose values are at index 0
+         * @param maxWidth the largest number of columns sampled at once
+         */
+        Rows(Evaluatable func, int maxWidth) {
+            this(new MultiEvaluatable() {
+                @Override
+                public void evaluate(float x, float y, float[] out) {
+                    out[0] = func.evaluate(x, y);
+                }
+
+                @Override
+                public void evaluate(float[] xs, float[] ys, float[][] outs, int n) {
+                    func.evaluate(xs, ys, outs[0], n);
+                }
+            }, 1, maxWidth);
+        }
+
+        /**
+         * @param funcs    the functions to be sampled, all at once
+         * @param count    the number of functions in funcs
+         * @param maxWidth the largest number of columns sampled at once
+         */
+        Rows(MultiEvaluatable funcs, int count, int maxWidth) {
+            this.funcs = funcs;
+            currVals = new float[count][maxWidth];
+            xVals = new float[count][maxWidth];
+            yVals = new float[count][maxWidth];
+            rowXs = new float[maxWidth + 1];
+            rowYs = new float[maxWidth + 1];
+            rowUpYs = new float[maxWidth];
+            row = new float[count][maxWidth + 1];
+            previousRow = new float[count][maxWidth + 1];
+            strayXs = new float[maxWidth];
+            strayColumns = new int[maxWidth];
+        }
+
+        /**
+         * Samples the pixels of row y from column x0 up to but excluding x1 into currVals, xVals and yVals,
+         * at index x - x0. Sampling the rows of a box from top to bottom reuses each row for the next one.
+         */
+        void sample(int x0, int x1, int y) {
+            int n = x1 - x0;
+            // the column right of the box is only needed when it is inside the image
+            int count = Math.min(x1 + 1, xs.length) - x0;
+            boolean sameColumns = x0 == this.x0 && x1 == this.x1;
+            if (!sameColumns) {
+                System.arraycopy(xs, x0, rowXs, 0, count);
+            }
+
+            float[][] swap = previousRow;
+            previousRow = row;
+            row = swap;
+            Arrays.fill(rowYs, 0, count, cys[y]);
+            funcs.evaluate(rowXs, rowYs, row, count);
+            for (int f = 0; f < row.length; f++) {
+                System.arraycopy(row[f], 0, currVals[f], 0, n);
+            }
+
+            int strays = 0;
+            for (int i = 0; i < n; i++) {
+                if (!rightShared[x0 + i]) {
+                    strayXs[strays] = rightXs[x0 + i];
+                    strayColumns[strays++] = i;
+                }
+            }
+            if (strays > 0) {
+                // xVals holds the values until they are moved to their columns, which are never to the left
+                funcs.evaluate(strayXs, rowYs, xVals, strays);
+                for (float[] values : xVals) {
+                    for (int k = strays - 1; k >= 0; k--) {
+                        values[strayColumns[k]] = values[k];
+                    }
+                }
+            }
+            for (int f = 0; f < row.length; f++) {
+                for (int i = 0; i < n; i++) {
+                    if (rightShared[x0 + i]) {
+                        xVals[f][i] = row[f][i + 1];
+                    }
+                }
+            }
+
+            if (sameColumns && y == lastY + 1 && upShared[y]) {
+                for (int f = 0; f < row.length; f++) {
+                    System.arraycopy(previousRow[f], 0, yVals[f], 0, n);
+                }
+            } else {
+                Arrays.fill(rowUpYs, 0, n, upYs[y]);
+                funcs.evaluate(rowXs, rowUpYs, yVals, n);
+            }
+            this.x0 = x0;
+            this.x1 = x1;
+            lastY = y;
+        }
+    }
+}
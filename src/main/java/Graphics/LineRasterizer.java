@@ -0,0 +1,98 @@
+package Graphics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LineRasterizer draws polylines onto an image with anti-aliasing, using Xiaolin Wu's algorithm: each step along
+ * a line covers the two pixels nearest to it in proportion to how close it passes to them.
+ * <p>
+ * The coverage of the pixels is collected first, keeping the largest a pixel gets, and then blended with the
+ * image once, so pixels where segments meet are not darkened twice.
+ */
+public class LineRasterizer {
+    private static final int LINE_COLOR = 0x000000;
+
+    private float[] coverage = new float[0];
+
+    /**
+     * Draws polylines in graphing-space coordinates onto the image represented by pixels.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param polylines the polylines to be drawn
+     * @param graphData array of {scale, x position, y position}
+     */
+    public void draw(int[] pixels, int w, int h, List<Polyline> polylines, float[] graphData) {
+        if (coverage.length != w * h) {
+            coverage = new float[w * h];
+        }
+        float scale = graphData[0];
+        float xpos = graphData[1];
+        float ypos = graphData[2];
+        for (Polyline line : polylines) {
+            int size = line.size();
+            int segments = line.isClosed() ? size : size - 1;
+            for (int k = 0; k < segments; k++) {
+                int next = (k + 1) % size;
+                // ImplicitGrapher draws pixel x for the points from its coordinate to the next, so that is
+                // where its centre is
+                segment(w, h,
+                        ((line.getX(k) - xpos) / scale + 0.5f) * w - 0.5f,
+                        (0.5f - (line.getY(k) - ypos) / scale) * h - 0.5f,
+                        ((line.getX(next) - xpos) / scale + 0.5f) * w - 0.5f,
+                        (0.5f - (line.getY(next) - ypos) / scale) * h - 0.5f);
+            }
+        }
+        for (int i = 0; i < coverage.length; i++) {
+            if (coverage[i] > 0) {
+                pixels[i] = Compositor.over(LINE_COLOR, coverage[i], pixels[i]);
+            }
+        }
+        Arrays.fill(coverage, 0);
+    }
+
+    /**
+     * Covers the pixels along the segment from (x0, y0) to (x1, y1), in pixel coordinates
+     */
+    private void segment(int w, int h, float x0, float y0, float x1, float y1) {
+        if (!Float.isFinite(x0 + y0 + x1 + y1)) {
+            return;
+        }
+        // step along the longer side, so that consecutive steps are at most one pixel apart along the shorter one
+        boolean steep = Math.abs(y1 - y0) > Math.abs(x1 - x0);
+        float a0 = steep ? y0 : x0;
+        float b0 = steep ? x0 : y0;
+        float a1 = steep ? y1 : x1;
+        float b1 = steep ? x1 : y1;
+        if (a0 > a1) {
+            float swap = a0;
+            a0 = a1;
+            a1 = swap;
+            swap = b0;
+            b0 = b1;
+            b1 = swap;
+        }
+        float gradient = a1 == a0 ? 0 : (b1 - b0) / (a1 - a0);
+        int limit = steep ? h : w;
+        int start = Math.max(0, Math.round(a0));
+        int end = Math.min(limit - 1, Math.round(a1));
+        for (int a = start; a <= end; a++) {
+            float b = b0 + gradient * (a - a0);
+            int near = (int) Math.floor(b);
+            float far = b - near;
+            cover(w, h, steep, a, near, 1 - far);
+            cover(w, h, steep, a, near + 1, far);
+        }
+    }
+
+    private void cover(int w, int h, boolean steep, int a, int b, float amount) {
+        int x = steep ? b : a;
+        int y = steep ? a : b;
+        if (x >= 0 && x < w && y >= 0 && y < h) {
+            int index = y * w + x;
+            coverage[index] = Math.max(coverage[index], amount);
+        }
+    }
+}
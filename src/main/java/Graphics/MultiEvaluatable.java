@@ -0,0 +1,42 @@
+package Graphics;
+
+/**
+ * This is an interface for evaluating several expressions at once, so that the work they have in common
+ * is only done once per point. Implemented by CompiledExpressionGroup
+ */
+
+public interface MultiEvaluatable {
+
+    /**
+     * @param x   a variable
+     * @param y   another variable
+     * @param out receives f_i(x, y) at index i, for each expression f_i
+     */
+    void evaluate(float x, float y, float[] out);
+
+    /**
+     * Evaluates every expression at n points at once, see Evaluatable.evaluate(float[], float[], float[], int)
+     *
+     * @param xs   the x coordinates of the points
+     * @param ys   the y coordinates of the points
+     * @param outs receives f_i(xs[k], ys[k]) at outs[i][k], for each expression f_i
+     * @param n    the number of points
+     */
+    default void evaluate(float[] xs, float[] ys, float[][] outs, int n) {
+        float[] out = new float[outs.length];
+        for (int k = 0; k < n; k++) {
+            evaluate(xs[k], ys[k], out);
+            for (int i = 0; i < outs.length; i++) {
+                outs[i][k] = out[i];
+            }
+        }
+    }
+
+    /**
+     * @return A MultiEvaluatable of the same functions that can be used on another thread at the same time as this
+     * one, or null if there is none, see Evaluatable.copy
+     */
+    default MultiEvaluatable copy() {
+        return null;
+    }
+}
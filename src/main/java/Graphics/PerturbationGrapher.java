@@ -0,0 +1,223 @@
+package Graphics;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PerturbationGrapher graphs mandel and smoothmandel in views far smaller than double can resolve, by perturbation:
+ * the orbit of one reference point C is iterated once in arbitrary precision, and each pixel C + dc only iterates
+ * its difference d from that orbit, d -> 2 Z d + d^2 + dc, in double precision.
+ * <p>
+ * Differences too small for a double are kept as a double times 2^e, where 2^e is about the scale of the view,
+ * until they have grown large enough to be held as they are, so views down to about 1e-500 across can be graphed.
+ * A difference that becomes larger than the point of the orbit it is added to has lost the precision it needs,
+ * which shows as glitches: blobs of pixels with the same wrong value. Such a pixel, and one whose reference orbit
+ * has escaped before it did, is rebased: its difference becomes its whole value z, and it carries on from the
+ * start of the reference orbit, which needs neither glitch detection nor a second reference.
+ * <p>
+ * The values are those of EscapeTimeKernel.evaluate at the pixels, up to rounding of the iteration they escape at.
+ */
+public class PerturbationGrapher {
+    // Views whose scale is below 2^MIN_EXPONENT, about 1e-500, are too small for the scaled differences
+    private static final int MIN_EXPONENT = -1660;
+    // Scaled differences are held as they are once they reach 2^(UNSCALE_EXPONENT - e)
+    private static final int UNSCALE_EXPONENT = -900;
+    // Digits of the reference orbit beyond those the scale of the view needs
+    private static final int GUARD_DIGITS = 20;
+    // When the orbit of the centre escapes, the points of a grid this many pixels across are tried instead
+    private static final int CANDIDATES = 5;
+
+    private final ImplicitGrapher shader = new ImplicitGrapher();
+    private ForkJoinPool pool; // Renders tiles of the image in parallel, or null to graph on the calling thread
+
+    /**
+     * @param pool The pool to graph tiles of the image on, or null to graph on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param colormap The colours of the values, see ImplicitGrapher.setColormap
+     */
+    public void setColormap(Colormap colormap) {
+        shader.setColormap(colormap);
+    }
+
+    /**
+     * Writes the GRAYSCALE graph of the escape time of kernel onto the image represented by pixels.
+     *
+     * @param pixels array representing an ARGB image of dimensions (w,h)
+     * @param w      width of the image represented by pixels
+     * @param h      height of the image represented by pixels
+     * @param scale  the width of the view, positive
+     * @param xpos   the x coordinate of the centre of the view
+     * @param ypos   the y coordinate of the centre of the view
+     * @param kernel the escape time to graph, and the number of iterations to take
+     */
+    public void graph(int[] pixels, int w, int h, BigDecimal scale, BigDecimal xpos, BigDecimal ypos,
+                      EscapeTimeKernel kernel) {
+        double[] values = values(w, h, scale, xpos, ypos, kernel);
+        for (int i = 0; i < w * h; i++) {
+            shader.shadePixel(pixels, i, GraphType.GRAYSCALE, (float) values[i], 0, 0);
+        }
+    }
+
+    /**
+     * @param w      width of the image
+     * @param h      height of the image
+     * @param scale  the width of the view, positive
+     * @param xpos   the x coordinate of the centre of the view
+     * @param ypos   the y coordinate of the centre of the view
+     * @param kernel the escape time to evaluate, and the number of iterations to take
+     * @return The values of kernel at the pixels of the image, row by row
+     */
+    public double[] values(int w, int h, BigDecimal scale, BigDecimal xpos, BigDecimal ypos,
+                           EscapeTimeKernel kernel) {
+        if (scale.signum() <= 0) {
+            throw new IllegalArgumentException("Scale must be positive");
+        }
+        // scale = mantissa * 2^exponent, with the mantissa in [1, 2)
+        int exp10 = scale.precision() - scale.scale() - 1;
+        double log2 = (Math.log(scale.movePointLeft(exp10).doubleValue()) + exp10 * Math.log(10)) / Math.log(2);
+        int exponent = (int) Math.floor(log2);
+        if (exponent < MIN_EXPONENT) {
+            throw new IllegalArgumentException("Scale is too small to graph");
+        }
+        double mantissa = Math.pow(2, log2 - exponent);
+        MathContext context = new MathContext(Math.max(0, -exp10) + GUARD_DIGITS);
+
+        Orbit reference = new Orbit(w / 2, h / 2, w, h, scale, xpos, ypos, kernel, context);
+        for (int i = 0; i < CANDIDATES * CANDIDATES && reference.escapes(kernel); i++) {
+            int rx = (int) ((i % CANDIDATES + 0.5) * w / CANDIDATES);
+            int ry = (int) ((i / CANDIDATES + 0.5) * h / CANDIDATES);
+            Orbit candidate = new Orbit(rx, ry, w, h, scale, xpos, ypos, kernel, context);
+            if (candidate.length > reference.length) {
+                reference = candidate;
+            }
+        }
+
+        double[] values = new double[w * h];
+        Orbit orbit = reference;
+        Tiles.Painter painter = (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                // the differences from the reference, in units of 2^exponent
+                double dcy = -(y - orbit.y) / (double) h * mantissa;
+                for (int x = x0; x < x1; x++) {
+                    double dcx = (x - orbit.x) / (double) w * mantissa;
+                    values[y * w + x] = value(orbit, exponent, dcx, dcy, kernel);
+                }
+            }
+        };
+        if (pool == null) {
+            painter.paint(0, 0, w, h);
+        } else {
+            Tiles.paint(pool, w, h, () -> painter);
+        }
+        return values;
+    }
+
+    /**
+     * @param dcx the x difference of the pixel from the reference point, in units of 2^exponent
+     * @param dcy the y difference of the pixel from the reference point, in units of 2^exponent
+     * @return The value of kernel at the pixel
+     */
+    private static double value(Orbit orbit, int exponent, double dcx, double dcy, EscapeTimeKernel kernel) {
+        int maxIterations = kernel.getMaxIterations();
+        double bailout = kernel.getBailout();
+        double[] zxs = orbit.xs;
+        double[] zys = orbit.ys;
+        int last = orbit.length - 1;
+
+        // While the difference w * 2^exponent is too small for a double it is far smaller than the orbit, so z
+        // cannot escape before the orbit does, nor need rebasing
+        double unscaled = Math.scalb(1.0, UNSCALE_EXPONENT - exponent);
+        double wx = 0;
+        double wy = 0;
+        int i = 0;
+        int m = 0;
+        while (i < maxIterations && m < last && Math.abs(wx) + Math.abs(wy) < unscaled) {
+            double sx = Math.scalb(wx, exponent);
+            double sy = Math.scalb(wy, exponent);
+            double nx = 2 * (zxs[m] * wx - zys[m] * wy) + sx * wx - sy * wy + dcx;
+            wy = 2 * (zxs[m] * wy + zys[m] * wx) + 2 * sx * wy + dcy;
+            wx = nx;
+            m++;
+            i++;
+        }
+
+        double dx = Math.scalb(wx, exponent);
+        double dy = Math.scalb(wy, exponent);
+        double cx = Math.scalb(dcx, exponent);
+        double cy = Math.scalb(dcy, exponent);
+        for (; i < maxIterations; i++) {
+            double zx = zxs[m] + dx;
+            double zy = zys[m] + dy;
+            double rr = zx * zx + zy * zy;
+            if (rr > bailout) {
+                return kernel.escaped(i, rr);
+            }
+            if (m == last || rr < dx * dx + dy * dy) {
+                // rebase onto the start of the orbit, where Z is 0
+                dx = zx;
+                dy = zy;
+                m = 0;
+            }
+            double nx = 2 * (zxs[m] * dx - zys[m] * dy) + dx * dx - dy * dy + cx;
+            dy = 2 * (zxs[m] * dy + zys[m] * dx) + 2 * dx * dy + cy;
+            dx = nx;
+            m++;
+        }
+        return 1;
+    }
+
+    /**
+     * The orbit of a reference pixel, iterated in arbitrary precision and rounded to double
+     */
+    private static final class Orbit {
+        private final int x;
+        private final int y;
+        // Z_0 up to and including the point it escapes at, or Z_maxIterations
+        private final double[] xs;
+        private final double[] ys;
+        private final int length;
+
+        private Orbit(int x, int y, int w, int h, BigDecimal scale, BigDecimal xpos, BigDecimal ypos,
+                      EscapeTimeKernel kernel, MathContext context) {
+            this.x = x;
+            this.y = y;
+            // the coordinates of the pixel, see ImplicitGrapher
+            BigDecimal cx = xpos.add(scale.multiply(BigDecimal.valueOf(2L * x - w))
+                    .divide(BigDecimal.valueOf(2L * w), context), context);
+            BigDecimal cy = ypos.subtract(scale.multiply(BigDecimal.valueOf(2L * y - h))
+                    .divide(BigDecimal.valueOf(2L * h), context), context);
+            int maxIterations = kernel.getMaxIterations();
+            double bailout = kernel.getBailout();
+            xs = new double[maxIterations + 1];
+            ys = new double[maxIterations + 1];
+            BigDecimal zx = BigDecimal.ZERO;
+            BigDecimal zy = BigDecimal.ZERO;
+            int i = 0;
+            while (true) {
+                xs[i] = zx.doubleValue();
+                ys[i] = zy.doubleValue();
+                if (i == maxIterations || xs[i] * xs[i] + ys[i] * ys[i] > bailout) {
+                    break;
+                }
+                BigDecimal nx = zx.multiply(zx, context).subtract(zy.multiply(zy, context), context).add(cx, context);
+                zy = zx.multiply(zy, context).multiply(BigDecimal.valueOf(2), context).add(cy, context);
+                zx = nx;
+                i++;
+            }
+            length = i + 1;
+        }
+
+        /**
+         * @return Whether the reference escapes before taking all the iterations of kernel
+         */
+        private boolean escapes(EscapeTimeKernel kernel) {
+            return length <= kernel.getMaxIterations();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package Graphics;
+
+/**
+ * A Polyline is a connected piece of the curve where a function changes sign, as found by ContourTracer.
+ * Its points are in graphing-space coordinates, in the order they are connected.
+ */
+public final class Polyline {
+    private final float[] xs;
+    private final float[] ys;
+    private final boolean closed;
+
+    /**
+     * @param xs     the x coordinates of the points
+     * @param ys     the y coordinates of the points, as many as xs
+     * @param closed whether the last point is connected back to the first
+     */
+    public Polyline(float[] xs, float[] ys, boolean closed) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("A polyline needs as many x coordinates as y coordinates");
+        }
+        this.xs = xs.clone();
+        this.ys = ys.clone();
+        this.closed = closed;
+    }
+
+    /**
+     * @return The number of points
+     */
+    public int size() {
+        return xs.length;
+    }
+
+    public float getX(int i) {
+        return xs[i];
+    }
+
+    public float getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @return Whether the polyline is a loop, its last point connected back to the first
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String toString() {
+        return (closed ? "closed" : "open") + " polyline of " + xs.length + " points";
+    }
+}
@@ -0,0 +1,133 @@
+package Graphics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ProgressiveGrapher draws graphs at a fraction of the resolution of the image, so that a first image is quick
+ * however slow the functions are, and finer images follow from the samples of the coarser ones.
+ * <p>
+ * A pass with step s samples the functions at the pixels whose coordinates are both multiples of s, the same
+ * points as ImplicitGrapher samples for those pixels, and draws each sample as the s by s block of pixels it is
+ * the top left of. The samples are kept, so a pass whose step divides that of the pass before only samples the
+ * points that are new, three quarters of them when the step is halved. The pass with step 1 draws REGION and
+ * GRAYSCALE graphs exactly as ImplicitGrapher does. BOUNDARY graphs are drawn by blocks whose sample differs in
+ * sign from the sample a step to the right or up, so only coarse passes of them are drawn here.
+ */
+class ProgressiveGrapher {
+    private final ImplicitGrapher shader = new ImplicitGrapher();
+
+    // What the samples are of, to tell whether the next pass can use them
+    private List<Evaluatable> funcs = List.of();
+    private int size;
+    private float[] graphData = {};
+    private int lastStep; // The step of the last pass, 0 if there are no samples
+    private float[][] samples = new float[0][]; // samples[f][y * size + x] holds function f at pixel (x, y)
+    private int evaluations;
+
+    /**
+     * @param colormap The colours of the values of GRAYSCALE graphs, see ImplicitGrapher.setColormap
+     */
+    void setColormap(Colormap colormap) {
+        shader.setColormap(colormap);
+    }
+
+    /**
+     * @return The number of points sampled by the last pass
+     */
+    int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Draws a pass of the graphs of funcs onto the image represented by pixels, covering every pixel
+     *
+     * @param pixels    array representing an ARGB image of dimensions (size,size)
+     * @param size      width and height of the image represented by pixels
+     * @param funcs     the functions to be graphed, in the order ImplicitGrapher would graph them
+     * @param graphData array of {scale, x position, y position}
+     * @param gtype     the type of graph to generate
+     * @param step      the width and height of the blocks each sample is drawn as
+     */
+    void graph(int[] pixels, int size, List<Evaluatable> funcs, float[] graphData, GraphType gtype, int step) {
+        boolean reuse = lastStep > 0 && lastStep % step == 0 && size == this.size
+                && Arrays.equals(graphData, this.graphData) && funcs.equals(this.funcs);
+        if (!reuse) {
+            this.funcs = List.copyOf(funcs);
+            this.size = size;
+            this.graphData = graphData.clone();
+            if (samples.length != funcs.size() || (samples.length > 0 && samples[0].length != size * size)) {
+                samples = new float[funcs.size()][size * size];
+            }
+        }
+        sample(step, reuse ? lastStep : 0);
+        lastStep = step;
+
+        int[] cell = new int[1];
+        for (int y = 0; y < size; y += step) {
+            for (int x = 0; x < size; x += step) {
+                cell[0] = shader.WHITE;
+                for (float[] values : samples) {
+                    if (gtype == GraphType.BOUNDARY) {
+                        // the neighbours a step away stand for the ones a pixel away; none past the edges
+                        float value = values[y * size + x];
+                        float right = x + step < size ? values[y * size + x + step] : value;
+                        float up = y >= step ? values[(y - step) * size + x] : value;
+                        shader.shadePixel(cell, 0, gtype, value, right, up);
+                    } else {
+                        shader.shadePixel(cell, 0, gtype, values[y * size + x], 0, 0);
+                    }
+                }
+                fill(pixels, size, x, y, step, cell[0]);
+            }
+        }
+    }
+
+    /**
+     * Samples the points of the pass with step, except those already sampled by the pass with step known
+     *
+     * @param known the step of the last pass whose samples are kept, or 0 if there are none
+     */
+    private void sample(int step, int known) {
+        float scale = graphData[0];
+        float xpos = graphData[1];
+        float ypos = graphData[2];
+        int across = (size + step - 1) / step;
+        float[] xs = new float[across];
+        float[] ys = new float[across];
+        float[] values = new float[across];
+        int[] columns = new int[across];
+        evaluations = 0;
+        for (int y = 0; y < size; y += step) {
+            // on rows of the earlier pass only the new columns are sampled
+            boolean knownRow = known > 0 && y % known == 0;
+            int n = 0;
+            for (int x = 0; x < size; x += step) {
+                if (!knownRow || x % known != 0) {
+                    // the coordinates of ImplicitGrapher, so that the samples are the same
+                    xs[n] = (x / (float) size - 0.5f) * scale + xpos;
+                    columns[n++] = x;
+                }
+            }
+            Arrays.fill(ys, 0, n, -(y / (float) size - 0.5f) * scale + ypos);
+            for (int f = 0; f < funcs.size(); f++) {
+                funcs.get(f).evaluate(xs, ys, values, n);
+                for (int i = 0; i < n; i++) {
+                    samples[f][y * size + columns[i]] = values[i];
+                }
+            }
+            evaluations += n;
+        }
+    }
+
+    /**
+     * Fills the block of pixels from (x, y) up to step pixels across and down with colour
+     */
+    private static void fill(int[] pixels, int size, int x, int y, int step, int colour) {
+        int x1 = Math.min(size, x + step);
+        int y1 = Math.min(size, y + step);
+        for (int row = y; row < y1; row++) {
+            Arrays.fill(pixels, row * size + x, row * size + x1, colour);
+        }
+    }
+}
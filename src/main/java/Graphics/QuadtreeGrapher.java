@@ -0,0 +1,306 @@
+package Graphics;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * QuadtreeGrapher draws BOUNDARY and REGION graphs like ImplicitGrapher, without sampling every pixel.
+ * <p>
+ * The image is divided recursively. Each box of pixels is evaluated with interval arithmetic first, and boxes
+ * where the function has no sign change (BOUNDARY) or a fixed sign (REGION) are finished without sampling any of
+ * their pixels. Only the pixels of the small boxes left undecided are sampled, exactly as ImplicitGrapher samples
+ * them, so the image is the same.
+ * <p>
+ * Sampling can miss features thinner than a pixel. In conservative mode the pixels that sampling leaves blank are
+ * also drawn when intervals can not rule out the curve (or region) passing through them, even after dividing them
+ * further; every part of the graph then shows up, at the cost of sometimes drawing pixels next to it as well.
+ * <p>
+ * Given a ForkJoinPool, tiles of the image are divided in parallel, see ImplicitGrapher.setPool.
+ */
+public class QuadtreeGrapher {
+    // Boxes at most this many pixels wide and high are sampled instead of divided further
+    private static final int LEAF_SIZE = 8;
+    // In conservative mode, undecided pixels are divided into 2^depth by 2^depth boxes
+    private static final int SUBPIXEL_DEPTH = 2;
+    // The image is divided into this many by this many boxes to find out whether intervals help at all
+    private static final int PROBE_GRID = 4;
+
+    private final ImplicitGrapher sampler = new ImplicitGrapher();
+    private boolean conservative;
+    private int sampledPixels;
+    private ForkJoinPool pool;
+
+    /**
+     * @param conservative Whether pixels intervals cannot rule out are drawn as well, see QuadtreeGrapher
+     */
+    public void setConservative(boolean conservative) {
+        this.conservative = conservative;
+    }
+
+    /**
+     * @param pool The pool to graph tiles of the image on, or null to graph on the calling thread
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+        sampler.setPool(pool);
+    }
+
+    public boolean isConservative() {
+        return conservative;
+    }
+
+    /**
+     * @return The number of pixels that were sampled by the last call to graph
+     */
+    public int getSampledPixels() {
+        return sampledPixels;
+    }
+
+    /**
+     * Writes the graph of a function onto the image represented by pixels.
+     *
+     * @param pixels    array representing an ARGB image of dimensions (w,h)
+     * @param w         width of the image represented by pixels
+     * @param h         height of the image represented by pixels
+     * @param func      the function to be graphed, used to sample pixels
+     * @param bounds    the same function, used to evaluate boxes of pixels
+     * @param graphData array of {scale, x position, y position}
+     * @param gtype     the type of graph to generate, BOUNDARY or REGION
+     */
+    public void graph(int[] pixels, int w, int h, Evaluatable func, IntervalEvaluatable bounds, float[] graphData,
+                      GraphType gtype) {
+        if (gtype != GraphType.BOUNDARY && gtype != GraphType.REGION) {
+            throw new IllegalArgumentException("Only BOUNDARY and REGION graphs can be drawn from intervals");
+        }
+        sampledPixels = 0;
+        float scale = graphData[0];
+        if (!(scale > 0 && Float.isFinite(scale)) || w <= 0 || h <= 0) {
+            // the boxes rely on pixel coordinates increasing from left to right and bottom to top
+            sampledPixels = w * h;
+            sampler.graph(pixels, w, h, func, graphData, gtype);
+            return;
+        }
+        Render render = new Render(pixels, w, h, bounds, graphData, gtype);
+        if (!conservative && !render.isInformative()) {
+            // e.g. mandel, whose intervals say nothing, or curves with more detail than the boxes can resolve
+            sampledPixels = w * h;
+            sampler.graph(pixels, w, h, func, graphData, gtype);
+            return;
+        }
+        if (pool == null || func.copy() == null) {
+            render.new Leaves(func).paint(0, 0, w, h);
+        } else {
+            // each tile of the image starts a tree of its own
+            Tiles.paint(pool, w, h, () -> render.new Leaves(func.copy()));
+        }
+        sampledPixels = render.sampled.get();
+    }
+
+    /**
+     * The state of a single call to graph
+     */
+    private final class Render {
+        private final int[] pixels;
+        private final int w;
+        private final IntervalEvaluatable bounds;
+        private final GraphType gtype;
+        // Whether boxes cover whole pixels rather than only the points sampled for REGION
+        private final boolean coverPixels;
+
+        // The coordinates of the sampled points, computed exactly as ImplicitGrapher does
+        private final float[] xs;
+        private final float[] rightXs;
+        private final float[] cys;
+        private final float[] upYs;
+        private final Lattice lattice; // null unless the graph is a BOUNDARY
+
+        // The number of pixels sampled so far, by all the tiles
+        private final AtomicInteger sampled = new AtomicInteger();
+
+        private Render(int[] pixels, int w, int h, IntervalEvaluatable bounds, float[] graphData, GraphType gtype) {
+            this.pixels = pixels;
+            this.w = w;
+            this.bounds = bounds;
+            this.gtype = gtype;
+            this.coverPixels = gtype == GraphType.BOUNDARY || conservative;
+
+            float scale = graphData[0];
+            float xpos = graphData[1];
+            float ypos = graphData[2];
+            float pixelSize = scale / (float) w;
+            xs = new float[w];
+            rightXs = new float[w];
+            for (int x = 0; x < w; x++) {
+                xs[x] = (x / (float) w - 0.5f) * scale + xpos;
+                rightXs[x] = xs[x] + pixelSize;
+            }
+            cys = new float[h];
+            upYs = new float[h];
+            for (int y = 0; y < h; y++) {
+                cys[y] = -(y / (float) h - 0.5f) * scale + ypos;
+                upYs[y] = cys[y] + pixelSize;
+            }
+            lattice = gtype == GraphType.BOUNDARY ? new Lattice(xs, rightXs, cys, upYs) : null;
+        }
+
+        /**
+         * @return Whether intervals decide any box of a coarse grid over the image, if not sampling every pixel
+         * is faster than dividing the image
+         */
+        private boolean isInformative() {
+            int h = cys.length;
+            for (int i = 0; i < PROBE_GRID; i++) {
+                for (int j = 0; j < PROBE_GRID; j++) {
+                    int x0 = w * i / PROBE_GRID;
+                    int x1 = w * (i + 1) / PROBE_GRID;
+                    int y0 = h * j / PROBE_GRID;
+                    int y1 = h * (j + 1) / PROBE_GRID;
+                    if (x0 < x1 && y0 < y1 && isDecided(boxInterval(x0, y0, x1, y1))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private Interval boxInterval(int x0, int y0, int x1, int y1) {
+            // Rounding is monotone, so the coordinates grow with x and shrink with y, and the pixels at the
+            // corners bound the whole box. BOUNDARY also samples one pixel size to the right and up.
+            return bounds.evaluate(
+                    Interval.of(xs[x0], coverPixels ? rightXs[x1 - 1] : xs[x1 - 1]),
+                    Interval.of(cys[y1 - 1], coverPixels ? upYs[y0] : cys[y0]));
+        }
+
+        /**
+         * @return Whether every pixel of a box with values in box is known without sampling it
+         */
+        private boolean isDecided(Interval box) {
+            return isExcluded(box) || isFilled(box);
+        }
+
+        private boolean isFilled(Interval box) {
+            return gtype == GraphType.REGION && box.getHi() < 0 && !box.isMaybeUndefined();
+        }
+
+        /**
+         * @return Whether no pixel of a box with values in box is drawn
+         */
+        private boolean isExcluded(Interval box) {
+            if (box.isEmpty()) {
+                return true;
+            }
+            if (gtype == GraphType.BOUNDARY) {
+                // the undefined points are never drawn, and the defined ones all have the same sign
+                return box.getLo() > 0 || box.getHi() <= 0;
+            }
+            return box.getLo() >= 0;
+        }
+
+        /**
+         * @return Whether intervals cannot rule out drawing some of the box, even when divided depth more times
+         */
+        private boolean isUndecided(float left, float right, float bottom, float top, int depth) {
+            if (isExcluded(bounds.evaluate(Interval.of(left, right), Interval.of(bottom, top)))) {
+                return false;
+            }
+            if (depth == 0) {
+                return true;
+            }
+            float xMid = left + (right - left) / 2;
+            float yMid = bottom + (top - bottom) / 2;
+            return isUndecided(left, xMid, bottom, yMid, depth - 1)
+                    || isUndecided(xMid, right, bottom, yMid, depth - 1)
+                    || isUndecided(left, xMid, yMid, top, depth - 1)
+                    || isUndecided(xMid, right, yMid, top, depth - 1);
+        }
+
+        /**
+         * Divides boxes and samples leaves with an evaluator and buffers of its own, so that tiles can be graphed
+         * on several threads
+         */
+        private final class Leaves implements Tiles.Painter {
+            private final Evaluatable func;
+
+            // Buffers for sampling one row of a leaf at a time, BOUNDARY leaves are sampled on the lattice
+            private final float[] rowXs = new float[LEAF_SIZE];
+            private final float[] rowYs = new float[LEAF_SIZE];
+            private final float[] currVals = new float[LEAF_SIZE];
+            private final Lattice.Rows rows;
+
+            private Leaves(Evaluatable func) {
+                this.func = func;
+                this.rows = lattice == null ? null : lattice.new Rows(func, LEAF_SIZE);
+            }
+
+            @Override
+            public void paint(int x0, int y0, int x1, int y1) {
+                divide(x0, y0, x1, y1);
+            }
+
+            /**
+             * Graphs the pixels from (x0, y0) up to but excluding (x1, y1)
+             */
+            private void divide(int x0, int y0, int x1, int y1) {
+                Interval box = boxInterval(x0, y0, x1, y1);
+                if (isExcluded(box)) {
+                    return;
+                }
+                if (isFilled(box)) {
+                    for (int y = y0; y < y1; y++) {
+                        for (int x = x0; x < x1; x++) {
+                            pixels[y * w + x] = sampler.BLACK;
+                        }
+                    }
+                    return;
+                }
+                if (x1 - x0 <= LEAF_SIZE && y1 - y0 <= LEAF_SIZE) {
+                    sample(x0, y0, x1, y1);
+                    return;
+                }
+                int xMid = x1 - x0 > LEAF_SIZE ? (x0 + x1) / 2 : x1;
+                int yMid = y1 - y0 > LEAF_SIZE ? (y0 + y1) / 2 : y1;
+                divide(x0, y0, xMid, yMid);
+                if (xMid < x1) {
+                    divide(xMid, y0, x1, yMid);
+                }
+                if (yMid < y1) {
+                    divide(x0, yMid, xMid, y1);
+                    if (xMid < x1) {
+                        divide(xMid, yMid, x1, y1);
+                    }
+                }
+            }
+
+            private void sample(int x0, int y0, int x1, int y1) {
+                int n = x1 - x0;
+                System.arraycopy(xs, x0, rowXs, 0, n);
+                for (int y = y0; y < y1; y++) {
+                    if (rows != null) {
+                        rows.sample(x0, x1, y);
+                        for (int i = 0; i < n; i++) {
+                            sampler.shadePixel(pixels, y * w + x0 + i, gtype,
+                                    rows.currVals[0][i], rows.xVals[0][i], rows.yVals[0][i]);
+                        }
+                    } else {
+                        Arrays.fill(rowYs, 0, n, cys[y]);
+                        func.evaluate(rowXs, rowYs, currVals, n);
+                        for (int i = 0; i < n; i++) {
+                            sampler.shadePixel(pixels, y * w + x0 + i, gtype, currVals[i], 0, 0);
+                        }
+                    }
+                    if (conservative) {
+                        for (int i = 0; i < n; i++) {
+                            int index = y * w + x0 + i;
+                            if (pixels[index] != sampler.BLACK
+                                    && isUndecided(xs[x0 + i], rightXs[x0 + i], cys[y], upYs[y], SUBPIXEL_DEPTH)) {
+                                pixels[index] = sampler.BLACK;
+                            }
+                        }
+                    }
+                }
+                sampled.addAndGet(n * (y1 - y0));
+            }
+        }
+    }
+}
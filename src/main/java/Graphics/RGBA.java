@@ -28,7 +28,7 @@ public class RGBA {
     }
 
     /**
-     * Construct a pixel from R,G,B components
+     * Construct an opaque pixel from R,G,B components
      *
      * @param r red (0 to 255)
      * @param g green (0 to 255)
@@ -38,38 +38,44 @@ public class RGBA {
         this.r = r;
         this.g = g;
         this.b = b;
+        this.a = 255;
     }
 
     /**
      * Construct a pixel from hex string
      *
-     * @param s hex value of all channels
+     * @param s hex value of all channels, ARGB, or RGB for an opaque pixel
      */
     public RGBA(String s) {
         long t = Long.parseLong(s, 16);
         this.r = (int) ((t >> 16) & 255);
         this.g = (int) ((t >> 8) & 255);
         this.b = (int) (t & 255);
+        this.a = s.length() > 6 ? (int) ((t >> 24) & 255) : 255;
     }
 
     /**
      * Construct pixel from bytes
      *
-     * @param t raw bytes of RGB channels
+     * @param t raw bytes of ARGB channels
      */
     public RGBA(int t) {
         this.r = t >> 16 & 255;
         this.g = (t >> 8) & 255;
         this.b = t & 255;
+        this.a = t >>> 24;
     }
 
+    /**
+     * @return The pixel packed as ARGB, as in the images, see Compositor
+     */
     public int toInt() {
-        return (int) ((255L << 24) + (this.r << 16) + (this.g << 8) + (this.b));
+        return (this.a << 24) | (this.r << 16) | (this.g << 8) | this.b;
     }
 
     @Override
     public String toString() {
-        return "FF" + fmtHex255(this.r) + fmtHex255(this.g) + fmtHex255(this.b);
+        return fmtHex255(this.a) + fmtHex255(this.r) + fmtHex255(this.g) + fmtHex255(this.b);
     }
 
     /**
@@ -80,10 +86,12 @@ public class RGBA {
      * @return blended color
      */
     public RGBA blend(RGBA other, float c) {
-        return new RGBA(
+        RGBA blended = new RGBA(
                 (int) (this.r * (1 - c) + other.r * c),
                 (int) (this.g * (1 - c) + other.g * c),
                 (int) (this.b * (1 - c) + other.b * c)
         );
+        blended.a = (int) (this.a * (1 - c) + other.a * c);
+        return blended;
     }
 }
\ No newline at end of file
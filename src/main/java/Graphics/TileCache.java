@@ -0,0 +1,194 @@
+package Graphics;
+
+import Backend.Expressions.RealValuedExpression;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * TileCache keeps rendered tiles of graphs so that views overlapping earlier ones only render what is new.
+ * <p>
+ * Tiles are squares of the lattice of pixels at a scale: at pixel size p, pixel (X, Y) of the lattice is centred
+ * near the point (X p, -Y p), and tile (tx, ty) holds the pixels from (tx, ty) * TILE_SIZE on. Panning a view at
+ * the same scale only moves over the lattice, so the tiles it shares with the previous view are reused. Tiles are
+ * kept until the bytes they take up reach the limit, and then the least recently used ones are dropped first.
+ */
+public class TileCache {
+    // Tiles are this many pixels wide and high
+    public static final int TILE_SIZE = 128;
+    // The bytes taken up by a tile besides its pixels, roughly
+    private static final long TILE_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private long bytes;
+    private int hits;
+    private int misses;
+    // In order of use, the least recently used first
+    private final LinkedHashMap<Key, int[]> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param maxBytes The bytes the tiles may take up at most
+     */
+    public TileCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("A tile cache needs room for its tiles");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The bytes the cached tiles take up
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The number of cached tiles
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * @return The number of times a tile was found in the cache
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of times a tile was not found in the cache
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Drops every tile, e.g. when graphs are drawn differently
+     */
+    public void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return The tile of key, or null if it is not cached
+     */
+    int[] get(Key key) {
+        int[] tile = tiles.get(key);
+        if (tile == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    /**
+     * @return The tile of key, or null if it is not cached, without counting towards the hits and misses
+     */
+    int[] peek(Key key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * @return Whether the tile of key is cached
+     */
+    boolean contains(Key key) {
+        return tiles.containsKey(key);
+    }
+
+    /**
+     * Caches the tile of key, dropping the least recently used tiles while there is not enough room
+     */
+    void put(Key key, int[] tile) {
+        long tileBytes = bytes(tile);
+        if (tileBytes > maxBytes) {
+            return;
+        }
+        int[] old = tiles.put(key, tile);
+        bytes += tileBytes - (old == null ? 0 : bytes(old));
+        Iterator<int[]> eldest = tiles.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= bytes(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private static long bytes(int[] tile) {
+        return 4L * tile.length + TILE_OVERHEAD;
+    }
+
+    /**
+     * @param expressions the graphed expressions
+     * @param type        the type of the graphs
+     * @return The pixel sizes there are tiles of for expressions and type
+     */
+    List<Float> pixelSizes(List<RealValuedExpression> expressions, GraphType type) {
+        List<Float> sizes = new ArrayList<>();
+        for (Key key : tiles.keySet()) {
+            if (key.expressions.equals(expressions) && key.type == type && !sizes.contains(key.pixelSize)) {
+                sizes.add(key.pixelSize);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Identifies a tile by what is graphed on it and where; expressions are compared by identity
+     */
+    static final class Key {
+        private final List<RealValuedExpression> expressions;
+        private final GraphType type;
+        private final float pixelSize;
+        private final long tx;
+        private final long ty;
+
+        Key(List<RealValuedExpression> expressions, GraphType type, float pixelSize, long tx, long ty) {
+            this.expressions = expressions;
+            this.type = type;
+            this.pixelSize = pixelSize;
+            this.tx = tx;
+            this.ty = ty;
+        }
+
+        float getPixelSize() {
+            return pixelSize;
+        }
+
+        long getTx() {
+            return tx;
+        }
+
+        long getTy() {
+            return ty;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return key.tx == tx && key.ty == ty && Float.compare(key.pixelSize, pixelSize) == 0 && key.type == type
+                    && key.expressions.equals(expressions);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = Long.hashCode(tx);
+            hash = 31 * hash + Long.hashCode(ty);
+            hash = 31 * hash + Float.hashCode(pixelSize);
+            hash = 31 * hash + Objects.hashCode(type);
+            return 31 * hash + expressions.hashCode();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package Graphics;
+
+import Backend.Expressions.RealValuedExpression;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * TileComposer composes images from the tiles of a TileCache, rendering the ones that are missing. An image is moved
+ * to the nearest pixel of the lattice at its scale, so that it is made of whole tiles, see TileCache.
+ */
+final class TileComposer {
+    private static final int WHITE = 0xFFFFFFFF;
+
+    /**
+     * Renders a missing tile
+     */
+    interface Renderer {
+        /**
+         * @param tile      A blank image of TILE_SIZE by TILE_SIZE pixels the graphs are drawn onto
+         * @param graphData The scale and position of the tile, see Grapher
+         */
+        void render(int[] tile, float[] graphData);
+    }
+
+    private final TileCache cache;
+
+    /**
+     * @param cache Where the tiles are kept
+     */
+    TileComposer(TileCache cache) {
+        this.cache = cache;
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Composes the image from its tiles, rendering and caching the missing ones. graphData is moved to the new
+     * position of the image, so the axes are drawn to match.
+     *
+     * @param pixels      Array of at least size * size integers the image is written to
+     * @param size        Size of the image
+     * @param expressions The expressions graphed
+     * @param graphData   The scale and position of the image, see Grapher
+     * @param type        The type of graphs
+     * @param renderer    Renders the missing tiles
+     * @param cancelled   Asked before each tile is rendered whether the image is still wanted
+     * @throws CancellationException if the image is no longer wanted
+     */
+    void compose(int[] pixels, int size, List<RealValuedExpression> expressions, float[] graphData, GraphType type,
+                 Renderer renderer, BooleanSupplier cancelled) {
+        compose(pixels, size, new View(size, expressions, graphData, type), renderer, cancelled);
+    }
+
+    /**
+     * Composes the image from the tiles at hand: its cached tiles, and where those are missing the tiles cached at
+     * the nearest scale, resampled. Pixels with neither are left as they are. graphData is moved as by compose.
+     */
+    void preview(int[] pixels, int size, List<RealValuedExpression> expressions, float[] graphData, GraphType type) {
+        compose(pixels, size, new View(size, expressions, graphData, type), null, () -> false);
+    }
+
+    /**
+     * @return Whether every tile of the image is cached, so that compose does not render any
+     */
+    boolean isCached(int size, List<RealValuedExpression> expressions, float[] graphData, GraphType type) {
+        View view = new View(size, expressions, graphData, type);
+        for (long ty = view.firstTy(); ty <= view.lastTy(); ty++) {
+            for (long tx = view.firstTx(); tx <= view.lastTx(); tx++) {
+                if (!cache.contains(view.key(tx, ty))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param renderer Renders the missing tiles, or null to fill them in from the nearest cached scale
+     */
+    private void compose(int[] pixels, int size, View view, Renderer renderer, BooleanSupplier cancelled) {
+        List<Float> nearest = null;
+        for (long ty = view.firstTy(); ty <= view.lastTy(); ty++) {
+            for (long tx = view.firstTx(); tx <= view.lastTx(); tx++) {
+                TileCache.Key key = view.key(tx, ty);
+                int[] tile = cache.get(key);
+                if (tile == null && renderer != null) {
+                    if (cancelled.getAsBoolean()) {
+                        // the tiles rendered so far are kept, so the work is not lost
+                        throw new CancellationException("The image is no longer wanted");
+                    }
+                    tile = renderTile(key, renderer);
+                    cache.put(key, tile);
+                }
+                if (tile != null) {
+                    view.copy(tile, tx, ty, pixels);
+                } else {
+                    if (nearest == null) {
+                        nearest = cache.pixelSizes(view.expressions, view.type);
+                        nearest.sort(Comparator.comparingDouble(p -> Math.abs(Math.log(p / view.pixelSize))));
+                    }
+                    view.resample(nearest, tx, ty, pixels);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A rendered tile, see TileCache
+     */
+    private static int[] renderTile(TileCache.Key key, Renderer renderer) {
+        int t = TileCache.TILE_SIZE;
+        int[] tile = new int[t * t];
+        Arrays.fill(tile, WHITE);
+        float pixelSize = key.getPixelSize();
+        float[] graphData = {t * pixelSize, (float) ((key.getTx() * t + t / 2.0) * pixelSize),
+                (float) (-(key.getTy() * t + t / 2.0) * pixelSize)};
+        renderer.render(tile, graphData);
+        return tile;
+    }
+
+    /**
+     * The tiles covering an image, whose top left pixel is pixel (left, top) of the lattice at pixelSize
+     */
+    private final class View {
+        private final int size;
+        private final float pixelSize;
+        private final GraphType type;
+        private final List<RealValuedExpression> expressions;
+        private final long left;
+        private final long top;
+
+        /**
+         * Moves graphData to the position of the image on the lattice
+         */
+        private View(int size, List<RealValuedExpression> expressions, float[] graphData, GraphType type) {
+            this.size = size;
+            this.expressions = List.copyOf(expressions);
+            this.type = type;
+            pixelSize = graphData[0] / size;
+            left = Math.round(graphData[1] / (double) pixelSize - size / 2.0);
+            top = Math.round(-graphData[2] / (double) pixelSize - size / 2.0);
+            graphData[1] = (float) ((left + size / 2.0) * pixelSize);
+            graphData[2] = (float) (-(top + size / 2.0) * pixelSize);
+        }
+
+        private long firstTx() {
+            return Math.floorDiv(left, TileCache.TILE_SIZE);
+        }
+
+        private long lastTx() {
+            return Math.floorDiv(left + size - 1, TileCache.TILE_SIZE);
+        }
+
+        private long firstTy() {
+            return Math.floorDiv(top, TileCache.TILE_SIZE);
+        }
+
+        private long lastTy() {
+            return Math.floorDiv(top + size - 1, TileCache.TILE_SIZE);
+        }
+
+        private TileCache.Key key(long tx, long ty) {
+            return new TileCache.Key(expressions, type, pixelSize, tx, ty);
+        }
+
+        /**
+         * Copies the part of tile (tx, ty) on the image into pixels
+         */
+        private void copy(int[] tile, long tx, long ty, int[] pixels) {
+            int t = TileCache.TILE_SIZE;
+            int x0 = (int) Math.max(0, tx * t - left);
+            int x1 = (int) Math.min(size, tx * t + t - left);
+            int y0 = (int) Math.max(0, ty * t - top);
+            int y1 = (int) Math.min(size, ty * t + t - top);
+            for (int y = y0; y < y1; y++) {
+                int from = (int) ((y + top - ty * t) * t + (x0 + left - tx * t));
+                System.arraycopy(tile, from, pixels, y * size + x0, x1 - x0);
+            }
+        }
+
+        /**
+         * Fills in the part of tile (tx, ty) on the image from the tiles cached at the first of pixelSizes they
+         * are cached at, taking the pixel of the other lattice each pixel's centre is in
+         */
+        private void resample(List<Float> pixelSizes, long tx, long ty, int[] pixels) {
+            int t = TileCache.TILE_SIZE;
+            int x0 = (int) Math.max(0, tx * t - left);
+            int x1 = (int) Math.min(size, tx * t + t - left);
+            int y0 = (int) Math.max(0, ty * t - top);
+            int y1 = (int) Math.min(size, ty * t + t - top);
+            // the tile of each pixel size last looked at, as neighbouring pixels are mostly in the same tiles
+            long[] lastTx = new long[pixelSizes.size()];
+            long[] lastTy = new long[pixelSizes.size()];
+            int[][] last = new int[pixelSizes.size()][];
+            Arrays.fill(lastTx, Long.MIN_VALUE);
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    for (int k = 0; k < pixelSizes.size(); k++) {
+                        double ratio = pixelSize / (double) pixelSizes.get(k);
+                        long otherX = (long) Math.floor((x + left + 0.5) * ratio);
+                        long otherY = (long) Math.floor((y + top + 0.5) * ratio);
+                        long otherTx = Math.floorDiv(otherX, t);
+                        long otherTy = Math.floorDiv(otherY, t);
+                        if (otherTx != lastTx[k] || otherTy != lastTy[k]) {
+                            lastTx[k] = otherTx;
+                            lastTy[k] = otherTy;
+                            last[k] = cache.peek(new TileCache.Key(expressions, type, pixelSizes.get(k), otherTx,
+                                    otherTy));
+                        }
+                        if (last[k] != null) {
+                            pixels[y * size + x] = last[k][Math.floorMod(otherY, t) * t + Math.floorMod(otherX, t)];
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
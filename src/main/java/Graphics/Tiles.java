@@ -0,0 +1,80 @@
+package Graphics;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Tiles splits an image into square tiles and paints them in parallel on a ForkJoinPool.
+ * <p>
+ * The tiles are handed out by halving the range of tiles left, so a worker that runs out of work steals half of
+ * what another still has to do. Each pixel belongs to exactly one tile and is painted from values depending only
+ * on its coordinates, so the image is the same whatever the number of threads.
+ */
+final class Tiles {
+    // Tiles are this many pixels wide and high, a multiple of the leaf size of QuadtreeGrapher
+    static final int TILE_SIZE = 64;
+
+    /**
+     * Paints the pixels of a tile. A Painter is only used by one thread at a time.
+     */
+    interface Painter {
+        /**
+         * Paints the pixels from (x0, y0) up to but excluding (x1, y1)
+         */
+        void paint(int x0, int y0, int x1, int y1);
+    }
+
+    private Tiles() {
+    }
+
+    /**
+     * Paints every tile of a w by h image, waiting until all of them are done.
+     *
+     * @param pool     the pool running the tiles
+     * @param painters creates a painter for each tile, with its own evaluators and buffers
+     */
+    static void paint(ForkJoinPool pool, int w, int h, Supplier<Painter> painters) {
+        int columns = (w + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (h + TILE_SIZE - 1) / TILE_SIZE;
+        if (columns > 0 && rows > 0) {
+            pool.invoke(new TileTask(w, h, columns, painters, 0, columns * rows));
+        }
+    }
+
+    /**
+     * Paints the tiles from start up to but excluding end, numbered row by row
+     */
+    private static final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int w;
+        private final int h;
+        private final int columns;
+        private final Supplier<Painter> painters;
+        private final int start;
+        private final int end;
+
+        private TileTask(int w, int h, int columns, Supplier<Painter> painters, int start, int end) {
+            this.w = w;
+            this.h = h;
+            this.columns = columns;
+            this.painters = painters;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new TileTask(w, h, columns, painters, start, mid),
+                        new TileTask(w, h, columns, painters, mid, end));
+                return;
+            }
+            int x0 = start % columns * TILE_SIZE;
+            int y0 = start / columns * TILE_SIZE;
+            painters.get().paint(x0, y0, Math.min(x0 + TILE_SIZE, w), Math.min(y0 + TILE_SIZE, h));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package BackendTests;
+
+import Graphics.AxesDrawer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Gridlines must be spaced by 1, 2 or 5 times a power of 10, with a bounded number across the image at any scale.
+ */
+public class AxesDrawerTest {
+
+    int size = 400;
+
+    /**
+     * @return The number of vertical gridlines drawn, the columns the grid changed from top to bottom
+     */
+    private int gridColumns(float scale, float xpos) {
+        int[] pixels = new int[size * size];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        new AxesDrawer().drawGrid(pixels, size, size, new float[]{scale, xpos, 0.37f * scale});
+        int count = 0;
+        for (int x = 0; x < size; x++) {
+            boolean line = true;
+            for (int y = 0; y < size && line; y++) {
+                line = pixels[y * size + x] != 0xFFFFFFFF;
+            }
+            if (line) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test(timeout = 50)
+    public void testSpacing() {
+        assertEquals(0.5, AxesDrawer.gridSpacing(8), 1e-12);
+        assertEquals(5000, AxesDrawer.gridSpacing(1e5f), 1e-6);
+        assertEquals(2e-7, AxesDrawer.gridSpacing(3e-6f), 1e-19);
+        assertEquals(1, AxesDrawer.gridSpacing(20), 1e-12);
+        for (float scale = 1e-6f; scale < 1e7f; scale *= 1.37f) {
+            double lines = scale / AxesDrawer.gridSpacing(scale);
+            assertTrue(lines <= AxesDrawer.MAX_LINES + 1e-6 && lines > AxesDrawer.MAX_LINES * 0.4 - 1e-6);
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testLinesBoundedAtAnyScale() {
+        for (float scale : new float[]{1e-6f, 0.3f, 8, 1e5f, 1e12f, 1e30f}) {
+            int columns = gridColumns(scale, 1.5f * scale);
+            // the major lines, and minor lines at least 8 pixels apart
+            assertTrue(columns > 0 && columns <= size / 8 + AxesDrawer.MAX_LINES);
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testFarFromOrigin() {
+        // the spacing is lost in the rounding of the centre, but drawing still ends
+        assertTrue(gridColumns(1e-3f, 1e6f) >= 0);
+        assertTrue(gridColumns(1e-30f, 3e38f) >= 0);
+    }
+}
@@ -8,6 +8,7 @@ import org.junit.Before;
 import org.junit.Test;
 import Backend.Expressions.*;
 
+import java.math.BigDecimal;
 import java.util.*;
 
 import static org.junit.Assert.*;
@@ -72,6 +73,38 @@ public class AxesTest {
 
     }
 
+    @Test(timeout = 50)
+    public void testAxesDoublePrecision(){
+        axes.setDoubleScale(1e-12);
+        axes.setDoubleOrigin(new double[]{0.1, -1e-13});
+        assertEquals(1e-12, axes.getDoubleScale(), 0);
+        assertArrayEquals(new double[]{0.1, -1e-13}, axes.getDoubleOrigin(), 0);
+        assertEquals(1e-12f, axes.getScale(), 0);
+        assertArrayEquals(new float[]{0.1f, -1e-13f}, axes.getOrigin(), 0);
+
+        axes.setScale(3f);
+        axes.setOrigin(2, 3);
+        assertEquals(3, axes.getDoubleScale(), 0);
+        assertArrayEquals(new double[]{2, 3}, axes.getDoubleOrigin(), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testAxesArbitraryPrecision(){
+        BigDecimal x = new BigDecimal("-0.74540000000000000000000000000000000000000000000001");
+        axes.setPreciseScale(new BigDecimal("1e-50"));
+        axes.setPreciseOrigin(new BigDecimal[]{x, BigDecimal.ONE});
+        assertEquals(new BigDecimal("1e-50"), axes.getPreciseScale());
+        assertArrayEquals(new BigDecimal[]{x, BigDecimal.ONE}, axes.getPreciseOrigin());
+        assertEquals(1e-50, axes.getDoubleScale(), 0);
+        assertArrayEquals(new double[]{-0.7454, 1}, axes.getDoubleOrigin(), 0);
+        assertEquals(0, axes.getScale(), 0);
+
+        axes.setDoubleScale(0.5);
+        axes.setOrigin(2, 3);
+        assertEquals(new BigDecimal("0.5"), axes.getPreciseScale());
+        assertArrayEquals(new BigDecimal[]{new BigDecimal(2), new BigDecimal(3)}, axes.getPreciseOrigin());
+    }
+
     @Test(timeout = 50)
     public void testAxesCreation3(){
         Axes ax2 = new Axes(5, new float[]{1,0,-1});
@@ -114,4 +147,23 @@ public class AxesTest {
     }
 
 
+    //Test that view observers hear of every change to what is graphed, and only of those
+    @Test(timeout = 50)
+    public void testAxesViewObserver(){
+        List<String> changes = new ArrayList<>();
+        axes.addViewObserver(event -> changes.add(event.getPropertyName()));
+
+        axes.setScale(5);
+        axes.setOrigin(0, 0);
+        assertEquals(changes, new ArrayList<String>());
+
+        axes.setScale(6);
+        axes.setOrigin(1, 0);
+        axes.addExpression(expr5);
+        axes.removeExpression(expr0);
+        axes.removeExpression(expr5);
+        assertEquals(changes, Arrays.asList("scale", "origin", "expressions", "expressions"));
+    }
+
+
 }
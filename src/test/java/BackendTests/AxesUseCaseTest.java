@@ -108,7 +108,7 @@ public class AxesUseCaseTest {
         Expression<?> func = ec.create(List.of("x", "^", "2"));
         FunctionExpression myFunc = new CustomFunctionExpression(funcName, variables, (RealValuedExpression) func);
         axesUseCase.addExpression(myFunc, axes);
-        assertEquals(13, axesUseCase.getNamedFunctions(axes).size(),0);
+        assertEquals(21, axesUseCase.getNamedFunctions(axes).size(),0);
     }
 
     @Test(timeout = 50)
@@ -0,0 +1,109 @@
+package BackendTests;
+
+import Backend.Expressions.BuiltinFunctionExpression;
+import Graphics.Colormap;
+import Graphics.Evaluatable;
+import Graphics.ImplicitGrapher;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tracing the borders of the regions of an escape time must give almost the same image as sampling every pixel,
+ * from far fewer samples, and the same image on any number of threads.
+ */
+public class BorderTracerTest {
+
+    /**
+     * mandel, counting the points it is evaluated at
+     */
+    private static final class CountingMandel implements Evaluatable {
+        private int count;
+
+        @Override
+        public float evaluate(float x, float y) {
+            count++;
+            return BuiltinFunctionExpression.mandel(x, y);
+        }
+
+        @Override
+        public float evaluate(float x) {
+            return Float.NaN;
+        }
+
+        @Override
+        public Evaluatable copy() {
+            return new CountingMandel();
+        }
+    }
+
+    private final int size = 300;
+    // the whole set, and a view of the filaments at its edge
+    private final float[][] views = {{4, -0.5f, 0}, {0.05f, -0.745f, 0.11f}};
+
+    /**
+     * @return The GRAYSCALE image of mandel, sampled at every pixel
+     */
+    private int[] sample(float[] graphData) {
+        int[] pixels = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float px = (x / (float) size - 0.5f) * graphData[0] + graphData[1];
+                float py = -(y / (float) size - 0.5f) * graphData[0] + graphData[2];
+                pixels[y * size + x] = Colormap.GRAYSCALE.colour(BuiltinFunctionExpression.mandel(px, py));
+            }
+        }
+        return pixels;
+    }
+
+    @Test(timeout = 500)
+    public void testTracedMatchesSampled() {
+        for (float[] graphData : views) {
+            int[] sampled = sample(graphData);
+            int[] traced = new int[size * size];
+            CountingMandel mandel = new CountingMandel();
+            new ImplicitGrapher().graphEscapeTime(traced, size, size, mandel, graphData);
+
+            int different = 0;
+            for (int i = 0; i < size * size; i++) {
+                if (traced[i] != sampled[i]) {
+                    different++;
+                }
+            }
+            assertTrue(different + " pixels differ", different <= size * size / 200);
+            assertTrue(mandel.count + " samples", mandel.count < size * size);
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testUniformViewTakesItsOutline() {
+        // inside the main cardioid every pixel takes all the iterations
+        CountingMandel mandel = new CountingMandel();
+        int[] pixels = new int[size * size];
+        new ImplicitGrapher().graphEscapeTime(pixels, size, size, mandel, new float[]{0.2f, -0.1f, 0.1f});
+        // each tile of 64 by 64 pixels takes the 252 pixels of its outline
+        assertTrue(mandel.count + " samples", mandel.count <= 25 * 252);
+        for (int pixel : pixels) {
+            assertEquals(0xFFFFFFFF, pixel);
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testSameOnThreads() {
+        ImplicitGrapher grapher = new ImplicitGrapher();
+        // 130 is not a multiple of the tile size, so the last row and column of tiles are cut off
+        int[] single = new int[130 * 130];
+        grapher.graphEscapeTime(single, 130, 130, new CountingMandel(), views[1]);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            grapher.setPool(pool);
+            int[] parallel = new int[130 * 130];
+            grapher.graphEscapeTime(parallel, 130, 130, new CountingMandel(), views[1]);
+            assertArrayEquals(single, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package BackendTests;
+
+import Graphics.Colormap;
+import Graphics.RGBA;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The grayscale colormap must colour values exactly as GRAYSCALE graphs always have, and the other colormaps must
+ * clamp or wrap the values past their ends.
+ */
+public class ColormapTest {
+
+    /**
+     * @return The colour GRAYSCALE graphs gave value before colormaps
+     */
+    private static int formattedGray(float value) {
+        String outR = RGBA.fmtHex255((int) (255 * Math.sqrt(value)));
+        return (int) Long.parseLong("FF" + outR + outR + outR, 16);
+    }
+
+    @Test(timeout = 1000)
+    public void testGrayscaleMatchesFormatted() {
+        float[] values = {0, 1e-6f, 0.1f, 0.25f, 0.5f, 0.999f, 1, 1.5f, -0.5f, Float.NaN,
+                Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (float value : values) {
+            assertEquals(formattedGray(value), Colormap.GRAYSCALE.colour(value));
+        }
+        for (int i = 0; i <= 1000; i++) {
+            assertEquals(formattedGray(i / 1000f), Colormap.GRAYSCALE.colour(i / 1000f));
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testEndsAreClamped() {
+        Colormap viridis = Colormap.VIRIDIS.withTransfer(Colormap.Transfer.LINEAR);
+        assertEquals(0xFF440154, viridis.colour(0));
+        assertEquals(0xFFFDE725, viridis.colour(1));
+        assertEquals(viridis.colour(0), viridis.colour(-3));
+        assertEquals(viridis.colour(1), viridis.colour(7));
+    }
+
+    @Test(timeout = 1000)
+    public void testCyclicWraps() {
+        Colormap cyclic = Colormap.forName("Cyclic");
+        assertEquals(cyclic.colour(0), cyclic.colour(1));
+        assertEquals(cyclic.colour(0.25f), cyclic.colour(2.25f));
+        assertEquals(cyclic.colour(0.75f), cyclic.colour(-0.25f));
+        assertTrue(cyclic.colour(0) != cyclic.colour(0.5f));
+    }
+
+    @Test(timeout = 1000)
+    public void testTransfer() {
+        Colormap linear = Colormap.GRAYSCALE.withTransfer(Colormap.Transfer.LINEAR);
+        assertEquals(0xFF7F7F7F, linear.colour(0.5f));
+        Colormap log = Colormap.GRAYSCALE.withTransfer(Colormap.Transfer.LOG);
+        assertEquals(0xFF7F7F7F, log.colour(15 / 255f));
+        assertEquals(0xFFFFFFFF, log.colour(1));
+    }
+
+    @Test(timeout = 1000, expected = IllegalArgumentException.class)
+    public void testNoSuchColormap() {
+        Colormap.forName("rainbow");
+    }
+}
@@ -0,0 +1,128 @@
+package BackendTests;
+
+import Graphics.Compositor;
+import Graphics.RGBA;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Blending packed colours must be within rounding of blending them exactly, and bulk blending must be the same as
+ * blending pixel by pixel.
+ */
+public class CompositorTest {
+
+    private static void assertClose(int expected, int actual) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            assertEquals(expected >>> shift & 255, actual >>> shift & 255, 1);
+        }
+    }
+
+    /**
+     * @return src drawn over dst, in floating point
+     */
+    private static int exactOver(int src, int dst) {
+        double sa = (src >>> 24) / 255.0;
+        double da = (dst >>> 24) / 255.0;
+        double outA = sa + da * (1 - sa);
+        int colour = (int) Math.round(outA * 255) << 24;
+        for (int shift = 0; shift < 24; shift += 8) {
+            double sc = src >> shift & 255;
+            double dc = dst >> shift & 255;
+            colour |= (int) Math.round((sc * sa + dc * da * (1 - sa)) / outA) << shift;
+        }
+        return colour;
+    }
+
+    @Test(timeout = 50)
+    public void testOverMatchesExact() {
+        int[] colours = {0xFF000000, 0xFFFFFFFF, 0x66FF0000, 0x330044FF, 0x80888888, 0x00123456, 0xC0FEDCBA,
+                0x01FFFFFF, 0xFE000000};
+        for (int src : colours) {
+            for (int dst : colours) {
+                if ((src | dst) >>> 24 != 0) {
+                    assertClose(exactOver(src, dst), Compositor.over(src, dst));
+                }
+            }
+        }
+    }
+
+    /**
+     * The axes, gridlines and curves must be drawn over opaque pixels exactly as they were through RGBA.blend
+     */
+    @Test(timeout = 1000)
+    public void testSameAsRGBABlend() {
+        RGBA[] colours = {new RGBA("FF0000"), new RGBA("0044FF"), new RGBA("888888")};
+        float[] opacities = {0.4f, 0.4f, 0.2f};
+        int[] row = new int[256];
+        for (int k = 0; k < colours.length; k++) {
+            for (int channel = 0; channel < 24; channel += 8) {
+                for (int v = 0; v < 256; v++) {
+                    // a grey and a colour of each level
+                    row[v] = 0xFF000000 | (v % 2 == 0 ? v * 0x010101 : v << channel | 0x1B1B1B & ~(255 << channel));
+                }
+                int[] expected = new int[256];
+                for (int v = 0; v < 256; v++) {
+                    expected[v] = colours[k].blend(new RGBA(row[v]), 1 - opacities[k]).toInt();
+                }
+                Compositor.blendRow(row, 256, 0, Compositor.withAlpha(colours[k].toInt(), opacities[k]));
+                assertArrayEquals(expected, row);
+            }
+        }
+        RGBA black = new RGBA(0, 0, 0);
+        for (int i = 0; i <= 100; i++) {
+            float coverage = i / 100f;
+            int dst = 0xFF1B306C;
+            assertEquals(black.blend(new RGBA(dst), 1 - coverage).toInt(), Compositor.over(0, coverage, dst));
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testOpaqueAndTransparent() {
+        assertEquals(0xFF123456, Compositor.over(0xFF123456, 0x80FFFFFF));
+        assertEquals(0x80FFFFFF, Compositor.over(0x00123456, 0x80FFFFFF));
+        assertEquals(0x66FF0000, Compositor.withAlpha(0xFF0000, 0.4f));
+    }
+
+    @Test(timeout = 50)
+    public void testSpansMatchPixels() {
+        int w = 7;
+        int h = 5;
+        int[] image = new int[w * h];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = i % 3 == 0 ? 0xFFFFFFFF : (i % 3 == 1 ? 0xFF000000 : 0x80336699);
+        }
+        int colour = 0x330044FF;
+        int[] expected = image.clone();
+        for (int y = 0; y < h; y++) {
+            expected[y * w + 2] = Compositor.over(colour, expected[y * w + 2]);
+        }
+        for (int x = 0; x < w; x++) {
+            expected[3 * w + x] = Compositor.over(colour, expected[3 * w + x]);
+        }
+        Compositor.blendColumn(image, w, h, 2, colour);
+        Compositor.blendRow(image, w, 3, colour);
+        assertArrayEquals(expected, image);
+    }
+
+    @Test(timeout = 50)
+    public void testCompositeLayers() {
+        int[] image = new int[4];
+        Arrays.fill(image, 0xFFFFFFFF);
+        int[] layer = {0, 0xFF000000, 0x80000000, 0};
+        Compositor.composite(image, layer, 4);
+        assertEquals(0xFFFFFFFF, image[0]);
+        assertEquals(0xFF000000, image[1]);
+        assertClose(0xFF7F7F7F, image[2]);
+        assertEquals(0xFFFFFFFF, image[3]);
+    }
+
+    @Test(timeout = 50)
+    public void testRGBAKeepsAlpha() {
+        assertEquals(0x80123456, new RGBA(0x80123456).toInt());
+        assertEquals(0x80123456, new RGBA("80123456").toInt());
+        assertEquals(0xFF123456, new RGBA("123456").toInt());
+    }
+}
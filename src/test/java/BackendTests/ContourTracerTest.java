@@ -0,0 +1,115 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.ContourTracer;
+import Graphics.Grapher;
+import Graphics.Polyline;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Traced contours must be connected polylines lying on the curve.
+ */
+public class ContourTracerTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    ContourTracer tracer = new ContourTracer();
+    float[] graphData = {10, 0.1f, -0.2f};
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private RealValuedExpression read(String expression) throws InvalidTermException {
+        return (RealValuedExpression) expressionReader.read(expression);
+    }
+
+    /**
+     * @return The largest distance of a point of polylines from the origin, less radius
+     */
+    private double radiusError(List<Polyline> polylines, double radius) {
+        double error = 0;
+        for (Polyline line : polylines) {
+            for (int i = 0; i < line.size(); i++) {
+                error = Math.max(error, Math.abs(Math.hypot(line.getX(i), line.getY(i)) - radius));
+            }
+        }
+        return error;
+    }
+
+    @Test(timeout = 500)
+    public void testCircleIsOneLoop() throws InvalidTermException {
+        RealValuedExpression circle = read("x^2 + y^2 = 9");
+        List<Polyline> polylines = tracer.trace(circle, circle, graphData, 40);
+        assertEquals(1, polylines.size());
+        assertTrue(polylines.get(0).isClosed());
+        assertTrue(polylines.get(0).size() > 40);
+        assertTrue(radiusError(polylines, 3) < 1e-5);
+    }
+
+    @Test(timeout = 500)
+    public void testRefinementPlacesCrossings() throws InvalidTermException {
+        RealValuedExpression circle = read("x^2 + y^2 = 9");
+        // without the gradient crossings are refined with regula falsi
+        assertTrue(radiusError(tracer.trace(circle, null, graphData, 20), 3) < 1e-4);
+        tracer.setRefine(false);
+        double interpolated = radiusError(tracer.trace(circle, circle, graphData, 20), 3);
+        assertTrue(interpolated > 1e-3 && interpolated < 0.1);
+    }
+
+    @Test(timeout = 500)
+    public void testLineEndsAtBorder() throws InvalidTermException {
+        RealValuedExpression line = read("x = y");
+        List<Polyline> polylines = tracer.trace(line, line, graphData, 33);
+        assertEquals(1, polylines.size());
+        Polyline polyline = polylines.get(0);
+        assertFalse(polyline.isClosed());
+        for (int i = 0; i < polyline.size(); i++) {
+            assertEquals(polyline.getX(i), polyline.getY(i), 1e-5);
+        }
+        float first = polyline.getX(0);
+        float last = polyline.getX(polyline.size() - 1);
+        // the grid spans x from -4.9 to 5.1 and y from -5.2 to 4.8
+        assertEquals(-4.9, Math.min(first, last), 1e-5);
+        assertEquals(4.8, Math.max(first, last), 1e-5);
+    }
+
+    @Test(timeout = 500)
+    public void testUndefinedCellsAreLeftOut() throws InvalidTermException {
+        // the circle only exists where x > 0, so it is cut into an open piece
+        RealValuedExpression halfCircle = read("x^2 + y^2 + sqrt(x) - sqrt(x) = 9");
+        List<Polyline> polylines = tracer.trace(halfCircle, halfCircle, graphData, 40);
+        assertEquals(1, polylines.size());
+        assertFalse(polylines.get(0).isClosed());
+        for (int i = 0; i < polylines.get(0).size(); i++) {
+            assertTrue(polylines.get(0).getX(i) >= 0);
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testGrapherDrawsContours() throws InvalidTermException {
+        axes.addExpression(read("x^2 + y^2 = 9"));
+        axes.addExpression(read("y = x^3"));
+        Grapher grapher = new Grapher(axes);
+        grapher.setContourSamples(64);
+        int[] pixels = grapher.graph(256, "CONTOUR");
+        assertEquals(2, grapher.getContours().size());
+        int partlyCovered = 0;
+        for (int pixel : pixels) {
+            int red = pixel >> 16 & 255;
+            if (red == (pixel & 255) && red > 0 && red < 136) {
+                partlyCovered++;
+            }
+        }
+        assertTrue(partlyCovered > 0);
+    }
+}
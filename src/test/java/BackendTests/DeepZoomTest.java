@@ -0,0 +1,99 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.EscapeTimeKernel;
+import Graphics.Grapher;
+import Graphics.PerturbationGrapher;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Graphing mandel by perturbation must give the escape times of iterating every pixel in arbitrary precision, in
+ * views far too small for double, and the same image on any number of threads.
+ */
+public class DeepZoomTest {
+    private final int size = 24;
+    // 1e-50 across at i, a point on the boundary of the set whose neighbourhood shows detail at every scale
+    private final BigDecimal scale = new BigDecimal("1e-50");
+    private final BigDecimal[] origin = {BigDecimal.ZERO, BigDecimal.ONE};
+
+    /**
+     * @return The iteration at which the orbit of (cx, cy) escapes, iterated in arbitrary precision
+     */
+    private static int iterations(BigDecimal cx, BigDecimal cy, int maxIterations, MathContext context) {
+        BigDecimal zx = BigDecimal.ZERO;
+        BigDecimal zy = BigDecimal.ZERO;
+        for (int i = 0; i < maxIterations; i++) {
+            double x = zx.doubleValue();
+            double y = zy.doubleValue();
+            if (x * x + y * y > 4) {
+                return i;
+            }
+            BigDecimal nx = zx.multiply(zx, context).subtract(zy.multiply(zy, context), context).add(cx, context);
+            zy = zx.multiply(zy, context).multiply(BigDecimal.valueOf(2), context).add(cy, context);
+            zx = nx;
+        }
+        return maxIterations;
+    }
+
+    @Test(timeout = 1000)
+    public void testSameAsArbitraryPrecision() {
+        EscapeTimeKernel kernel = new EscapeTimeKernel(400, false);
+        double[] values = new PerturbationGrapher().values(size, size, scale, origin[0], origin[1], kernel);
+        MathContext context = new MathContext(64);
+        // every fourth pixel, as iterating in arbitrary precision is slow
+        for (int y = 0; y < size; y += 4) {
+            for (int x = 0; x < size; x += 4) {
+                BigDecimal cx = origin[0].add(scale.multiply(BigDecimal.valueOf(2L * x - size))
+                        .divide(BigDecimal.valueOf(2L * size), context), context);
+                BigDecimal cy = origin[1].subtract(scale.multiply(BigDecimal.valueOf(2L * y - size))
+                        .divide(BigDecimal.valueOf(2L * size), context), context);
+                assertEquals(iterations(cx, cy, 400, context), values[y * size + x] * 400, 1e-6);
+            }
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testGraphsViewsTooSmallForDouble() throws InvalidTermException {
+        Axes axes = new Axes();
+        axes.addExpression((RealValuedExpression) new ExpressionReader(axes).read("smoothmandel(x, y)"));
+        axes.setPreciseScale(scale);
+        axes.setPreciseOrigin(origin);
+        Grapher grapher = new Grapher(axes);
+        grapher.setDoublePrecision(true);
+        // every pixel rounds to i, and the y axis crosses the image
+        assertTrue(Arrays.stream(grapher.graph(size, "GRAYSCALE")).distinct().count() <= 3);
+        grapher.setDeepZoom(500);
+        assertTrue(Arrays.stream(grapher.graph(size, "GRAYSCALE")).distinct().count() > 5);
+    }
+
+    @Test(timeout = 1000)
+    public void testSameOnThreads() throws InvalidTermException {
+        Axes axes = new Axes();
+        axes.addExpression((RealValuedExpression) new ExpressionReader(axes).read("mandel(x, y)"));
+        axes.setPreciseScale(new BigDecimal("3e-20"));
+        axes.setPreciseOrigin(new BigDecimal[]{new BigDecimal("-0.1011"), new BigDecimal("0.9563")});
+        Grapher grapher = new Grapher(axes);
+        grapher.setDeepZoom(300);
+        // 70 is not a multiple of the tile size, so the last row and column of tiles are cut off
+        int[] single = grapher.graph(70, "GRAYSCALE");
+        grapher.setThreads(4);
+        assertArrayEquals(single, grapher.graph(70, "GRAYSCALE"));
+        grapher.setThreads(1);
+    }
+
+    @Test(timeout = 50, expected = IllegalArgumentException.class)
+    public void testRejectsViewsTooSmall() {
+        new PerturbationGrapher().values(size, size, new BigDecimal("1e-600"), origin[0], origin[1],
+                EscapeTimeKernel.MANDEL);
+    }
+}
@@ -0,0 +1,104 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.Grapher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Double precision evaluation must give the values of the tree interpreter up to float rounding, be undefined
+ * where it is, and tell apart points float cannot. Graphs in double precision must show views too small for float.
+ */
+public class DoublePrecisionTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    Random random = new Random(613);
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void assertSameValues(RealValuedExpression exp) {
+        for (int i = 0; i < 500; i++) {
+            float x = (random.nextFloat() - 0.5f) * 8;
+            float y = (random.nextFloat() - 0.5f) * 8;
+            float value = exp.evaluate(x, y);
+            double precise = exp.evaluate((double) x, (double) y);
+            if (Float.isNaN(value)) {
+                assertTrue(Double.isNaN(precise));
+            } else {
+                assertEquals(value, precise, 1e-4 * Math.max(1, Math.abs(precise)));
+            }
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testValues() throws InvalidTermException {
+        assertSameValues((RealValuedExpression) expressionReader.read("-x^2 + 3*y - x/y + 0.1"));
+        assertSameValues((RealValuedExpression) expressionReader.read(
+                "cos(x) + tan(y) - sqrt(x) * exp(y) + arctan(x) + log(y) + max(x, y) - min(x, y)"));
+        assertSameValues((RealValuedExpression) expressionReader.read("arcsin(x) + arccos(y)"));
+        RealValuedExpression g = expressionReader.readForGraphing(new String[]{"g(x) = sqrt(x) + x^3", "x > 1"});
+        axes.addExpression(g);
+        assertSameValues(expressionReader.readForGraphing(new String[]{"g(y) * g(cos(x)) = x", "x < 2 | y >= 1"}));
+    }
+
+    @Test(timeout = 50)
+    public void testResolvesBeyondFloat() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("x - 0.1");
+        // 1e-12 past 0.1 is the same float as 0.1
+        assertEquals(0, exp.evaluate(0.1f + 1e-12f, 0), 0);
+        assertEquals(1e-12, exp.evaluate(0.1 + 1e-12, 0), 1e-15);
+    }
+
+    @Test(timeout = 50)
+    public void testKeepsNumbersBeyondFloat() throws InvalidTermException {
+        // the unary minus is folded, and x * 1 simplified, only where that keeps the double value
+        assertEquals(1.0000000001, ((RealValuedExpression) expressionReader.read("y = -1.0000000001"))
+                .evaluate(0.0, 0.0), 1e-15);
+        assertEquals(2.0000000002, ((RealValuedExpression) expressionReader.read("x*1.0000000001"))
+                .evaluate(2.0, 0.0), 1e-15);
+        // read after a number of the same float value, on the same reader
+        assertEquals(0, ((RealValuedExpression) expressionReader.read("y = 1")).evaluate(0.0, 1.0), 0);
+    }
+
+    @Test(timeout = 1000)
+    public void testGraphsViewsTooSmallForFloat() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("x^2 + y^2 = 1"));
+        axes.setDoubleOrigin(new double[]{0.6, 0.8});
+        axes.setDoubleScale(1e-9);
+        Grapher grapher = new Grapher(axes);
+        assertEquals(0, curvePixels(grapher.graph(100, "BOUNDARY")));
+        grapher.setDoublePrecision(true);
+        // the circle crosses the view as a line, at a slope of 3/4
+        assertTrue(curvePixels(grapher.graph(100, "BOUNDARY")) >= 50);
+    }
+
+    @Test(timeout = 1000)
+    public void testSameAsFloatAtUsualScales() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("x^2 + y^2 = 1"));
+        Grapher grapher = new Grapher(axes);
+        int expected = curvePixels(grapher.graph(100, "BOUNDARY"));
+        grapher.setDoublePrecision(true);
+        assertEquals(expected, curvePixels(grapher.graph(100, "BOUNDARY")), expected / 20);
+    }
+
+    private static int curvePixels(int[] pixels) {
+        int count = 0;
+        for (int pixel : pixels) {
+            if (pixel == 0xFF000000) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
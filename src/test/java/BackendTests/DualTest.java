@@ -0,0 +1,90 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.Dual;
+import Graphics.float3;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Dual evaluation must give the same values as the tree interpreter, along with the exact gradient.
+ */
+public class DualTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    Random random = new Random(509);
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void assertSameValues(RealValuedExpression exp) {
+        for (int i = 0; i < 500; i++) {
+            float x = (random.nextFloat() - 0.5f) * 8;
+            float y = (random.nextFloat() - 0.5f) * 8;
+            assertEquals(exp.evaluate(x, y), exp.evaluateDual(x, y).getValue(), 0);
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testValues() throws InvalidTermException {
+        assertSameValues((RealValuedExpression) expressionReader.read("-x^2 + 3*y - x/y + 0.1"));
+        assertSameValues((RealValuedExpression) expressionReader.read(
+                "cos(x) + tan(y) - sqrt(x) * exp(y) + arctan(x) + log(y) + max(x, y) - min(x, y)"));
+        assertSameValues((RealValuedExpression) expressionReader.read("arcsin(x) + arccos(y) + mandel(x, y)"));
+        assertSameValues((RealValuedExpression) expressionReader.read("julia(x, y, 0.3, y) - multibrot(x, y, 2.5)"));
+        RealValuedExpression g = expressionReader.readForGraphing(new String[]{"g(x) = sqrt(x) + x^3", "x > 1"});
+        axes.addExpression(g);
+        assertSameValues(expressionReader.readForGraphing(new String[]{"g(y) * g(cos(x)) = x", "x < 2 | y >= 1"}));
+    }
+
+    @Test(timeout = 50)
+    public void testGradient() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("x^2*y + sin(x*y) = exp(y)");
+        Dual f = exp.evaluateDual(0.5f, 2);
+        // d/dx = 2xy + y cos(xy), d/dy = x^2 + x cos(xy) - e^y
+        assertEquals(2 + 2 * Math.cos(1), f.getDx(), 1e-5);
+        assertEquals(0.25 + 0.5 * Math.cos(1) - Math.exp(2), f.getDy(), 1e-5);
+        assertEquals(0, f.getDz(), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testChainRuleThroughCustomFunctions() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("h(x) = x^3 + log(x)"));
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("h(sin(x) + 2) = y");
+        Dual f = exp.evaluateDual(0.3f, 1);
+        double u = Math.sin(0.3) + 2;
+        assertEquals((3 * u * u + 1 / u) * Math.cos(0.3), f.getDx(), 1e-4);
+        assertEquals(-1, f.getDy(), 1e-6);
+    }
+
+    @Test(timeout = 50)
+    public void testDerivIsSurfaceNormal() throws InvalidTermException {
+        RealValuedExpression sphere = (RealValuedExpression) expressionReader.read("x^2 + y^2 + z^2 = 1");
+        float3 normal = sphere.deriv(0.3f, 0.4f, 0.5f);
+        float length = (float) Math.sqrt(0.5);
+        assertEquals(0.3f / length, normal.x, 1e-6);
+        assertEquals(0.4f / length, normal.y, 1e-6);
+        assertEquals(0.5f / length, normal.z, 1e-6);
+        // far from the origin, where a fixed finite difference step is lost in rounding
+        float3 far = sphere.deriv(1e5f, 0, 0);
+        assertEquals(1, far.x, 0);
+    }
+
+    @Test(timeout = 50)
+    public void testDistanceEstimate() throws InvalidTermException {
+        RealValuedExpression circle = (RealValuedExpression) expressionReader.read("x^2 + y^2 = 1");
+        assertEquals(0.01, circle.distanceEstimate(1.01f, 0), 1e-3);
+        assertTrue(Float.isNaN(expressionReader.readForGraphing(new String[]{"x = y", "x > 0"})
+                .distanceEstimate(-1, 0)));
+    }
+}
@@ -0,0 +1,204 @@
+package BackendTests;
+
+import Backend.Expressions.BuiltinFunctionExpression;
+import Graphics.EscapeTimeKernel;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The shortcuts of the escape time kernel must not change any count from that of the plain loop, and smooth counts
+ * must follow the plain ones.
+ */
+public class EscapeTimeKernelTest {
+
+    Random random = new Random(421);
+
+    /**
+     * @return The iterations of z -> z^2 + c until |z| > 2, up to cap, without any shortcuts
+     */
+    private static int plainIterations(float cx, float cy, int cap) {
+        float x = 0;
+        float y = 0;
+        int i;
+        for (i = 0; i < cap; i++) {
+            if (x * x + y * y > 4) break;
+            float xtemp = x * x - y * y + cx;
+            y = 2 * x * y + cy;
+            x = xtemp;
+        }
+        return i;
+    }
+
+    @Test(timeout = 1000)
+    public void testSameAsPlainLoop() {
+        EscapeTimeKernel kernel = new EscapeTimeKernel(300, false);
+        for (int j = 0; j < 300; j++) {
+            for (int i = 0; i < 300; i++) {
+                float cx = -2.2f + i * 0.01f;
+                float cy = -1.5f + j * 0.01f;
+                assertEquals(plainIterations(cx, cy, 300), kernel.iterations(cx, cy));
+                assertEquals(plainIterations(cx, cy, 100) / 100f, BuiltinFunctionExpression.mandel(cx, cy), 0);
+            }
+        }
+    }
+
+    /**
+     * @return The same as plainIterations, in double precision
+     */
+    private static int plainIterations(double cx, double cy, int cap) {
+        double x = 0;
+        double y = 0;
+        int i;
+        for (i = 0; i < cap; i++) {
+            if (x * x + y * y > 4) break;
+            double xtemp = x * x - y * y + cx;
+            y = 2 * x * y + cy;
+            x = xtemp;
+        }
+        return i;
+    }
+
+    @Test(timeout = 1000)
+    public void testDoubleSameAsPlainLoop() {
+        EscapeTimeKernel kernel = new EscapeTimeKernel(300, false);
+        for (int j = 0; j < 300; j++) {
+            for (int i = 0; i < 300; i++) {
+                double cx = -2.2 + i * 0.01;
+                double cy = -1.5 + j * 0.01;
+                assertEquals(plainIterations(cx, cy, 300), kernel.iterations(cx, cy));
+                assertEquals(plainIterations(cx, cy, 100) / 100.0, BuiltinFunctionExpression.mandel(cx, cy), 0);
+            }
+        }
+    }
+
+    @Test(timeout = 1000)
+    public void testSameNearCardioidAndBulb() {
+        EscapeTimeKernel kernel = new EscapeTimeKernel(1000, false);
+        for (int k = 0; k < 20000; k++) {
+            // points within a little of the boundaries, on either side
+            double t = random.nextDouble() * 2 * Math.PI;
+            double offset = (random.nextDouble() - 0.5) * (k % 2 == 0 ? 1e-3 : 1e-6);
+            float cx;
+            float cy;
+            if (k % 4 < 2) {
+                double r = (1 - Math.cos(t)) / 2 + offset;
+                cx = (float) (r * Math.cos(t) + 0.25);
+                cy = (float) (r * Math.sin(t));
+            } else {
+                cx = (float) ((0.25 + offset) * Math.cos(t) - 1);
+                cy = (float) ((0.25 + offset) * Math.sin(t));
+            }
+            assertEquals(plainIterations(cx, cy, 1000), kernel.iterations(cx, cy));
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testUndefinedAndInfinite() {
+        float[] values = {Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 0, -0f};
+        for (float cx : values) {
+            for (float cy : values) {
+                assertEquals(plainIterations(cx, cy, 100) / 100f, BuiltinFunctionExpression.mandel(cx, cy), 0);
+            }
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testSmoothWithinIterations() {
+        for (int k = 0; k < 10000; k++) {
+            float cx = random.nextFloat() * 3 - 2.2f;
+            float cy = random.nextFloat() * 3 - 1.5f;
+            int n = plainIterations(cx, cy, 100);
+            float smooth = BuiltinFunctionExpression.smoothMandel(cx, cy);
+            assertTrue(smooth >= 0 && smooth <= 1);
+            if (n == 100) {
+                assertEquals(1, smooth, 0);
+            } else {
+                // z escapes past |z| > 16 after it escapes past |z| > 2, and a few iterations later but near -2
+                assertTrue(smooth * 100 >= n);
+                assertTrue(n >= 90 || smooth < 1);
+            }
+        }
+    }
+
+    /**
+     * @return The iterations of the family from the point (px, py) with parameters a and b until |z| > 2, up to cap,
+     * without any shortcuts
+     */
+    private static int plainIterations(EscapeTimeKernel.Family family, float px, float py, float a, float b,
+                                       int cap) {
+        boolean julia = family == EscapeTimeKernel.Family.JULIA;
+        float x = julia ? px : 0;
+        float y = julia ? py : 0;
+        float cx = julia ? a : px;
+        float cy = julia ? b : py;
+        int i;
+        for (i = 0; i < cap; i++) {
+            if (x * x + y * y > 4) break;
+            if (family == EscapeTimeKernel.Family.MULTIBROT) {
+                // z^3
+                float xtemp = (x * x - y * y) * x - (x * y + y * x) * y + cx;
+                y = (x * x - y * y) * y + (x * y + y * x) * x + cy;
+                x = xtemp;
+            } else {
+                float xtemp = x * x - y * y + cx;
+                y = family == EscapeTimeKernel.Family.SHIP ? 2 * Math.abs(x) * Math.abs(y) + cy : 2 * x * y + cy;
+                x = xtemp;
+            }
+        }
+        return i;
+    }
+
+    @Test(timeout = 1000)
+    public void testFamiliesSameAsPlainLoop() {
+        for (EscapeTimeKernel.Family family : EscapeTimeKernel.Family.values()) {
+            float a = family == EscapeTimeKernel.Family.MULTIBROT ? 3 : -0.8f;
+            float b = 0.156f;
+            for (int j = 0; j < 150; j++) {
+                for (int i = 0; i < 150; i++) {
+                    float px = -2.2f + i * 0.02f;
+                    float py = -1.5f + j * 0.02f;
+                    assertEquals(family + " at " + px + ", " + py, plainIterations(family, px, py, a, b, 200) / 200f,
+                            EscapeTimeKernel.evaluate(family, false, px, py, a, b, 200.5f), 0);
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testFamiliesGeneralizeMandel() {
+        for (int k = 0; k < 2000; k++) {
+            float cx = random.nextFloat() * 3 - 2.2f;
+            float cy = random.nextFloat() * 3 - 1.5f;
+            float mandel = BuiltinFunctionExpression.mandel(cx, cy);
+            assertEquals(mandel,
+                    EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.MANDEL, false, cx, cy, 0, 0, 100), 0);
+            assertEquals(mandel,
+                    EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.MULTIBROT, false, cx, cy, 2, 0, 100), 0);
+            assertEquals(BuiltinFunctionExpression.mandel((double) cx, cy),
+                    EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.MULTIBROT, false, cx, cy, 2.0, 0, 100), 0);
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testFamiliesUndefined() {
+        for (EscapeTimeKernel.Family family : EscapeTimeKernel.Family.values()) {
+            assertTrue(Float.isNaN(EscapeTimeKernel.evaluate(family, false, 0.1f, 0.2f, 2, 0, 0.5f)));
+            assertTrue(Float.isNaN(EscapeTimeKernel.evaluate(family, false, 0.1f, 0.2f, 2, 0, Float.NaN)));
+            assertTrue(Float.isNaN(EscapeTimeKernel.evaluate(family, false, 0.1f, 0.2f, 2, 0,
+                    EscapeTimeKernel.MAX_ITERATIONS + 1)));
+            assertTrue(Double.isNaN(EscapeTimeKernel.evaluate(family, false, 0.1, 0.2, 2, 0, -1)));
+        }
+        assertTrue(Float.isNaN(
+                EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.MULTIBROT, false, 0.1f, 0.2f, 1, 0, 100)));
+        assertEquals(1,
+                EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.MULTIBROT, false, 0.1f, 0.2f, 1.5f, 0, 100), 0);
+    }
+
+    @Test(timeout = 50, expected = IllegalArgumentException.class)
+    public void testNoIterations() {
+        new EscapeTimeKernel(0, true);
+    }
+}
@@ -0,0 +1,85 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.ExplicitGrapher;
+import Graphics.Grapher;
+import Graphics.Polyline;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Graphs of y = f(x) are drawn from samples along x, refined where the curve bends or jumps.
+ */
+public class ExplicitGrapherTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    ExplicitGrapher grapher = new ExplicitGrapher();
+    float[] graphData = {10, 0.1f, -0.2f};
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private RealValuedExpression read(String expression) throws InvalidTermException {
+        return (RealValuedExpression) expressionReader.read(expression);
+    }
+
+    @Test(timeout = 500)
+    public void testCurveFollowsFunction() throws InvalidTermException {
+        RealValuedExpression sin = read("f(x) = sin(x)");
+        List<Polyline> polylines = grapher.trace(sin, 400, 400, graphData);
+        assertEquals(1, polylines.size());
+        Polyline line = polylines.get(0);
+        for (int i = 0; i < line.size(); i++) {
+            assertEquals(Math.sin(line.getX(i)), line.getY(i), 1e-6);
+        }
+        assertEquals(-4.9, line.getX(0), 1e-5);
+        assertTrue(line.getX(line.size() - 1) >= 5.1 - 1e-5);
+        // far fewer samples than the pixels of the image
+        assertTrue(grapher.getEvaluations() < 2000);
+        assertTrue(line.size() > 100);
+    }
+
+    @Test(timeout = 500)
+    public void testAsymptotesAreNotJoined() throws InvalidTermException {
+        RealValuedExpression tan = read("f(x) = tan(x)");
+        List<Polyline> polylines = grapher.trace(tan, 400, 400, graphData);
+        // the asymptotes at -3pi/2, -pi/2, pi/2 and 3pi/2 split the curve in five
+        assertEquals(5, polylines.size());
+        for (Polyline line : polylines) {
+            for (int i = 0; i + 1 < line.size(); i++) {
+                // no segment crosses an asymptote
+                double asymptote = Math.floor(line.getX(i) / Math.PI + 0.5);
+                assertEquals(asymptote, Math.floor(line.getX(i + 1) / Math.PI + 0.5), 0);
+            }
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testUndefinedPointsAreLeftOut() throws InvalidTermException {
+        RealValuedExpression sqrt = read("f(x) = sqrt(x)");
+        List<Polyline> polylines = grapher.trace(sqrt, 400, 400, graphData);
+        assertEquals(1, polylines.size());
+        // the curve starts within the smallest interval of x = 0
+        assertEquals(0, polylines.get(0).getX(0), 10.0 / 400 * 4 / 256);
+    }
+
+    @Test(timeout = 500)
+    public void testRegionMatchesImplicitGraph() throws InvalidTermException {
+        axes.addExpression(read("y = sin(x) * x"));
+        // not of the form y = f(x), so it is sampled at every pixel
+        Axes implicitAxes = new Axes();
+        implicitAxes.addExpression((RealValuedExpression) new ExpressionReader(implicitAxes)
+                .read("0 = sin(x) * x - y"));
+        assertArrayEquals(new Grapher(implicitAxes).graph(200, "REGION"), new Grapher(axes).graph(200, "REGION"));
+    }
+}
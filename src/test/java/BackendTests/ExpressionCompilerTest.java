@@ -0,0 +1,132 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.CompiledExpression;
+import Backend.ExpressionCompilers.ExpressionCompiler;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ExpressionCompilerTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    ExpressionCompiler compiler = new ExpressionCompiler();
+    Map<String, Float> varMap = new HashMap<>();
+    float[] samples = {-3.5f, -1f, -0.25f, 0f, 0.5f, 1f, 2.75f};
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    /**
+     * Checks that the compiled program agrees bit for bit with the tree interpreter on a grid of points
+     */
+    private void assertSameAsTree(RealValuedExpression exp) {
+        CompiledExpression compiled = compiler.compile(exp);
+        for (float x : samples) {
+            for (float y : samples) {
+                assertEquals(exp.evaluate(x, y), compiled.evaluate(x, y), 0);
+            }
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testNumber() throws InvalidTermException {
+        CompiledExpression compiled = compiler.compile((RealValuedExpression) expressionReader.read("2.5"));
+        assertEquals(2.5, compiled.evaluate(0, 0), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testArithmetic() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read("x^2 + 3*y - x/y"));
+    }
+
+    @Test(timeout = 50)
+    public void testImplicit() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read("-x^2 + y = sin(x*y)"));
+    }
+
+    @Test(timeout = 50)
+    public void testBuiltins() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "cos(x) + tan(y) - sqrt(x) * exp(y) + arctan(x) + log(y) + max(x, y) - min(x, y)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("arcsin(x) + arccos(y) + mandel(x, y)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("smoothmandel(x, y) - mandel(y, x)"));
+    }
+
+    @Test(timeout = 500)
+    public void testEscapeTimeFamilies() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "julia(x, y, -0.8, 0.156) + ship(y, x) - multibrot(x, y, 3) * multibrot(x, y, 2.5)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "mandeliter(x, y, 10 * x) + juliaiter(x, y, 0.3, y, 40) + shipiter(x, y, 7)"
+                        + " + multibrotiter(x, y, x, 9)"));
+    }
+
+    @Test(timeout = 50)
+    public void testCustomFunction() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("f(x) = x^2 - 1"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("f(y) + f(cos(x)) * f(2)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("f(f(x) - max(f(y), x))"));
+    }
+
+    @Test(timeout = 50)
+    public void testDomains() throws InvalidTermException {
+        RealValuedExpression g = expressionReader.readForGraphing(new String[]{"g(x) = sqrt(x)", "x > 1"});
+        axes.addExpression(g);
+        assertSameAsTree(g);
+        assertSameAsTree(expressionReader.readForGraphing(new String[]{"g(y) + x = 0", "x < 2 | y >= 1"}));
+    }
+
+    @Test(timeout = 50)
+    public void testBoolean() throws InvalidTermException {
+        BooleanValuedExpression exp = (BooleanValuedExpression) expressionReader.read("0 < x <= 2 & y >= x");
+        CompiledExpression compiled = compiler.compile(exp);
+        for (float x : samples) {
+            for (float y : samples) {
+                varMap.put("x", x);
+                varMap.put("y", y);
+                assertEquals(exp.evaluate(varMap), compiled.evaluateBoolean(x, y));
+            }
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testBatchMatchesScalar() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("f(x) = x^2 - 1"));
+        RealValuedExpression exp = expressionReader.readForGraphing(
+                new String[]{"f(y) + f(cos(x)) * mandel(x, y) - f(f(x))", "x < 2 | y >= 1"});
+        CompiledExpression compiled = compiler.compile(exp);
+        // more points than fit in one block, so that blocks are reused
+        int n = CompiledExpression.BLOCK_SIZE * 2 + 3;
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = samples[i % samples.length];
+            ys[i] = samples[(i / samples.length) % samples.length];
+        }
+        compiled.evaluate(xs, ys, out, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(exp.evaluate(xs[i], ys[i]), out[i], 0);
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testCopyIsIndependent() throws InvalidTermException {
+        CompiledExpression compiled = compiler.compile((RealValuedExpression) expressionReader.read("x*y"));
+        CompiledExpression copy = compiled.copy();
+        assertEquals(6, compiled.evaluate(2, 3), 0);
+        assertEquals(20, copy.evaluate(4, 5), 0);
+        assertEquals(6, compiled.evaluate(2, 3), 0);
+    }
+}
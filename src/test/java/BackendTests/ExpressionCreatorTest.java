@@ -339,6 +339,31 @@ public class ExpressionCreatorTest {
         assertEquals(composeFunc.evaluate(varMap), 36, delta);
     }
 
+    @Test(timeout = 50)
+    public void testVariablesResolvedToSlots() throws InvalidTermException {
+        VariableExpression exp = (VariableExpression) realBooleanCreatorImp.create(List.of("y"));
+        assertEquals(new Constants().getVariableSlot("y"), exp.getSlot());
+    }
+
+    @Test(timeout = 50)
+    public void testPrimitiveEvaluation() throws InvalidTermException {
+        Axes axes = new Axes();
+        ExpressionReader er2 = new ExpressionReader(axes);
+        axes.addExpression((RealValuedExpression) er2.read("f(x) = x^2 + 1"));
+        RealValuedExpression exp = (RealValuedExpression) er2.read("f(y) - x * f(x)");
+        BooleanValuedExpression cond = (BooleanValuedExpression) er2.read("f(x) < y");
+
+        float[] slots = Expression.newSlots();
+        slots[new Constants().getVariableSlot("x")] = 2f;
+        slots[new Constants().getVariableSlot("y")] = 3f;
+        assertEquals(10 - 2 * 5, exp.evalFloat(slots), delta);
+        assertFalse(cond.evalBool(slots));
+
+        varMap.put("x", 2f);
+        varMap.put("y", 3f);
+        assertEquals(exp.evalFloat(slots), exp.evaluate(varMap), 0);
+    }
+
     @Test(timeout = 50)
     public void testExp() throws InvalidTermException {
         RealValuedExpression exp = (RealValuedExpression) realBooleanCreatorImp.create(List.of("exp", "(", "x",
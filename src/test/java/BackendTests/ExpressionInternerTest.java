@@ -0,0 +1,123 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.CompiledExpressionGroup;
+import Backend.ExpressionCompilers.ExpressionCompiler;
+import Backend.ExpressionCompilers.ExpressionInterner;
+import Backend.ExpressionCompilers.KernelGenerator;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.MultiEvaluatable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExpressionInternerTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    ExpressionCompiler compiler = new ExpressionCompiler();
+    float[] samples = {-3.5f, -1f, -0.25f, 0f, 0.5f, 1f, 2.75f};
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private List<RealValuedExpression> readAll(String... expressions) throws InvalidTermException {
+        ExpressionInterner interner = new ExpressionInterner();
+        List<RealValuedExpression> read = new ArrayList<>();
+        for (String expression : expressions) {
+            read.add(interner.intern((RealValuedExpression) expressionReader.read(expression)));
+        }
+        return read;
+    }
+
+    /**
+     * Checks that every output of the group agrees bit for bit with the tree interpreter on a grid of points
+     */
+    private void assertSameAsTrees(List<RealValuedExpression> expressions, MultiEvaluatable group) {
+        float[] out = new float[expressions.size()];
+        for (float x : samples) {
+            for (float y : samples) {
+                group.evaluate(x, y, out);
+                for (int i = 0; i < out.length; i++) {
+                    assertEquals(expressions.get(i).evaluate(x, y), out[i], 0);
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testIdenticalSubtreesShared() throws InvalidTermException {
+        List<RealValuedExpression> family = readAll("sin(x*y) + y = 0", "sin(x*y) - y = 0");
+        ArithmeticOperatorExpression first = (ArithmeticOperatorExpression) family.get(0);
+        ArithmeticOperatorExpression second = (ArithmeticOperatorExpression) family.get(1);
+        assertNotSame(first, second);
+        assertSame(first.getLExpression(), second.getLExpression());
+        assertSame(first.getRExpression(), second.getRExpression());
+    }
+
+    @Test(timeout = 50)
+    public void testReaderKeepsNoNodes() throws InvalidTermException {
+        // interning is left to where the expressions are graphed together, so the reader holds on to nothing
+        ArithmeticOperatorExpression first = (ArithmeticOperatorExpression) expressionReader.read("sin(x*y) + y = 0");
+        ArithmeticOperatorExpression second = (ArithmeticOperatorExpression) expressionReader.read("sin(x*y) - y = 0");
+        assertNotSame(first.getLExpression(), second.getLExpression());
+    }
+
+    @Test(timeout = 50)
+    public void testNumbersSharedByValue() throws InvalidTermException {
+        List<RealValuedExpression> family = readAll("x + 2", "y * 2.0", "x - 1.0000000001", "y - 1");
+        assertSame(((ArithmeticOperatorExpression) family.get(0)).getRExpression(),
+                ((ArithmeticOperatorExpression) family.get(1)).getRExpression());
+        // the same float, but not the same number
+        RealValuedExpression one = ((ArithmeticOperatorExpression) family.get(3)).getRExpression();
+        assertNotSame(((ArithmeticOperatorExpression) family.get(2)).getRExpression(), one);
+        assertEquals(1, one.evaluate(0.0, 0.0), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testSharingRatio() throws InvalidTermException {
+        assertEquals(1, ExpressionInterner.sharingRatio(readAll("x + y")), 0);
+        // 20 nodes in the trees, only 10 distinct ones as x, y and sin(x*y) are shared
+        float ratio = ExpressionInterner.sharingRatio(readAll("sin(x*y) + y = 0", "sin(x*y) - y = 0",
+                "sin(x*y) * 3 = 1"));
+        assertEquals(2, ratio, 1e-6);
+    }
+
+    @Test(timeout = 50)
+    public void testCompileAllMatchesTrees() throws InvalidTermException {
+        List<RealValuedExpression> family = readAll("sin(x*y) + y = 0", "sin(x*y) - y = 0", "sin(x*y) * 3 = 1",
+                "cos(sin(x*y)) = x");
+        family.add(expressionReader.readForGraphing(new String[]{"sqrt(x*y) = sin(x*y)", "x > 0"}));
+        assertSameAsTrees(family, compiler.compileAll(family));
+    }
+
+    @Test(timeout = 50)
+    public void testSharedSubexpressionComputedOnce() throws InvalidTermException {
+        CompiledExpressionGroup group = compiler.compileAll(readAll("sin(x*y) + y = 0", "sin(x*y) - y = 0",
+                "sin(x*y)^2 = x"));
+        assertEquals(3, group.getOutputCount());
+        assertEquals(1, group.toString().split("SIN").length - 1);
+    }
+
+    @Test(timeout = 50)
+    public void testFunctionBodiesShared() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read("f(x) = x^2 - 1"));
+        List<RealValuedExpression> family = readAll("f(x) + f(x)*y", "f(y) - f(x)");
+        assertSameAsTrees(family, compiler.compileAll(family));
+    }
+
+    @Test(timeout = 500)
+    public void testGroupKernel() throws InvalidTermException {
+        List<RealValuedExpression> family = readAll("sin(x*y) + y = 0", "x^3 = exp(-y)", "max(x, y) = 1");
+        MultiEvaluatable kernel = new KernelGenerator().generate(compiler.compileAll(family));
+        assertSameAsTrees(family, kernel);
+    }
+}
@@ -12,6 +12,7 @@ import static org.junit.Assert.*;
 
 import Backend.ExpressionReader;
 import Backend.Expressions.*;
+import Graphics.EscapeTimeKernel;
 
 public class ExpressionReaderTest {
 
@@ -137,6 +138,18 @@ public class ExpressionReaderTest {
     }
 
 
+    @Test(timeout = 50)
+    public void testBuiltinWithManyInputs() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("juliaiter(x, y, 0.3, -0.5, 20)");
+        assertEquals(EscapeTimeKernel.evaluate(EscapeTimeKernel.Family.JULIA, false, 0.1f, 0.2f, 0.3f, -0.5f, 20),
+                exp.evaluate(0.1f, 0.2f), 0);
+    }
+
+    @Test(timeout = 50, expected = InvalidTermException.class)
+    public void testBuiltinWithTooFewInputs() throws InvalidTermException {
+        expressionReader.read("julia(x, y, 1)");
+    }
+
     @Test(timeout = 50)
     public void testReadForGraphingLength1() throws InvalidTermException {
         RealValuedExpression exp = expressionReader.readForGraphing(new String[]{"1"});
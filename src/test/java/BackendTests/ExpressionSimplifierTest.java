@@ -0,0 +1,112 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ExpressionSimplifierTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    float[] samples = {Float.NaN, Float.NEGATIVE_INFINITY, -2.5f, -1f, -0f, 0f, 0.75f, 3f, Float.POSITIVE_INFINITY};
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private RealValuedExpression read(String expression) throws InvalidTermException {
+        return (RealValuedExpression) expressionReader.read(expression);
+    }
+
+    @Test(timeout = 50)
+    public void testConstantFolding() throws InvalidTermException {
+        RealValuedExpression exp = read("2 * 3 + 1");
+        assertTrue(exp instanceof NumberExpression);
+        assertEquals(7, exp.evaluate(0, 0), 0);
+        assertEquals(4, expressionReader.getNodesRemoved());
+    }
+
+    @Test(timeout = 50)
+    public void testFoldingFunctionCalls() throws InvalidTermException {
+        // cos(0) folds to 1, then 1 * x is x
+        assertTrue(read("cos(0) * x") instanceof VariableExpression);
+    }
+
+    /**
+     * Folding must not round the constants evaluated in double precision to float
+     */
+    @Test(timeout = 50)
+    public void testFoldingKeepsDoubleValues() throws InvalidTermException {
+        RealValuedExpression folded = read("2 * 0.1 + 0.0000000001");
+        assertTrue(folded instanceof NumberExpression);
+        assertEquals(2 * 0.1f + 1e-10f, folded.evaluate(0, 0), 0);
+        assertEquals(2 * 0.1 + 1e-10, folded.evaluate(0.0, 0.0), 0);
+        // 1.0000000001 is 1 as a float, but not as a double
+        RealValuedExpression product = read("x * 1.0000000001");
+        assertFalse(product instanceof VariableExpression);
+        assertEquals(1.0000000001, product.evaluate(1.0, 0.0), 0);
+        // 2^24 + 1 is not a float, so the float and double differences are 0 and 1, and no number is both
+        assertEquals(1, read("16777217 - 16777216").evaluate(0.0, 0.0), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testDoubleNegation() throws InvalidTermException {
+        assertTrue(read("-(-x)") instanceof VariableExpression);
+    }
+
+    @Test(timeout = 50)
+    public void testPowers() throws InvalidTermException {
+        RealValuedExpression exp = read("x^2");
+        assertEquals("*", exp.getItem());
+        assertTrue(read("x^1") instanceof VariableExpression);
+        assertTrue(read("y^0") instanceof NumberExpression);
+    }
+
+    /**
+     * Without fast-math, the simplified expressions must agree bit for bit with the expressions as written,
+     * which are evaluated here with the same float operations as the interpreter
+     */
+    @Test(timeout = 50)
+    public void testExactIdentities() throws InvalidTermException {
+        RealValuedExpression exp = read("-(-x) * 1 + y^2 - 0 + 2*3");
+        RealValuedExpression implicit = read("x/1 = -y");
+        for (float x : samples) {
+            for (float y : samples) {
+                assertEquals(-1 * (-1 * x) * 1 + (float) Math.pow(y, 2) - 0 + 2 * 3, exp.evaluate(x, y), 0);
+                assertEquals(x / 1 - (-1 * y), implicit.evaluate(x, y), 0);
+            }
+        }
+    }
+
+    @Test(timeout = 50)
+    public void testInexactIdentitiesNeedFastMath() throws InvalidTermException {
+        assertFalse(read("x - x") instanceof NumberExpression);
+        assertFalse(read("x + 0") instanceof VariableExpression);
+
+        expressionReader.setFastMath(true);
+        assertTrue(read("x - x") instanceof NumberExpression);
+        assertTrue(read("x + 0") instanceof VariableExpression);
+        assertEquals(8, read("x^3").evaluate(2, 0), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testDomainKept() throws InvalidTermException {
+        RealValuedExpression exp = expressionReader.readForGraphing(new String[]{"x * 1 + 2 * 3", "x > 1 | 2 < 1"});
+        assertEquals(Float.NaN, exp.evaluate(0, 0), 0);
+        assertEquals(8, exp.evaluate(2, 0), 0);
+    }
+
+    @Test(timeout = 50)
+    public void testFunctionDefinition() throws InvalidTermException {
+        RealValuedExpression function = read("f(x) = x^2 * 1 - 0");
+        assertTrue(function instanceof CustomFunctionExpression);
+        assertEquals("f", function.getItem());
+        assertEquals(6.25, function.evaluate(2.5f, 0), 0);
+    }
+}
@@ -0,0 +1,223 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.AxesDrawer;
+import Graphics.Colormap;
+import Graphics.Grapher;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Graphing on several threads must give exactly the same image as graphing on one, and sharing the points of
+ * neighbouring pixels must give exactly the same image as sampling each pixel on its own. Graphing in passes must
+ * end in the same image as graphing at once.
+ */
+public class GrapherTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void add(String expression) throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) expressionReader.read(expression));
+    }
+
+    private void assertSameOnThreads(String gType) {
+        Grapher grapher = new Grapher(axes);
+        // 130 is not a multiple of the tile size, so the last row and column of tiles are cut off
+        int[] single = grapher.graph(130, gType);
+        grapher.setThreads(4);
+        assertArrayEquals(single, grapher.graph(130, gType));
+        grapher.setThreads(1);
+        assertArrayEquals(single, grapher.graph(130, gType));
+    }
+
+    @Test(timeout = 500)
+    public void testGrayscaleIsSameOnThreads() throws InvalidTermException {
+        add("sin(x * y)^2");
+        assertSameOnThreads("GRAYSCALE");
+    }
+
+    @Test(timeout = 500)
+    public void testCurveIsSameOnThreads() throws InvalidTermException {
+        add("sin(x * y) = cos(x) / 2");
+        assertSameOnThreads("BOUNDARY");
+        assertSameOnThreads("REGION");
+    }
+
+    @Test(timeout = 500)
+    public void testSeveralCurvesAreSameOnThreads() throws InvalidTermException {
+        add("x^2 + y^2 = 9");
+        add("y = x^3 - x");
+        assertSameOnThreads("BOUNDARY");
+    }
+
+    // neither the scale nor the size is a power of two, so only some pixels share their neighbours' points
+    private final float scale = 7.3f;
+    private final float xpos = 1.1f;
+    private final float ypos = -0.4f;
+    private final int size = 250;
+
+    private float pixelX(int x) {
+        return (x / (float) size - 0.5f) * scale + xpos;
+    }
+
+    private float pixelY(int y) {
+        return -(y / (float) size - 0.5f) * scale + ypos;
+    }
+
+    /**
+     * Asserts that the BOUNDARY graph of the expressions is the one sampling each pixel three times for each
+     */
+    private void assertBoundaryExact() {
+        axes.setScale(scale);
+        axes.setOrigin(xpos, ypos);
+
+        int[] expected = new int[size * size];
+        Arrays.fill(expected, 0xFFFFFFFF);
+        float pixelSize = scale / (float) size;
+        for (RealValuedExpression exp : axes.getExpressions()) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    float curr = exp.evaluate(pixelX(x), pixelY(y));
+                    float right = exp.evaluate(pixelX(x) + pixelSize, pixelY(y));
+                    float up = exp.evaluate(pixelX(x), pixelY(y) + pixelSize);
+                    if (!Float.isNaN(curr + right + up) && ((curr > 0) != (right > 0) || (curr > 0) != (up > 0))) {
+                        expected[y * size + x] = 0xFF000000;
+                    }
+                }
+            }
+        }
+        float[] graphData = {scale, xpos, ypos};
+        new AxesDrawer().drawAxes(expected, size, size, graphData);
+        new AxesDrawer().drawGrid(expected, size, size, graphData);
+
+        assertArrayEquals(expected, new Grapher(axes).graph(size, "BOUNDARY"));
+    }
+
+    @Test(timeout = 10000)
+    public void testBoundarySharesPointsExactly() throws InvalidTermException {
+        add("sin(x * y) = cos(x) / 2");
+        assertBoundaryExact();
+    }
+
+    @Test(timeout = 10000)
+    public void testBoundaryOnPointsNotShared() throws InvalidTermException {
+        // a vertical line through the point one pixel size right of a pixel or the next pixel's point, whichever is
+        // left of the other, so that only one of them is on the line
+        float pixelSize = scale / (float) size;
+        int x = 0;
+        while (pixelX(x) + pixelSize == pixelX(x + 1)) {
+            x++;
+        }
+        add("x = " + Math.min(pixelX(x) + pixelSize, pixelX(x + 1)));
+        assertBoundaryExact();
+    }
+
+    @Test(timeout = 10000)
+    public void testSeveralBoundariesShareExactly() throws InvalidTermException {
+        add("sin(x * y) + y = 0");
+        add("sin(x * y) - y = 0");
+        add("sin(x * y) * 2 = 1");
+        float pixelSize = scale / (float) size;
+        int x = 0;
+        while (pixelX(x) + pixelSize == pixelX(x + 1)) {
+            x++;
+        }
+        add("x = " + Math.min(pixelX(x) + pixelSize, pixelX(x + 1)));
+        assertBoundaryExact();
+    }
+
+    /**
+     * Asserts that the GRAYSCALE graph of an escape time is the one sampling each pixel, in a view where tracing the
+     * borders of the regions of ship and of fractional powers of multibrot gives other pixels
+     */
+    private void assertGrayscaleExact(String expression) throws InvalidTermException {
+        add(expression);
+        float[] graphData = {3, -0.5f, -0.5f};
+        axes.setScale(graphData[0]);
+        axes.setOrigin(graphData[1], graphData[2]);
+
+        RealValuedExpression exp = axes.getExpressions().get(0);
+        int[] expected = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float px = (x / (float) size - 0.5f) * graphData[0] + graphData[1];
+                float py = -(y / (float) size - 0.5f) * graphData[0] + graphData[2];
+                expected[y * size + x] = Colormap.GRAYSCALE.colour(exp.evaluate(px, py));
+            }
+        }
+        new AxesDrawer().drawAxes(expected, size, size, graphData);
+        new AxesDrawer().drawGrid(expected, size, size, graphData);
+
+        assertArrayEquals(expected, new Grapher(axes).graph(size, "GRAYSCALE"));
+    }
+
+    @Test(timeout = 10000)
+    public void testShipSampledExactly() throws InvalidTermException {
+        // the regions of ship hold other escape times, which tracing their borders would fill in
+        assertGrayscaleExact("ship(x, y)");
+    }
+
+    @Test(timeout = 10000)
+    public void testFractionalMultibrotSampledExactly() throws InvalidTermException {
+        assertGrayscaleExact("multibrot(x, y, 2.5)");
+    }
+
+    private void assertPassesEndInGraph(String gType) {
+        Grapher grapher = new Grapher(axes);
+        grapher.setPos(new float[]{0.3f, -0.7f});
+        int[] pixels = new int[130 * 130];
+        for (int step : new int[]{8, 4, 2, 1}) {
+            grapher.graph(pixels, 130, gType, step);
+        }
+        assertArrayEquals(new Grapher(axes).graph(130, gType), pixels);
+    }
+
+    @Test(timeout = 500)
+    public void testCurvePassesEndInGraph() throws InvalidTermException {
+        add("sin(x * y) = cos(x) / 2");
+        assertPassesEndInGraph("REGION");
+        assertPassesEndInGraph("BOUNDARY");
+    }
+
+    @Test(timeout = 500)
+    public void testGrayscalePassesEndInGraph() throws InvalidTermException {
+        add("sin(x * y)^2");
+        assertPassesEndInGraph("GRAYSCALE");
+    }
+
+    @Test(timeout = 10000)
+    public void testEscapeTimeIsSameOnThreads() throws InvalidTermException {
+        add("mandel(x, y)");
+        assertSameOnThreads("GRAYSCALE");
+        assertPassesEndInGraph("GRAYSCALE");
+    }
+
+    @Test(timeout = 10000)
+    public void testEscapeTimeFamilyIsSameOnThreads() throws InvalidTermException {
+        add("juliaiter(x, y, -0.8, 0.156, 50)");
+        assertSameOnThreads("GRAYSCALE");
+    }
+
+    @Test(timeout = 50, expected = IllegalArgumentException.class)
+    public void testNoStep() {
+        new Grapher(axes).graph(new int[100], 10, "REGION", 0);
+    }
+
+    @Test(timeout = 50, expected = IllegalArgumentException.class)
+    public void testNoThreads() {
+        new Grapher(axes).setThreads(0);
+    }
+}
@@ -0,0 +1,122 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.Grapher;
+import Graphics.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The intervals of an expression over a box must enclose its value at every point of the box.
+ */
+public class IntervalTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    Random random = new Random(408);
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void assertEncloses(RealValuedExpression exp) {
+        for (int i = 0; i < 200; i++) {
+            float xLo = (random.nextFloat() - 0.5f) * 10;
+            float yLo = (random.nextFloat() - 0.5f) * 10;
+            float xHi = xLo + random.nextFloat() * (i % 2 == 0 ? 0.1f : 4);
+            float yHi = yLo + random.nextFloat() * (i % 3 == 0 ? 0.1f : 4);
+            Interval bounds = exp.evaluate(Interval.of(xLo, xHi), Interval.of(yLo, yHi));
+            for (int j = 0; j < 20; j++) {
+                // the corners are sampled too, as that is where the extremes often are
+                float x = j == 0 ? xLo : j == 1 ? xHi : xLo + random.nextFloat() * (xHi - xLo);
+                float y = j == 0 ? yLo : j == 1 ? yHi : yLo + random.nextFloat() * (yHi - yLo);
+                float value = exp.evaluate(x, y);
+                if (Float.isNaN(value)) {
+                    assertTrue(exp + " is NaN at " + x + ", " + y, bounds.isMaybeUndefined());
+                } else {
+                    assertTrue(exp + " = " + value + " at " + x + ", " + y + " is outside of " + bounds,
+                            bounds.getLo() <= value && value <= bounds.getHi());
+                }
+            }
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testArithmetic() throws InvalidTermException {
+        assertEncloses((RealValuedExpression) expressionReader.read("-x^2 + 3*y - x/y + 0.1"));
+        assertEncloses((RealValuedExpression) expressionReader.read("x^3 - x*y*y + y^(-2)"));
+        assertEncloses((RealValuedExpression) expressionReader.read("x^y + y^0.5 - x^x"));
+    }
+
+    @Test(timeout = 500)
+    public void testBuiltins() throws InvalidTermException {
+        assertEncloses((RealValuedExpression) expressionReader.read(
+                "cos(x) + tan(y) - sqrt(x) * exp(y) + arctan(x) + log(y) + max(x, y) - min(x, y)"));
+        assertEncloses((RealValuedExpression) expressionReader.read("sin(x*y) + arcsin(x) + arccos(y/4)"));
+        assertEncloses((RealValuedExpression) expressionReader.read("mandel(x, y) - sin(x)"));
+        assertEncloses((RealValuedExpression) expressionReader.read("julia(x, y, 0.3, y) + multibrotiter(x, y, x, 9)"));
+    }
+
+    @Test(timeout = 500)
+    public void testCustomFunctionsAndDomains() throws InvalidTermException {
+        RealValuedExpression g = expressionReader.readForGraphing(new String[]{"g(x) = sqrt(x) + x^3", "x > 1"});
+        axes.addExpression(g);
+        assertEncloses(g);
+        assertEncloses(expressionReader.readForGraphing(
+                new String[]{"g(y) * g(cos(x)) = x", "x < 2 | y >= 1 & x > -1"}));
+    }
+
+    @Test(timeout = 50)
+    public void testExcludesZero() throws InvalidTermException {
+        RealValuedExpression circle = (RealValuedExpression) expressionReader.read("x^2 + y^2 = 1");
+        Interval inside = circle.evaluate(Interval.of(-0.5f, 0.5f), Interval.of(-0.5f, 0.5f));
+        assertTrue(inside.getHi() < 0);
+        assertFalse(inside.isMaybeUndefined());
+        Interval outside = circle.evaluate(Interval.of(2, 3), Interval.of(-1, 1));
+        assertTrue(outside.getLo() > 0);
+        assertTrue(circle.evaluate(Interval.of(0, 2), Interval.of(0, 2)).getLo() <= 0);
+    }
+
+    @Test(timeout = 50)
+    public void testComparisons() {
+        Interval low = Interval.of(0, 1);
+        Interval high = Interval.of(2, 3);
+        assertSame(Interval.TRUE, high.gt(low));
+        assertSame(Interval.FALSE, high.lt(low));
+        assertSame(Interval.UNKNOWN, low.ge(Interval.of(0.5f, 2)));
+        assertSame(Interval.FALSE, Interval.UNDEFINED.le(low));
+        assertFalse(Interval.TRUE.and(Interval.UNKNOWN).isTrue());
+        assertTrue(Interval.FALSE.or(Interval.TRUE).isTrue());
+        assertTrue(high.sqrt().restrict(Interval.FALSE).isEmpty());
+    }
+
+    @Test(timeout = 500)
+    public void testConservativeGraphsFindThinCurves() throws InvalidTermException {
+        // a circle much smaller than a pixel, away from the axes and the grid
+        axes.addExpression((RealValuedExpression) expressionReader.read(
+                "(x - 2.31)^2 + (y - 1.73)^2 = 0.00000001"));
+        Grapher grapher = new Grapher(axes);
+        int sampled = countBlack(grapher.graph(256, "BOUNDARY"));
+        grapher.setConservative(true);
+        int conservative = countBlack(grapher.graph(256, "BOUNDARY"));
+        assertTrue(conservative > sampled);
+    }
+
+    private int countBlack(int[] pixels) {
+        int count = 0;
+        for (int pixel : pixels) {
+            if (pixel == 0xFF000000) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
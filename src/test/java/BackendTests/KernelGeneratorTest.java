@@ -0,0 +1,91 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.KernelGenerator;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.Evaluatable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differential tests: the generated kernels must agree bit for bit with the tree interpreter.
+ */
+public class KernelGeneratorTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    KernelGenerator generator = new KernelGenerator();
+    Random random = new Random(207);
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void assertSameAsTree(RealValuedExpression exp) {
+        Evaluatable kernel = generator.generate(exp);
+        for (int i = 0; i < 500; i++) {
+            // mix small and large magnitudes so that NaN and infinity show up too
+            float x = (random.nextFloat() - 0.5f) * (i % 2 == 0 ? 8 : 2e5f);
+            float y = (random.nextFloat() - 0.5f) * (i % 3 == 0 ? 8 : 2e5f);
+            assertEquals(exp.evaluate(x, y), kernel.evaluate(x, y), 0);
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testArithmetic() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read("-x^2 + 3*y - x/y + 0.1"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("y^x - (x - -0) * 1.5"));
+    }
+
+    @Test(timeout = 500)
+    public void testBuiltins() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "cos(x) + tan(y) - sqrt(x) * exp(y) + arctan(x) + log(y) + max(x, y) - min(x, y)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("arcsin(x) + arccos(y) + mandel(x, y)"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "juliaiter(x, y, 0.3, y, 40) - shipiter(x, y, x)"));
+    }
+
+    @Test(timeout = 500)
+    public void testCustomFunctionsAndDomains() throws InvalidTermException {
+        RealValuedExpression g = expressionReader.readForGraphing(new String[]{"g(x) = sqrt(x) + x^3", "x > 1"});
+        axes.addExpression(g);
+        assertSameAsTree(g);
+        assertSameAsTree(expressionReader.readForGraphing(
+                new String[]{"g(y) * g(cos(x)) = x", "x < 2 | y >= 1 & x > -1"}));
+    }
+
+    @Test(timeout = 500)
+    public void testBatch() throws InvalidTermException {
+        RealValuedExpression exp = expressionReader.readForGraphing(
+                new String[]{"sin(x*y) + x^2 - max(y, 1)", "x < 2 | y >= 1"});
+        Evaluatable kernel = generator.generate(exp);
+        // exercises the generated loop rather than the scalar entry points
+        int n = 1000;
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = (random.nextFloat() - 0.5f) * 8;
+            ys[i] = (random.nextFloat() - 0.5f) * 8;
+        }
+        kernel.evaluate(xs, ys, out, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(exp.evaluate(xs[i], ys[i]), out[i], 0);
+        }
+    }
+
+    @Test(timeout = 500)
+    public void testOneVariable() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("x^2 - 2");
+        Evaluatable kernel = generator.generate(exp);
+        assertEquals(7, kernel.evaluate(3), 0);
+    }
+}
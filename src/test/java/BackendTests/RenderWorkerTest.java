@@ -0,0 +1,172 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import GUI.RenderWorker;
+import GUI.ViewState;
+import Graphics.Grapher;
+import Graphics.TileCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.*;
+
+/**
+ * The render worker must publish frames of the latest view only, graphed as the grapher graphs them.
+ */
+public class RenderWorkerTest {
+
+    Axes axes = new Axes();
+    int size = 100;
+    Grapher grapher;
+    RenderWorker worker;
+    Semaphore frames = new Semaphore(0);
+
+    @Before
+    public void setUp() throws InvalidTermException {
+        axes.addExpression((RealValuedExpression) new ExpressionReader(axes).read("x^2 + sin(3*y) * y = 2"));
+        grapher = new Grapher(axes);
+        grapher.setTileCache(new TileCache(1 << 20));
+        worker = new RenderWorker(grapher, size);
+        worker.start(frames::release);
+    }
+
+    @After
+    public void tearDown() {
+        worker.stop();
+    }
+
+    /**
+     * @return The graph of view, drawn without the worker
+     */
+    private int[] expected(ViewState view) {
+        Grapher reference = new Grapher(axes);
+        reference.setTileCache(new TileCache(1 << 20));
+        reference.setPos(view.getOrigin());
+        reference.setScale(view.getScale());
+        return reference.graph(size, view.getgType());
+    }
+
+    /**
+     * @return The next frame taken, skipping the wake-ups of frames dropped before they were taken
+     */
+    private RenderWorker.Frame nextFrame() throws InterruptedException {
+        RenderWorker.Frame frame = null;
+        while (frame == null) {
+            frames.acquire();
+            frame = worker.takeFrame();
+        }
+        return frame;
+    }
+
+    /**
+     * @return The frame of view at full resolution, releasing the frames before it
+     */
+    private RenderWorker.Frame finalFrame(ViewState view) throws InterruptedException {
+        RenderWorker.Frame frame = nextFrame();
+        while (!frame.getView().equals(view) || frame.isPreview()) {
+            worker.release(frame);
+            frame = nextFrame();
+        }
+        return frame;
+    }
+
+    @Test(timeout = 1000)
+    public void testFrameMatchesGraph() throws InterruptedException {
+        ViewState view = new ViewState(8, 0.5f, -1, "BOUNDARY", 0, false);
+        worker.submit(view);
+        // graphed progressively, coarse passes first
+        RenderWorker.Frame frame = nextFrame();
+        assertEquals(view, frame.getView());
+        assertTrue(frame.isPreview());
+        worker.release(frame);
+        frame = finalFrame(view);
+        assertArrayEquals(expected(view), frame.getPixels());
+        assertNull(frame.getError());
+        worker.release(frame);
+    }
+
+    @Test(timeout = 1000)
+    public void testErrorPublished() throws InterruptedException {
+        worker.stop();
+        Grapher failing = new Grapher(axes) {
+            @Override
+            public int[] graph(int[] pixels, int size, String gType, int step) {
+                throw new IllegalStateException("Cannot graph");
+            }
+        };
+        worker = new RenderWorker(failing, size);
+        worker.start(frames::release);
+        ViewState view = new ViewState(8, 0.5f, -1, "BOUNDARY", 0, false);
+        worker.submit(view);
+        RenderWorker.Frame frame = nextFrame();
+        assertEquals(view, frame.getView());
+        assertEquals("Cannot graph", frame.getError().getMessage());
+        worker.release(frame);
+        // the worker goes on with the next view
+        ViewState next = new ViewState(8, 1, -1, "BOUNDARY", 0, false);
+        worker.submit(next);
+        frame = nextFrame();
+        assertEquals(next, frame.getView());
+        assertNotNull(frame.getError());
+        worker.release(frame);
+    }
+
+    @Test(timeout = 1000)
+    public void testLatestViewWins() throws InterruptedException {
+        ViewState last = null;
+        for (int i = 0; i < 20; i++) {
+            last = new ViewState(8, i * 0.3f, 0, "REGION", 0, false);
+            worker.submit(last);
+        }
+        RenderWorker.Frame frame = finalFrame(last);
+        assertArrayEquals(expected(last), frame.getPixels());
+        worker.release(frame);
+    }
+
+    @Test(timeout = 1000)
+    public void testZoomShowsPreviewFirst() throws InterruptedException {
+        ViewState view = new ViewState(8, 0, 0, "REGION", 0, false);
+        worker.submit(view);
+        worker.release(finalFrame(view));
+        // forget the wake-ups of the passes that were dropped
+        frames.drainPermits();
+        ViewState zoomed = new ViewState(8.8f, 0, 0, "REGION", 0, false);
+        worker.submit(zoomed);
+        frames.acquire(2);
+        // the preview was dropped for the graph, as it was not taken in time
+        RenderWorker.Frame frame = worker.takeFrame();
+        assertFalse(frame.isPreview());
+        assertEquals(zoomed, frame.getView());
+        worker.release(frame);
+    }
+
+    @Test(timeout = 1000)
+    public void testDraggingOnlyGraphsCoarsePass() throws InterruptedException {
+        ViewState dragged = new ViewState(8, 0.5f, 0, "BOUNDARY", 0, true);
+        worker.submit(dragged);
+        RenderWorker.Frame frame = nextFrame();
+        assertTrue(frame.isPreview());
+        worker.release(frame);
+        // released at the same place: graphed in full, reusing the samples of the coarse pass
+        ViewState released = new ViewState(8, 0.5f, 0, "BOUNDARY", 0, false);
+        worker.submit(released);
+        frame = finalFrame(released);
+        assertArrayEquals(expected(released), frame.getPixels());
+        worker.release(frame);
+    }
+
+    @Test(timeout = 500, expected = CancellationException.class)
+    public void testCancelledGraph() {
+        Grapher cancelled = new Grapher(axes);
+        cancelled.setTileCache(new TileCache(1 << 20));
+        cancelled.setCancellation(() -> true);
+        cancelled.graph(size, "BOUNDARY");
+    }
+}
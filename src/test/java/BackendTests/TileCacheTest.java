@@ -0,0 +1,102 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionReader;
+import Backend.Expressions.RealValuedExpression;
+import Graphics.Grapher;
+import Graphics.TileCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Images composed from cached tiles must match whole images, and only render the tiles they do not share.
+ */
+public class TileCacheTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    int size = 200;
+    float scale = 8;
+    float pixel = scale / size;
+
+    @Before
+    public void setUp() throws InvalidTermException {
+        expressionReader = new ExpressionReader(axes);
+        axes.addExpression((RealValuedExpression) expressionReader.read("x^2 + sin(3*y) * y = 2"));
+        axes.setScale(scale);
+    }
+
+    private int[] graph(TileCache cache) {
+        Grapher grapher = new Grapher(axes);
+        grapher.setTileCache(cache);
+        return grapher.graph(size, "BOUNDARY");
+    }
+
+    @Test(timeout = 500)
+    public void testTilesMatchWholeImage() {
+        // on the lattice of pixels, so that the image is not moved
+        axes.setOrigin(37 * pixel, -12 * pixel);
+        assertArrayEquals(graph(null), graph(new TileCache(1 << 20)));
+    }
+
+    @Test(timeout = 500)
+    public void testPanningReusesTiles() {
+        TileCache cache = new TileCache(1 << 20);
+        Grapher grapher = new Grapher(axes);
+        grapher.setTileCache(cache);
+        axes.setOrigin(0, 0);
+        grapher.graph(size, "BOUNDARY");
+        // 200 pixels from -100 on are in 2 tiles across and down
+        assertEquals(4, cache.getMisses());
+        assertTrue(grapher.isCached(size, "BOUNDARY"));
+        axes.setOrigin(40 * pixel, 0);
+        assertFalse(grapher.isCached(size, "BOUNDARY"));
+        grapher.graph(size, "BOUNDARY");
+        // only the column of tiles coming into view is new
+        assertEquals(6, cache.getMisses());
+        assertEquals(4, cache.getHits());
+    }
+
+    @Test(timeout = 500)
+    public void testLeastRecentlyUsedTilesAreDropped() {
+        long tileBytes = 4L * TileCache.TILE_SIZE * TileCache.TILE_SIZE;
+        // room for 5 tiles, with some to spare
+        TileCache cache = new TileCache(5 * tileBytes + tileBytes / 2);
+        Grapher grapher = new Grapher(axes);
+        grapher.setTileCache(cache);
+        axes.setOrigin(0, 0);
+        grapher.graph(size, "BOUNDARY");
+        axes.setOrigin(40 * pixel, 0);
+        grapher.graph(size, "BOUNDARY");
+        assertEquals(5, cache.size());
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        // the top left tile was used least recently, so it was dropped
+        axes.setOrigin(0, 0);
+        assertFalse(grapher.isCached(size, "BOUNDARY"));
+    }
+
+    @Test(timeout = 500)
+    public void testPreviewResamplesNearestScale() {
+        TileCache cache = new TileCache(1 << 20);
+        Grapher grapher = new Grapher(axes);
+        grapher.setTileCache(cache);
+        axes.setOrigin(0, 0);
+        grapher.graph(size, "REGION");
+        axes.setScale(scale * 1.001f);
+        assertFalse(grapher.isCached(size, "REGION"));
+        int[] preview = grapher.preview(size, "REGION");
+        assertEquals(4, cache.size());
+        int[] exact = grapher.graph(size, "REGION");
+        int same = 0;
+        for (int i = 0; i < exact.length; i++) {
+            if (exact[i] == preview[i]) {
+                same++;
+            }
+        }
+        // barely zoomed, so nearly every pixel is taken from the same place
+        assertTrue(same > 0.98 * exact.length);
+    }
+}
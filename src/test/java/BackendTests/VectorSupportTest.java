@@ -0,0 +1,92 @@
+package BackendTests;
+
+import Backend.Axes;
+import Backend.Exceptions.InvalidTermException;
+import Backend.ExpressionCompilers.CompiledExpression;
+import Backend.ExpressionCompilers.ExpressionCompiler;
+import Backend.ExpressionCompilers.VectorSupport;
+import Backend.ExpressionReader;
+import Backend.Expressions.*;
+import Graphics.Evaluatable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Differential tests: the vectorized evaluators must agree bit for bit with the tree interpreter.
+ * They only run when the tests are started with --add-modules jdk.incubator.vector.
+ */
+public class VectorSupportTest {
+
+    Axes axes = new Axes();
+    ExpressionReader expressionReader;
+    ExpressionCompiler compiler = new ExpressionCompiler();
+    Random random = new Random(307);
+
+    @Before
+    public void setUp() {
+        expressionReader = new ExpressionReader(axes);
+    }
+
+    private void assertSameAsTree(RealValuedExpression exp) {
+        CompiledExpression program = compiler.compile(exp);
+        if (!VectorSupport.isAvailable()) {
+            assertFalse(VectorSupport.prefersVectors(program));
+            return;
+        }
+        Evaluatable vectorized = VectorSupport.vectorize(program);
+        // not a multiple of the block size or of the lane count, so that partial blocks and vectors are run
+        int n = 1000;
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        float[] out = new float[n];
+        for (int i = 0; i < n; i++) {
+            // mix small and large magnitudes so that NaN and infinity show up too
+            xs[i] = (random.nextFloat() - 0.5f) * (i % 2 == 0 ? 5 : 2e5f);
+            ys[i] = (random.nextFloat() - 0.5f) * (i % 3 == 0 ? 5 : 2e5f);
+        }
+        vectorized.evaluate(xs, ys, out, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(exp.evaluate(xs[i], ys[i]), out[i], 0);
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void testArithmetic() throws InvalidTermException {
+        assertSameAsTree((RealValuedExpression) expressionReader.read("-x^2 + 3*y - x/y + 0.1"));
+        assertSameAsTree((RealValuedExpression) expressionReader.read("sqrt(x) * max(x, y) - min(x, -0) + cos(y)"));
+    }
+
+    @Test(timeout = 2000)
+    public void testComparisonsAndDomains() throws InvalidTermException {
+        assertSameAsTree(expressionReader.readForGraphing(
+                new String[]{"x*y = 1", "x < 2 | y >= 1 & x > -1"}));
+        assertSameAsTree(expressionReader.readForGraphing(new String[]{"x + y = 0", "x <= y & y > 0.5 | x >= 2"}));
+    }
+
+    @Test(timeout = 2000)
+    public void testMandel() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("mandel(x, y) = 0");
+        assertEquals(VectorSupport.isAvailable(), VectorSupport.prefersVectors(compiler.compile(exp)));
+        assertSameAsTree(exp);
+        assertSameAsTree((RealValuedExpression) expressionReader.read("smoothmandel(x, y) - mandel(y, x)"));
+    }
+
+    @Test(timeout = 2000)
+    public void testEscapeTimeFamilies() throws InvalidTermException {
+        RealValuedExpression exp = (RealValuedExpression) expressionReader.read("julia(x, y, -0.8, 0.156)");
+        assertEquals(VectorSupport.isAvailable(), VectorSupport.prefersVectors(compiler.compile(exp)));
+        assertSameAsTree(exp);
+        // caps of their own in each lane, some of them out of range
+        assertSameAsTree((RealValuedExpression) expressionReader.read(
+                "mandeliter(x / 1000, y / 1000, x) + shipiter(x / 1000, y / 1000, 50) - multibrot(x, y, 3)"));
+    }
+
+    @Test(timeout = 50)
+    public void testLaneCount() {
+        assertEquals(VectorSupport.isAvailable(), VectorSupport.getLaneCount() > 1);
+    }
+}